@@ -70,4 +70,6 @@ dependencies {
     implementation(project(":commit-diff-context"))
     implementation(project(":jpa-persistence"))
     implementation("org.jsoup:jsoup:1.15.3")
+    // runs the production changelog, the prod profile only validates the schema against the entities
+    implementation("org.liquibase:liquibase-core")
 }
@@ -1,6 +1,8 @@
 package com.hayden.functioncalling.config;
 
+import com.hayden.functioncalling.model.PipelineStageType;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import lombok.Data;
@@ -19,6 +21,347 @@ public class CodeRunnerConfigProps {
     private List<TestExecutionRegistration> testRegistrations = new ArrayList<>();
     private List<BuildRegistration> buildRegistrations = new ArrayList<>();
     private List<DeployRegistration> deployRegistrations = new ArrayList<>();
+    private List<PipelineRegistration> pipelineRegistrations = new ArrayList<>();
+
+    /**
+     * Root directory for local state such as the per-test index, the write-behind journal and the log blobs. It
+     * has to outlive restarts, since history rows only hold the hashes of externalized logs.
+     */
+    private Path dataDirectory = Paths.get(System.getProperty("user.home"), ".function-calling");
+
+    private Sharding sharding = new Sharding();
+
+    private WriteBehind writeBehind = new WriteBehind();
+
+    private LogStore logStore = new LogStore();
+
+    private Logs logs = new Logs();
+
+    private HistoryRetention historyRetention = new HistoryRetention();
+
+    private RegistrationCaching registrationCache = new RegistrationCaching();
+
+    private RegistrationSync registrationSync = new RegistrationSync();
+
+    private Statistics statistics = new Statistics();
+
+    private LogSearch logSearch = new LogSearch();
+
+    private HistoryExport historyExport = new HistoryExport();
+
+    private HistoryArchive historyArchive = new HistoryArchive();
+
+    private ReportCache reportCache = new ReportCache();
+
+    private FailureRegions failureRegions = new FailureRegions();
+
+    private FailureSummary failureSummary = new FailureSummary();
+
+    private LiveReports liveReports = new LiveReports();
+
+    @Data
+    public static class LiveReports {
+
+        /**
+         * Read the JUnit XML results of a test run as they are written and publish their failures while it runs.
+         */
+        private boolean enabled = true;
+
+        /**
+         * How often directories that don't exist yet are looked for, and results rescanned in case an event was
+         * missed.
+         */
+        private long pollMs = 1_000;
+
+        /**
+         * Count the failures of the results towards the fail-fast threshold of the registration, if it has one.
+         */
+        private boolean failFast = true;
+    }
+
+    @Data
+    public static class FailureSummary {
+
+        /**
+         * Characters of a test failure summary, about four per token, unless the caller asks for another budget.
+         */
+        private int maxChars = 20_000;
+
+        /**
+         * Characters kept of the example trace of each cause.
+         */
+        private int maxTraceChars = 4_000;
+
+        /**
+         * Failed tests named for each cause, the rest are counted.
+         */
+        private int testNamesPerGroup = 10;
+    }
+
+    @Data
+    public static class FailureRegions {
+
+        /**
+         * Lines of a test output log kept before and after each failure region.
+         */
+        private int contextLines = 5;
+
+        /**
+         * Regions returned from one log, the rest of the log isn't read.
+         */
+        private int maxRegions = 50;
+
+        /**
+         * Characters kept of each region, the rest are cut.
+         */
+        private int maxRegionChars = 16_000;
+    }
+
+    @Data
+    public static class ReportCache {
+
+        /**
+         * Reuse the failures extracted from report files whose content didn't change since they were last parsed.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Report files remembered, least recently used dropped first.
+         */
+        private int maxEntries = 10_000;
+    }
+
+    @Data
+    public static class HistoryArchive {
+
+        /**
+         * Move old history out of the history tables into columnar files under the data directory. With
+         * partitioned history tables, partitions are archived as they pass the retention window instead.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Whole months of history older than this many months are archived. Can't be below the retention window
+         * of partitioned history tables, which keeps their months in the tables that long.
+         */
+        private int archiveAfterMonths = 6;
+
+        /**
+         * Rows fetched per round trip while archiving.
+         */
+        private int fetchSize = 1000;
+
+        /**
+         * When the archival job runs.
+         */
+        private String cron = "0 45 2 * * *";
+    }
+
+    @Data
+    public static class HistoryExport {
+
+        /**
+         * Rows fetched per round trip from the server-side cursor of an export.
+         */
+        private int fetchSize = 500;
+    }
+
+    @Data
+    public static class LogSearch {
+
+        /**
+         * Index history logs for full-text search in the background.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Postgres text search configuration logs are indexed and searched with.
+         */
+        private String textSearchConfig = "simple";
+
+        /**
+         * Number of history rows indexed per transaction.
+         */
+        private int indexBatchSize = 200;
+
+        /**
+         * Pause between indexing runs once all history is indexed.
+         */
+        private long indexIntervalMs = 2000;
+
+        /**
+         * Characters of each log that are indexed; the rest of a longer log can't be found.
+         */
+        private int maxIndexedChars = 200_000;
+    }
+
+    @Data
+    public static class Statistics {
+
+        /**
+         * Maintain per-registration execution statistics as history is written.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Longest window, in days, the statistics queries return a daily trend for.
+         */
+        private int maxDays = 90;
+    }
+
+    @Data
+    public static class RegistrationSync {
+
+        /**
+         * Re-apply the registrations whenever a config file declaring them changes.
+         */
+        private boolean watch = true;
+
+        /**
+         * How long to wait for further writes to a changed config file before reloading it.
+         */
+        private long debounceMs = 500;
+    }
+
+    @Data
+    public static class RegistrationCaching {
+
+        /**
+         * Serve registration lookups from memory instead of querying the database on every run.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Postgres channel registration changes are announced on, so other nodes evict them too.
+         */
+        private String notifyChannel = "registration_changed";
+    }
+
+    @Data
+    public static class HistoryRetention {
+
+        /**
+         * Number of monthly history partitions kept created ahead of the current month.
+         */
+        private int monthsAhead = 2;
+
+        /**
+         * Partitions older than this many months have their logs moved to the blob store and stripped from the
+         * rows, leaving summary rows. Null never compacts.
+         */
+        private Integer compactAfterMonths = 3;
+
+        /**
+         * Partitions older than this many months are removed from the history tables. Null keeps them forever.
+         */
+        private Integer retainMonths = 12;
+
+        /**
+         * What happens to a partition past the retention window.
+         */
+        private ExpiredPartitionAction expiredPartitionAction = ExpiredPartitionAction.DROP;
+
+        /**
+         * When the partition maintenance runs.
+         */
+        private String cron = "0 15 3 * * *";
+    }
+
+    public enum ExpiredPartitionAction {
+        /**
+         * Drop the partition and its rows.
+         */
+        DROP,
+        /**
+         * Detach the partition, leaving it as a standalone table to archive elsewhere.
+         */
+        DETACH
+    }
+
+    @Data
+    public static class Sharding {
+
+        /**
+         * Upper bound on the number of shards when the shard count is derived automatically.
+         */
+        private int maxShards = 8;
+
+        /**
+         * Free memory each shard process is expected to need, used when deriving the shard count.
+         */
+        private long memoryPerShardMb = 1024;
+    }
+
+    @Data
+    public static class Logs {
+
+        /**
+         * Gzip process output written to log files as it is written; such files get a .gz extension.
+         */
+        private boolean compress = true;
+
+        /**
+         * Build token Bloom filters of log files as they are written, kept next to them, so that searches across
+         * log files only read the parts that might match.
+         */
+        private boolean tokenFilters = true;
+    }
+
+    @Data
+    public static class LogStore {
+
+        /**
+         * Move logs longer than the preview out of history rows into the content-addressed blob store.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Number of characters of an externalized log kept inline in the history row.
+         */
+        private int previewChars = 4000;
+    }
+
+    @Data
+    public static class WriteBehind {
+
+        /**
+         * Write history in the background instead of on the request thread.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Number of buffered records that triggers a write.
+         */
+        private int batchSize = 50;
+
+        /**
+         * Longest time a buffered record waits before it is written.
+         */
+        private long flushIntervalMs = 500;
+
+        /**
+         * Buffer capacity; when full, records are kept only in the journal, or written on the calling thread
+         * if journaling is off.
+         */
+        private int maxPending = 10_000;
+
+        /**
+         * Journal records to local memory-mapped segments under the data directory before queueing them, so
+         * they survive a database outage or a crash.
+         */
+        private boolean journal = true;
+
+        /**
+         * Size of each journal segment file.
+         */
+        private long journalSegmentBytes = 16 * 1024 * 1024;
+
+        /**
+         * Flush each journaled record to the storage device, which also survives an OS crash, at the cost of
+         * a sync per record.
+         */
+        private boolean journalForce = false;
+    }
 
     @Data
     public static class TestExecutionRegistration {
@@ -33,6 +376,14 @@ public class CodeRunnerConfigProps {
         private List<Path> reportingPaths = new ArrayList<>();
         private List<String> outputRegex = new ArrayList<>();
         private Path runnerCopyPath;
+        private List<Path> testResultPaths = new ArrayList<>();
+        private String testFilterTemplate;
+        private Integer shardCount;
+        private Boolean testImpactAnalysis;
+        private Integer fullRunInterval;
+        private Boolean failureFirst;
+        private Integer failFastThreshold;
+        private List<String> failFastPatterns = new ArrayList<>();
     }
 
     @Data
@@ -70,4 +421,23 @@ public class CodeRunnerConfigProps {
         private Integer maxWaitForStartupSeconds;
         private String stopCommand;
     }
+
+    @Data
+    public static class PipelineRegistration {
+
+        private String registrationId;
+        private String description;
+        private boolean enabled = true;
+        private List<PipelineNodeRegistration> nodes = new ArrayList<>();
+    }
+
+    @Data
+    public static class PipelineNodeRegistration {
+
+        private String nodeId;
+        private PipelineStageType stageType;
+        private String stageRegistrationId;
+        private List<String> dependsOn = new ArrayList<>();
+        private Path artifactInputDirectory;
+    }
 }
@@ -6,9 +6,17 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.nio.file.*;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 
 /**
- * Service for handling test reports
+ * Service for handling test reports. Copies of a report run in the background one at a time, in the order they
+ * were requested, and a run that is about to rewrite a report {@link #awaitCopies waits} for them first.
  */
 @Slf4j
 @Service
@@ -17,6 +25,22 @@ public class TestReportService {
     
     private final TestResultsProcessor testResultsProcessor;
 
+    private final ExecutorService runnerTaskExecutor;
+
+    /**
+     * The last copy requested of each report path, while it hasn't finished.
+     */
+    private final Map<Path, CompletableFuture<Void>> copies = new ConcurrentHashMap<>();
+
+    /**
+     * Failure information of a report, and the copy of the report to the runner copy path.
+     *
+     * @param context formatted failure information
+     * @param copied  completes once the report is copied, which happens in the background
+     */
+    public record Report(String context, CompletableFuture<Void> copied) {
+    }
+
 
     /**
      * Get context information for failed tests
@@ -24,6 +48,20 @@ public class TestReportService {
      * @return Formatted failure information
      */
     public String getContext(String reportPath, String sessionId, String runnerCopyPath) {
+        Report report = process(reportPath, sessionId, runnerCopyPath);
+        if (report == null) {
+            return null;
+        }
+        report.copied().join();
+        return report.context();
+    }
+
+    /**
+     * Get context information for failed tests without waiting for the report to be copied, which takes the
+     * advisory lock of {@link TestResultsProcessor#copyTestResults}.
+     * @return the report, or null if there is none at the path
+     */
+    public Report process(String reportPath, String sessionId, String runnerCopyPath) {
         Path path = Paths.get(reportPath);
         if (!path.toFile().exists()) {
             return null;
@@ -31,7 +69,44 @@ public class TestReportService {
 
         String absolutePath = path.toFile().getAbsolutePath();
         var processed = testResultsProcessor.processTestFailures(absolutePath);
-        testResultsProcessor.copyTestResults(sessionId, processed, path, runnerCopyPath);
-        return processed;
+        Path key = key(reportPath);
+        Runnable copy = () -> testResultsProcessor.copyTestResults(sessionId, processed, path, runnerCopyPath);
+        // after the previous copy of the same report, whether or not it succeeded
+        CompletableFuture<Void> copied = copies.compute(key, (k, previous) ->
+                Optional.ofNullable(previous).orElseGet(() -> CompletableFuture.completedFuture(null))
+                        .exceptionally(e -> null)
+                        .thenRunAsync(copy, runnerTaskExecutor)
+                        .whenComplete((ignored, e) -> {
+                            if (e != null) {
+                                log.error("Failed to copy test report {}", reportPath, e);
+                            }
+                        }));
+        copied.whenComplete((ignored, e) -> copies.remove(key, copied));
+        return new Report(processed, copied);
+    }
+
+    /**
+     * Wait for the copies of the reports at the paths to finish, so they aren't rewritten while being copied.
+     * @param reportPaths the report paths of the run about to start, null if it has none
+     */
+    public void awaitCopies(List<String> reportPaths) throws InterruptedException {
+        if (reportPaths == null) {
+            return;
+        }
+        for (String reportPath : reportPaths) {
+            CompletableFuture<Void> copy = copies.get(key(reportPath));
+            if (copy == null) {
+                continue;
+            }
+            try {
+                copy.get();
+            } catch (ExecutionException e) {
+                // logged by the copy
+            }
+        }
+    }
+
+    private static Path key(String reportPath) {
+        return Paths.get(reportPath).toAbsolutePath().normalize();
     }
-}
\ No newline at end of file
+}
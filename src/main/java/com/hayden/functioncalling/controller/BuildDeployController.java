@@ -11,13 +11,24 @@ import com.hayden.functioncalling.entity.CodeBuildEntity;
 import com.hayden.functioncalling.entity.CodeBuildHistory;
 import com.hayden.functioncalling.entity.CodeDeployEntity;
 import com.hayden.functioncalling.entity.CodeDeployHistory;
+import com.hayden.functioncalling.model.CodeBuildSummary;
+import com.hayden.functioncalling.model.CodeDeploySummary;
+import com.hayden.functioncalling.model.HistoryConnection;
+import com.hayden.functioncalling.model.HistoryFilter;
 import com.hayden.functioncalling.repository.CodeBuildHistoryRepository;
 import com.hayden.functioncalling.repository.CodeBuildRepository;
 import com.hayden.functioncalling.repository.CodeDeployHistoryRepository;
 import com.hayden.functioncalling.repository.CodeDeployRepository;
 import com.hayden.functioncalling.runner.BuildExecRunner;
 import com.hayden.functioncalling.runner.DeployExecRunner;
+import com.hayden.functioncalling.service.history.HistoryQueryService;
+import com.hayden.functioncalling.service.log_store.LogBlobStore;
+import com.hayden.functioncalling.service.process_builder.HistoryWriteBehind;
+import com.hayden.functioncalling.service.registration.RegistrationCache;
 import com.netflix.graphql.dgs.DgsComponent;
+import graphql.execution.DataFetcherResult;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.DataFetchingFieldSelectionSet;
 import io.micrometer.common.util.StringUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -42,27 +53,50 @@ public class BuildDeployController {
     private final BuildExecRunner buildExecRunner;
     private final DeployExecRunner deployExecRunner;
     private final CommitDiffContextMapper mapper;
+    private final HistoryWriteBehind historyWriteBehind;
+    private final LogBlobStore logBlobStore;
+    private final HistoryQueryService historyQueryService;
+    private final RegistrationCache registrationCache;
 
     // Build Queries
     @QueryMapping
     public List<CodeBuildRegistration> retrieveBuildRegistrations() {
-        List<CodeBuildEntity> entities = buildRepository.findAll();
+        List<CodeBuildEntity> entities = registrationCache.builds();
         return entities.stream()
                 .map(this::mapToBuildRegistration)
                 .collect(Collectors.toList());
     }
 
     @QueryMapping
-    public List<CodeBuild> retrieveBuilds() {
+    public List<CodeBuild> retrieveBuilds(DataFetchingFieldSelectionSet selectionSet) {
+        if (!selectsLogs(selectionSet)) {
+            return buildHistoryRepository.findTop10ByOrderByCreatedTimeDesc(CodeBuildSummary.class).stream()
+                    .map(this::mapToBuild)
+                    .collect(Collectors.toList());
+        }
         List<CodeBuildHistory> entities = buildHistoryRepository.findTop10ByOrderByCreatedTimeDesc();
         return entities.stream()
                 .map(this::mapToBuild)
                 .collect(Collectors.toList());
     }
 
+    @QueryMapping
+    public DataFetcherResult<HistoryConnection<CodeBuild>> buildHistory(
+            @Argument Integer first, @Argument String after, @Argument HistoryFilter filter,
+            DataFetchingEnvironment environment) {
+        return HistoryQueryErrors.validated(environment, () -> {
+            if (!selectsLogs(environment.getSelectionSet(), "edges/node/")) {
+                return historyQueryService.buildSummaries(filter, first, after)
+                        .map(this::mapToBuild);
+            }
+            return historyQueryService.builds(filter, first, after)
+                    .map(this::mapToBuild);
+        });
+    }
+
     @QueryMapping
     public CodeBuildRegistration getCodeBuildRegistration(@Argument String registrationId) {
-        Optional<CodeBuildEntity> entity = buildRepository.findByRegistrationId(registrationId);
+        Optional<CodeBuildEntity> entity = registrationCache.build(registrationId);
         return entity.map(this::mapToBuildRegistration)
                 .orElse(
                         CodeBuildRegistration
@@ -81,7 +115,8 @@ public class BuildDeployController {
                     .build();
         }
 
-        Optional<CodeBuildHistory> historyOpt = buildHistoryRepository.findByBuildId(buildId);
+        Optional<CodeBuildHistory> historyOpt = historyWriteBehind.pendingBuild(buildId)
+                .or(() -> buildHistoryRepository.findByBuildId(buildId));
 
         if (historyOpt.isEmpty()) {
             return CodeBuildResult.newBuilder()
@@ -96,14 +131,14 @@ public class BuildDeployController {
         return CodeBuildResult.newBuilder()
                 .sessionId(sessionId)
                 .success(history.getSuccess())
-                .matchedOutput(history.getOutput())
-                .error(parseErr(history.getError()))
+                .matchedOutput(logBlobStore.resolve(history.getOutput(), history.getOutputHash()))
+                .error(parseErr(logBlobStore.resolve(history.getError(), history.getErrorHash())))
                 .exitCode(history.getExitCode())
                 .buildId(buildId)
                 .executionTime(history.getExecutionTimeMs())
                 .artifactPaths(history.getArtifactPaths())
                 .artifactOutputDirectory(history.getArtifactOutputDirectory())
-                .buildLog(history.getBuildLog())
+                .buildLog(logBlobStore.resolve(history.getBuildLog(), history.getBuildLogHash()))
                 .build();
     }
 
@@ -114,23 +149,42 @@ public class BuildDeployController {
     // Deploy Queries
     @QueryMapping
     public List<CodeDeployRegistration> retrieveDeployRegistrations() {
-        List<CodeDeployEntity> entities = deployRepository.findAll();
+        List<CodeDeployEntity> entities = registrationCache.deploys();
         return entities.stream()
                 .map(this::mapToDeployRegistration)
                 .collect(Collectors.toList());
     }
 
     @QueryMapping
-    public List<CodeDeploy> retrieveDeploys() {
+    public List<CodeDeploy> retrieveDeploys(DataFetchingFieldSelectionSet selectionSet) {
+        if (!selectsLogs(selectionSet)) {
+            return deployHistoryRepository.findTop10ByOrderByCreatedTimeDesc(CodeDeploySummary.class).stream()
+                    .map(this::mapToDeploy)
+                    .collect(Collectors.toList());
+        }
         List<CodeDeployHistory> entities = deployHistoryRepository.findTop10ByOrderByCreatedTimeDesc();
         return entities.stream()
                 .map(this::mapToDeploy)
                 .collect(Collectors.toList());
     }
 
+    @QueryMapping
+    public DataFetcherResult<HistoryConnection<CodeDeploy>> deployHistory(
+            @Argument Integer first, @Argument String after, @Argument HistoryFilter filter,
+            DataFetchingEnvironment environment) {
+        return HistoryQueryErrors.validated(environment, () -> {
+            if (!selectsLogs(environment.getSelectionSet(), "edges/node/")) {
+                return historyQueryService.deploySummaries(filter, first, after)
+                        .map(this::mapToDeploy);
+            }
+            return historyQueryService.deploys(filter, first, after)
+                    .map(this::mapToDeploy);
+        });
+    }
+
     @QueryMapping
     public CodeDeployRegistration getCodeDeployRegistration(@Argument String registrationId) {
-        Optional<CodeDeployEntity> entity = deployRepository.findByRegistrationId(registrationId);
+        Optional<CodeDeployEntity> entity = registrationCache.deploy(registrationId);
         return entity.map(this::mapToDeployRegistration).orElse(null);
     }
 
@@ -144,7 +198,8 @@ public class BuildDeployController {
                     .build();
         }
 
-        Optional<CodeDeployHistory> historyOpt = deployHistoryRepository.findByDeployId(deployId);
+        Optional<CodeDeployHistory> historyOpt = historyWriteBehind.pendingDeploy(deployId)
+                .or(() -> deployHistoryRepository.findByDeployId(deployId));
 
         if (historyOpt.isEmpty()) {
             return CodeDeployResult.newBuilder()
@@ -159,12 +214,12 @@ public class BuildDeployController {
         return CodeDeployResult.newBuilder()
                 .sessionId(sessionId)
                 .success(history.getSuccess())
-                .matchedOutput(history.getOutput())
-                .error(parseErr(history.getError()))
+                .matchedOutput(logBlobStore.resolve(history.getOutput(), history.getOutputHash()))
+                .error(parseErr(logBlobStore.resolve(history.getError(), history.getErrorHash())))
                 .exitCode(history.getExitCode())
                 .deployId(deployId)
                 .executionTime(history.getExecutionTimeMs())
-                .deployLog(history.getDeployLog())
+                .deployLog(logBlobStore.resolve(history.getDeployLog(), history.getDeployLogHash()))
                 .healthCheckStatus(history.getHealthCheckStatus())
                 .healthCheckResponseTime(history.getHealthCheckResponseTimeMs())
                 .isRunning(history.getIsRunning())
@@ -173,7 +228,12 @@ public class BuildDeployController {
     }
 
     @QueryMapping
-    public List<CodeDeploy> getRunningDeployments() {
+    public List<CodeDeploy> getRunningDeployments(DataFetchingFieldSelectionSet selectionSet) {
+        if (!selectsLogs(selectionSet)) {
+            return deployHistoryRepository.findByIsRunningTrue(CodeDeploySummary.class).stream()
+                    .map(this::mapToDeploy)
+                    .collect(Collectors.toList());
+        }
         List<CodeDeployHistory> entities = deployHistoryRepository.findByIsRunningTrue();
         return entities.stream()
                 .map(this::mapToDeploy)
@@ -381,22 +441,42 @@ public class BuildDeployController {
                 .build();
     }
 
+    /**
+     * Whether the list query selects a field backed by a log column. Otherwise it only loads a summary projection,
+     * so listing stays cheap however large the logs are. A null selection loads everything.
+     */
+    private static boolean selectsLogs(DataFetchingFieldSelectionSet selectionSet) {
+        return selectsLogs(selectionSet, "");
+    }
+
+    /**
+     * @param path where the history fields are in the selection, e.g. the nodes of a connection
+     */
+    private static boolean selectsLogs(DataFetchingFieldSelectionSet selectionSet, String path) {
+        return selectionSet == null || selectionSet.containsAnyOf(path + "matchedOutput", path + "error");
+    }
+
     private CodeBuild mapToBuild(CodeBuildHistory entity) {
+        CodeBuild build = mapToBuild(CodeBuildSummary.of(entity));
+        build.setMatchedOutput(logBlobStore.resolve(entity.getOutput(), entity.getOutputHash()));
+        build.setError(parseErr(logBlobStore.resolve(entity.getError(), entity.getErrorHash())));
+        return build;
+    }
+
+    private CodeBuild mapToBuild(CodeBuildSummary summary) {
         return CodeBuild.newBuilder()
-                .sessionId(entity.getSessionId())
-                .registrationId(entity.getRegistrationId())
-                .buildCommand(entity.getBuildCommand() + (entity.getArguments() != null ? " " + entity.getArguments() : ""))
-                .status(entity.getSuccess() ? "SUCCESS" : "FAILED")
-                .startTime(convertToDate(entity.getExecutionTimeMs()))
-                .endTime(entity.getExecutionTimeMs() != null
-                         ? LocalDate.ofInstant(Instant.ofEpochMilli(entity.getExecutionTimeMs())
-                                 .plusMillis(entity.getExecutionTimeMs()), ZoneId.systemDefault())
+                .sessionId(summary.sessionId())
+                .registrationId(summary.registrationId())
+                .buildCommand(summary.buildCommand() + (summary.arguments() != null ? " " + summary.arguments() : ""))
+                .status(summary.success() ? "SUCCESS" : "FAILED")
+                .startTime(convertToDate(summary.executionTimeMs()))
+                .endTime(summary.executionTimeMs() != null
+                         ? LocalDate.ofInstant(Instant.ofEpochMilli(summary.executionTimeMs())
+                                 .plusMillis(summary.executionTimeMs()), ZoneId.systemDefault())
                          : null)
-                .exitCode(entity.getExitCode())
-                .matchedOutput(entity.getOutput())
-                .error(parseErr(entity.getError()))
-                .buildId(entity.getBuildId())
-                .artifactPaths(entity.getArtifactPaths())
+                .exitCode(summary.exitCode())
+                .buildId(summary.buildId())
+                .artifactPaths(summary.artifactPaths())
                 .build();
     }
 
@@ -415,23 +495,28 @@ public class BuildDeployController {
     }
 
     private CodeDeploy mapToDeploy(CodeDeployHistory entity) {
+        CodeDeploy deploy = mapToDeploy(CodeDeploySummary.of(entity));
+        deploy.setMatchedOutput(logBlobStore.resolve(entity.getOutput(), entity.getOutputHash()));
+        deploy.setError(parseErr(logBlobStore.resolve(entity.getError(), entity.getErrorHash())));
+        return deploy;
+    }
+
+    private CodeDeploy mapToDeploy(CodeDeploySummary summary) {
         return CodeDeploy.newBuilder()
-                .sessionId(entity.getSessionId())
-                .registrationId(entity.getRegistrationId())
-                .deployCommand(entity.getDeployCommand() + (entity.getArguments() != null ? " " + entity.getArguments() : ""))
-                .status(entity.getSuccess() ? "SUCCESS" : "FAILED")
-                .startTime(convertToDate(entity.getExecutionTimeMs()))
-                .endTime(entity.getExecutionTimeMs() != null
-                         ? LocalDate.ofInstant(Instant.ofEpochMilli(entity.getExecutionTimeMs())
-                                 .plusMillis(entity.getExecutionTimeMs()), ZoneId.systemDefault())
+                .sessionId(summary.sessionId())
+                .registrationId(summary.registrationId())
+                .deployCommand(summary.deployCommand() + (summary.arguments() != null ? " " + summary.arguments() : ""))
+                .status(summary.success() ? "SUCCESS" : "FAILED")
+                .startTime(convertToDate(summary.executionTimeMs()))
+                .endTime(summary.executionTimeMs() != null
+                         ? LocalDate.ofInstant(Instant.ofEpochMilli(summary.executionTimeMs())
+                                 .plusMillis(summary.executionTimeMs()), ZoneId.systemDefault())
                          : null)
-                .exitCode(entity.getExitCode())
-                .matchedOutput(entity.getOutput())
-                .error(parseErr(entity.getError()))
-                .deployId(entity.getDeployId())
-                .healthCheckStatus(entity.getHealthCheckStatus())
-                .isRunning(entity.getIsRunning())
-                .deploymentUrl(entity.getDeploymentUrl())
+                .exitCode(summary.exitCode())
+                .deployId(summary.deployId())
+                .healthCheckStatus(summary.healthCheckStatus())
+                .isRunning(summary.isRunning())
+                .deploymentUrl(summary.deploymentUrl())
                 .build();
     }
 
@@ -5,10 +5,20 @@ import com.hayden.commitdiffmodel.codegen.types.Error;
 import com.hayden.commitdiffcontext.convert.CommitDiffContextMapper;
 import com.hayden.functioncalling.entity.TestExecutionEntity;
 import com.hayden.functioncalling.entity.TestExecutionHistory;
+import com.hayden.functioncalling.model.HistoryConnection;
+import com.hayden.functioncalling.model.HistoryFilter;
+import com.hayden.functioncalling.model.TestExecutionSummary;
 import com.hayden.functioncalling.repository.TestExecutionHistoryRepository;
 import com.hayden.functioncalling.repository.TestExecutionRepository;
 import com.hayden.functioncalling.runner.ExecRunner;
+import com.hayden.functioncalling.service.history.HistoryQueryService;
+import com.hayden.functioncalling.service.log_store.LogBlobStore;
+import com.hayden.functioncalling.service.process_builder.HistoryWriteBehind;
+import com.hayden.functioncalling.service.registration.RegistrationCache;
 import com.netflix.graphql.dgs.DgsComponent;
+import graphql.execution.DataFetcherResult;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.DataFetchingFieldSelectionSet;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -30,26 +40,53 @@ public class CodeRunnerController {
     private final TestExecutionHistoryRepository executionHistoryRepository;
     private final ExecRunner execRunner;
     private final CommitDiffContextMapper mapper;
+    private final HistoryWriteBehind historyWriteBehind;
+    private final LogBlobStore logBlobStore;
+    private final HistoryQueryService historyQueryService;
+    private final RegistrationCache registrationCache;
 
     @QueryMapping
     public List<CodeExecutionRegistration> retrieveRegistrations() {
-        List<TestExecutionEntity> entities = executionRepository.findAll();
+        List<TestExecutionEntity> entities = registrationCache.executions();
         return entities.stream()
                 .map(this::mapToRegistration)
                 .collect(Collectors.toList());
     }
     
-    @QueryMapping
     public List<CodeExecution> retrieveExecutions() {
+        return retrieveExecutions(null);
+    }
+
+    @QueryMapping
+    public List<CodeExecution> retrieveExecutions(DataFetchingFieldSelectionSet selectionSet) {
+        if (!selectsLogs(selectionSet)) {
+            return executionHistoryRepository.findTop10ByOrderByCreatedTimeDesc(TestExecutionSummary.class).stream()
+                    .map(this::mapToExecution)
+                    .collect(Collectors.toList());
+        }
         List<TestExecutionHistory> entities = executionHistoryRepository.findTop10ByOrderByCreatedTimeDesc();
         return entities.stream()
                 .map(this::mapToExecution)
                 .collect(Collectors.toList());
     }
 
+    @QueryMapping
+    public DataFetcherResult<HistoryConnection<CodeExecution>> executionHistory(
+            @Argument Integer first, @Argument String after, @Argument HistoryFilter filter,
+            DataFetchingEnvironment environment) {
+        return HistoryQueryErrors.validated(environment, () -> {
+            if (!selectsLogs(environment.getSelectionSet(), "edges/node/")) {
+                return historyQueryService.executionSummaries(filter, first, after)
+                        .map(this::mapToExecution);
+            }
+            return historyQueryService.executions(filter, first, after)
+                    .map(this::mapToExecution);
+        });
+    }
+
     @QueryMapping
     public CodeExecutionRegistration getCodeExecutionRegistration(@Argument String registrationId) {
-        Optional<TestExecutionEntity> entity = executionRepository.findByRegistrationId(registrationId);
+        Optional<TestExecutionEntity> entity = registrationCache.execution(registrationId);
         return entity.map(this::mapToRegistration).orElse(null);
     }
 
@@ -143,6 +180,21 @@ public class CodeRunnerController {
         return execRunner.run(options);
     }
     
+    @MutationMapping
+    public CodeExecutionResult executeFullSuite(@Argument CodeExecutionOptions options) {
+        log.info("Executing full suite with options: {}", options);
+
+        if (options == null || options.getRegistrationId() == null) {
+            return CodeExecutionResult.newBuilder()
+                    .success(false)
+                    .sessionId(options != null ? options.getSessionId() : null)
+                    .error(List.of(new Error("Invalid execution options. Registration ID is required.")))
+                    .build();
+        }
+
+        return execRunner.runFullSuite(options);
+    }
+
     @MutationMapping
     public CodeExecutionResult executeWithOutputFile(@Argument CodeExecutionOptions options, @Argument String outputFilePath) {
         log.info("Executing code with output file. Options: {}, File: {}", options, outputFilePath);
@@ -182,21 +234,41 @@ public class CodeRunnerController {
                 .build();
     }
     
+    /**
+     * Whether the list query selects a field backed by a log column. Otherwise it only loads a summary projection,
+     * so listing stays cheap however large the logs are. A null selection loads everything.
+     */
+    private static boolean selectsLogs(DataFetchingFieldSelectionSet selectionSet) {
+        return selectsLogs(selectionSet, "");
+    }
+
+    /**
+     * @param path where the history fields are in the selection, e.g. the nodes of a connection
+     */
+    private static boolean selectsLogs(DataFetchingFieldSelectionSet selectionSet, String path) {
+        return selectionSet == null || selectionSet.containsAnyOf(path + "output", path + "error");
+    }
+
     private CodeExecution mapToExecution(TestExecutionHistory entity) {
+        CodeExecution execution = mapToExecution(TestExecutionSummary.of(entity));
+        execution.setOutput(logBlobStore.resolve(entity.getOutput(), entity.getOutputHash()));
+        execution.setError(List.of(new Error(logBlobStore.resolve(entity.getError(), entity.getErrorHash()))));
+        return execution;
+    }
+
+    private CodeExecution mapToExecution(TestExecutionSummary summary) {
         return CodeExecution.newBuilder()
-                .executionType(Optional.ofNullable(entity.getExecutionType()).orElse(ExecutionType.PROCESS_BUILDER))
-                .sessionId(entity.getSessionId())
-                .registrationId(entity.getExecutionId())
-                .command(entity.getCommand() + (entity.getArguments() != null ? " " + entity.getArguments() : ""))
-                .status(entity.getSuccess() ? "SUCCESS" : "FAILED")
-                .startTime(convertToDate(entity.getExecutionTimeMs()))
-                .endTime(entity.getExecutionTimeMs() != null
-                         ? LocalDate.ofInstant(Instant.ofEpochMilli(entity.getExecutionTimeMs())
-                                 .plusMillis(entity.getExecutionTimeMs()), ZoneId.systemDefault())
+                .executionType(Optional.ofNullable(summary.executionType()).orElse(ExecutionType.PROCESS_BUILDER))
+                .sessionId(summary.sessionId())
+                .registrationId(summary.executionId())
+                .command(summary.command() + (summary.arguments() != null ? " " + summary.arguments() : ""))
+                .status(summary.success() ? "SUCCESS" : "FAILED")
+                .startTime(convertToDate(summary.executionTimeMs()))
+                .endTime(summary.executionTimeMs() != null
+                         ? LocalDate.ofInstant(Instant.ofEpochMilli(summary.executionTimeMs())
+                                 .plusMillis(summary.executionTimeMs()), ZoneId.systemDefault())
                          : null)
-                .exitCode(entity.getExitCode())
-                .output(entity.getOutput())
-                .error(List.of(new Error(entity.getError())))
+                .exitCode(summary.exitCode())
                 .build();
     }
 
@@ -215,7 +287,8 @@ public class CodeRunnerController {
         }
         
         // Find the execution history
-        Optional<TestExecutionHistory> historyOpt = executionHistoryRepository.findByExecutionId(executionId);
+        Optional<TestExecutionHistory> historyOpt = historyWriteBehind.pendingExecution(executionId)
+                .or(() -> executionHistoryRepository.findByExecutionId(executionId));
         
         if (historyOpt.isEmpty()) {
             return CodeExecutionResult.newBuilder()
@@ -230,8 +303,8 @@ public class CodeRunnerController {
         return CodeExecutionResult.newBuilder()
                 .sessionId(sessionId)
                 .success(history.getSuccess())
-                .output(history.getOutput())
-                .error(List.of(new Error(history.getError())))
+                .output(logBlobStore.resolve(history.getOutput(), history.getOutputHash()))
+                .error(List.of(new Error(logBlobStore.resolve(history.getError(), history.getErrorHash()))))
                 .exitCode(history.getExitCode())
                 .executionId(executionId)
                 .executionTime(history.getExecutionTimeMs())
@@ -0,0 +1,26 @@
+package com.hayden.functioncalling.controller;
+
+import com.hayden.functioncalling.model.ArchivedHistoryWeek;
+import com.hayden.functioncalling.model.PipelineStageType;
+import com.hayden.functioncalling.service.history_archive.HistoryArchiveService;
+import com.netflix.graphql.dgs.DgsComponent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+
+import java.util.List;
+
+@DgsComponent
+@RequiredArgsConstructor
+public class HistoryArchiveController {
+
+    private final HistoryArchiveService historyArchiveService;
+
+    @QueryMapping
+    public List<ArchivedHistoryWeek> archivedHistoryWeeks(@Argument PipelineStageType kind,
+                                                          @Argument String registrationId,
+                                                          @Argument String createdAfter,
+                                                          @Argument String createdBefore) {
+        return historyArchiveService.weeks(kind, registrationId, createdAfter, createdBefore);
+    }
+}
@@ -0,0 +1,64 @@
+package com.hayden.functioncalling.controller;
+
+import com.hayden.functioncalling.model.HistoryFilter;
+import com.hayden.functioncalling.model.PipelineStageType;
+import com.hayden.functioncalling.service.history.HistoryExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Downloads history as newline-delimited JSON, for analysis that would otherwise page through the GraphQL history
+ * connections. Takes the same filters as the connections, as query parameters.
+ */
+@RestController
+@RequestMapping("/history/export")
+@RequiredArgsConstructor
+public class HistoryExportController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final HistoryExportService historyExportService;
+
+    @GetMapping("/{kind}")
+    public ResponseEntity<StreamingResponseBody> export(@PathVariable PipelineStageType kind,
+                                                        @RequestParam(required = false) String registrationId,
+                                                        @RequestParam(required = false) String sessionId,
+                                                        @RequestParam(required = false) Boolean success,
+                                                        @RequestParam(required = false) String createdAfter,
+                                                        @RequestParam(required = false) String createdBefore,
+                                                        @RequestParam(required = false) Boolean running,
+                                                        @RequestParam(defaultValue = "false") boolean fullLogs,
+                                                        @RequestParam(defaultValue = "false") boolean gzip) {
+        HistoryExportService.Export export = historyExportService.export(kind,
+                new HistoryFilter(registrationId, sessionId, success, createdAfter, createdBefore, running), fullLogs);
+
+        String fileName = "%s-history.ndjson".formatted(kind.name().toLowerCase(Locale.ROOT));
+        if (!gzip) {
+            return ResponseEntity.ok()
+                    .contentType(NDJSON)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"%s\"".formatted(fileName))
+                    .body(export::writeTo);
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/gzip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"%s.gz\"".formatted(fileName))
+                .body(out -> {
+                    GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+                    export.writeTo(compressed);
+                    compressed.finish();
+                });
+    }
+
+    @ExceptionHandler({IllegalArgumentException.class, DateTimeParseException.class})
+    public ResponseEntity<String> badRequest(RuntimeException e) {
+        return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+    }
+}
@@ -0,0 +1,33 @@
+package com.hayden.functioncalling.controller;
+
+import graphql.ErrorType;
+import graphql.GraphqlErrorBuilder;
+import graphql.execution.DataFetcherResult;
+import graphql.schema.DataFetchingEnvironment;
+
+import java.time.format.DateTimeParseException;
+import java.util.function.Supplier;
+
+/**
+ * Runs the history queries, whose filter times, cursors and page sizes come straight from the client, and reports
+ * the arguments they reject as a validation error of the field instead of letting the exception out of the data
+ * fetcher.
+ */
+final class HistoryQueryErrors {
+
+    private HistoryQueryErrors() {
+    }
+
+    static <T> DataFetcherResult<T> validated(DataFetchingEnvironment environment, Supplier<T> query) {
+        try {
+            return DataFetcherResult.<T>newResult().data(query.get()).build();
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return DataFetcherResult.<T>newResult()
+                    .error(GraphqlErrorBuilder.newError(environment)
+                            .errorType(ErrorType.ValidationError)
+                            .message(e.getMessage())
+                            .build())
+                    .build();
+        }
+    }
+}
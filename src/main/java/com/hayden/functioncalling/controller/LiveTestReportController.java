@@ -0,0 +1,21 @@
+package com.hayden.functioncalling.controller;
+
+import com.hayden.functioncalling.model.TestFailureEvent;
+import com.hayden.functioncalling.service.live_report.LiveTestReportWatcher;
+import com.netflix.graphql.dgs.DgsComponent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.SubscriptionMapping;
+import reactor.core.publisher.Flux;
+
+@DgsComponent
+@RequiredArgsConstructor
+public class LiveTestReportController {
+
+    private final LiveTestReportWatcher liveTestReportWatcher;
+
+    @SubscriptionMapping
+    public Flux<TestFailureEvent> testFailures(@Argument String registrationId, @Argument String sessionId) {
+        return liveTestReportWatcher.failures(registrationId, sessionId);
+    }
+}
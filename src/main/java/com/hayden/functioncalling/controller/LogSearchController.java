@@ -0,0 +1,44 @@
+package com.hayden.functioncalling.controller;
+
+import com.hayden.functioncalling.model.HistoryConnection;
+import com.hayden.functioncalling.model.HistoryFilter;
+import com.hayden.functioncalling.model.LogGrepResult;
+import com.hayden.functioncalling.model.LogSearchHit;
+import com.hayden.functioncalling.model.PipelineStageType;
+import com.hayden.functioncalling.service.log_grep.LogGrepService;
+import com.hayden.functioncalling.service.log_search.LogSearchService;
+import com.netflix.graphql.dgs.DgsComponent;
+import graphql.execution.DataFetcherResult;
+import graphql.schema.DataFetchingEnvironment;
+import lombok.RequiredArgsConstructor;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+
+import java.util.List;
+
+@DgsComponent
+@RequiredArgsConstructor
+public class LogSearchController {
+
+    private final LogSearchService logSearchService;
+    private final LogGrepService logGrepService;
+
+    @QueryMapping
+    public DataFetcherResult<HistoryConnection<LogSearchHit>> searchLogs(@Argument PipelineStageType kind,
+                                                                         @Argument String query,
+                                                                         @Argument Integer first,
+                                                                         @Argument String after,
+                                                                         @Argument HistoryFilter filter,
+                                                                         @Argument Boolean oldestFirst,
+                                                                         DataFetchingEnvironment environment) {
+        return HistoryQueryErrors.validated(environment,
+                () -> logSearchService.search(kind, query, filter, first, after, Boolean.TRUE.equals(oldestFirst)));
+    }
+
+    @QueryMapping
+    public LogGrepResult grepLogFiles(@Argument String text,
+                                      @Argument List<String> directories,
+                                      @Argument Integer maxMatches) {
+        return logGrepService.grep(text, directories, maxMatches);
+    }
+}
@@ -0,0 +1,64 @@
+package com.hayden.functioncalling.controller;
+
+import com.hayden.functioncalling.entity.CodePipelineEntity;
+import com.hayden.functioncalling.model.CodePipelineRegistration;
+import com.hayden.functioncalling.model.CodePipelineResult;
+import com.hayden.functioncalling.repository.CodePipelineRepository;
+import com.hayden.functioncalling.runner.PipelineExecRunner;
+import com.netflix.graphql.dgs.DgsComponent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.MutationMapping;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+
+import java.util.List;
+
+@DgsComponent
+@RequiredArgsConstructor
+@Slf4j
+public class PipelineController {
+
+    private final CodePipelineRepository pipelineRepository;
+    private final PipelineExecRunner pipelineExecRunner;
+
+    @QueryMapping
+    public List<CodePipelineRegistration> retrievePipelineRegistrations() {
+        return pipelineRepository.findAll().stream()
+                .map(this::mapToPipelineRegistration)
+                .toList();
+    }
+
+    @QueryMapping
+    public CodePipelineRegistration getCodePipelineRegistration(@Argument String registrationId) {
+        return pipelineRepository.findByRegistrationId(registrationId)
+                .map(this::mapToPipelineRegistration)
+                .orElse(null);
+    }
+
+    @MutationMapping
+    public CodePipelineResult runPipeline(@Argument String registrationId, @Argument String sessionId) {
+        log.info("Running pipeline {} for session {}", registrationId, sessionId);
+
+        if (registrationId == null || registrationId.isBlank()) {
+            return CodePipelineResult.failed(null, sessionId, "Invalid pipeline options. Registration ID is required.");
+        }
+
+        return pipelineExecRunner.run(registrationId, sessionId);
+    }
+
+    private CodePipelineRegistration mapToPipelineRegistration(CodePipelineEntity entity) {
+        return new CodePipelineRegistration(
+                entity.getRegistrationId(),
+                entity.getDescription(),
+                entity.getEnabled(),
+                entity.getNodes().stream()
+                        .map(n -> new CodePipelineRegistration.CodePipelineNode(
+                                n.getNodeId(),
+                                n.getStageType(),
+                                n.getStageRegistrationId(),
+                                n.getDependsOn(),
+                                n.getArtifactInputDirectory()))
+                        .toList());
+    }
+}
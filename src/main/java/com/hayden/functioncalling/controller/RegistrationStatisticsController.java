@@ -0,0 +1,23 @@
+package com.hayden.functioncalling.controller;
+
+import com.hayden.functioncalling.model.PipelineStageType;
+import com.hayden.functioncalling.model.RegistrationStatistics;
+import com.hayden.functioncalling.service.statistics.RegistrationStatisticsService;
+import com.netflix.graphql.dgs.DgsComponent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+
+@DgsComponent
+@RequiredArgsConstructor
+public class RegistrationStatisticsController {
+
+    private final RegistrationStatisticsService statisticsService;
+
+    @QueryMapping
+    public RegistrationStatistics registrationStatistics(@Argument PipelineStageType kind,
+                                                         @Argument String registrationId,
+                                                         @Argument Integer days) {
+        return statisticsService.statistics(kind, registrationId, days);
+    }
+}
@@ -1,15 +1,24 @@
 package com.hayden.functioncalling.entity;
 
 import com.hayden.commitdiffmodel.codegen.types.ExecutionType;
+import com.hayden.functioncalling.service.statistics.HistoryStatisticsListener;
 import com.hayden.persistence.models.JpaHibernateAuditedIded;
 import jakarta.persistence.*;
 import lombok.*;
 
 import java.util.List;
 
+/**
+ * A finished build. Long outputs are kept in the {@link com.hayden.functioncalling.service.log_store.LogBlobStore}:
+ * the TEXT column then only holds a preview, and the {@code *Hash} and {@code *Size} columns point at the full log.
+ */
 @Entity
-@Table
-@Builder
+@EntityListeners(HistoryStatisticsListener.class)
+@Table(indexes = {
+        @Index(name = "idx_code_build_history_registration_created", columnList = "registration_id, created_time"),
+        @Index(name = "idx_code_build_history_session_created", columnList = "session_id, created_time")
+})
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
@@ -37,9 +46,21 @@ public class CodeBuildHistory extends JpaHibernateAuditedIded {
     @Column(columnDefinition = "TEXT")
     private String output;
 
+    @Column
+    private String outputHash;
+
+    @Column
+    private Long outputSize;
+
     @Column(columnDefinition = "TEXT")
     private String error;
 
+    @Column
+    private String errorHash;
+
+    @Column
+    private Long errorSize;
+
     @Column
     private Integer executionTimeMs;
 
@@ -55,6 +76,12 @@ public class CodeBuildHistory extends JpaHibernateAuditedIded {
     @Column(columnDefinition = "TEXT")
     private String buildLog;
 
+    @Column
+    private String buildLogHash;
+
+    @Column
+    private Long buildLogSize;
+
     @Column(nullable = false)
     @Enumerated(EnumType.STRING)
     @Builder.Default
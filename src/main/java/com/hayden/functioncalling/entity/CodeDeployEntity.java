@@ -1,6 +1,7 @@
 package com.hayden.functioncalling.entity;
 
 import com.hayden.commitdiffmodel.codegen.types.ExecutionType;
+import com.hayden.functioncalling.service.registration.RegistrationEntityListener;
 import com.hayden.persistence.models.AuditedEntity;
 import com.hayden.persistence.models.JpaHibernateAuditedIded;
 import jakarta.persistence.*;
@@ -9,6 +10,7 @@ import lombok.*;
 
 @Entity
 @Table
+@EntityListeners(RegistrationEntityListener.class)
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
@@ -1,15 +1,26 @@
 package com.hayden.functioncalling.entity;
 
 import com.hayden.commitdiffmodel.codegen.types.ExecutionType;
+import com.hayden.functioncalling.service.statistics.HistoryStatisticsListener;
 import com.hayden.persistence.models.JpaHibernateAuditedIded;
 import jakarta.persistence.*;
 import lombok.*;
 
 import java.util.List;
 
+/**
+ * A deployment. A long output, error or deploy log is kept in the
+ * {@link com.hayden.functioncalling.service.log_store.LogBlobStore}: the TEXT column then only holds a preview, and
+ * the matching {@code *Hash} and {@code *Size} columns point at the full log.
+ * Running deployments are covered by a partial index created from {@code import.sql}.
+ */
 @Entity
-@Table
-@Builder
+@EntityListeners(HistoryStatisticsListener.class)
+@Table(indexes = {
+        @Index(name = "idx_code_deploy_history_registration_created", columnList = "registration_id, created_time"),
+        @Index(name = "idx_code_deploy_history_session_created", columnList = "session_id, created_time")
+})
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
@@ -37,9 +48,21 @@ public class CodeDeployHistory extends JpaHibernateAuditedIded {
     @Column(columnDefinition = "TEXT")
     private String output;
 
+    @Column
+    private String outputHash;
+
+    @Column
+    private Long outputSize;
+
     @Column(columnDefinition = "TEXT")
     private String error;
 
+    @Column
+    private String errorHash;
+
+    @Column
+    private Long errorSize;
+
     @Column
     private Integer executionTimeMs;
 
@@ -49,6 +72,12 @@ public class CodeDeployHistory extends JpaHibernateAuditedIded {
     @Column(columnDefinition = "TEXT")
     private String deployLog;
 
+    @Column
+    private String deployLogHash;
+
+    @Column
+    private Long deployLogSize;
+
     @Column
     private String healthCheckStatus;
 
@@ -0,0 +1,40 @@
+package com.hayden.functioncalling.entity;
+
+import com.hayden.persistence.models.AuditedEntity;
+import jakarta.persistence.*;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.*;
+
+@Entity
+@Table
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class CodePipelineEntity extends AuditedEntity<String> {
+
+    @Id
+    @org.springframework.data.annotation.Id
+    private String registrationId;
+
+    @Column
+    private String description;
+
+    @Column(nullable = false)
+    private Boolean enabled;
+
+    @Column
+    private String sessionId;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "code_pipeline_node", joinColumns = @JoinColumn(name = "pipeline_registration_id"))
+    @Builder.Default
+    private List<PipelineNode> nodes = new ArrayList<>();
+
+    @Override
+    public String equalsAndHashCodeId() {
+        return registrationId;
+    }
+}
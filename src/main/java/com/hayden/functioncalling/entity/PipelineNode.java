@@ -0,0 +1,41 @@
+package com.hayden.functioncalling.entity;
+
+import com.hayden.functioncalling.model.PipelineStageType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single stage of a {@link CodePipelineEntity}. The node references an existing build, test or deploy
+ * registration and the nodes that must complete successfully before it can start.
+ */
+@Embeddable
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class PipelineNode {
+
+    @Column(nullable = false)
+    private String nodeId;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private PipelineStageType stageType;
+
+    @Column(nullable = false)
+    private String stageRegistrationId;
+
+    @Column
+    @Builder.Default
+    private List<String> dependsOn = new ArrayList<>();
+
+    /**
+     * If set, artifacts produced by upstream build stages are copied here before this stage starts.
+     */
+    @Column
+    private String artifactInputDirectory;
+}
@@ -0,0 +1,82 @@
+package com.hayden.functioncalling.entity;
+
+import com.hayden.functioncalling.model.PipelineStageType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Running statistics of the executions of one registration in one day, maintained as history is written by the
+ * {@link com.hayden.functioncalling.service.statistics.RegistrationStatisticsService}. The statistics over all of a
+ * registration's history are kept in the row of the {@link #ALL_TIME} day.
+ */
+@Entity
+@Table(name = "registration_statistics")
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class RegistrationStatisticsEntity {
+
+    public static final LocalDate ALL_TIME = LocalDate.EPOCH;
+
+    @EmbeddedId
+    private Key key;
+
+    @Column(nullable = false)
+    private long executions;
+
+    @Column(nullable = false)
+    private long successes;
+
+    @Column(nullable = false)
+    private long totalDurationMs;
+
+    @Column
+    private Integer minDurationMs;
+
+    @Column
+    private Integer maxDurationMs;
+
+    /**
+     * {@link com.hayden.functioncalling.service.statistics.QuantileSketch} of the execution times.
+     */
+    @Column(columnDefinition = "bytea")
+    private byte[] durationSketch;
+
+    @Column
+    private LocalDateTime updatedTime;
+
+    @Embeddable
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    @EqualsAndHashCode
+    @ToString
+    public static class Key implements Serializable, Comparable<Key> {
+
+        @Column(nullable = false)
+        @Enumerated(EnumType.STRING)
+        private PipelineStageType kind;
+
+        @Column(nullable = false)
+        private String registrationId;
+
+        @Column(nullable = false)
+        private LocalDate bucketStart;
+
+        @Override
+        public int compareTo(Key other) {
+            int byKind = kind.compareTo(other.kind);
+            if (byKind != 0) {
+                return byKind;
+            }
+            int byRegistration = registrationId.compareTo(other.registrationId);
+            return byRegistration != 0 ? byRegistration : bucketStart.compareTo(other.bucketStart);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.hayden.functioncalling.entity;
 
 import com.hayden.commitdiffmodel.codegen.types.ExecutionType;
+import com.hayden.functioncalling.service.registration.RegistrationEntityListener;
 import com.hayden.persistence.models.AuditedEntity;
 import com.hayden.persistence.models.JpaHibernateAuditedIded;
 import jakarta.persistence.*;
@@ -9,6 +10,7 @@ import lombok.*;
 
 @Entity
 @Table
+@EntityListeners(RegistrationEntityListener.class)
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
@@ -50,6 +52,56 @@ public class TestExecutionEntity extends AuditedEntity<String> {
     @Column
     private String sessionId;
 
+    /**
+     * Files or directories containing JUnit XML results, read after each run to learn per-test durations.
+     */
+    @Column
+    private List<String> testResultPaths;
+
+    /**
+     * Arguments selecting a single test suite, with {test} replaced by the suite name,
+     * e.g. "--tests {test}" for Gradle or "{test}" for pytest.
+     */
+    @Column
+    private String testFilterTemplate;
+
+    /**
+     * Number of parallel shards to split the suite into. Null or 1 disables sharding, 0 derives the count
+     * from available cores and memory.
+     */
+    @Column
+    private Integer shardCount;
+
+    /**
+     * Only run the test suites affected by the changes in the working directory.
+     */
+    @Column
+    private Boolean testImpactAnalysis;
+
+    /**
+     * When test impact analysis is enabled, run the whole suite every this many runs anyway.
+     */
+    @Column
+    private Integer fullRunInterval;
+
+    /**
+     * Run the test suites that failed recently before the rest, and stop there if any of them still fail.
+     */
+    @Column
+    private Boolean failureFirst;
+
+    /**
+     * Stop the test process once this many test failures were seen in its output. Null disables fail-fast.
+     */
+    @Column
+    private Integer failFastThreshold;
+
+    /**
+     * Regexes matching a single test failure line of the output, defaulting to Gradle, Surefire and pytest.
+     */
+    @Column
+    private List<String> failFastPatterns;
+
     @Column(nullable = false)
     @Enumerated(EnumType.STRING)
     @Builder.Default
@@ -1,12 +1,22 @@
 package com.hayden.functioncalling.entity;
 
 import com.hayden.commitdiffmodel.codegen.types.ExecutionType;
+import com.hayden.functioncalling.service.statistics.HistoryStatisticsListener;
 import com.hayden.persistence.models.JpaHibernateAuditedIded;
 import jakarta.persistence.*;
 import lombok.*;
 
+/**
+ * A finished test execution. Long outputs are kept in the {@link com.hayden.functioncalling.service.log_store.LogBlobStore}:
+ * the TEXT column then only holds a preview, and the {@code *Hash} and {@code *Size} columns point at the full log.
+ */
 @Entity
-@Builder
+@EntityListeners(HistoryStatisticsListener.class)
+@Table(indexes = {
+        @Index(name = "idx_test_execution_history_registration_created", columnList = "registration_id, created_time"),
+        @Index(name = "idx_test_execution_history_session_created", columnList = "session_id, created_time")
+})
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
@@ -33,9 +43,21 @@ public class TestExecutionHistory extends JpaHibernateAuditedIded {
     
     @Column(columnDefinition = "TEXT")
     private String output;
+
+    @Column
+    private String outputHash;
+
+    @Column
+    private Long outputSize;
     
     @Column(columnDefinition = "TEXT")
     private String error;
+
+    @Column
+    private String errorHash;
+
+    @Column
+    private Long errorSize;
     
     @Column
     private Integer executionTimeMs;
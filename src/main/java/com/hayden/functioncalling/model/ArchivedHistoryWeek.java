@@ -0,0 +1,13 @@
+package com.hayden.functioncalling.model;
+
+/**
+ * Executions of a week of archived history.
+ *
+ * @param weekStart ISO-8601 date of the Monday the week starts on
+ */
+public record ArchivedHistoryWeek(String weekStart,
+                                  long executions,
+                                  long successes,
+                                  Double successRate,
+                                  Double meanDurationMs) {
+}
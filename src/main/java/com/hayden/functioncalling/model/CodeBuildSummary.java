@@ -0,0 +1,25 @@
+package com.hayden.functioncalling.model;
+
+import com.hayden.functioncalling.entity.CodeBuildHistory;
+
+import java.util.List;
+
+/**
+ * A {@link CodeBuildHistory} without its log columns, selected by list queries that don't ask for the logs.
+ */
+public record CodeBuildSummary(String buildId,
+                               String registrationId,
+                               String sessionId,
+                               String buildCommand,
+                               String arguments,
+                               Boolean success,
+                               Integer exitCode,
+                               Integer executionTimeMs,
+                               List<String> artifactPaths) {
+
+    public static CodeBuildSummary of(CodeBuildHistory entity) {
+        return new CodeBuildSummary(entity.getBuildId(), entity.getRegistrationId(), entity.getSessionId(),
+                entity.getBuildCommand(), entity.getArguments(), entity.getSuccess(), entity.getExitCode(),
+                entity.getExecutionTimeMs(), entity.getArtifactPaths());
+    }
+}
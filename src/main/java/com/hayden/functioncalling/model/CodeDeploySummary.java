@@ -0,0 +1,26 @@
+package com.hayden.functioncalling.model;
+
+import com.hayden.functioncalling.entity.CodeDeployHistory;
+
+/**
+ * A {@link CodeDeployHistory} without its log columns, selected by list queries that don't ask for the logs.
+ */
+public record CodeDeploySummary(String deployId,
+                                String registrationId,
+                                String sessionId,
+                                String deployCommand,
+                                String arguments,
+                                Boolean success,
+                                Integer exitCode,
+                                Integer executionTimeMs,
+                                String healthCheckStatus,
+                                Boolean isRunning,
+                                String deploymentUrl) {
+
+    public static CodeDeploySummary of(CodeDeployHistory entity) {
+        return new CodeDeploySummary(entity.getDeployId(), entity.getRegistrationId(), entity.getSessionId(),
+                entity.getDeployCommand(), entity.getArguments(), entity.getSuccess(), entity.getExitCode(),
+                entity.getExecutionTimeMs(), entity.getHealthCheckStatus(), entity.getIsRunning(),
+                entity.getDeploymentUrl());
+    }
+}
@@ -0,0 +1,16 @@
+package com.hayden.functioncalling.model;
+
+import java.util.List;
+
+public record CodePipelineRegistration(String registrationId,
+                                       String description,
+                                       Boolean enabled,
+                                       List<CodePipelineNode> nodes) {
+
+    public record CodePipelineNode(String nodeId,
+                                   PipelineStageType stageType,
+                                   String stageRegistrationId,
+                                   List<String> dependsOn,
+                                   String artifactInputDirectory) {
+    }
+}
@@ -0,0 +1,16 @@
+package com.hayden.functioncalling.model;
+
+import java.util.List;
+
+public record CodePipelineResult(String pipelineId,
+                                 String registrationId,
+                                 String sessionId,
+                                 Boolean success,
+                                 Integer executionTime,
+                                 List<CodePipelineStageResult> stages,
+                                 String error) {
+
+    public static CodePipelineResult failed(String registrationId, String sessionId, String error) {
+        return new CodePipelineResult(null, registrationId, sessionId, false, 0, List.of(), error);
+    }
+}
@@ -0,0 +1,19 @@
+package com.hayden.functioncalling.model;
+
+/**
+ * Outcome of a single pipeline node.
+ *
+ * @param status        SUCCEEDED, FAILED, SKIPPED, or CANCELLED if it was stopped after another stage failed
+ * @param executionId   the build, execution or deploy ID of the underlying run, if it ran
+ * @param startOffsetMs when the stage started, relative to the start of the pipeline
+ * @param durationMs    how long the stage itself ran
+ */
+public record CodePipelineStageResult(String nodeId,
+                                      PipelineStageType stageType,
+                                      String registrationId,
+                                      String status,
+                                      String executionId,
+                                      Integer startOffsetMs,
+                                      Integer durationMs,
+                                      String error) {
+}
@@ -0,0 +1,27 @@
+package com.hayden.functioncalling.model;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a history connection, newest first.
+ */
+public record HistoryConnection<T>(List<Edge<T>> edges, PageInfo pageInfo) {
+
+    public record Edge<T>(String cursor, T node) {
+    }
+
+    /**
+     * @param endCursor the cursor to pass as {@code after} to get the next page, null when the page is empty
+     */
+    public record PageInfo(String endCursor, boolean hasNextPage) {
+    }
+
+    public <R> HistoryConnection<R> map(Function<? super T, ? extends R> mapper) {
+        return new HistoryConnection<>(
+                edges.stream()
+                        .<Edge<R>>map(e -> new Edge<>(e.cursor(), mapper.apply(e.node())))
+                        .toList(),
+                pageInfo);
+    }
+}
@@ -0,0 +1,30 @@
+package com.hayden.functioncalling.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filters of the history connections; null fields don't filter.
+ *
+ * @param createdAfter  inclusive lower bound on the creation time, ISO-8601 local date-time
+ * @param createdBefore exclusive upper bound on the creation time, ISO-8601 local date-time
+ * @param running       only applies to deploys
+ */
+public record HistoryFilter(String registrationId,
+                            String sessionId,
+                            Boolean success,
+                            String createdAfter,
+                            String createdBefore,
+                            Boolean running) {
+
+    public LocalDateTime createdAfterTime() {
+        return parse(createdAfter);
+    }
+
+    public LocalDateTime createdBeforeTime() {
+        return parse(createdBefore);
+    }
+
+    private static LocalDateTime parse(String time) {
+        return time == null || time.isBlank() ? null : LocalDateTime.parse(time);
+    }
+}
@@ -0,0 +1,9 @@
+package com.hayden.functioncalling.model;
+
+/**
+ * A log file line containing the searched text.
+ *
+ * @param lineNumber numbered from 1
+ */
+public record LogGrepMatch(String path, long lineNumber, String line) {
+}
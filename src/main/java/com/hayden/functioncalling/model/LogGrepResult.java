@@ -0,0 +1,11 @@
+package com.hayden.functioncalling.model;
+
+import java.util.List;
+
+/**
+ * @param filesSearched log files considered
+ * @param filesRead     log files whose token filters didn't rule them out, and that were read
+ * @param truncated     whether the search stopped at the maximum number of matches
+ */
+public record LogGrepResult(List<LogGrepMatch> matches, int filesSearched, int filesRead, boolean truncated) {
+}
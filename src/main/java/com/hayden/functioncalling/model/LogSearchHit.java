@@ -0,0 +1,16 @@
+package com.hayden.functioncalling.model;
+
+/**
+ * A history row whose logs match a search.
+ *
+ * @param runId   the execution, build or deploy ID
+ * @param snippet fragments of the logs around the matches, with the matched words between {@code <b>} and {@code </b>}
+ */
+public record LogSearchHit(PipelineStageType kind,
+                           String runId,
+                           String registrationId,
+                           String sessionId,
+                           Boolean success,
+                           String createdTime,
+                           String snippet) {
+}
@@ -0,0 +1,7 @@
+package com.hayden.functioncalling.model;
+
+public enum PipelineStageType {
+    BUILD,
+    TEST,
+    DEPLOY
+}
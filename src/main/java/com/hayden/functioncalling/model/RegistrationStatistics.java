@@ -0,0 +1,15 @@
+package com.hayden.functioncalling.model;
+
+import java.util.List;
+
+/**
+ * Execution statistics of a registration, over its whole history, over the last {@code days} days, and per day of
+ * those days with the most recent day first. Days without executions are left out of the trend.
+ */
+public record RegistrationStatistics(PipelineStageType kind,
+                                     String registrationId,
+                                     int days,
+                                     RegistrationStatisticsBucket allTime,
+                                     RegistrationStatisticsBucket window,
+                                     List<RegistrationStatisticsBucket> trend) {
+}
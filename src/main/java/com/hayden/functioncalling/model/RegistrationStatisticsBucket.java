@@ -0,0 +1,19 @@
+package com.hayden.functioncalling.model;
+
+/**
+ * Statistics of the executions in a time bucket. Percentiles are estimates within
+ * {@link com.hayden.functioncalling.service.statistics.QuantileSketch#RELATIVE_ACCURACY} of the exact value.
+ *
+ * @param day ISO-8601 date of a daily bucket, null for the whole history or window
+ */
+public record RegistrationStatisticsBucket(String day,
+                                           long executions,
+                                           long successes,
+                                           Double successRate,
+                                           Double meanDurationMs,
+                                           Double p50DurationMs,
+                                           Double p95DurationMs,
+                                           Double p99DurationMs,
+                                           Integer minDurationMs,
+                                           Integer maxDurationMs) {
+}
@@ -0,0 +1,24 @@
+package com.hayden.functioncalling.model;
+
+import com.hayden.commitdiffmodel.codegen.types.ExecutionType;
+import com.hayden.functioncalling.entity.TestExecutionHistory;
+
+/**
+ * A {@link TestExecutionHistory} without its log columns, selected by list queries that don't ask for the logs.
+ */
+public record TestExecutionSummary(String executionId,
+                                   String registrationId,
+                                   String sessionId,
+                                   String command,
+                                   String arguments,
+                                   Boolean success,
+                                   Integer exitCode,
+                                   Integer executionTimeMs,
+                                   ExecutionType executionType) {
+
+    public static TestExecutionSummary of(TestExecutionHistory entity) {
+        return new TestExecutionSummary(entity.getExecutionId(), entity.getRegistrationId(), entity.getSessionId(),
+                entity.getCommand(), entity.getArguments(), entity.getSuccess(), entity.getExitCode(),
+                entity.getExecutionTimeMs(), entity.getExecutionType());
+    }
+}
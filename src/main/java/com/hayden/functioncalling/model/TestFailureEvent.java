@@ -0,0 +1,10 @@
+package com.hayden.functioncalling.model;
+
+/**
+ * A failed test read from a result file while its run was still going.
+ *
+ * @param createdTime ISO-8601 local date-time the failure was read
+ */
+public record TestFailureEvent(String registrationId, String executionId, String sessionId, String suite,
+                               String name, String message, String createdTime) {
+}
@@ -2,19 +2,24 @@ package com.hayden.functioncalling.repository;
 
 import com.hayden.functioncalling.entity.CodeBuildHistory;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.querydsl.QuerydslPredicateExecutor;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface CodeBuildHistoryRepository extends JpaRepository<CodeBuildHistory, Long> {
+public interface CodeBuildHistoryRepository extends JpaRepository<CodeBuildHistory, Long>, QuerydslPredicateExecutor<CodeBuildHistory> {
 
     Optional<CodeBuildHistory> findByBuildId(String buildId);
 
-    List<CodeBuildHistory> findTop10ByOrderByCreatedTimeDesc();
+    boolean existsByBuildId(String buildId);
 
-    List<CodeBuildHistory> findByRegistrationIdOrderByCreatedTimeDesc(String registrationId);
+    List<CodeBuildHistory> findTop10ByOrderByCreatedTimeDesc();
 
-    List<CodeBuildHistory> findBySessionIdOrderByCreatedTimeDesc(String sessionId);
+    /**
+     * @param type the entity, or a projection such as {@link com.hayden.functioncalling.model.CodeBuildSummary}
+     *             that only selects the columns it declares
+     */
+    <T> List<T> findTop10ByOrderByCreatedTimeDesc(Class<T> type);
 }
@@ -2,21 +2,28 @@ package com.hayden.functioncalling.repository;
 
 import com.hayden.functioncalling.entity.CodeDeployHistory;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.querydsl.QuerydslPredicateExecutor;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface CodeDeployHistoryRepository extends JpaRepository<CodeDeployHistory, Long> {
+public interface CodeDeployHistoryRepository extends JpaRepository<CodeDeployHistory, Long>, QuerydslPredicateExecutor<CodeDeployHistory> {
 
     Optional<CodeDeployHistory> findByDeployId(String deployId);
 
-    List<CodeDeployHistory> findTop10ByOrderByCreatedTimeDesc();
+    boolean existsByDeployId(String deployId);
 
-    List<CodeDeployHistory> findByRegistrationIdOrderByCreatedTimeDesc(String registrationId);
+    List<CodeDeployHistory> findTop10ByOrderByCreatedTimeDesc();
 
-    List<CodeDeployHistory> findBySessionIdOrderByCreatedTimeDesc(String sessionId);
+    /**
+     * @param type the entity, or a projection such as {@link com.hayden.functioncalling.model.CodeDeploySummary}
+     *             that only selects the columns it declares
+     */
+    <T> List<T> findTop10ByOrderByCreatedTimeDesc(Class<T> type);
 
     List<CodeDeployHistory> findByIsRunningTrue();
+
+    <T> List<T> findByIsRunningTrue(Class<T> type);
 }
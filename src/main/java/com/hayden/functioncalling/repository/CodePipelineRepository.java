@@ -0,0 +1,18 @@
+package com.hayden.functioncalling.repository;
+
+import com.hayden.functioncalling.entity.CodePipelineEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CodePipelineRepository extends JpaRepository<CodePipelineEntity, String> {
+
+    Optional<CodePipelineEntity> findByRegistrationId(String registrationId);
+
+    List<CodePipelineEntity> findByEnabledTrue();
+
+    boolean existsByRegistrationId(String registrationId);
+}
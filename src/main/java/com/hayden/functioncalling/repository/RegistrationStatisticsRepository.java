@@ -0,0 +1,39 @@
+package com.hayden.functioncalling.repository;
+
+import com.hayden.functioncalling.entity.RegistrationStatisticsEntity;
+import com.hayden.functioncalling.model.PipelineStageType;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RegistrationStatisticsRepository extends JpaRepository<RegistrationStatisticsEntity, RegistrationStatisticsEntity.Key> {
+
+    /**
+     * Create an empty row for the key unless there is one, so that concurrent writers can then all lock it.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO registration_statistics (kind, registration_id, bucket_start, executions, successes, total_duration_ms)
+            VALUES (:kind, :registrationId, :bucketStart, 0, 0, 0)
+            ON CONFLICT DO NOTHING
+            """, nativeQuery = true)
+    void insertIfAbsent(@Param("kind") String kind,
+                        @Param("registrationId") String registrationId,
+                        @Param("bucketStart") LocalDate bucketStart);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from RegistrationStatisticsEntity s where s.key = :key")
+    Optional<RegistrationStatisticsEntity> findForUpdate(@Param("key") RegistrationStatisticsEntity.Key key);
+
+    List<RegistrationStatisticsEntity> findByKeyKindAndKeyRegistrationIdAndKeyBucketStartGreaterThanEqualOrderByKeyBucketStartDesc(
+            PipelineStageType kind, String registrationId, LocalDate since);
+}
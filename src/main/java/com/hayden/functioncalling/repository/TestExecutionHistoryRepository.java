@@ -12,8 +12,14 @@ import java.util.Optional;
 public interface TestExecutionHistoryRepository extends JpaRepository<TestExecutionHistory, Long>, QuerydslPredicateExecutor<TestExecutionHistory> {
     
     Optional<TestExecutionHistory> findByExecutionId(String executionId);
-    
-    List<TestExecutionHistory> findByRegistrationId(String registrationId);
+
+    boolean existsByExecutionId(String executionId);
     
     List<TestExecutionHistory> findTop10ByOrderByCreatedTimeDesc();
+
+    /**
+     * @param type the entity, or a projection such as {@link com.hayden.functioncalling.model.TestExecutionSummary}
+     *             that only selects the columns it declares
+     */
+    <T> List<T> findTop10ByOrderByCreatedTimeDesc(Class<T> type);
 }
\ No newline at end of file
@@ -13,4 +13,11 @@ public interface ExecRunner {
 
     CompletableFuture<CodeExecutionResult> runAsync(CodeExecutionOptions codeExecutionResult);
 
+    /**
+     * Run the whole suite, bypassing any test selection configured for the registration.
+     */
+    default CodeExecutionResult runFullSuite(CodeExecutionOptions codeExecutionResult) {
+        return run(codeExecutionResult);
+    }
+
 }
@@ -0,0 +1,13 @@
+package com.hayden.functioncalling.runner;
+
+import com.hayden.functioncalling.model.CodePipelineResult;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface PipelineExecRunner {
+
+    CodePipelineResult run(String registrationId, String sessionId);
+
+    CompletableFuture<CodePipelineResult> runAsync(String registrationId, String sessionId);
+
+}
@@ -4,9 +4,9 @@ import com.hayden.commitdiffmodel.codegen.types.CodeBuildOptions;
 import com.hayden.commitdiffmodel.codegen.types.CodeBuildResult;
 import com.hayden.commitdiffmodel.codegen.types.Error;
 import com.hayden.functioncalling.entity.CodeBuildEntity;
-import com.hayden.functioncalling.repository.CodeBuildRepository;
 import com.hayden.functioncalling.runner.BuildExecRunner;
 import com.hayden.functioncalling.service.process_builder.exec.ProcessBuilderBuildExecutionService;
+import com.hayden.functioncalling.service.registration.RegistrationCache;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -20,7 +20,7 @@ import org.springframework.stereotype.Service;
 @Slf4j
 public class ProcessBuilderBuildExecRunner implements BuildExecRunner {
 
-    private final CodeBuildRepository codeBuildRepository;
+    private final RegistrationCache registrationCache;
     private final ProcessBuilderBuildExecutionService buildExecutionService;
     private final ThreadPoolTaskExecutor asyncRunnerTaskExecutor;
 
@@ -43,7 +43,7 @@ public class ProcessBuilderBuildExecRunner implements BuildExecRunner {
         }
 
         Optional<CodeBuildEntity> buildEntityOpt =
-            codeBuildRepository.findByRegistrationId(options.getRegistrationId());
+            registrationCache.build(options.getRegistrationId());
 
         if (buildEntityOpt.isEmpty()) {
             return CodeBuildResult.newBuilder()
@@ -4,10 +4,10 @@ import com.hayden.commitdiffmodel.codegen.types.CodeDeployOptions;
 import com.hayden.commitdiffmodel.codegen.types.CodeDeployResult;
 import com.hayden.commitdiffmodel.codegen.types.Error;
 import com.hayden.functioncalling.entity.CodeDeployEntity;
-import com.hayden.functioncalling.repository.CodeDeployRepository;
 import com.hayden.functioncalling.runner.DeployExecRunner;
 import com.hayden.functioncalling.service.process_builder.ProcessBuilderDataService;
 import com.hayden.functioncalling.service.process_builder.exec.ProcessBuilderDeployExecutionService;
+import com.hayden.functioncalling.service.registration.RegistrationCache;
 import io.micrometer.common.util.StringUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -29,7 +29,7 @@ import java.util.regex.Pattern;
 @Slf4j
 public class ProcessBuilderDeployExecRunner implements DeployExecRunner {
 
-    private final CodeDeployRepository codeDeployRepository;
+    private final RegistrationCache registrationCache;
     private final ThreadPoolTaskExecutor asyncRunnerTaskExecutor;
     private final ProcessBuilderDeployExecutionService executionService;
 
@@ -47,7 +47,7 @@ public class ProcessBuilderDeployExecRunner implements DeployExecRunner {
                     .build();
         }
 
-        Optional<CodeDeployEntity> deployEntityOpt = codeDeployRepository.findByRegistrationId(options.getRegistrationId());
+        Optional<CodeDeployEntity> deployEntityOpt = registrationCache.deploy(options.getRegistrationId());
 
         if (deployEntityOpt.isEmpty()) {
             return CodeDeployResult.newBuilder()
@@ -80,7 +80,7 @@ public class ProcessBuilderDeployExecRunner implements DeployExecRunner {
 
     @Override
     public CodeDeployResult stopDeployment(String registrationId, String sessionId) {
-        Optional<CodeDeployEntity> deployEntityOpt = codeDeployRepository.findByRegistrationId(registrationId);
+        Optional<CodeDeployEntity> deployEntityOpt = registrationCache.deploy(registrationId);
 
         if (deployEntityOpt.isEmpty()) {
             return CodeDeployResult.newBuilder()
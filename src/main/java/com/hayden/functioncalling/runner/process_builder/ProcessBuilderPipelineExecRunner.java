@@ -0,0 +1,363 @@
+package com.hayden.functioncalling.runner.process_builder;
+
+import com.hayden.commitdiffmodel.codegen.types.*;
+import com.hayden.commitdiffmodel.codegen.types.Error;
+import com.hayden.functioncalling.entity.CodePipelineEntity;
+import com.hayden.functioncalling.entity.PipelineNode;
+import com.hayden.functioncalling.model.CodePipelineResult;
+import com.hayden.functioncalling.model.CodePipelineStageResult;
+import com.hayden.functioncalling.repository.CodePipelineRepository;
+import com.hayden.functioncalling.runner.BuildExecRunner;
+import com.hayden.functioncalling.runner.DeployExecRunner;
+import com.hayden.functioncalling.runner.ExecRunner;
+import com.hayden.functioncalling.runner.PipelineExecRunner;
+import com.hayden.functioncalling.service.process_builder.ProcessCancellation;
+import io.micrometer.common.util.StringUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a {@link CodePipelineEntity} as a DAG. Each node is started as soon as all of its upstream nodes have
+ * succeeded, so independent branches run concurrently. Pipelines and their stages run on virtual threads of the
+ * runner executor, each stage calling its runner synchronously, so pipelines never wait on each other for pooled
+ * threads. The first failed node fails the pipeline: any node that has not started yet is skipped, and the nodes
+ * still running are cancelled through their {@link ProcessCancellation}, which destroys their processes but leaves
+ * their threads to record the outcome, and reported as cancelled.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProcessBuilderPipelineExecRunner implements PipelineExecRunner {
+
+    private static final String SUCCEEDED = "SUCCEEDED";
+    private static final String FAILED = "FAILED";
+    private static final String SKIPPED = "SKIPPED";
+    private static final String CANCELLED = "CANCELLED";
+
+    private final CodePipelineRepository pipelineRepository;
+    private final BuildExecRunner buildExecRunner;
+    private final ExecRunner execRunner;
+    private final DeployExecRunner deployExecRunner;
+    private final ExecutorService runnerTaskExecutor;
+
+    @Override
+    public CompletableFuture<CodePipelineResult> runAsync(String registrationId, String sessionId) {
+        return CompletableFuture.supplyAsync(() -> this.run(registrationId, sessionId), runnerTaskExecutor);
+    }
+
+    @Override
+    public CodePipelineResult run(String registrationId, String sessionId) {
+        if (registrationId == null) {
+            return CodePipelineResult.failed(null, sessionId, "Registration ID is required");
+        }
+
+        Optional<CodePipelineEntity> pipelineOpt = pipelineRepository.findByRegistrationId(registrationId);
+
+        if (pipelineOpt.isEmpty()) {
+            return CodePipelineResult.failed(registrationId, sessionId,
+                    "No code pipeline registration found with ID: " + registrationId);
+        }
+
+        CodePipelineEntity pipeline = pipelineOpt.get();
+
+        if (!pipeline.getEnabled()) {
+            return CodePipelineResult.failed(registrationId, sessionId,
+                    "Code pipeline registration is disabled: " + registrationId);
+        }
+
+        List<PipelineNode> ordered;
+        try {
+            ordered = topologicalOrder(pipeline.getNodes());
+        } catch (IllegalArgumentException e) {
+            return CodePipelineResult.failed(registrationId, sessionId, e.getMessage());
+        }
+
+        return execute(pipeline, ordered, sessionId);
+    }
+
+    private CodePipelineResult execute(CodePipelineEntity pipeline, List<PipelineNode> ordered, String sessionId) {
+        String pipelineId = UUID.randomUUID().toString();
+        PipelineRun run = new PipelineRun(System.currentTimeMillis());
+
+        Map<String, CompletableFuture<StageRun>> stages = new LinkedHashMap<>();
+
+        for (PipelineNode node : ordered) {
+            List<CompletableFuture<StageRun>> upstream = Optional.ofNullable(node.getDependsOn()).orElse(List.of())
+                    .stream()
+                    .map(stages::get)
+                    .toList();
+
+            CompletableFuture<StageRun> stage = CompletableFuture
+                    .allOf(upstream.toArray(CompletableFuture[]::new))
+                    .thenCompose(ignored -> {
+                        // all complete by now
+                        List<StageRun> upstreamRuns = upstream.stream()
+                                .map(CompletableFuture::resultNow)
+                                .toList();
+
+                        if (run.failed.get() || upstreamRuns.stream().anyMatch(u -> !SUCCEEDED.equals(u.result().status()))) {
+                            return CompletableFuture.completedFuture(skipped(node));
+                        }
+                        return CompletableFuture.supplyAsync(() -> runStage(run, node, upstreamRuns, sessionId), runnerTaskExecutor);
+                    });
+
+            stages.put(node.getNodeId(), stage);
+        }
+
+        List<CodePipelineStageResult> results = CompletableFuture.allOf(stages.values().toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> stages.values().stream()
+                        .map(CompletableFuture::resultNow)
+                        .map(StageRun::result)
+                        .toList())
+                .join();
+
+        boolean success = results.stream().allMatch(r -> SUCCEEDED.equals(r.status()));
+
+        String error = results.stream()
+                .filter(r -> FAILED.equals(r.status()))
+                .map(r -> "Stage %s failed: %s".formatted(r.nodeId(), r.error()))
+                .collect(Collectors.joining("\n"));
+
+        log.info("Pipeline {} finished in {} ms with success={}", pipeline.getRegistrationId(),
+                System.currentTimeMillis() - run.start, success);
+
+        return new CodePipelineResult(
+                pipelineId,
+                pipeline.getRegistrationId(),
+                sessionId,
+                success,
+                (int) (System.currentTimeMillis() - run.start),
+                results,
+                StringUtils.isNotBlank(error) ? error : null);
+    }
+
+    /**
+     * Run a stage on the current thread, unless another stage failed before it could start.
+     */
+    private StageRun runStage(PipelineRun run, PipelineNode node, List<StageRun> upstream, String sessionId) {
+        long stageStart = System.currentTimeMillis();
+        ProcessCancellation cancellation = new ProcessCancellation();
+        run.running.put(node.getNodeId(), cancellation);
+        StageOutcome outcome;
+        try (ProcessCancellation.Scope ignored = cancellation.bind()) {
+            if (run.failed.get()) {
+                return skipped(node);
+            }
+            outcome = runStage(node, upstream, sessionId);
+        } catch (IOException e) {
+            outcome = new StageOutcome(false, null, List.of(), "Failed to hand off artifacts: " + e.getMessage());
+        } catch (RuntimeException e) {
+            outcome = new StageOutcome(false, null, List.of(), e.getMessage());
+        } finally {
+            run.running.remove(node.getNodeId());
+        }
+
+        String status;
+        if (run.cancelled.contains(node.getNodeId())) {
+            status = CANCELLED;
+            outcome = new StageOutcome(false, outcome.executionId(), List.of(), "Cancelled after another stage failed");
+        } else if (outcome.success()) {
+            status = SUCCEEDED;
+        } else {
+            status = FAILED;
+            run.fail(node.getNodeId());
+        }
+        return new StageRun(
+                toStageResult(node, status, outcome, (int) (stageStart - run.start),
+                        (int) (System.currentTimeMillis() - stageStart)),
+                outcome.artifactPaths());
+    }
+
+    private StageOutcome runStage(PipelineNode node, List<StageRun> upstream, String sessionId) throws IOException {
+        handOffArtifacts(node, upstream);
+
+        return switch (node.getStageType()) {
+            case BUILD -> {
+                CodeBuildResult r = buildExecRunner.build(CodeBuildOptions.newBuilder()
+                        .registrationId(node.getStageRegistrationId())
+                        .sessionId(sessionId)
+                        .build());
+                yield new StageOutcome(Boolean.TRUE.equals(r.getSuccess()), r.getBuildId(),
+                        Optional.ofNullable(r.getArtifactPaths()).orElse(List.of()), errors(r.getError()));
+            }
+            case TEST -> {
+                CodeExecutionResult r = execRunner.run(CodeExecutionOptions.newBuilder()
+                        .registrationId(node.getStageRegistrationId())
+                        .sessionId(sessionId)
+                        .build());
+                yield new StageOutcome(Boolean.TRUE.equals(r.getSuccess()), r.getExecutionId(),
+                        List.of(), errors(r.getError()));
+            }
+            case DEPLOY -> {
+                CodeDeployResult r = deployExecRunner.deploy(CodeDeployOptions.newBuilder()
+                        .registrationId(node.getStageRegistrationId())
+                        .sessionId(sessionId)
+                        .build());
+                yield new StageOutcome(Boolean.TRUE.equals(r.getSuccess()), r.getDeployId(),
+                        List.of(), errors(r.getError()));
+            }
+        };
+    }
+
+    /**
+     * Copy the artifacts produced by upstream build stages into this node's artifact input directory.
+     *
+     * @throws IOException if an artifact is missing or can't be copied, the stage can't run without it
+     */
+    private void handOffArtifacts(PipelineNode node, List<StageRun> upstream) throws IOException {
+        if (StringUtils.isBlank(node.getArtifactInputDirectory())) {
+            return;
+        }
+
+        List<String> artifacts = upstream.stream()
+                .flatMap(u -> u.artifactPaths().stream())
+                .toList();
+
+        if (artifacts.isEmpty()) {
+            return;
+        }
+
+        Path target = Paths.get(node.getArtifactInputDirectory());
+        Files.createDirectories(target);
+        for (String artifact : artifacts) {
+            Path source = Paths.get(artifact);
+            if (!Files.exists(source)) {
+                throw new NoSuchFileException(artifact, null, "upstream artifact does not exist");
+            }
+            Files.copy(source, target.resolve(source.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            log.info("Handed off artifact {} to stage {}", source, node.getNodeId());
+        }
+    }
+
+    private CodePipelineStageResult toStageResult(PipelineNode node, String status, StageOutcome outcome,
+                                                  int startOffsetMs, int durationMs) {
+        return new CodePipelineStageResult(
+                node.getNodeId(),
+                node.getStageType(),
+                node.getStageRegistrationId(),
+                status,
+                outcome.executionId(),
+                startOffsetMs,
+                durationMs,
+                outcome.error());
+    }
+
+    private static StageRun skipped(PipelineNode node) {
+        return new StageRun(new CodePipelineStageResult(node.getNodeId(), node.getStageType(),
+                node.getStageRegistrationId(), SKIPPED, null, null, null, null), List.of());
+    }
+
+    private static String errors(List<Error> errors) {
+        if (errors == null) {
+            return null;
+        }
+        String joined = errors.stream()
+                .map(Error::getMessage)
+                .filter(StringUtils::isNotBlank)
+                .collect(Collectors.joining("\n"));
+        return StringUtils.isNotBlank(joined) ? joined : null;
+    }
+
+    /**
+     * Order nodes so every node comes after the nodes it depends on.
+     *
+     * @throws IllegalArgumentException if a dependency is missing or the graph contains a cycle
+     */
+    static List<PipelineNode> topologicalOrder(List<PipelineNode> nodes) {
+        Map<String, PipelineNode> byId = new LinkedHashMap<>();
+        for (PipelineNode node : nodes) {
+            if (byId.put(node.getNodeId(), node) != null) {
+                throw new IllegalArgumentException("Duplicate pipeline node: " + node.getNodeId());
+            }
+        }
+
+        Map<String, Integer> inDegree = new LinkedHashMap<>();
+        Map<String, List<String>> downstream = new HashMap<>();
+        for (PipelineNode node : nodes) {
+            inDegree.putIfAbsent(node.getNodeId(), 0);
+            for (String dep : Optional.ofNullable(node.getDependsOn()).orElse(List.of())) {
+                if (!byId.containsKey(dep)) {
+                    throw new IllegalArgumentException("Pipeline node %s depends on unknown node %s"
+                            .formatted(node.getNodeId(), dep));
+                }
+                inDegree.merge(node.getNodeId(), 1, Integer::sum);
+                downstream.computeIfAbsent(dep, k -> new ArrayList<>()).add(node.getNodeId());
+            }
+        }
+
+        Deque<String> ready = inDegree.entrySet().stream()
+                .filter(e -> e.getValue() == 0)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toCollection(ArrayDeque::new));
+
+        List<PipelineNode> ordered = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            String next = ready.poll();
+            ordered.add(byId.get(next));
+            for (String child : downstream.getOrDefault(next, List.of())) {
+                if (inDegree.merge(child, -1, Integer::sum) == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+
+        if (ordered.size() != byId.size()) {
+            throw new IllegalArgumentException("Pipeline contains a cycle");
+        }
+
+        return ordered;
+    }
+
+    private record StageOutcome(boolean success, String executionId, List<String> artifactPaths, String error) {
+    }
+
+    private record StageRun(CodePipelineStageResult result, List<String> artifactPaths) {
+    }
+
+    /**
+     * The state shared by the stages of one run of a pipeline.
+     */
+    private static final class PipelineRun {
+
+        final long start;
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        // the cancellations of the stages that are running, which a failure cancels
+        final Map<String, ProcessCancellation> running = new ConcurrentHashMap<>();
+        final Set<String> cancelled = ConcurrentHashMap.newKeySet();
+
+        PipelineRun(long start) {
+            this.start = start;
+        }
+
+        /**
+         * Fail the pipeline and cancel the other stages. A stage registers its cancellation before checking whether
+         * the pipeline failed, so it either sees the failure or is cancelled.
+         */
+        void fail(String nodeId) {
+            if (!failed.compareAndSet(false, true)) {
+                return;
+            }
+            running.forEach((id, cancellation) -> {
+                if (!id.equals(nodeId)) {
+                    log.info("Cancelling pipeline stage {} after stage {} failed", id, nodeId);
+                    cancelled.add(id);
+                    cancellation.cancel();
+                }
+            });
+        }
+    }
+}
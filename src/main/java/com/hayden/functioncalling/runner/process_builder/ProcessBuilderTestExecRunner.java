@@ -6,20 +6,33 @@ import com.hayden.commitdiffmodel.codegen.types.Error;
 import com.hayden.commitdiffmodel.codegen.types.ExecutionType;
 import com.hayden.functioncalling.context_processor.TestReportService;
 import com.hayden.functioncalling.entity.TestExecutionEntity;
-import com.hayden.functioncalling.repository.TestExecutionRepository;
 import com.hayden.functioncalling.runner.ExecRunner;
 import com.hayden.functioncalling.service.ExecutionService;
+import com.hayden.functioncalling.service.live_report.LiveTestReportWatcher;
 import com.hayden.functioncalling.service.process_builder.*;
 import com.hayden.functioncalling.service.process_builder.exec.ProcessBuilderExecutionService;
+import com.hayden.functioncalling.service.test_plan.TestCaseIndex;
+import com.hayden.functioncalling.service.test_plan.TestFilter;
+import com.hayden.functioncalling.service.test_plan.TestImpactAnalyzer;
+import com.hayden.functioncalling.service.test_plan.TestSelection;
+import com.hayden.functioncalling.service.test_plan.TestShardPlanner;
+import com.hayden.functioncalling.service.registration.RegistrationCache;
+import com.hayden.functioncalling.utils.JUnitXmlReportParser;
 import com.hayden.utilitymodule.stream.StreamUtil;
 import io.micrometer.common.util.StringUtils;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
@@ -31,11 +44,16 @@ import org.springframework.stereotype.Service;
 public class ProcessBuilderTestExecRunner
     implements ExecRunner, ExecutionService<TestExecutionEntity, CodeExecutionResult, CodeExecutionOptions> {
 
-    private final TestExecutionRepository testExecutionRepository;
+    private final RegistrationCache registrationCache;
     private final ProcessBuilderDataService executionDataService;
     private final ThreadPoolTaskExecutor asyncRunnerTaskExecutor;
     private final TestReportService testReportService;
     private final ProcessBuilderExecutionService processBuilderService;
+    private final ExecutorService runnerTaskExecutor;
+    private final TestCaseIndex testCaseIndex;
+    private final TestShardPlanner shardPlanner;
+    private final TestImpactAnalyzer testImpactAnalyzer;
+    private final LiveTestReportWatcher liveTestReportWatcher;
 
     @Override
     public CompletableFuture<CodeExecutionResult> runAsync(
@@ -48,6 +66,15 @@ public class ProcessBuilderTestExecRunner
 
     @Override
     public CodeExecutionResult run(CodeExecutionOptions options) {
+        return run(options, false);
+    }
+
+    @Override
+    public CodeExecutionResult runFullSuite(CodeExecutionOptions options) {
+        return run(options, true);
+    }
+
+    private CodeExecutionResult run(CodeExecutionOptions options, boolean fullRun) {
         if (options.getRegistrationId() == null) {
             return CodeExecutionResult.newBuilder()
                 .success(false)
@@ -56,7 +83,7 @@ public class ProcessBuilderTestExecRunner
         }
 
         Optional<TestExecutionEntity> executionEntityOpt =
-            testExecutionRepository.findByRegistrationId(
+            registrationCache.execution(
                 options.getRegistrationId()
             );
 
@@ -91,16 +118,24 @@ public class ProcessBuilderTestExecRunner
                 .build();
         }
 
-        return execute(executionEntity, options);
+        return execute(executionEntity, options, fullRun);
     }
 
     @Override
     public CodeExecutionResult execute(
         TestExecutionEntity entity,
         CodeExecutionOptions options
+    ) {
+        return execute(entity, options, false);
+    }
+
+    private CodeExecutionResult execute(
+        TestExecutionEntity entity,
+        CodeExecutionOptions options,
+        boolean fullRun
     ) {
         try {
-            return executeCommand(entity, options);
+            return executeCommand(entity, options, fullRun);
         } catch (Exception e) {
             log.error("Error executing command", e);
             return CodeExecutionResult.newBuilder()
@@ -122,7 +157,8 @@ public class ProcessBuilderTestExecRunner
 
     private CodeExecutionResult executeCommand(
         TestExecutionEntity entity,
-        CodeExecutionOptions options
+        CodeExecutionOptions options,
+        boolean fullRun
     ) throws IOException, InterruptedException {
         String executionId = UUID.randomUUID().toString();
 
@@ -162,21 +198,47 @@ public class ProcessBuilderTestExecRunner
             .timeoutSeconds(timeoutSeconds)
             .outputRegex(entity.getOutputRegex())
             .outputFile(outputFile)
+            .failFast(FailFastMonitor.of(entity.getFailFastThreshold(), entity.getFailFastPatterns()))
             .build();
 
-        // Execute using ProcessBuilderService
-        ProcessExecutionResult result = processBuilderService.executeProcess(request);
-
-        // Get test reporting if configured
-        var reporting = StreamUtil.toStream(entity.getReportingPaths())
-            .flatMap(s -> {
-                try {
-                    return Stream.ofNullable(
-                        testReportService.getContext(s, entity.getRegistrationId(), options.getSessionId()));
-                } catch (RuntimeException e) {
-                    return Stream.empty();
-                }
-            })
+        // the reports of the last run are still being copied in the background, and this run rewrites them
+        testReportService.awaitCopies(entity.getReportingPaths());
+
+        // Select the affected tests, then execute using ProcessBuilderService, split into shards if configured
+        TestSelection selection = testImpactAnalyzer.select(entity, fullRun);
+        log.info("Test selection for {}: {}", entity.getRegistrationId(), selection.reason());
+
+        long runStart = System.currentTimeMillis();
+        ProcessExecutionResult result;
+        if (selection.isEmpty()) {
+            result = ProcessExecutionResult.builder()
+                .success(true)
+                .matchedOutput("No tests affected by the current changes: " + selection.reason())
+                .fullLog("No tests affected by the current changes: " + selection.reason())
+                .build();
+        } else {
+            // publish failures as their result files are written, counting them towards fail-fast
+            try (LiveTestReportWatcher.Watch ignored =
+                     liveTestReportWatcher.watch(entity, executionId, options.getSessionId(), request.getFailFast())) {
+                result = executeTests(entity, request, selection);
+            }
+        }
+
+        // Get test reporting if configured, processing the reporting paths concurrently and leaving their copies in
+        // the background
+        List<CompletableFuture<TestReportService.Report>> reports = StreamUtil.toStream(entity.getReportingPaths())
+            .map(s -> CompletableFuture
+                .supplyAsync(() -> testReportService.process(s, entity.getRegistrationId(), options.getSessionId()), runnerTaskExecutor)
+                .exceptionally(e -> {
+                    log.warn("Failed to process test report {}", s, e);
+                    return null;
+                }))
+            .toList();
+        var reporting = reports.stream()
+            .map(CompletableFuture::join)
+            .filter(Objects::nonNull)
+            .map(TestReportService.Report::context)
+            .filter(Objects::nonNull)
             .collect(Collectors.joining(System.lineSeparator()));
 
         var outputStr = result.getMatchedOutput();
@@ -187,6 +249,10 @@ public class ProcessBuilderTestExecRunner
             outputStr = result.getFullLog();
         }
 
+        // only a full run that passed is known to have run every suite, failure-first and fail-fast stop early
+        recordTestResults(entity, runStart, selection.fullRun() && result.isSuccess());
+        testCaseIndex.recordRun(entity.getRegistrationId(), selection, result.isSuccess());
+
         // Save execution history
         executionDataService.saveExecutionHistory(
             entity.getRegistrationId(),
@@ -210,7 +276,239 @@ public class ProcessBuilderTestExecRunner
             .executionTime(result.getExecutionTimeMs())
             .executionId(executionId)
             .error(List.of(new Error(result.getError())))
-            .outputFile(writeToFile ? outputFilePath : null)
+            .outputFile(writeToFile
+                ? Optional.ofNullable(result.getLogPath()).map(Path::toString).orElse(outputFilePath)
+                : null)
             .build();
     }
+
+    /**
+     * Run the selected suites. With failure-first ordering, the suites that failed recently run on their own
+     * first so their verdict comes back quickly; the rest only runs once they pass.
+     */
+    private ProcessExecutionResult executeTests(
+        TestExecutionEntity entity,
+        ProcessExecutionRequest request,
+        TestSelection selection
+    ) throws IOException, InterruptedException {
+        if (!Boolean.TRUE.equals(entity.getFailureFirst()) || StringUtils.isBlank(entity.getTestFilterTemplate())) {
+            return runSelection(entity, request, selection);
+        }
+
+        List<String> failing = testCaseIndex.recentlyFailing(entity.getRegistrationId()).stream()
+            .filter(suite -> selection.fullRun() || selection.suites().contains(suite))
+            .toList();
+        if (failing.isEmpty()) {
+            return runSelection(entity, request, selection);
+        }
+
+        long start = System.currentTimeMillis();
+        log.info("Running {} recently failing suites of {} first", failing.size(), entity.getRegistrationId());
+        ProcessExecutionResult failingResult =
+            runSelection(entity, request, TestSelection.of(failing, selection.head(), "recently failing"));
+
+        if (!failingResult.isSuccess()) {
+            failingResult.setMatchedOutput(Optional.ofNullable(failingResult.getMatchedOutput()).orElse("")
+                + System.lineSeparator()
+                + "Recently failing suites still fail, the remaining suites were not run.");
+            return failingResult;
+        }
+
+        TestSelection remaining = selection.fullRun()
+            ? selection
+            : TestSelection.of(
+                selection.suites().stream().filter(suite -> !failing.contains(suite)).toList(),
+                selection.head(),
+                selection.reason());
+        if (remaining.isEmpty()) {
+            return failingResult;
+        }
+
+        ProcessExecutionResult remainingResult = runSelection(entity, request, remaining);
+        return mergeResults(
+            List.of(
+                "=== Recently failing (%d suites) ===%n".formatted(failing.size()),
+                remaining.fullRun()
+                    ? "=== Full suite ===%n".formatted()
+                    : "=== Remaining (%d suites) ===%n".formatted(remaining.suites().size())),
+            List.of(failingResult, remainingResult),
+            (int) (System.currentTimeMillis() - start));
+    }
+
+    private ProcessExecutionResult runSelection(
+        TestExecutionEntity entity,
+        ProcessExecutionRequest request,
+        TestSelection selection
+    ) throws IOException, InterruptedException {
+        int shardCount = shardPlanner.resolveShardCount(entity.getShardCount());
+        boolean canFilter = StringUtils.isNotBlank(entity.getTestFilterTemplate());
+
+        if (!selection.fullRun()) {
+            List<String> suites = selection.suites();
+            if (shardCount > 1 && suites.size() > 1) {
+                Map<String, Long> durations = testCaseIndex.durations(entity.getRegistrationId());
+                return executeShards(entity, request, shardPlanner.plan(suites, durations, shardCount));
+            }
+            return processBuilderService.executeProcess(request.toBuilder()
+                .arguments(TestFilter.apply(request.getArguments(), entity.getTestFilterTemplate(), suites))
+                .build());
+        }
+
+        if (shardCount <= 1 || !canFilter) {
+            return processBuilderService.executeProcess(request);
+        }
+
+        // the suites come from the source tree, the history may miss new suites and still hold deleted ones
+        Optional<List<String>> suites = testImpactAnalyzer.testSuites(entity);
+        if (suites.isEmpty()) {
+            log.info("Could not list the test suites of {}, running unsharded", entity.getRegistrationId());
+            return processBuilderService.executeProcess(request);
+        }
+        Map<String, Long> durations = testCaseIndex.durations(entity.getRegistrationId());
+        if (suites.get().stream().filter(durations::containsKey).count() < 2) {
+            log.info("No test history for {} yet, running unsharded", entity.getRegistrationId());
+            return processBuilderService.executeProcess(request);
+        }
+
+        List<List<String>> shards = shardPlanner.plan(suites.get(), durations, shardCount);
+        return executeShards(entity, request, shards);
+    }
+
+    private ProcessExecutionResult executeShards(
+        TestExecutionEntity entity,
+        ProcessExecutionRequest request,
+        List<List<String>> shards
+    ) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        log.info("Running {} in {} shards", entity.getRegistrationId(), shards.size());
+
+        List<Future<ProcessExecutionResult>> running = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            ProcessExecutionRequest shardRequest = request.toBuilder()
+                .arguments(TestFilter.apply(request.getArguments(), entity.getTestFilterTemplate(), shards.get(i)))
+                .outputFile(shardOutputFile(request.getOutputFile(), i + 1))
+                .build();
+            running.add(runnerTaskExecutor.submit(() -> processBuilderService.executeProcess(shardRequest)));
+        }
+
+        List<ProcessExecutionResult> results = new ArrayList<>();
+        for (int i = 0; i < running.size(); i++) {
+            try {
+                results.add(running.get(i).get());
+            } catch (InterruptedException e) {
+                // cancelled: interrupting the shards stops their processes
+                running.forEach(r -> r.cancel(true));
+                throw e;
+            } catch (ExecutionException e) {
+                log.error("Shard {} of {} failed to run", i + 1, running.size(), e);
+                results.add(ProcessExecutionResult.builder()
+                    .success(false)
+                    .exitCode(1)
+                    .error("Shard failed to run: " + e.getCause().getMessage())
+                    .build());
+            }
+        }
+
+        List<String> headers = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            headers.add("=== Shard %d/%d (%d suites) ===%n".formatted(i + 1, shards.size(), shards.get(i).size()));
+        }
+
+        ProcessExecutionResult merged = mergeResults(headers, results, (int) (System.currentTimeMillis() - start));
+        if (request.getOutputFile() != null) {
+            merged.setLogPath(concatenateLogs(request.getOutputFile(), results));
+        }
+        return merged;
+    }
+
+    /**
+     * Each shard writes its own log file, since they run at the same time.
+     */
+    private static File shardOutputFile(File outputFile, int shard) {
+        if (outputFile == null) {
+            return null;
+        }
+        String name = outputFile.getName();
+        int dot = name.lastIndexOf('.');
+        String shardName = dot > 0
+            ? "%s.shard-%d%s".formatted(name.substring(0, dot), shard, name.substring(dot))
+            : "%s.shard-%d".formatted(name, shard);
+        return new File(outputFile.getParentFile(), shardName);
+    }
+
+    /**
+     * Append the shard logs, in shard order, to the requested log file. Gzipped shard logs concatenate into a
+     * valid multi-member gzip file.
+     */
+    private Path concatenateLogs(File outputFile, List<ProcessExecutionResult> results) {
+        Path target = processBuilderService.logFilePath(outputFile);
+        try {
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            try (OutputStream out = Files.newOutputStream(target, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (ProcessExecutionResult r : results) {
+                    if (r.getLogPath() != null && Files.exists(r.getLogPath())) {
+                        Files.copy(r.getLogPath(), out);
+                        Files.delete(r.getLogPath());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to combine shard logs into {}", target, e);
+        }
+        return target;
+    }
+
+    private static ProcessExecutionResult mergeResults(
+        List<String> headers,
+        List<ProcessExecutionResult> results,
+        int wallTimeMs
+    ) {
+        StringBuilder matched = new StringBuilder();
+        StringBuilder full = new StringBuilder();
+        List<String> errors = new ArrayList<>();
+
+        for (int i = 0; i < results.size(); i++) {
+            ProcessExecutionResult r = results.get(i);
+            String header = headers.get(i);
+            matched.append(header).append(Optional.ofNullable(r.getMatchedOutput()).orElse("")).append(System.lineSeparator());
+            full.append(header).append(Optional.ofNullable(r.getFullLog()).orElse("")).append(System.lineSeparator());
+            if (StringUtils.isNotBlank(r.getError())) {
+                errors.add(headers.get(i).strip() + " " + r.getError());
+            }
+        }
+
+        return ProcessExecutionResult.builder()
+            .success(results.stream().allMatch(ProcessExecutionResult::isSuccess))
+            .exitCode(results.stream().mapToInt(ProcessExecutionResult::getExitCode).filter(c -> c != 0).findFirst().orElse(0))
+            .executionTimeMs(wallTimeMs)
+            .matchedOutput(matched.toString())
+            .fullLog(full.toString())
+            .error(String.join(System.lineSeparator(), errors))
+            .didWriteToFile(results.stream().anyMatch(ProcessExecutionResult::isDidWriteToFile))
+            .logPath(results.stream().map(ProcessExecutionResult::getLogPath).filter(Objects::nonNull).findFirst().orElse(null))
+            .build();
+    }
+
+    /**
+     * Read the JUnit XML results written during this run into the test index.
+     */
+    private void recordTestResults(TestExecutionEntity entity, long runStart, boolean completeRun) {
+        if (entity.getTestResultPaths() == null || entity.getTestResultPaths().isEmpty()) {
+            return;
+        }
+
+        try {
+            JUnitXmlReportParser parser = new JUnitXmlReportParser();
+            // allow for file systems that only keep modification times to the second
+            long modifiedAfter = runStart - 2_000;
+            List<JUnitXmlReportParser.TestCaseResult> results = entity.getTestResultPaths().stream()
+                .flatMap(p -> parser.parse(Paths.get(p), modifiedAfter).stream())
+                .toList();
+            testCaseIndex.record(entity.getRegistrationId(), results, completeRun);
+        } catch (RuntimeException e) {
+            log.error("Failed to record test results for {}", entity.getRegistrationId(), e);
+        }
+    }
 }
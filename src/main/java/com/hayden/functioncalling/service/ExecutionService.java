@@ -3,6 +3,8 @@ package com.hayden.functioncalling.service;
 import com.hayden.commitdiffmodel.codegen.types.CodeBuildOptions;
 import com.hayden.commitdiffmodel.codegen.types.ExecutionType;
 import com.hayden.functioncalling.entity.CodeBuildEntity;
+import com.hayden.functioncalling.utils.LogBloomSidecar;
+import com.hayden.functioncalling.utils.LogFiles;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
@@ -40,8 +42,11 @@ public interface ExecutionService<T, R, O> {
         File file = null;
         if (Optional.ofNullable(options).map(CodeBuildOptions::getWriteToFile).orElse(false)) {
             file = Paths.get(entity.getArtifactOutputDirectory()).resolve("%s-log.log".formatted(entity.getRegistrationId())).toFile();
-            if (file.exists())
-                Files.delete(file.toPath());
+            Files.deleteIfExists(file.toPath());
+            // written gzipped when log compression is on
+            Files.deleteIfExists(LogFiles.withCompression(file.toPath(), true));
+            Files.deleteIfExists(LogBloomSidecar.sidecarOf(file.toPath()));
+            Files.deleteIfExists(LogBloomSidecar.sidecarOf(LogFiles.withCompression(file.toPath(), true)));
         }
         return file;
     }
@@ -0,0 +1,144 @@
+package com.hayden.functioncalling.service.history;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.entity.*;
+import com.hayden.functioncalling.model.HistoryFilter;
+import com.hayden.functioncalling.model.PipelineStageType;
+import com.hayden.functioncalling.service.log_store.LogBlobStore;
+import com.hayden.persistence.models.JpaHibernateAuditedIded;
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.jpa.impl.JPAQuery;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Exports history rows as newline-delimited JSON, oldest first, for offline analysis. Rows are read through a
+ * server-side cursor in a read-only transaction, {@code fetchSize} at a time, and each is detached once written,
+ * so memory use doesn't grow with the number of rows exported.
+ */
+@Service
+public class HistoryExportService {
+
+    /**
+     * Writes an export; filters are checked when it's created, before anything is written.
+     */
+    @FunctionalInterface
+    public interface Export {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+    private final LogBlobStore logBlobStore;
+    private final ObjectWriter writer;
+    private final CodeRunnerConfigProps.HistoryExport config;
+
+    public HistoryExportService(PlatformTransactionManager transactionManager,
+                                LogBlobStore logBlobStore,
+                                ObjectMapper objectMapper,
+                                CodeRunnerConfigProps props) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.logBlobStore = logBlobStore;
+        this.writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.config = props.getHistoryExport();
+    }
+
+    /**
+     * @param fullLogs write the whole logs read back from the {@link LogBlobStore} rather than their previews
+     */
+    public Export export(PipelineStageType kind, HistoryFilter filter, boolean fullLogs) {
+        return switch (kind) {
+            case TEST -> {
+                QTestExecutionHistory h = QTestExecutionHistory.testExecutionHistory;
+                BooleanBuilder predicate = HistoryQueryService.filter(
+                        new HistoryQueryService.HistoryPaths(h.registrationId, h.sessionId, h.success, h.createdTime, h.id),
+                        filter, new BooleanBuilder());
+                yield out -> write(new JPAQuery<>(entityManager).select(h).from(h)
+                        .where(predicate).orderBy(h.createdTime.asc(), h.id.asc()), out, row -> {
+                    if (fullLogs) {
+                        row.setOutput(logBlobStore.resolve(row.getOutput(), row.getOutputHash()));
+                        row.setError(logBlobStore.resolve(row.getError(), row.getErrorHash()));
+                    }
+                });
+            }
+            case BUILD -> {
+                QCodeBuildHistory h = QCodeBuildHistory.codeBuildHistory;
+                BooleanBuilder predicate = HistoryQueryService.filter(
+                        new HistoryQueryService.HistoryPaths(h.registrationId, h.sessionId, h.success, h.createdTime, h.id),
+                        filter, new BooleanBuilder());
+                yield out -> write(new JPAQuery<>(entityManager).select(h).from(h)
+                        .where(predicate).orderBy(h.createdTime.asc(), h.id.asc()), out, row -> {
+                    if (fullLogs) {
+                        row.setOutput(logBlobStore.resolve(row.getOutput(), row.getOutputHash()));
+                        row.setError(logBlobStore.resolve(row.getError(), row.getErrorHash()));
+                        row.setBuildLog(logBlobStore.resolve(row.getBuildLog(), row.getBuildLogHash()));
+                    }
+                });
+            }
+            case DEPLOY -> {
+                QCodeDeployHistory h = QCodeDeployHistory.codeDeployHistory;
+                BooleanBuilder predicate = HistoryQueryService.filter(
+                        new HistoryQueryService.HistoryPaths(h.registrationId, h.sessionId, h.success, h.createdTime, h.id),
+                        filter, new BooleanBuilder());
+                Optional.ofNullable(filter).map(HistoryFilter::running).ifPresent(r -> predicate.and(h.isRunning.eq(r)));
+                yield out -> write(new JPAQuery<>(entityManager).select(h).from(h)
+                        .where(predicate).orderBy(h.createdTime.asc(), h.id.asc()), out, row -> {
+                    if (fullLogs) {
+                        row.setOutput(logBlobStore.resolve(row.getOutput(), row.getOutputHash()));
+                        row.setError(logBlobStore.resolve(row.getError(), row.getErrorHash()));
+                        row.setDeployLog(logBlobStore.resolve(row.getDeployLog(), row.getDeployLogHash()));
+                    }
+                });
+            }
+        };
+    }
+
+    private <T extends JpaHibernateAuditedIded> void write(JPAQuery<T> query, OutputStream out, Consumer<T> resolveLogs)
+            throws IOException {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // Postgres only streams from a cursor in a transaction and with a fetch size, otherwise it reads every row first
+                query.setHint(HibernateHints.HINT_FETCH_SIZE, config.getFetchSize())
+                        .setHint(HibernateHints.HINT_READ_ONLY, true);
+                try (Stream<T> rows = query.stream();
+                     JsonGenerator generator = writer.createGenerator(out)) {
+                    rows.forEach(row -> {
+                        // detached first, so that resolving its logs is never flushed back
+                        entityManager.detach(row);
+                        resolveLogs.accept(row);
+                        try {
+                            writer.writeValue(generator, row);
+                            generator.writeRaw('\n');
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.hayden.functioncalling.service.history;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.service.history_archive.HistoryArchiver;
+import com.hayden.functioncalling.service.log_store.LogBlobStore;
+import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Manages the monthly partitions of the history tables created by the production changelog. Partitions are
+ * created ahead of the current month; once old enough, a partition is first compacted, its inline logs set to
+ * null so only summary rows remain, and later dropped or detached whole, so retention never runs a DELETE.
+ * Compaction first moves the logs still kept whole in their rows to the blob store, so every log stays reachable
+ * through its hash. With the history archive enabled, an expired partition is archived by the {@link HistoryArchiver}
+ * before it's dropped or detached.
+ */
+@Component
+@Profile("prod")
+@RequiredArgsConstructor
+@Slf4j
+public class HistoryPartitionMaintenance {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("(.+)_p(\\d{4})_(\\d{2})");
+
+    /**
+     * Log columns of each history table that have {@code <column>_hash} and {@code <column>_size} columns, stripped
+     * by compaction.
+     */
+    private static final Map<String, List<String>> LOG_COLUMNS = Map.of(
+            "test_execution_history", List.of("output", "error"),
+            "code_build_history", List.of("output", "error", "build_log"),
+            "code_deploy_history", List.of("output", "error", "deploy_log"));
+
+    /**
+     * Rows whose inline logs are moved to the blob store per query.
+     */
+    private static final int EXTERNALIZE_BATCH = 100;
+
+    private final CodeRunnerConfigProps props;
+    private final JdbcTemplate jdbcTemplate;
+    private final LogBlobStore logBlobStore;
+    private final HistoryArchiver historyArchiver;
+
+    /**
+     * Archiving months that retention still keeps would empty partitions row by row, so the archive can't start
+     * before the retention window ends.
+     */
+    @PostConstruct
+    public void validate() {
+        Integer retainMonths = props.getHistoryRetention().getRetainMonths();
+        CodeRunnerConfigProps.HistoryArchive archive = props.getHistoryArchive();
+        if (archive.isEnabled() && retainMonths != null && archive.getArchiveAfterMonths() < retainMonths) {
+            throw new IllegalStateException(("code-runner.history-archive.archive-after-months (%d) is below "
+                    + "code-runner.history-retention.retain-months (%d)")
+                    .formatted(archive.getArchiveAfterMonths(), retainMonths));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${code-runner.history-retention.cron:0 15 3 * * *}")
+    public synchronized void maintain() {
+        YearMonth now = YearMonth.now();
+        for (String table : LOG_COLUMNS.keySet()) {
+            try {
+                createPartitions(table, now);
+                compact(table, now);
+                expire(table, now);
+            } catch (DataAccessException | UncheckedIOException e) {
+                log.error("Partition maintenance of {} failed", table, e);
+            }
+        }
+    }
+
+    private void createPartitions(String table, YearMonth now) {
+        for (int i = 0; i <= props.getHistoryRetention().getMonthsAhead(); i++) {
+            YearMonth month = now.plusMonths(i);
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')"
+                    .formatted(partitionName(table, month), table, month.atDay(1), month.plusMonths(1).atDay(1)));
+        }
+    }
+
+    private void compact(String table, YearMonth now) {
+        Integer compactAfterMonths = props.getHistoryRetention().getCompactAfterMonths();
+        if (compactAfterMonths == null) {
+            return;
+        }
+
+        Set<String> compacted = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT partition_name FROM history_partition", String.class));
+        YearMonth cutoff = now.minusMonths(compactAfterMonths);
+
+        partitions(table).forEach((month, partition) -> {
+            if (!month.isBefore(cutoff) || compacted.contains(partition)) {
+                return;
+            }
+            int rows = 0;
+            for (String column : LOG_COLUMNS.get(table)) {
+                externalize(partition, column);
+                rows += jdbcTemplate.update("UPDATE %s SET %s = NULL WHERE %s_hash IS NOT NULL AND %s IS NOT NULL"
+                        .formatted(partition, column, column, column));
+            }
+            jdbcTemplate.update("INSERT INTO history_partition (partition_name, compacted_time) VALUES (?, now())", partition);
+            log.info("Compacted {} logs of history partition {}", rows, partition);
+        });
+    }
+
+    /**
+     * Move the logs of a column that are only kept inline to the blob store, a batch of rows at a time.
+     */
+    private void externalize(String partition, String column) {
+        String select = "SELECT id, %s FROM %s WHERE %s_hash IS NULL AND %s IS NOT NULL ORDER BY id LIMIT %d"
+                .formatted(column, partition, column, column, EXTERNALIZE_BATCH);
+        String update = "UPDATE %s SET %s_hash = ?, %s_size = ? WHERE id = ?".formatted(partition, column, column);
+        List<Map<String, Object>> rows;
+        do {
+            rows = jdbcTemplate.queryForList(select);
+            for (Map<String, Object> row : rows) {
+                byte[] bytes = ((String) row.get(column)).getBytes(StandardCharsets.UTF_8);
+                // a failure to write the blob throws, leaving the partition uncompacted until the next run
+                jdbcTemplate.update(update, logBlobStore.put(bytes), (long) bytes.length, row.get("id"));
+            }
+        } while (rows.size() == EXTERNALIZE_BATCH);
+    }
+
+    private void expire(String table, YearMonth now) {
+        Integer retainMonths = props.getHistoryRetention().getRetainMonths();
+        if (retainMonths == null) {
+            return;
+        }
+
+        YearMonth cutoff = now.minusMonths(retainMonths);
+        CodeRunnerConfigProps.ExpiredPartitionAction action = props.getHistoryRetention().getExpiredPartitionAction();
+        partitions(table).forEach((month, partition) -> {
+            if (!month.isBefore(cutoff)) {
+                return;
+            }
+            if (props.getHistoryArchive().isEnabled()) {
+                historyArchiver.archivePartition(table, partition, month, () -> remove(table, partition, action));
+            } else {
+                remove(table, partition, action);
+            }
+            log.info("{} expired history partition {}", action == CodeRunnerConfigProps.ExpiredPartitionAction.DROP ? "Dropped" : "Detached", partition);
+        });
+    }
+
+    private void remove(String table, String partition, CodeRunnerConfigProps.ExpiredPartitionAction action) {
+        jdbcTemplate.execute("ALTER TABLE %s DETACH PARTITION %s".formatted(table, partition));
+        if (action == CodeRunnerConfigProps.ExpiredPartitionAction.DROP) {
+            jdbcTemplate.execute("DROP TABLE %s".formatted(partition));
+        }
+        jdbcTemplate.update("DELETE FROM history_partition WHERE partition_name = ?", partition);
+    }
+
+    /**
+     * @return the monthly partitions currently attached to the table, oldest first
+     */
+    private SortedMap<YearMonth, String> partitions(String table) {
+        List<String> names = jdbcTemplate.queryForList("""
+                SELECT child.relname
+                FROM pg_inherits
+                JOIN pg_class parent ON parent.oid = pg_inherits.inhparent
+                JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+                WHERE parent.relname = ?
+                """, String.class, table);
+
+        SortedMap<YearMonth, String> partitions = new TreeMap<>();
+        for (String name : names) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (matcher.matches() && matcher.group(1).equals(table)) {
+                partitions.put(YearMonth.of(Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3))), name);
+            }
+        }
+        return partitions;
+    }
+
+    static String partitionName(String table, YearMonth month) {
+        return "%s_p%04d_%02d".formatted(table, month.getYear(), month.getMonthValue());
+    }
+}
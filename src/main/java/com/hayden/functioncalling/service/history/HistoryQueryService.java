@@ -0,0 +1,166 @@
+package com.hayden.functioncalling.service.history;
+
+import com.hayden.functioncalling.entity.*;
+import com.hayden.functioncalling.model.*;
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Projections;
+import com.querydsl.core.types.dsl.BooleanPath;
+import com.querydsl.core.types.dsl.DateTimePath;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.jpa.impl.JPAQuery;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keyset-paginated history queries. Pages are ordered by (createdTime, id) descending and each page continues
+ * strictly after the cursor of the previous page's last row, so a page costs the same however deep into the
+ * history it is, backed by the (registration_id, created_time) and (session_id, created_time) indexes. Pages that
+ * don't need the logs select summary projections, which leave the TEXT log columns unread.
+ */
+@Service
+public class HistoryQueryService {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public HistoryConnection<TestExecutionHistory> executions(HistoryFilter filter, Integer first, String after) {
+        QTestExecutionHistory h = QTestExecutionHistory.testExecutionHistory;
+        return page(h, h, executionPaths(h), filter, new BooleanBuilder(), first, after);
+    }
+
+    public HistoryConnection<TestExecutionSummary> executionSummaries(HistoryFilter filter, Integer first, String after) {
+        QTestExecutionHistory h = QTestExecutionHistory.testExecutionHistory;
+        return page(h, Projections.constructor(TestExecutionSummary.class, h.executionId, h.registrationId,
+                        h.sessionId, h.command, h.arguments, h.success, h.exitCode, h.executionTimeMs, h.executionType),
+                executionPaths(h), filter, new BooleanBuilder(), first, after);
+    }
+
+    public HistoryConnection<CodeBuildHistory> builds(HistoryFilter filter, Integer first, String after) {
+        QCodeBuildHistory h = QCodeBuildHistory.codeBuildHistory;
+        return page(h, h, buildPaths(h), filter, new BooleanBuilder(), first, after);
+    }
+
+    public HistoryConnection<CodeBuildSummary> buildSummaries(HistoryFilter filter, Integer first, String after) {
+        QCodeBuildHistory h = QCodeBuildHistory.codeBuildHistory;
+        return page(h, Projections.constructor(CodeBuildSummary.class, h.buildId, h.registrationId, h.sessionId,
+                        h.buildCommand, h.arguments, h.success, h.exitCode, h.executionTimeMs, h.artifactPaths),
+                buildPaths(h), filter, new BooleanBuilder(), first, after);
+    }
+
+    public HistoryConnection<CodeDeployHistory> deploys(HistoryFilter filter, Integer first, String after) {
+        QCodeDeployHistory h = QCodeDeployHistory.codeDeployHistory;
+        return page(h, h, deployPaths(h), filter, running(h, filter), first, after);
+    }
+
+    public HistoryConnection<CodeDeploySummary> deploySummaries(HistoryFilter filter, Integer first, String after) {
+        QCodeDeployHistory h = QCodeDeployHistory.codeDeployHistory;
+        return page(h, Projections.constructor(CodeDeploySummary.class, h.deployId, h.registrationId, h.sessionId,
+                        h.deployCommand, h.arguments, h.success, h.exitCode, h.executionTimeMs, h.healthCheckStatus,
+                        h.isRunning, h.deploymentUrl),
+                deployPaths(h), filter, running(h, filter), first, after);
+    }
+
+    record HistoryPaths(StringPath registrationId,
+                        StringPath sessionId,
+                        BooleanPath success,
+                        DateTimePath<LocalDateTime> createdTime,
+                        NumberPath<Long> id) {
+    }
+
+    private static HistoryPaths executionPaths(QTestExecutionHistory h) {
+        return new HistoryPaths(h.registrationId, h.sessionId, h.success, h.createdTime, h.id);
+    }
+
+    private static HistoryPaths buildPaths(QCodeBuildHistory h) {
+        return new HistoryPaths(h.registrationId, h.sessionId, h.success, h.createdTime, h.id);
+    }
+
+    private static HistoryPaths deployPaths(QCodeDeployHistory h) {
+        return new HistoryPaths(h.registrationId, h.sessionId, h.success, h.createdTime, h.id);
+    }
+
+    private static BooleanBuilder running(QCodeDeployHistory h, HistoryFilter filter) {
+        BooleanBuilder running = new BooleanBuilder();
+        Optional.ofNullable(filter).map(HistoryFilter::running).ifPresent(r -> running.and(h.isRunning.eq(r)));
+        return running;
+    }
+
+    /**
+     * @param select the row entity, or a projection of its columns
+     */
+    private <T> HistoryConnection<T> page(EntityPath<?> from,
+                                          Expression<T> select,
+                                          HistoryPaths paths,
+                                          HistoryFilter filter,
+                                          BooleanBuilder predicate,
+                                          Integer first,
+                                          String after) {
+        int size = first == null ? DEFAULT_PAGE_SIZE : first;
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and %d, was %d".formatted(MAX_PAGE_SIZE, size));
+        }
+
+        filter(paths, filter, predicate);
+
+        if (after != null && !after.isBlank()) {
+            HistoryCursor cursor = HistoryCursor.decode(after);
+            predicate.and(paths.createdTime().lt(cursor.createdTime())
+                    .or(paths.createdTime().eq(cursor.createdTime()).and(paths.id().lt(cursor.id()))));
+        }
+
+        // one row past the page tells whether there is a next page without counting
+        List<Tuple> rows = new JPAQuery<>(entityManager)
+                .select(select, paths.createdTime(), paths.id())
+                .from(from)
+                .where(predicate)
+                .orderBy(paths.createdTime().desc(), paths.id().desc())
+                .limit(size + 1)
+                .fetch();
+
+        boolean hasNextPage = rows.size() > size;
+        List<HistoryConnection.Edge<T>> edges = rows.stream()
+                .limit(size)
+                .map(row -> new HistoryConnection.Edge<>(
+                        new HistoryCursor(row.get(paths.createdTime()), row.get(paths.id())).encode(),
+                        row.get(select)))
+                .toList();
+        String endCursor = edges.isEmpty() ? null : edges.getLast().cursor();
+        return new HistoryConnection<>(edges, new HistoryConnection.PageInfo(endCursor, hasNextPage));
+    }
+
+    /**
+     * Add the conditions of a history filter to a predicate.
+     */
+    static BooleanBuilder filter(HistoryPaths paths, HistoryFilter filter, BooleanBuilder predicate) {
+        if (filter != null) {
+            if (filter.registrationId() != null) {
+                predicate.and(paths.registrationId().eq(filter.registrationId()));
+            }
+            if (filter.sessionId() != null) {
+                predicate.and(paths.sessionId().eq(filter.sessionId()));
+            }
+            if (filter.success() != null) {
+                predicate.and(paths.success().eq(filter.success()));
+            }
+            if (filter.createdAfterTime() != null) {
+                predicate.and(paths.createdTime().goe(filter.createdAfterTime()));
+            }
+            if (filter.createdBeforeTime() != null) {
+                predicate.and(paths.createdTime().lt(filter.createdBeforeTime()));
+            }
+        }
+        return predicate;
+    }
+}
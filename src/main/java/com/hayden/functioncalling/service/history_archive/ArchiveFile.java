@@ -0,0 +1,464 @@
+package com.hayden.functioncalling.service.history_archive;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * A columnar file of history rows, ordered by time. Rows are split into row groups, and each column of a group is
+ * stored on its own, so a scan only decodes the columns it reads, of the groups its predicate can't rule out:
+ * <ul>
+ *     <li>{@link ColumnType#LONG} columns are bit-packed against the group's minimum, with a code for null;</li>
+ *     <li>{@link ColumnType#DICTIONARY} columns hold the group's distinct values once and bit-packed codes;</li>
+ *     <li>{@link ColumnType#STRING} columns are deflated.</li>
+ * </ul>
+ * The footer, found from the end of the file, describes the columns and, for each group, where its columns are,
+ * its time range and its distinct registrations, which is what time and registration predicates are checked
+ * against.
+ */
+public final class ArchiveFile {
+
+    public static final String EXTENSION = ".harc";
+
+    static final int ROW_GROUP_ROWS = 8192;
+
+    private static final int MAGIC = 0x48415243;
+    private static final byte VERSION = 1;
+    private static final int TRAILER_BYTES = Long.BYTES + Integer.BYTES;
+
+    private ArchiveFile() {
+    }
+
+    public enum ColumnType {
+        LONG, DICTIONARY, STRING
+    }
+
+    public record Column(String name, ColumnType type) {
+    }
+
+    /**
+     * Rows a scan reads; null bounds don't filter.
+     *
+     * @param from inclusive lower bound on the time column
+     * @param to   exclusive upper bound on the time column
+     */
+    public record Predicate(Long from, Long to, String registrationId) {
+
+        boolean mightMatch(long minTime, long maxTime, Set<String> registrations) {
+            return (from == null || maxTime >= from)
+                    && (to == null || minTime < to)
+                    && (registrationId == null || registrations.contains(registrationId));
+        }
+
+        boolean matches(long time, String registration) {
+            return (from == null || time >= from)
+                    && (to == null || time < to)
+                    && (registrationId == null || registrationId.equals(registration));
+        }
+    }
+
+    /**
+     * Writes rows, which must be added in time order, a row group at a time.
+     */
+    static final class Writer implements Closeable {
+
+        private final Path file;
+        private final List<Column> columns;
+        private final int timeColumn;
+        private final int registrationColumn;
+        private final DataOutputStream out;
+        private final List<Object[]> group = new ArrayList<>(ROW_GROUP_ROWS);
+        private final List<GroupInfo> groups = new ArrayList<>();
+        private long position;
+        private long rows;
+
+        /**
+         * @param timeColumn         the {@link ColumnType#LONG} column rows are ordered by
+         * @param registrationColumn the {@link ColumnType#DICTIONARY} column of the registration
+         */
+        Writer(Path file, List<Column> columns, String timeColumn, String registrationColumn) throws IOException {
+            this.file = file;
+            this.columns = List.copyOf(columns);
+            this.timeColumn = indexOf(columns, timeColumn);
+            this.registrationColumn = indexOf(columns, registrationColumn);
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            position = Integer.BYTES + 1;
+        }
+
+        void add(Object[] row) throws IOException {
+            if (row.length != columns.size()) {
+                throw new IllegalArgumentException("Expected %d values, got %d".formatted(columns.size(), row.length));
+            }
+            group.add(row);
+            rows++;
+            if (group.size() == ROW_GROUP_ROWS) {
+                writeGroup();
+            }
+        }
+
+        long rows() {
+            return rows;
+        }
+
+        private void writeGroup() throws IOException {
+            if (group.isEmpty()) {
+                return;
+            }
+            long[] offsets = new long[columns.size()];
+            int[] lengths = new int[columns.size()];
+            for (int c = 0; c < columns.size(); c++) {
+                byte[] chunk = encode(columns.get(c).type(), c);
+                offsets[c] = position;
+                lengths[c] = chunk.length;
+                out.write(chunk);
+                position += chunk.length;
+            }
+            long minTime = (Long) group.getFirst()[timeColumn];
+            long maxTime = (Long) group.getLast()[timeColumn];
+            Set<String> registrations = new TreeSet<>();
+            for (Object[] row : group) {
+                if (row[registrationColumn] != null) {
+                    registrations.add((String) row[registrationColumn]);
+                }
+            }
+            groups.add(new GroupInfo(group.size(), minTime, maxTime, registrations, offsets, lengths));
+            group.clear();
+        }
+
+        private byte[] encode(ColumnType type, int column) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream chunk = new DataOutputStream(bytes);
+            switch (type) {
+                case LONG -> {
+                    Long[] values = new Long[group.size()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = (Long) group.get(i)[column];
+                    }
+                    packLongs(chunk, values);
+                }
+                case DICTIONARY -> {
+                    Map<String, Long> codes = new LinkedHashMap<>();
+                    Long[] values = new Long[group.size()];
+                    for (int i = 0; i < values.length; i++) {
+                        String value = (String) group.get(i)[column];
+                        values[i] = value == null ? null : codes.computeIfAbsent(value, v -> (long) codes.size());
+                    }
+                    chunk.writeInt(codes.size());
+                    for (String value : codes.keySet()) {
+                        writeString(chunk, value);
+                    }
+                    packLongs(chunk, values);
+                }
+                case STRING -> {
+                    ByteArrayOutputStream raw = new ByteArrayOutputStream();
+                    DataOutputStream strings = new DataOutputStream(raw);
+                    for (Object[] row : group) {
+                        writeString(strings, (String) row[column]);
+                    }
+                    chunk.writeInt(raw.size());
+                    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                    try (DeflaterOutputStream deflated = new DeflaterOutputStream(chunk, deflater)) {
+                        raw.writeTo(deflated);
+                    } finally {
+                        deflater.end();
+                    }
+                }
+            }
+            chunk.flush();
+            return bytes.toByteArray();
+        }
+
+        /**
+         * Writes the last row group and the footer, and syncs the file to the storage device.
+         */
+        @Override
+        public void close() throws IOException {
+            try (out) {
+                writeGroup();
+                long footer = position;
+                out.writeInt(columns.size());
+                for (Column column : columns) {
+                    writeString(out, column.name());
+                    out.writeByte(column.type().ordinal());
+                }
+                out.writeInt(timeColumn);
+                out.writeInt(registrationColumn);
+                out.writeInt(groups.size());
+                for (GroupInfo info : groups) {
+                    out.writeInt(info.rows());
+                    out.writeLong(info.minTime());
+                    out.writeLong(info.maxTime());
+                    out.writeInt(info.registrations().size());
+                    for (String registration : info.registrations()) {
+                        writeString(out, registration);
+                    }
+                    for (int c = 0; c < columns.size(); c++) {
+                        out.writeLong(info.offsets()[c]);
+                        out.writeInt(info.lengths()[c]);
+                    }
+                }
+                out.writeLong(footer);
+                out.writeInt(MAGIC);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+    }
+
+    private record GroupInfo(int rows, long minTime, long maxTime, Set<String> registrations, long[] offsets,
+                             int[] lengths) {
+    }
+
+    /**
+     * A row of a scan, only valid during the callback it is passed to.
+     */
+    public static final class Row {
+
+        private final Map<String, Integer> columnIndexes;
+        private Object[][] values;
+        private int row;
+
+        private Row(Map<String, Integer> columnIndexes) {
+            this.columnIndexes = columnIndexes;
+        }
+
+        public Long getLong(String column) {
+            return (Long) value(column);
+        }
+
+        public String getString(String column) {
+            return (String) value(column);
+        }
+
+        private Object value(String column) {
+            Integer index = columnIndexes.get(column);
+            if (index == null || values[index] == null) {
+                throw new IllegalArgumentException("Column %s was not read".formatted(column));
+            }
+            return values[index][row];
+        }
+    }
+
+    /**
+     * Scans the rows of a file matching a predicate, in time order, decoding only the given columns of the row
+     * groups the predicate doesn't rule out.
+     *
+     * @return the number of rows matched
+     */
+    public static long scan(Path file, Predicate predicate, Collection<String> columnNames, Consumer<Row> visitor)
+            throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < Integer.BYTES + 1 + TRAILER_BYTES || buffer.getInt(0) != MAGIC
+                || buffer.getInt(buffer.limit() - Integer.BYTES) != MAGIC) {
+            throw new IOException("Not a complete history archive: " + file);
+        }
+        if (buffer.get(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported history archive version %d: %s".formatted(buffer.get(Integer.BYTES), file));
+        }
+
+        ByteBuffer footer = buffer.duplicate().position((int) buffer.getLong(buffer.limit() - TRAILER_BYTES));
+        List<Column> columns = new ArrayList<>();
+        int columnCount = footer.getInt();
+        for (int c = 0; c < columnCount; c++) {
+            columns.add(new Column(readString(footer), ColumnType.values()[footer.get()]));
+        }
+        int timeColumn = footer.getInt();
+        int registrationColumn = footer.getInt();
+
+        Map<String, Integer> columnIndexes = new HashMap<>();
+        for (int c = 0; c < columns.size(); c++) {
+            columnIndexes.put(columns.get(c).name(), c);
+        }
+        Set<Integer> read = new TreeSet<>(List.of(timeColumn, registrationColumn));
+        for (String name : columnNames) {
+            Integer index = columnIndexes.get(name);
+            if (index == null) {
+                throw new IllegalArgumentException("Unknown column %s in %s".formatted(name, file));
+            }
+            read.add(index);
+        }
+
+        Row row = new Row(columnIndexes);
+        long matched = 0;
+        int groupCount = footer.getInt();
+        for (int g = 0; g < groupCount; g++) {
+            int rows = footer.getInt();
+            long minTime = footer.getLong();
+            long maxTime = footer.getLong();
+            int registrationCount = footer.getInt();
+            Set<String> registrations = new HashSet<>(registrationCount * 2);
+            for (int r = 0; r < registrationCount; r++) {
+                registrations.add(readString(footer));
+            }
+            long[] offsets = new long[columns.size()];
+            int[] lengths = new int[columns.size()];
+            for (int c = 0; c < columns.size(); c++) {
+                offsets[c] = footer.getLong();
+                lengths[c] = footer.getInt();
+            }
+            if (!predicate.mightMatch(minTime, maxTime, registrations)) {
+                continue;
+            }
+
+            Object[][] values = new Object[columns.size()][];
+            for (int c : read) {
+                ByteBuffer chunk = buffer.slice((int) offsets[c], lengths[c]);
+                values[c] = decode(columns.get(c).type(), chunk, rows);
+            }
+            row.values = values;
+            for (int i = 0; i < rows; i++) {
+                if (predicate.matches((Long) values[timeColumn][i], (String) values[registrationColumn][i])) {
+                    row.row = i;
+                    visitor.accept(row);
+                    matched++;
+                }
+            }
+        }
+        return matched;
+    }
+
+    private static Object[] decode(ColumnType type, ByteBuffer chunk, int rows) throws IOException {
+        return switch (type) {
+            case LONG -> unpackLongs(chunk, rows);
+            case DICTIONARY -> {
+                String[] dictionary = new String[chunk.getInt()];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = readString(chunk);
+                }
+                Long[] codes = unpackLongs(chunk, rows);
+                String[] values = new String[rows];
+                for (int i = 0; i < rows; i++) {
+                    values[i] = codes[i] == null ? null : dictionary[codes[i].intValue()];
+                }
+                yield values;
+            }
+            case STRING -> {
+                byte[] raw = new byte[chunk.getInt()];
+                Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(chunk);
+                    int inflated = 0;
+                    while (inflated < raw.length && !inflater.finished()) {
+                        inflated += inflater.inflate(raw, inflated, raw.length - inflated);
+                    }
+                } catch (DataFormatException e) {
+                    throw new IOException("Corrupt string column in history archive", e);
+                } finally {
+                    inflater.end();
+                }
+                ByteBuffer strings = ByteBuffer.wrap(raw);
+                String[] values = new String[rows];
+                for (int i = 0; i < rows; i++) {
+                    values[i] = readString(strings);
+                }
+                yield values;
+            }
+        };
+    }
+
+    /**
+     * Frame of reference bit packing: each value is stored as its offset from the minimum plus one, in as many
+     * bits as the largest needs, and 0 is null.
+     */
+    private static void packLongs(DataOutputStream out, Long[] values) throws IOException {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (Long value : values) {
+            if (value != null) {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        if (min > max) {
+            out.writeByte(0);
+            out.writeLong(0);
+            return;
+        }
+        int width = Long.SIZE - Long.numberOfLeadingZeros(max - min + 1);
+        long[] words = new long[(int) (((long) values.length * width + Long.SIZE - 1) / Long.SIZE)];
+        for (int i = 0; i < values.length; i++) {
+            long encoded = values[i] == null ? 0 : values[i] - min + 1;
+            long bit = (long) i * width;
+            int word = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            words[word] |= encoded << shift;
+            if (shift + width > Long.SIZE) {
+                words[word + 1] |= encoded >>> (Long.SIZE - shift);
+            }
+        }
+        out.writeByte(width);
+        out.writeLong(min);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    private static Long[] unpackLongs(ByteBuffer in, int rows) {
+        int width = in.get();
+        long min = in.getLong();
+        Long[] values = new Long[rows];
+        if (width == 0) {
+            return values;
+        }
+        long mask = width == Long.SIZE ? -1L : (1L << width) - 1;
+        int base = in.position();
+        for (int i = 0; i < rows; i++) {
+            long bit = (long) i * width;
+            int word = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            long encoded = in.getLong(base + word * Long.BYTES) >>> shift;
+            if (shift + width > Long.SIZE) {
+                encoded |= in.getLong(base + (word + 1) * Long.BYTES) << (Long.SIZE - shift);
+            }
+            encoded &= mask;
+            values[i] = encoded == 0 ? null : encoded - 1 + min;
+        }
+        return values;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int indexOf(List<Column> columns, String name) {
+        for (int c = 0; c < columns.size(); c++) {
+            if (columns.get(c).name().equals(name)) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column " + name);
+    }
+}
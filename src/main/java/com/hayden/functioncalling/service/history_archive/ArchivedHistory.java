@@ -0,0 +1,160 @@
+package com.hayden.functioncalling.service.history_archive;
+
+import com.hayden.functioncalling.model.PipelineStageType;
+import com.hayden.functioncalling.service.log_store.LogBlobStore;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.hayden.functioncalling.service.history_archive.ArchiveFile.ColumnType.*;
+
+/**
+ * The history tables that are archived, and how their columns are stored in {@link ArchiveFile}s. Logs are
+ * archived as pointers into the {@link LogBlobStore}, a hash and a size, with inline logs moved into the store.
+ */
+enum ArchivedHistory {
+
+    TEST(PipelineStageType.TEST, "test_execution_history",
+            List.of(new Value("execution_id", STRING), new Value("command", DICTIONARY),
+                    new Value("arguments", DICTIONARY)),
+            List.of(new LogColumn("output", "output_hash", "output_size"),
+                    new LogColumn("error", "error_hash", "error_size"))),
+    BUILD(PipelineStageType.BUILD, "code_build_history",
+            List.of(new Value("build_id", STRING), new Value("build_command", DICTIONARY),
+                    new Value("arguments", DICTIONARY), new Value("artifact_output_directory", DICTIONARY),
+                    new Value("artifact_paths", "to_json(artifact_paths)::text", STRING)),
+            List.of(new LogColumn("output", "output_hash", "output_size"),
+                    new LogColumn("error", "error_hash", "error_size"),
+                    new LogColumn("build_log", "build_log_hash", "build_log_size"))),
+    DEPLOY(PipelineStageType.DEPLOY, "code_deploy_history",
+            List.of(new Value("deploy_id", STRING), new Value("deploy_command", DICTIONARY),
+                    new Value("arguments", DICTIONARY), new Value("health_check_status", DICTIONARY),
+                    new Value("health_check_response_time_ms", LONG), new Value("is_running", LONG),
+                    new Value("deployment_url", DICTIONARY)),
+            List.of(new LogColumn("output", "output_hash", "output_size"),
+                    new LogColumn("error", "error_hash", "error_size"),
+                    new LogColumn("deploy_log", "deploy_log_hash", "deploy_log_size")));
+
+    static final String ID = "id";
+    static final String CREATED_TIME = "created_time";
+    static final String REGISTRATION_ID = "registration_id";
+    static final String SUCCESS = "success";
+    static final String EXECUTION_TIME_MS = "execution_time_ms";
+
+    private static final List<Value> COMMON = List.of(
+            new Value(ID, LONG),
+            new Value(CREATED_TIME, LONG),
+            new Value(REGISTRATION_ID, DICTIONARY),
+            new Value("session_id", DICTIONARY),
+            new Value(SUCCESS, LONG),
+            new Value("exit_code", LONG),
+            new Value(EXECUTION_TIME_MS, LONG),
+            new Value("execution_type", DICTIONARY));
+
+    /**
+     * A column stored as is; booleans as 0 or 1 and times as epoch milliseconds.
+     */
+    record Value(String column, String expression, ArchiveFile.ColumnType type) {
+        Value(String column, ArchiveFile.ColumnType type) {
+            this(column, column, type);
+        }
+    }
+
+    /**
+     * A log column, archived as the {@code <column>_hash} and {@code <column>_size} of its whole log.
+     *
+     * @param hash the column of the blob holding the whole log, null if the log is always inline
+     * @param size the column of the size of the whole log, null if the log is always inline
+     */
+    record LogColumn(String column, String hash, String size) {
+    }
+
+    final PipelineStageType kind;
+    final String table;
+    final List<Value> values;
+    final List<LogColumn> logColumns;
+
+    ArchivedHistory(PipelineStageType kind, String table, List<Value> values, List<LogColumn> logColumns) {
+        this.kind = kind;
+        this.table = table;
+        this.values = Stream.concat(COMMON.stream(), values.stream()).toList();
+        this.logColumns = logColumns;
+    }
+
+    static ArchivedHistory of(PipelineStageType kind) {
+        return switch (kind) {
+            case TEST -> TEST;
+            case BUILD -> BUILD;
+            case DEPLOY -> DEPLOY;
+        };
+    }
+
+    List<ArchiveFile.Column> archiveColumns() {
+        List<ArchiveFile.Column> columns = new ArrayList<>();
+        values.forEach(v -> columns.add(new ArchiveFile.Column(v.column(), v.type())));
+        for (LogColumn log : logColumns) {
+            columns.add(new ArchiveFile.Column(log.column() + "_hash", STRING));
+            columns.add(new ArchiveFile.Column(log.column() + "_size", LONG));
+        }
+        return columns;
+    }
+
+    /**
+     * @return the select list of the columns {@link #row} reads
+     */
+    String selectColumns() {
+        return Stream.concat(
+                        values.stream().map(v -> v.expression().equals(v.column()) ? v.column() : v.expression() + " AS " + v.column()),
+                        logColumns.stream().flatMap(l -> Stream.of(l.column(), l.hash(), l.size())))
+                .filter(Objects::nonNull)
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * The current row as values of the {@link #archiveColumns}, storing inline logs in the blob store.
+     */
+    Object[] row(ResultSet rs, LogBlobStore logBlobStore) throws SQLException {
+        Object[] row = new Object[values.size() + 2 * logColumns.size()];
+        int i = 0;
+        for (Value value : values) {
+            Object column = rs.getObject(value.column());
+            row[i++] = switch (column) {
+                case null -> null;
+                case Boolean b -> b ? 1L : 0L;
+                case Number n -> n.longValue();
+                case Timestamp t -> epochMillis(t.toLocalDateTime());
+                default -> column.toString();
+            };
+        }
+        for (LogColumn log : logColumns) {
+            String hash = log.hash() == null ? null : rs.getString(log.hash());
+            Long size = log.size() == null ? null : rs.getObject(log.size(), Long.class);
+            String inline = rs.getString(log.column());
+            if (hash == null && inline != null) {
+                byte[] bytes = inline.getBytes(StandardCharsets.UTF_8);
+                hash = logBlobStore.put(bytes);
+                size = (long) bytes.length;
+            }
+            row[i++] = hash;
+            row[i++] = size;
+        }
+        return row;
+    }
+
+    static long epochMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static LocalDateTime fromEpochMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), (int) Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+}
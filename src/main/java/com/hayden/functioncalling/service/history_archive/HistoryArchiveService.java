@@ -0,0 +1,137 @@
+package com.hayden.functioncalling.service.history_archive;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.model.ArchivedHistoryWeek;
+import com.hayden.functioncalling.model.PipelineStageType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Analytical scans of the history archived by the {@link HistoryArchiver}. Time and registration predicates are
+ * pushed down: files of months outside the time range aren't opened, and row groups whose time range or
+ * registrations don't match aren't decoded.
+ */
+@Service
+@Slf4j
+public class HistoryArchiveService {
+
+    private final Path directory;
+
+    public HistoryArchiveService(CodeRunnerConfigProps props) {
+        this.directory = HistoryArchiver.archiveDirectory(props);
+    }
+
+    /**
+     * Scan the archived rows of a kind of history, file by file in month order.
+     *
+     * @param from    inclusive lower bound on the creation time, null for none
+     * @param to      exclusive upper bound on the creation time, null for none
+     * @param columns the columns the visitor reads besides the creation time and registration
+     * @return the number of rows scanned
+     */
+    public long scan(PipelineStageType kind, String registrationId, LocalDateTime from, LocalDateTime to,
+                     Collection<String> columns, Consumer<ArchiveFile.Row> visitor) {
+        ArchiveFile.Predicate predicate = new ArchiveFile.Predicate(
+                from == null ? null : ArchivedHistory.epochMillis(from),
+                to == null ? null : ArchivedHistory.epochMillis(to),
+                registrationId);
+        long rows = 0;
+        for (Path file : files(ArchivedHistory.of(kind), from, to)) {
+            try {
+                rows += ArchiveFile.scan(file, predicate, columns, visitor);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to scan history archive " + file, e);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Executions, success rate and mean duration by week of the archived history.
+     *
+     * @param createdAfter  inclusive lower bound on the creation time, ISO-8601 local date-time
+     * @param createdBefore exclusive upper bound on the creation time, ISO-8601 local date-time
+     */
+    public List<ArchivedHistoryWeek> weeks(PipelineStageType kind, String registrationId,
+                                           String createdAfter, String createdBefore) {
+        SortedMap<LocalDate, long[]> weeks = new TreeMap<>();
+        scan(kind, registrationId, parse(createdAfter), parse(createdBefore),
+                List.of(ArchivedHistory.SUCCESS, ArchivedHistory.EXECUTION_TIME_MS), row -> {
+                    LocalDate week = ArchivedHistory.fromEpochMillis(row.getLong(ArchivedHistory.CREATED_TIME))
+                            .toLocalDate()
+                            .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                    // executions, successes, timed executions, total duration
+                    long[] totals = weeks.computeIfAbsent(week, w -> new long[4]);
+                    totals[0]++;
+                    if (Long.valueOf(1).equals(row.getLong(ArchivedHistory.SUCCESS))) {
+                        totals[1]++;
+                    }
+                    Long durationMs = row.getLong(ArchivedHistory.EXECUTION_TIME_MS);
+                    if (durationMs != null) {
+                        totals[2]++;
+                        totals[3] += durationMs;
+                    }
+                });
+
+        List<ArchivedHistoryWeek> result = new ArrayList<>(weeks.size());
+        weeks.forEach((week, totals) -> result.add(new ArchivedHistoryWeek(week.toString(), totals[0], totals[1],
+                (double) totals[1] / totals[0],
+                totals[2] == 0 ? null : (double) totals[3] / totals[2])));
+        return result;
+    }
+
+    /**
+     * @return the archive files of the months overlapping the time range, oldest first
+     */
+    private List<Path> files(ArchivedHistory history, LocalDateTime from, LocalDateTime to) {
+        Path tableDirectory = directory.resolve(history.table);
+        if (!Files.isDirectory(tableDirectory)) {
+            return List.of();
+        }
+        try (Stream<Path> listed = Files.list(tableDirectory)) {
+            return listed
+                    .filter(f -> f.getFileName().toString().endsWith(ArchiveFile.EXTENSION))
+                    .filter(f -> {
+                        Optional<YearMonth> month = month(f);
+                        return month.isEmpty()
+                                || (from == null || !month.get().isBefore(YearMonth.from(from)))
+                                && (to == null || month.get().atDay(1).atStartOfDay().isBefore(to));
+                    })
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list history archive " + tableDirectory, e);
+        }
+    }
+
+    /**
+     * @return the month of a file named {@code <yyyy-MM>-<archived at>.harc}
+     */
+    private static Optional<YearMonth> month(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Optional.of(YearMonth.parse(name.substring(0, Math.min(7, name.length()))));
+        } catch (DateTimeParseException e) {
+            log.warn("Unexpected history archive file name {}, scanning it whole", file);
+            return Optional.empty();
+        }
+    }
+
+    private static LocalDateTime parse(String time) {
+        return time == null || time.isBlank() ? null : LocalDateTime.parse(time);
+    }
+}
@@ -0,0 +1,197 @@
+package com.hayden.functioncalling.service.history_archive;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.service.log_store.LogBlobStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Moves whole months of old history out of the history tables into {@link ArchiveFile}s, one file per table and
+ * month archived, so that the tables only hold the history that is still read row by row. A month is read and
+ * deleted in one repeatable read transaction, so the delete removes exactly the rows that were archived, and its
+ * file is only moved into place, synced, before the transaction commits; if the delete fails the file is removed
+ * again. The partitioned tables of the production changelog are never archived row by row: their months are
+ * archived by the {@link com.hayden.functioncalling.service.history.HistoryPartitionMaintenance} as it detaches or
+ * drops their partitions, see {@link #archivePartition}.
+ */
+@Component
+@Slf4j
+public class HistoryArchiver {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LogBlobStore logBlobStore;
+    private final CodeRunnerConfigProps.HistoryArchive config;
+    private final Path directory;
+
+    public HistoryArchiver(DataSource dataSource,
+                           PlatformTransactionManager transactionManager,
+                           LogBlobStore logBlobStore,
+                           CodeRunnerConfigProps props) {
+        this.config = props.getHistoryArchive();
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // with a fetch size in a transaction Postgres streams the month from a cursor
+        this.jdbcTemplate.setFetchSize(config.getFetchSize());
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.logBlobStore = logBlobStore;
+        this.directory = archiveDirectory(props);
+    }
+
+    static Path archiveDirectory(CodeRunnerConfigProps props) {
+        return props.getDataDirectory().resolve("archive");
+    }
+
+    @Scheduled(cron = "${code-runner.history-archive.cron:0 45 2 * * *}")
+    public void scheduledArchive() {
+        if (config.isEnabled()) {
+            archive(YearMonth.now().minusMonths(config.getArchiveAfterMonths()));
+        }
+    }
+
+    /**
+     * Archive the history created before a month.
+     *
+     * @return the number of rows archived
+     */
+    public synchronized long archive(YearMonth before) {
+        long archived = 0;
+        for (ArchivedHistory history : ArchivedHistory.values()) {
+            try {
+                if (isPartitioned(history.table)) {
+                    log.debug("Not archiving {} row by row, its partitions are archived as they expire", history.table);
+                    continue;
+                }
+                Timestamp oldest = jdbcTemplate.queryForObject(
+                        "SELECT min(created_time) FROM %s WHERE created_time < ?".formatted(history.table),
+                        Timestamp.class, Timestamp.valueOf(before.atDay(1).atStartOfDay()));
+                if (oldest == null) {
+                    continue;
+                }
+                for (YearMonth month = YearMonth.from(oldest.toLocalDateTime()); month.isBefore(before); month = month.plusMonths(1)) {
+                    archived += archiveMonth(history, month);
+                }
+            } catch (DataAccessException | UncheckedIOException | IllegalStateException e) {
+                log.error("Archiving {} failed", history.table, e);
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * Archive the month held by a partition of a history table, then run {@code remove}, which detaches or drops the
+     * partition, in the same transaction, so the partition is only gone once its file is in place.
+     *
+     * @return the number of rows archived
+     */
+    public synchronized long archivePartition(String table, String partition, YearMonth month, Runnable remove) {
+        ArchivedHistory history = Arrays.stream(ArchivedHistory.values())
+                .filter(h -> h.table.equals(table))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown history table: " + table));
+        return archiveMonth(history, month, partition, written -> remove.run());
+    }
+
+    private long archiveMonth(ArchivedHistory history, YearMonth month) {
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        return archiveMonth(history, month, history.table, written -> {
+            int deleted = jdbcTemplate.update("DELETE FROM %s WHERE created_time >= ? AND created_time < ?"
+                    .formatted(history.table), from, to);
+            if (deleted != written) {
+                throw new IllegalStateException("Archived %d rows of %s for %s but deleting removed %d"
+                        .formatted(written, history.table, month, deleted));
+            }
+        });
+    }
+
+    /**
+     * @param source the table or partition the month is read from
+     * @param remove removes the archived rows from the table, given how many were archived
+     */
+    private long archiveMonth(ArchivedHistory history, YearMonth month, String source, LongConsumer remove) {
+        Path tableDirectory = directory.resolve(history.table);
+        Path file = tableDirectory.resolve("%s-%d%s".formatted(month, System.currentTimeMillis(), ArchiveFile.EXTENSION));
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        try {
+            Long rows = transactionTemplate.execute(status -> {
+                Path tmp = null;
+                try {
+                    Files.createDirectories(tableDirectory);
+                    tmp = Files.createTempFile(tableDirectory, month.toString(), ".tmp");
+                    long written;
+                    try (ArchiveFile.Writer writer = new ArchiveFile.Writer(tmp, history.archiveColumns(),
+                            ArchivedHistory.CREATED_TIME, ArchivedHistory.REGISTRATION_ID)) {
+                        jdbcTemplate.query("SELECT %s FROM %s WHERE created_time >= ? AND created_time < ? ORDER BY created_time, id"
+                                        .formatted(history.selectColumns(), source),
+                                rs -> {
+                                    try {
+                                        writer.add(history.row(rs, logBlobStore));
+                                    } catch (IOException e) {
+                                        throw new UncheckedIOException(e);
+                                    }
+                                }, from, to);
+                        written = writer.rows();
+                    }
+                    if (written == 0) {
+                        Files.delete(tmp);
+                    } else {
+                        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                    remove.accept(written);
+                    return written;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to write history archive " + file, e);
+                } finally {
+                    if (tmp != null) {
+                        deleteQuietly(tmp);
+                    }
+                }
+            });
+            long archived = rows == null ? 0 : rows;
+            if (archived > 0) {
+                log.info("Archived {} rows of {} for {} to {}", archived, history.table, month, file);
+            }
+            return archived;
+        } catch (RuntimeException e) {
+            // the rows are still in the table, the next run archives them again
+            deleteQuietly(file);
+            throw e;
+        }
+    }
+
+    /**
+     * @return whether the table is partitioned, resolved through the search path like the queries that read it
+     */
+    private boolean isPartitioned(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass(?))",
+                Boolean.class, table));
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}", file, e);
+        }
+    }
+}
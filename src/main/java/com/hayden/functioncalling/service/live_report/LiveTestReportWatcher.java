@@ -0,0 +1,222 @@
+package com.hayden.functioncalling.service.live_report;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.entity.TestExecutionEntity;
+import com.hayden.functioncalling.model.TestFailureEvent;
+import com.hayden.functioncalling.service.process_builder.FailFastMonitor;
+import com.hayden.functioncalling.utils.JUnitXmlReportParser;
+import com.hayden.functioncalling.utils.TestFailureExtractor;
+import com.hayden.utilitymodule.stream.StreamUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reads the JUnit XML results of a test run while it runs. Gradle and Surefire write a TEST-*.xml file as each test
+ * class finishes, so the result directories of a registration, its test result paths and the results behind its
+ * Gradle HTML reports, are watched and every new or rewritten file is parsed as it appears. The failures are
+ * published to the {@link #failures subscribers} of the registration, each failed test once, and counted towards
+ * the fail-fast threshold of the run so it can be stopped on failures the output doesn't show. Directories that
+ * don't exist yet, e.g. after a clean, are watched once they do, and the directories are rescanned every poll in
+ * case an event was missed.
+ */
+@Service
+@Slf4j
+public class LiveTestReportWatcher {
+
+    private final CodeRunnerConfigProps.LiveReports config;
+
+    private final Sinks.Many<TestFailureEvent> failures = Sinks.many().multicast().directBestEffort();
+
+    public LiveTestReportWatcher(CodeRunnerConfigProps props) {
+        this.config = props.getLiveReports();
+    }
+
+    /**
+     * A watch over the results of one run, to close once the run is over.
+     */
+    public interface Watch extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * @param sessionId null for the failures of every session
+     * @return the failures of the runs of the registration from now on
+     */
+    public Flux<TestFailureEvent> failures(String registrationId, String sessionId) {
+        return failures.asFlux()
+                .filter(f -> f.registrationId().equals(registrationId))
+                .filter(f -> sessionId == null || sessionId.equals(f.sessionId()));
+    }
+
+    /**
+     * Start watching the results of a run that is about to start.
+     *
+     * @param failFast the fail-fast monitor of the run, null if it has none
+     */
+    public Watch watch(TestExecutionEntity entity, String executionId, String sessionId, FailFastMonitor failFast) {
+        List<Path> directories = resultDirectories(entity);
+        if (!config.isEnabled() || directories.isEmpty()) {
+            return () -> {
+            };
+        }
+        try {
+            RunWatch watch = new RunWatch(entity.getRegistrationId(), executionId, sessionId,
+                    config.isFailFast() ? failFast : null, directories);
+            watch.start();
+            return watch;
+        } catch (IOException e) {
+            log.warn("Cannot watch {} for test results", directories, e);
+            return () -> {
+            };
+        }
+    }
+
+    private static List<Path> resultDirectories(TestExecutionEntity entity) {
+        return Stream.concat(
+                        StreamUtil.toStream(entity.getTestResultPaths()).map(Paths::get),
+                        StreamUtil.toStream(entity.getReportingPaths())
+                                .map(Paths::get)
+                                .flatMap(report -> TestFailureExtractor.gradleResultsDirectory(report).stream()))
+                .map(p -> p.toAbsolutePath().normalize())
+                .distinct()
+                .toList();
+    }
+
+    private void publish(TestFailureEvent failure) {
+        // emissions have to be serialized, result files of parallel shards are read concurrently
+        synchronized (failures) {
+            failures.tryEmitNext(failure);
+        }
+    }
+
+    private class RunWatch implements Watch {
+
+        private record FileState(long size, long modifiedMillis) {
+        }
+
+        private final String registrationId;
+        private final String executionId;
+        private final String sessionId;
+        private final FailFastMonitor failFast;
+        private final List<Path> directories;
+
+        private final JUnitXmlReportParser parser = new JUnitXmlReportParser();
+        private final WatchService watchService;
+        private final Map<Path, WatchKey> registered = new HashMap<>();
+        private final Map<Path, FileState> read = new HashMap<>();
+        private final Set<String> failed = new HashSet<>();
+        // allow for file systems that only keep modification times to the second
+        private final long modifiedAfter = System.currentTimeMillis() - 2_000;
+
+        private volatile boolean running = true;
+        private Thread watcher;
+
+        RunWatch(String registrationId, String executionId, String sessionId, FailFastMonitor failFast,
+                 List<Path> directories) throws IOException {
+            this.registrationId = registrationId;
+            this.executionId = executionId;
+            this.sessionId = sessionId;
+            this.failFast = failFast;
+            this.directories = directories;
+            this.watchService = FileSystems.getDefault().newWatchService();
+        }
+
+        void start() {
+            watcher = Thread.ofVirtual()
+                    .name("test-report-watcher-" + executionId)
+                    .start(this::watch);
+        }
+
+        @Override
+        public void close() {
+            running = false;
+            try {
+                watchService.close();
+                watcher.join(Duration.ofSeconds(5));
+            } catch (IOException e) {
+                log.warn("Failed to close the test report watcher of {}", executionId, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void watch() {
+            try {
+                while (running) {
+                    register();
+                    scan();
+                    WatchKey key = watchService.poll(config.getPollMs(), TimeUnit.MILLISECONDS);
+                    while (key != null) {
+                        key.pollEvents();
+                        key.reset();
+                        key = watchService.poll();
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // stopped
+            }
+            // the results written since the last poll, up to the end of the run
+            scan();
+        }
+
+        private void register() {
+            for (Path directory : directories) {
+                WatchKey key = registered.get(directory);
+                if ((key == null || !key.isValid()) && Files.isDirectory(directory)) {
+                    try {
+                        registered.put(directory, directory.register(watchService,
+                                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+                    } catch (IOException e) {
+                        log.debug("Cannot watch {} yet", directory, e);
+                    }
+                }
+            }
+        }
+
+        private void scan() {
+            for (Path directory : directories) {
+                for (Path file : parser.resultFiles(directory, modifiedAfter)) {
+                    FileState state = state(file);
+                    if (state == null || state.equals(read.get(file))) {
+                        continue;
+                    }
+                    read.put(file, state);
+                    parser.parseFile(file).stream()
+                            .filter(r -> r.status() == JUnitXmlReportParser.TestStatus.FAILED)
+                            .filter(r -> failed.add(r.suite() + "#" + r.name()))
+                            .forEach(this::publish);
+                }
+            }
+            if (failFast != null) {
+                failFast.reportFailures(failed.size());
+            }
+        }
+
+        private void publish(JUnitXmlReportParser.TestCaseResult result) {
+            String message = Optional.ofNullable(result.failure())
+                    .map(JUnitXmlReportParser.Failure::describe)
+                    .orElse("Failed without a message");
+            LiveTestReportWatcher.this.publish(new TestFailureEvent(registrationId, executionId, sessionId,
+                    result.suite(), result.name(), message, LocalDateTime.now().toString()));
+        }
+
+        private static FileState state(Path file) {
+            try {
+                return new FileState(Files.size(file), Files.getLastModifiedTime(file).toMillis());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
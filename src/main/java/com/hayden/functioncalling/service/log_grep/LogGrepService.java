@@ -0,0 +1,219 @@
+package com.hayden.functioncalling.service.log_grep;
+
+import com.hayden.functioncalling.entity.CodeBuildEntity;
+import com.hayden.functioncalling.model.LogGrepMatch;
+import com.hayden.functioncalling.model.LogGrepResult;
+import com.hayden.functioncalling.service.registration.RegistrationCache;
+import com.hayden.functioncalling.utils.LogBloomSidecar;
+import com.hayden.functioncalling.utils.LogFiles;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Finds the lines of on-disk log files that contain a text as whole tokens. Each file's
+ * {@link LogBloomSidecar token filters} are consulted first, so only the blocks that might contain every token of the
+ * text are read, and files none of whose blocks do are never opened. Plain logs are scanned memory-mapped; gzipped
+ * logs have to be decompressed up to the last candidate block, but only the candidate lines are matched. Logs
+ * without filters are read whole.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LogGrepService {
+
+    public static final int DEFAULT_MAX_MATCHES = 100;
+    public static final int MAX_MATCHES = 1000;
+
+    private static final int MAX_LINE_CHARS = 2000;
+
+    /**
+     * Part of a log to read: bytes as written for plain logs, lines for compressed ones.
+     */
+    private record Range(long start, long end, long firstLine, long lastLine) {
+    }
+
+    private final RegistrationCache registrationCache;
+
+    /**
+     * @param directories where to look for log files, not recursively; by default the working directory, where
+     *                    execution logs go unless told otherwise, and the artifact output directories of the builds
+     */
+    public LogGrepResult grep(String text, List<String> directories, Integer maxMatches) {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Search text is required");
+        }
+        int limit = maxMatches == null ? DEFAULT_MAX_MATCHES : maxMatches;
+        if (limit < 1 || limit > MAX_MATCHES) {
+            throw new IllegalArgumentException("Maximum matches must be between 1 and %d, was %d".formatted(MAX_MATCHES, limit));
+        }
+
+        LogBloomSidecar.WholeTokenMatcher matcher = new LogBloomSidecar.WholeTokenMatcher(text);
+        long[] tokens = LogBloomSidecar.tokenHashes(text);
+        List<Path> files = logFiles(directories);
+
+        // one match past the limit tells whether the results were cut
+        List<LogGrepMatch> matches = new ArrayList<>();
+        int filesRead = 0;
+        for (Path file : files) {
+            if (matches.size() > limit) {
+                break;
+            }
+            try {
+                if (grepFile(file, matcher, tokens, matches, limit + 1)) {
+                    filesRead++;
+                }
+            } catch (IOException | UncheckedIOException e) {
+                log.warn("Failed to search log file {}", file, e);
+            }
+        }
+
+        boolean truncated = matches.size() > limit;
+        return new LogGrepResult(truncated ? matches.subList(0, limit) : matches, files.size(), filesRead, truncated);
+    }
+
+    /**
+     * @return whether the file had to be read
+     */
+    private boolean grepFile(Path file, LogBloomSidecar.WholeTokenMatcher matcher, long[] tokens,
+                             List<LogGrepMatch> matches, int limit) throws IOException {
+        List<Range> ranges = new ArrayList<>();
+        Optional<LogBloomSidecar.Index> filters = LogBloomSidecar.Index.read(file);
+        if (filters.isEmpty()) {
+            ranges.add(new Range(0, Long.MAX_VALUE, 1, Long.MAX_VALUE));
+        } else {
+            LogBloomSidecar.Index index = filters.get();
+            for (LogBloomSidecar.Block block : index.blocks()) {
+                if (index.mightContainAll(block, tokens)) {
+                    ranges.add(new Range(block.start(), block.end(), block.firstLine(),
+                            block.firstLine() + block.lineCount() - 1));
+                }
+            }
+            if (!index.coversWholeLog(file)) {
+                ranges.add(new Range(index.end(), Long.MAX_VALUE, index.lines() + 1, Long.MAX_VALUE));
+            }
+        }
+        if (ranges.isEmpty()) {
+            return false;
+        }
+
+        if (LogFiles.isCompressed(file)) {
+            scanCompressed(file, ranges, matcher, matches, limit);
+        } else {
+            scanMapped(file, ranges, matcher, matches, limit);
+        }
+        return true;
+    }
+
+    private static void scanMapped(Path file, List<Range> ranges, LogBloomSidecar.WholeTokenMatcher matcher,
+                                   List<LogGrepMatch> matches, int limit) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (Range range : ranges) {
+                long[] line = {range.firstLine()};
+                boolean more = LogFiles.scanMapped(channel, range.start(), range.end(), (window, start, end) -> {
+                    if (matcher.matches(window, start, end)) {
+                        byte[] bytes = new byte[end - start];
+                        window.get(start, bytes);
+                        String text = new String(bytes, StandardCharsets.UTF_8);
+                        matches.add(new LogGrepMatch(file.toString(), line[0], clip(text)));
+                        if (matches.size() >= limit) {
+                            return false;
+                        }
+                    }
+                    line[0]++;
+                    return true;
+                });
+                if (!more) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void scanCompressed(Path file, List<Range> ranges, LogBloomSidecar.WholeTokenMatcher matcher,
+                                       List<LogGrepMatch> matches, int limit) throws IOException {
+        Iterator<Range> remaining = ranges.iterator();
+        Range range = remaining.next();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(LogFiles.open(file), StandardCharsets.UTF_8))) {
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                while (lineNumber > range.lastLine()) {
+                    if (!remaining.hasNext()) {
+                        return;
+                    }
+                    range = remaining.next();
+                }
+                if (lineNumber >= range.firstLine() && matcher.matches(line)) {
+                    matches.add(new LogGrepMatch(file.toString(), lineNumber, clip(line)));
+                    if (matches.size() >= limit) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the log files of the directories, most recently written first
+     */
+    private List<Path> logFiles(List<String> directories) {
+        Set<Path> roots = new LinkedHashSet<>();
+        if (directories == null || directories.isEmpty()) {
+            roots.add(Paths.get("").toAbsolutePath());
+            registrationCache.builds().stream()
+                    .map(CodeBuildEntity::getArtifactOutputDirectory)
+                    .filter(Objects::nonNull)
+                    .map(d -> Paths.get(d).toAbsolutePath())
+                    .forEach(roots::add);
+        } else {
+            directories.stream().map(d -> Paths.get(d).toAbsolutePath()).forEach(roots::add);
+        }
+
+        List<Path> files = new ArrayList<>();
+        for (Path root : roots) {
+            if (!Files.isDirectory(root)) {
+                continue;
+            }
+            try (Stream<Path> listed = Files.list(root)) {
+                listed.filter(Files::isRegularFile)
+                        .filter(f -> isLogFile(f.getFileName().toString()))
+                        .forEach(files::add);
+            } catch (IOException e) {
+                log.warn("Failed to list log files of {}", root, e);
+            }
+        }
+        files.sort(Comparator.comparing(LogGrepService::lastModified).reversed());
+        return files;
+    }
+
+    private static boolean isLogFile(String name) {
+        return name.endsWith(".log") || name.endsWith(".log" + LogFiles.GZIP_EXTENSION);
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String clip(String line) {
+        return line.length() > MAX_LINE_CHARS ? line.substring(0, MAX_LINE_CHARS) + "..." : line;
+    }
+}
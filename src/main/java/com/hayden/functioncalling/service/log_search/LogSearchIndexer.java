@@ -0,0 +1,127 @@
+package com.hayden.functioncalling.service.log_search;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.service.log_store.LogBlobStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Fills the {@code search_vector} column of history rows in the background, so that writing history never waits
+ * for text search indexing. Rows still to be indexed are found through a partial index on the rows whose vector
+ * is null; they are indexed in batches, locked with SKIP LOCKED so that the indexers of several nodes share the
+ * work, and with the whole logs read back from the {@link LogBlobStore}.
+ */
+@Component
+@Slf4j
+public class LogSearchIndexer {
+
+    private record Pending(long id, Timestamp createdTime, String document) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LogBlobStore logBlobStore;
+    private final CodeRunnerConfigProps.LogSearch config;
+
+    public LogSearchIndexer(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            LogBlobStore logBlobStore,
+                            CodeRunnerConfigProps props) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.logBlobStore = logBlobStore;
+        this.config = props.getLogSearch();
+    }
+
+    @Scheduled(fixedDelayString = "${code-runner.log-search.index-interval-ms:2000}")
+    public synchronized void indexPending() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        for (SearchableHistory history : SearchableHistory.values()) {
+            try {
+                int indexed;
+                do {
+                    indexed = indexBatch(history);
+                } while (indexed == config.getIndexBatchSize());
+            } catch (DataAccessException e) {
+                log.error("Indexing {} for search failed", history.table, e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of rows indexed
+     */
+    private int indexBatch(SearchableHistory history) {
+        try {
+            Integer indexed = transactionTemplate.execute(status -> {
+                List<Pending> pending = pending(history, config.getIndexBatchSize());
+                jdbcTemplate.batchUpdate(update(history), pending, pending.size(), (ps, row) -> {
+                    ps.setString(1, config.getTextSearchConfig());
+                    ps.setString(2, row.document());
+                    ps.setLong(3, row.id());
+                    ps.setTimestamp(4, row.createdTime());
+                });
+                return pending.size();
+            });
+            return indexed == null ? 0 : indexed;
+        } catch (DataAccessException e) {
+            // typically a log whose vector is over the tsvector size limit, find it by indexing the rows one by one
+            log.warn("Indexing a batch of {} failed, indexing its rows one by one", history.table, e);
+            return indexOneByOne(history);
+        }
+    }
+
+    private int indexOneByOne(SearchableHistory history) {
+        int indexed = 0;
+        for (int i = 0; i < config.getIndexBatchSize(); i++) {
+            Pending[] current = new Pending[1];
+            try {
+                Boolean found = transactionTemplate.execute(status -> {
+                    List<Pending> pending = pending(history, 1);
+                    if (pending.isEmpty()) {
+                        return false;
+                    }
+                    current[0] = pending.getFirst();
+                    jdbcTemplate.update(update(history), config.getTextSearchConfig(), current[0].document(),
+                            current[0].id(), current[0].createdTime());
+                    return true;
+                });
+                if (!Boolean.TRUE.equals(found)) {
+                    break;
+                }
+            } catch (DataAccessException e) {
+                if (current[0] == null) {
+                    throw e;
+                }
+                log.warn("Cannot index {} row {} for search, it won't be found", history.table, current[0].id(), e);
+                // an empty vector keeps the row from being picked up again
+                jdbcTemplate.update("UPDATE %s SET search_vector = ''::tsvector WHERE id = ? AND created_time = ?"
+                        .formatted(history.table), current[0].id(), current[0].createdTime());
+            }
+            indexed++;
+        }
+        return indexed;
+    }
+
+    private List<Pending> pending(SearchableHistory history, int limit) {
+        String sql = "SELECT id, created_time, %s FROM %s WHERE search_vector IS NULL ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED"
+                .formatted(history.documentColumns(), history.table);
+        return jdbcTemplate.query(sql, (rs, i) -> new Pending(rs.getLong("id"), rs.getTimestamp("created_time"),
+                history.document(rs, logBlobStore, config.getMaxIndexedChars())), limit);
+    }
+
+    private static String update(SearchableHistory history) {
+        return "UPDATE %s SET search_vector = to_tsvector(?::regconfig, ?) WHERE id = ? AND created_time = ?"
+                .formatted(history.table);
+    }
+}
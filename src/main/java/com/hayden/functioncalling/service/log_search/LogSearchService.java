@@ -0,0 +1,138 @@
+package com.hayden.functioncalling.service.log_search;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.model.HistoryConnection;
+import com.hayden.functioncalling.model.HistoryCursor;
+import com.hayden.functioncalling.model.HistoryFilter;
+import com.hayden.functioncalling.model.LogSearchHit;
+import com.hayden.functioncalling.model.PipelineStageType;
+import com.hayden.functioncalling.service.history.HistoryQueryService;
+import com.hayden.functioncalling.service.log_store.LogBlobStore;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Full-text search over the logs of the history tables, through their {@code search_vector} columns and GIN
+ * indexes maintained by the {@link LogSearchIndexer}. Queries use the web search syntax: words, "quoted phrases",
+ * {@code or} and {@code -excluded} words. Results are paged like the history connections, newest first unless asked
+ * for oldest first, and only rows indexed so far are found.
+ */
+@Service
+public class LogSearchService {
+
+    private static final String HEADLINE_OPTIONS = "MaxFragments=3, MinWords=5, MaxWords=25, FragmentDelimiter=\" ... \"";
+
+    private record Match(long id, LocalDateTime createdTime, LogSearchHit hit, String document) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LogBlobStore logBlobStore;
+    private final CodeRunnerConfigProps.LogSearch config;
+
+    public LogSearchService(JdbcTemplate jdbcTemplate, LogBlobStore logBlobStore, CodeRunnerConfigProps props) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.logBlobStore = logBlobStore;
+        this.config = props.getLogSearch();
+    }
+
+    public HistoryConnection<LogSearchHit> search(PipelineStageType kind, String query, HistoryFilter filter,
+                                                  Integer first, String after, boolean oldestFirst) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query is required");
+        }
+        int size = first == null ? HistoryQueryService.DEFAULT_PAGE_SIZE : first;
+        if (size < 1 || size > HistoryQueryService.MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and %d, was %d"
+                    .formatted(HistoryQueryService.MAX_PAGE_SIZE, size));
+        }
+        SearchableHistory history = SearchableHistory.of(kind);
+        String tsQuery = SearchableHistory.tokenizable(query);
+
+        StringBuilder sql = new StringBuilder("""
+                SELECT id, created_time, %s AS run_id, registration_id, session_id, success, %s
+                FROM %s
+                WHERE search_vector @@ websearch_to_tsquery(?::regconfig, ?)
+                """.formatted(history.runIdColumn, history.documentColumns(), history.table));
+        List<Object> args = new ArrayList<>(List.of(config.getTextSearchConfig(), tsQuery));
+
+        if (filter != null) {
+            where(sql, args, "registration_id = ?", filter.registrationId());
+            where(sql, args, "session_id = ?", filter.sessionId());
+            where(sql, args, "success = ?", filter.success());
+            where(sql, args, "created_time >= ?", filter.createdAfterTime());
+            where(sql, args, "created_time < ?", filter.createdBeforeTime());
+            if (history == SearchableHistory.DEPLOY) {
+                where(sql, args, "is_running = ?", filter.running());
+            }
+        }
+        if (after != null && !after.isBlank()) {
+            HistoryCursor cursor = HistoryCursor.decode(after);
+            sql.append(" AND (created_time, id) %s (?, ?)".formatted(oldestFirst ? ">" : "<"));
+            args.add(cursor.createdTime());
+            args.add(cursor.id());
+        }
+        String direction = oldestFirst ? "ASC" : "DESC";
+        sql.append(" ORDER BY created_time %s, id %s LIMIT ?".formatted(direction, direction));
+        // one row past the page tells whether there is a next page without counting
+        args.add(size + 1);
+
+        List<Match> matches = jdbcTemplate.query(sql.toString(), (rs, i) -> {
+            LocalDateTime createdTime = rs.getTimestamp("created_time").toLocalDateTime();
+            return new Match(rs.getLong("id"), createdTime,
+                    new LogSearchHit(kind, rs.getString("run_id"), rs.getString("registration_id"),
+                            rs.getString("session_id"), (Boolean) rs.getObject("success"), createdTime.toString(), null),
+                    history.document(rs, logBlobStore, config.getMaxIndexedChars()));
+        }, args.toArray());
+
+        boolean hasNextPage = matches.size() > size;
+        List<Match> page = matches.stream().limit(size).toList();
+        List<String> snippets = headlines(tsQuery, page.stream().map(Match::document).toList());
+
+        List<HistoryConnection.Edge<LogSearchHit>> edges = new ArrayList<>(page.size());
+        for (int i = 0; i < page.size(); i++) {
+            Match match = page.get(i);
+            LogSearchHit hit = match.hit();
+            edges.add(new HistoryConnection.Edge<>(new HistoryCursor(match.createdTime(), match.id()).encode(),
+                    new LogSearchHit(hit.kind(), hit.runId(), hit.registrationId(), hit.sessionId(), hit.success(),
+                            hit.createdTime(), snippets.get(i))));
+        }
+        String endCursor = edges.isEmpty() ? null : edges.getLast().cursor();
+        return new HistoryConnection<>(edges, new HistoryConnection.PageInfo(endCursor, hasNextPage));
+    }
+
+    /**
+     * Highlight the matches in the documents of a page, in one round trip. The documents are the
+     * {@link SearchableHistory#tokenizable} ones that were indexed, so the snippets are matched the same way.
+     */
+    private List<String> headlines(String query, List<String> documents) {
+        if (documents.isEmpty()) {
+            return List.of();
+        }
+        String sql = """
+                SELECT ts_headline(?::regconfig, d.doc, websearch_to_tsquery(?::regconfig, ?), ?)
+                FROM unnest(?::text[]) WITH ORDINALITY AS d(doc, ord)
+                ORDER BY d.ord
+                """;
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setString(1, config.getTextSearchConfig());
+            ps.setString(2, config.getTextSearchConfig());
+            ps.setString(3, query);
+            ps.setString(4, HEADLINE_OPTIONS);
+            ps.setArray(5, connection.createArrayOf("text", documents.toArray()));
+            return ps;
+        }, (rs, i) -> rs.getString(1));
+    }
+
+    private static void where(StringBuilder sql, List<Object> args, String condition, Object value) {
+        if (value != null) {
+            sql.append(" AND ").append(condition);
+            args.add(value);
+        }
+    }
+}
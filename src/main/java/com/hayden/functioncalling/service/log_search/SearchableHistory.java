@@ -0,0 +1,96 @@
+package com.hayden.functioncalling.service.log_search;
+
+import com.hayden.functioncalling.model.PipelineStageType;
+import com.hayden.functioncalling.service.log_store.LogBlobStore;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
+
+/**
+ * The history tables that are searchable, and the log columns of each that make up its search document.
+ */
+enum SearchableHistory {
+
+    TEST(PipelineStageType.TEST, "test_execution_history", "execution_id",
+            List.of(new LogColumn("output", "output_hash"), new LogColumn("error", "error_hash"))),
+    BUILD(PipelineStageType.BUILD, "code_build_history", "build_id",
+            List.of(new LogColumn("output", "output_hash"), new LogColumn("error", "error_hash"),
+                    new LogColumn("build_log", "build_log_hash"))),
+    DEPLOY(PipelineStageType.DEPLOY, "code_deploy_history", "deploy_id",
+            List.of(new LogColumn("output", "output_hash"), new LogColumn("error", "error_hash"),
+                    new LogColumn("deploy_log", "deploy_log_hash")));
+
+    /**
+     * @param hash the column of the blob holding the whole log when the column only has its preview, null if the
+     *             log is always inline
+     */
+    record LogColumn(String column, String hash) {
+    }
+
+    final PipelineStageType kind;
+    final String table;
+    final String runIdColumn;
+    final List<LogColumn> logColumns;
+
+    SearchableHistory(PipelineStageType kind, String table, String runIdColumn, List<LogColumn> logColumns) {
+        this.kind = kind;
+        this.table = table;
+        this.runIdColumn = runIdColumn;
+        this.logColumns = logColumns;
+    }
+
+    static SearchableHistory of(PipelineStageType kind) {
+        return switch (kind) {
+            case TEST -> TEST;
+            case BUILD -> BUILD;
+            case DEPLOY -> DEPLOY;
+        };
+    }
+
+    /**
+     * @return the select list of the columns {@link #document} reads
+     */
+    String documentColumns() {
+        return logColumns.stream()
+                .map(c -> c.hash() == null ? c.column() : c.column() + ", " + c.hash())
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * The whole logs of the current row, each cut to {@code maxChars}, one after the other, made
+     * {@link #tokenizable}.
+     */
+    String document(ResultSet rs, LogBlobStore logBlobStore, int maxChars) throws SQLException {
+        StringJoiner document = new StringJoiner("\n");
+        for (LogColumn column : logColumns) {
+            String log = rs.getString(column.column());
+            if (column.hash() != null && logBlobStore != null) {
+                log = logBlobStore.resolve(log, rs.getString(column.hash()));
+            }
+            if (log != null && !log.isEmpty()) {
+                document.add(log.length() > maxChars ? log.substring(0, maxChars) : log);
+            }
+        }
+        return tokenizable(document.toString());
+    }
+
+    /**
+     * Postgres parses qualified names and paths such as {@code java.lang.IllegalStateException} as single host or
+     * file tokens, which a search for {@code IllegalStateException} wouldn't match. Replacing their separators with
+     * spaces in both documents and queries makes every segment a word, and a quoted name a phrase.
+     */
+    static String tokenizable(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            switch (chars[i]) {
+                case '.', '/', '\\', '$' -> chars[i] = ' ';
+                default -> {
+                }
+            }
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,142 @@
+package com.hayden.functioncalling.service.log_store;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content-addressed store for logs too large to keep inline in history rows. Each log is stored once, gzipped,
+ * under {@code dataDirectory/blobs/<first two hex digits>/<sha-256>.gz}, so identical outputs across runs share
+ * a single blob. History rows keep the hash, the size and a short preview, and the full log is only read back
+ * when a client asks for a single execution's output.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LogBlobStore {
+
+    private final CodeRunnerConfigProps props;
+
+    /**
+     * A log as persisted in a history row.
+     *
+     * @param preview   the whole log if it is short enough, otherwise its beginning
+     * @param hash      the blob holding the whole log, or null if the preview is the whole log
+     * @param sizeBytes the size of the whole log in UTF-8, or null if the preview is the whole log
+     */
+    public record StoredLog(String preview, String hash, Long sizeBytes) {
+
+        public static StoredLog inline(String content) {
+            return new StoredLog(content, null, null);
+        }
+    }
+
+    /**
+     * Externalize the log if it is longer than the preview, otherwise keep it inline.
+     */
+    public StoredLog store(String content) {
+        int previewChars = props.getLogStore().getPreviewChars();
+        if (content == null || !props.getLogStore().isEnabled() || content.length() <= previewChars) {
+            return StoredLog.inline(content);
+        }
+
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        try {
+            String hash = put(bytes);
+            String preview = content.substring(0, previewChars)
+                    + "%n... [truncated, full log is %d bytes]".formatted(bytes.length);
+            return new StoredLog(preview, hash, (long) bytes.length);
+        } catch (UncheckedIOException e) {
+            log.error("Failed to externalize log, keeping it inline", e);
+            return StoredLog.inline(content);
+        }
+    }
+
+    /**
+     * @return the whole log of a history field, reading it from the blob store if it was externalized
+     */
+    public String resolve(String preview, String hash) {
+        if (hash == null) {
+            return preview;
+        }
+        return get(hash).orElseGet(() -> {
+            log.warn("Log blob {} is missing, returning the preview", hash);
+            return preview;
+        });
+    }
+
+    /**
+     * Store the bytes unless a blob with the same content exists already.
+     *
+     * @return the SHA-256 of the bytes
+     */
+    public String put(byte[] bytes) {
+        String hash = sha256(bytes);
+        Path blob = blobPath(hash);
+        if (Files.exists(blob)) {
+            return hash;
+        }
+
+        try {
+            Files.createDirectories(blob.getParent());
+            Path tmp = Files.createTempFile(blob.getParent(), hash, ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                out.write(bytes);
+            }
+            try {
+                Files.move(tmp, blob, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // written concurrently with the same content
+                Files.deleteIfExists(tmp);
+            }
+            return hash;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write log blob " + hash, e);
+        }
+    }
+
+    public Optional<String> get(String hash) {
+        Path blob = blobPath(hash);
+        if (!Files.exists(blob)) {
+            return Optional.empty();
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(blob))) {
+            return Optional.of(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.error("Failed to read log blob {}", hash, e);
+            return Optional.empty();
+        }
+    }
+
+    Path blobPath(String hash) {
+        return props.getDataDirectory()
+                .resolve("blobs")
+                .resolve(hash.substring(0, 2))
+                .resolve(hash + ".gz");
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.hayden.functioncalling.service.process_builder;
+
+import org.apache.commons.collections4.CollectionUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Counts test failures in the live output of a process so the process can be stopped once a threshold is
+ * reached. A single monitor may be shared by several processes, e.g. the shards of one run, in which case
+ * their failures add up. Failures can also be counted from the result files written while the tests run, in which
+ * case whichever of the output and the results has seen more failures counts.
+ */
+public class FailFastMonitor {
+
+    /**
+     * Per-test failure lines of common runners: Gradle ("MyTest > testFoo() FAILED"), Maven Surefire
+     * ("testFoo(MyTest)  Time elapsed: 0.1 s  <<< FAILURE!") and verbose pytest ("test_foo.py::test_bar FAILED").
+     */
+    public static final List<String> DEFAULT_PATTERNS = List.of(
+            ".* > .* FAILED\\s*",
+            ".*<<< (FAILURE|ERROR)!\\s*",
+            ".*::\\S+ (FAILED|ERROR)\\b.*"
+    );
+
+    private final int threshold;
+    private final List<Pattern> patterns;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger reportedFailures = new AtomicInteger();
+
+    public FailFastMonitor(int threshold, List<String> patterns) {
+        this.threshold = threshold;
+        this.patterns = (CollectionUtils.isEmpty(patterns) ? DEFAULT_PATTERNS : patterns).stream()
+                .map(Pattern::compile)
+                .toList();
+    }
+
+    /**
+     * @return a monitor for the threshold, or null if fail-fast is disabled
+     */
+    public static FailFastMonitor of(Integer threshold, List<String> patterns) {
+        return threshold == null || threshold <= 0 ? null : new FailFastMonitor(threshold, patterns);
+    }
+
+    public void accept(String line) {
+        if (patterns.stream().anyMatch(p -> p.matcher(line).matches())) {
+            failures.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param failures the failed tests found in result files so far
+     */
+    public void reportFailures(int failures) {
+        reportedFailures.accumulateAndGet(failures, Math::max);
+    }
+
+    public int failureCount() {
+        return Math.max(failures.get(), reportedFailures.get());
+    }
+
+    public int threshold() {
+        return threshold;
+    }
+
+    public boolean isTripped() {
+        return failureCount() >= threshold;
+    }
+}
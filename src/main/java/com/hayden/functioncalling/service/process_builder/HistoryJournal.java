@@ -0,0 +1,320 @@
+package com.hayden.functioncalling.service.process_builder;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.entity.CodeBuildHistory;
+import com.hayden.functioncalling.entity.CodeDeployHistory;
+import com.hayden.functioncalling.entity.TestExecutionHistory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Crash-safe local journal for history records that have not reached the database yet.
+ * <p>
+ * Records are appended to memory-mapped segment files under {@code dataDirectory/journal}. Each segment starts
+ * with a header holding the offset up to which its records have been acknowledged as written to the database,
+ * followed by records of the form {@code [length][crc32][json]}; a zero length marks the end. Acknowledgement
+ * advances the header over the contiguous prefix of written records, and a segment is deleted once it is
+ * fully acknowledged and no longer appended to. On startup every record past a segment's acknowledged offset
+ * is outstanding again and is replayed.
+ */
+@Component
+@Slf4j
+public class HistoryJournal {
+
+    private static final int MAGIC = 0x484A524E;
+    private static final int HEADER_BYTES = 16;
+    private static final int ACKED_OFFSET = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final CodeRunnerConfigProps.WriteBehind config;
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+
+    private final NavigableMap<Long, Segment> segments = new TreeMap<>();
+    /**
+     * Appended records that are not acknowledged yet, mapped to whether they are currently held in memory.
+     */
+    private final NavigableMap<Position, Boolean> outstanding = new TreeMap<>();
+    private Segment current;
+
+    public HistoryJournal(CodeRunnerConfigProps props, ObjectMapper objectMapper) {
+        this.config = props.getWriteBehind();
+        this.directory = props.getDataDirectory().resolve("journal");
+        this.objectMapper = objectMapper.copy()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    /**
+     * Location of a record in the journal, ordered by append order.
+     */
+    public record Position(long segment, int start, int end) implements Comparable<Position> {
+        @Override
+        public int compareTo(Position o) {
+            return segment != o.segment ? Long.compare(segment, o.segment) : Integer.compare(start, o.start);
+        }
+    }
+
+    public record Entry(Position position, Object history) {
+    }
+
+    /**
+     * Map the existing segments and mark every record past their acknowledged offsets as outstanding.
+     */
+    public synchronized void open() {
+        try {
+            Files.createDirectories(directory);
+            List<Path> files;
+            try (Stream<Path> list = Files.list(directory)) {
+                files = list.filter(p -> p.getFileName().toString().matches("segment-\\d+\\.log"))
+                        .sorted()
+                        .toList();
+            }
+
+            for (Path file : files) {
+                Segment segment = Segment.map(file, segmentId(file), Files.size(file));
+                if (segment.buffer.getInt(0) != MAGIC) {
+                    log.warn("Ignoring journal segment {} with an invalid header", file);
+                    continue;
+                }
+                segments.put(segment.id, segment);
+                int offset = (int) segment.buffer.getLong(ACKED_OFFSET);
+                Position next;
+                while ((next = readPosition(segment, offset)) != null) {
+                    outstanding.put(next, false);
+                    offset = next.end();
+                }
+                segment.writeOffset = offset;
+            }
+
+            current = segments.isEmpty() ? newSegment(0, config.getJournalSegmentBytes()) : segments.lastEntry().getValue();
+
+            if (!outstanding.isEmpty()) {
+                log.info("Replaying {} journaled history records", outstanding.size());
+            }
+            segments.values().stream()
+                    .filter(s -> s != current && !hasOutstanding(s.id))
+                    .toList()
+                    .forEach(this::delete);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open history journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Append a record, returning where it was written. The record is outstanding until {@link #ack}ed.
+     */
+    public synchronized Position append(Object history) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(new JournalRecord(kind(history), objectMapper.valueToTree(history)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize history record", e);
+        }
+
+        int size = RECORD_HEADER_BYTES + json.length;
+        // keep room for the terminating zero length
+        if (current.writeOffset + size + Integer.BYTES > current.buffer.capacity()) {
+            Segment full = current;
+            current = newSegment(full.id + 1, Math.max(config.getJournalSegmentBytes(), HEADER_BYTES + size + Integer.BYTES));
+            if (!hasOutstanding(full.id)) {
+                delete(full);
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(json);
+        int start = current.writeOffset;
+        MappedByteBuffer buffer = current.buffer;
+        buffer.putInt(start + RECORD_HEADER_BYTES + json.length, 0);
+        buffer.put(start + RECORD_HEADER_BYTES, json);
+        buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+        // the length is written last, so a torn append reads as the end of the segment
+        buffer.putInt(start, json.length);
+        if (config.isJournalForce()) {
+            buffer.force();
+        }
+
+        current.writeOffset = start + size;
+        Position position = new Position(current.id, start, current.writeOffset);
+        outstanding.put(position, true);
+        return position;
+    }
+
+    /**
+     * Mark a record as written to the database.
+     */
+    public synchronized void ack(Position position) {
+        if (outstanding.remove(position) == null) {
+            return;
+        }
+        Segment segment = segments.get(position.segment());
+        if (segment == null) {
+            return;
+        }
+
+        Position first = outstanding.ceilingKey(new Position(segment.id, 0, 0));
+        boolean segmentDone = first == null || first.segment() != segment.id;
+        segment.buffer.putLong(ACKED_OFFSET, segmentDone ? segment.writeOffset : first.start());
+
+        if (segmentDone && segment != current) {
+            delete(segment);
+        }
+    }
+
+    /**
+     * Forget the in-memory copy of a record; it stays outstanding and is read back by {@link #loadEvicted}.
+     */
+    public synchronized void evict(Position position) {
+        outstanding.replace(position, false);
+    }
+
+    public synchronized boolean hasEvicted() {
+        return outstanding.containsValue(false);
+    }
+
+    /**
+     * Read back up to {@code max} outstanding records that are not held in memory, oldest first.
+     */
+    public synchronized List<Entry> loadEvicted(int max) {
+        List<Entry> loaded = new ArrayList<>();
+        for (Map.Entry<Position, Boolean> e : outstanding.entrySet()) {
+            if (loaded.size() >= max) {
+                break;
+            }
+            if (e.getValue()) {
+                continue;
+            }
+            Position position = e.getKey();
+            try {
+                loaded.add(new Entry(position, read(position)));
+                e.setValue(true);
+            } catch (IOException ex) {
+                log.error("Skipping unreadable journal record {}", position, ex);
+                loaded.add(new Entry(position, null));
+            }
+        }
+        loaded.stream()
+                .filter(entry -> entry.history() == null)
+                .forEach(entry -> ack(entry.position()));
+        return loaded.stream().filter(entry -> entry.history() != null).toList();
+    }
+
+    private Object read(Position position) throws IOException {
+        Segment segment = segments.get(position.segment());
+        byte[] json = new byte[position.end() - position.start() - RECORD_HEADER_BYTES];
+        segment.buffer.get(position.start() + RECORD_HEADER_BYTES, json);
+        JournalRecord record = objectMapper.readValue(json, JournalRecord.class);
+        return switch (record.kind()) {
+            case "execution" -> objectMapper.treeToValue(record.history(), TestExecutionHistory.class);
+            case "build" -> objectMapper.treeToValue(record.history(), CodeBuildHistory.class);
+            case "deploy" -> objectMapper.treeToValue(record.history(), CodeDeployHistory.class);
+            default -> {
+                log.error("Unknown journal record kind {} at {}", record.kind(), position);
+                yield null;
+            }
+        };
+    }
+
+    /**
+     * @return the position of the valid record at the offset, or null at the end of the segment or at a
+     * torn or corrupt record
+     */
+    private static Position readPosition(Segment segment, int offset) {
+        MappedByteBuffer buffer = segment.buffer;
+        if (offset + RECORD_HEADER_BYTES > buffer.capacity()) {
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        if (length <= 0 || offset + RECORD_HEADER_BYTES + length > buffer.capacity()) {
+            return null;
+        }
+        byte[] json = new byte[length];
+        buffer.get(offset + RECORD_HEADER_BYTES, json);
+        CRC32 crc = new CRC32();
+        crc.update(json);
+        if ((int) crc.getValue() != buffer.getInt(offset + Integer.BYTES)) {
+            log.warn("Journal segment {} has a corrupt record at {}, ignoring the rest of it", segment.id, offset);
+            return null;
+        }
+        return new Position(segment.id, offset, offset + RECORD_HEADER_BYTES + length);
+    }
+
+    private boolean hasOutstanding(long segmentId) {
+        Position first = outstanding.ceilingKey(new Position(segmentId, 0, 0));
+        return first != null && first.segment() == segmentId;
+    }
+
+    private Segment newSegment(long id, long size) {
+        try {
+            Segment segment = Segment.map(directory.resolve("segment-%020d.log".formatted(id)), id, size);
+            segment.buffer.putInt(0, MAGIC);
+            segment.buffer.putLong(ACKED_OFFSET, HEADER_BYTES);
+            segment.buffer.putInt(HEADER_BYTES, 0);
+            segment.writeOffset = HEADER_BYTES;
+            segments.put(id, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create journal segment " + id, e);
+        }
+    }
+
+    private void delete(Segment segment) {
+        segments.remove(segment.id);
+        try {
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            log.warn("Failed to delete acknowledged journal segment {}", segment.file, e);
+        }
+    }
+
+    private static long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length()));
+    }
+
+    private static String kind(Object history) {
+        return switch (history) {
+            case TestExecutionHistory ignored -> "execution";
+            case CodeBuildHistory ignored -> "build";
+            case CodeDeployHistory ignored -> "deploy";
+            default -> throw new IllegalArgumentException("Unknown history type: " + history.getClass());
+        };
+    }
+
+    private record JournalRecord(String kind, JsonNode history) {
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private int writeOffset;
+
+        private Segment(long id, Path file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        static Segment map(Path file, long id, long size) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                return new Segment(id, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            }
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package com.hayden.functioncalling.service.process_builder;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.entity.CodeBuildHistory;
+import com.hayden.functioncalling.entity.CodeDeployHistory;
+import com.hayden.functioncalling.entity.TestExecutionHistory;
+import com.hayden.functioncalling.repository.CodeBuildHistoryRepository;
+import com.hayden.functioncalling.repository.CodeDeployHistoryRepository;
+import com.hayden.functioncalling.repository.TestExecutionHistoryRepository;
+import com.hayden.functioncalling.service.log_store.LogBlobStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for execution, build and deploy history. Records are journaled and queued on the request
+ * thread and written by a single background writer in batches, once either {@code batchSize} records are queued
+ * or the oldest queued record has waited {@code flushIntervalMs}. Records stay readable by id until they are
+ * written. Records are queued with their whole logs, and the writer saves copies of them with the long
+ * ones moved to the {@link LogBlobStore}, so hashing and compressing them stays off the request thread and readers
+ * of a pending record never see a preview in place of a whole log.
+ * <p>
+ * While the database is unavailable batches are retried with back-off, and records that do not fit in the
+ * buffer are kept only in the {@link HistoryJournal} and read back once it drains. Whatever has not been
+ * written on shutdown, or before a crash, is replayed from the journal on the next start. So is a record the
+ * database rejects, e.g. for a missing partition, which is left unacknowledged rather than retried in a loop.
+ */
+@Component
+@Slf4j
+public class HistoryWriteBehind {
+
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final TestExecutionHistoryRepository executionHistoryRepository;
+    private final CodeBuildHistoryRepository buildHistoryRepository;
+    private final CodeDeployHistoryRepository deployHistoryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final HistoryJournal journal;
+    private final LogBlobStore logBlobStore;
+    private final CodeRunnerConfigProps.WriteBehind config;
+
+    private final BlockingDeque<Pending> queue;
+    private final Map<String, TestExecutionHistory> pendingExecutions = new ConcurrentHashMap<>();
+    private final Map<String, CodeBuildHistory> pendingBuilds = new ConcurrentHashMap<>();
+    private final Map<String, CodeDeployHistory> pendingDeploys = new ConcurrentHashMap<>();
+
+    private final Timer flushLag;
+    private final Timer flushDuration;
+    private final Counter failedRecords;
+
+    private volatile boolean running;
+    private volatile boolean journaling;
+    private Thread writer;
+
+    public HistoryWriteBehind(TestExecutionHistoryRepository executionHistoryRepository,
+                              CodeBuildHistoryRepository buildHistoryRepository,
+                              CodeDeployHistoryRepository deployHistoryRepository,
+                              PlatformTransactionManager transactionManager,
+                              HistoryJournal journal,
+                              LogBlobStore logBlobStore,
+                              CodeRunnerConfigProps props,
+                              ObjectProvider<MeterRegistry> meterRegistry) {
+        this.executionHistoryRepository = executionHistoryRepository;
+        this.buildHistoryRepository = buildHistoryRepository;
+        this.deployHistoryRepository = deployHistoryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.journal = journal;
+        this.logBlobStore = logBlobStore;
+        this.config = props.getWriteBehind();
+        this.queue = new LinkedBlockingDeque<>(config.getMaxPending());
+
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            this.flushLag = Timer.builder("code_runner.history.flush.lag")
+                    .description("Time history records wait in the write-behind buffer before being written")
+                    .register(registry);
+            this.flushDuration = Timer.builder("code_runner.history.flush.duration")
+                    .description("Time taken to write one batch of history records")
+                    .register(registry);
+            this.failedRecords = Counter.builder("code_runner.history.flush.failed")
+                    .description("History records that could not be written")
+                    .register(registry);
+            registry.gauge("code_runner.history.pending", queue, BlockingDeque::size);
+        } else {
+            this.flushLag = null;
+            this.flushDuration = null;
+            this.failedRecords = null;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (config.isJournal()) {
+            journal.open();
+            journaling = true;
+        }
+        running = true;
+        writer = Thread.ofPlatform()
+                .name("history-write-behind")
+                .daemon(true)
+                .start(this::writeLoop);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(Duration.ofSeconds(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Pending> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            log.info("Writing {} buffered history records before shutdown", remaining.size());
+            if (!write(remaining) && journaling) {
+                log.warn("Could not write {} history records before shutdown, they stay in the journal",
+                        remaining.size());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    public void enqueue(TestExecutionHistory history) {
+        pendingExecutions.put(history.getExecutionId(), history);
+        offer(history);
+    }
+
+    public void enqueue(CodeBuildHistory history) {
+        pendingBuilds.put(history.getBuildId(), history);
+        offer(history);
+    }
+
+    public void enqueue(CodeDeployHistory history) {
+        pendingDeploys.put(history.getDeployId(), history);
+        offer(history);
+    }
+
+    public Optional<TestExecutionHistory> pendingExecution(String executionId) {
+        return Optional.ofNullable(pendingExecutions.get(executionId));
+    }
+
+    public Optional<CodeBuildHistory> pendingBuild(String buildId) {
+        return Optional.ofNullable(pendingBuilds.get(buildId));
+    }
+
+    public Optional<CodeDeployHistory> pendingDeploy(String deployId) {
+        return Optional.ofNullable(pendingDeploys.get(deployId));
+    }
+
+    private void offer(Object history) {
+        HistoryJournal.Position position = null;
+        if (journaling) {
+            try {
+                position = journal.append(history);
+            } catch (RuntimeException e) {
+                log.error("Failed to journal history record, it is only buffered in memory", e);
+            }
+        }
+
+        Pending pending = new Pending(history, System.nanoTime(), position, false);
+        if (queue.offer(pending)) {
+            return;
+        }
+
+        if (position != null) {
+            // the journal keeps the record until the writer catches up
+            journal.evict(position);
+            forget(history);
+        } else {
+            // the writer is falling behind, apply back pressure rather than losing the record
+            log.warn("History write-behind buffer is full, writing on the calling thread");
+            if (!write(List.of(pending))) {
+                log.error("Failed to save history, the database is unavailable: {}", history);
+                forget(history);
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(config.getBatchSize());
+        long backoffMs = 0;
+        while (running) {
+            try {
+                if (backoffMs > 0) {
+                    Thread.sleep(backoffMs);
+                }
+
+                if (journaling && queue.isEmpty() && journal.hasEvicted()) {
+                    journal.loadEvicted(Math.min(config.getBatchSize(), queue.remainingCapacity()))
+                            .forEach(e -> queue.offer(new Pending(e.history(), System.nanoTime(), e.position(), true)));
+                }
+
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = first.enqueuedAtNanos() + TimeUnit.MILLISECONDS.toNanos(config.getFlushIntervalMs());
+                while (batch.size() < config.getBatchSize()) {
+                    queue.drainTo(batch, config.getBatchSize() - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= config.getBatchSize() || remaining <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                if (write(batch)) {
+                    backoffMs = 0;
+                } else {
+                    requeue(batch);
+                    backoffMs = Math.min(MAX_BACKOFF_MS, Math.max(config.getFlushIntervalMs(), backoffMs * 2));
+                    log.warn("Database unavailable, retrying {} history records in {} ms", batch.size(), backoffMs);
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                // stop() drains and writes whatever is left
+                requeue(batch);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Unexpected error in history write-behind", e);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * @return false if the database could not be reached and the batch should be retried later
+     */
+    private boolean write(List<Pending> batch) {
+        long start = System.nanoTime();
+        Set<Pending> rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+        try {
+            transactionTemplate.executeWithoutResult(status -> saveAll(batch));
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                return false;
+            }
+            log.warn("Failed to write batch of {} history records, retrying individually", batch.size(), e);
+            for (Pending pending : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> saveAll(List.of(pending)));
+                } catch (RuntimeException single) {
+                    rejected.add(pending);
+                    if (pending.position() != null) {
+                        log.error("Could not write history record, replaying it from the journal on next start: {}",
+                                pending.history(), single);
+                    } else {
+                        log.error("Dropping history record that could not be written: {}", pending.history(), single);
+                    }
+                    if (failedRecords != null) {
+                        failedRecords.increment();
+                    }
+                }
+            }
+        }
+
+        long now = System.nanoTime();
+        for (Pending pending : batch) {
+            if (pending.position() != null && !rejected.contains(pending)) {
+                journal.ack(pending.position());
+            }
+            forget(pending.history());
+            if (flushLag != null) {
+                flushLag.record(now - pending.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+        if (flushDuration != null) {
+            flushDuration.record(now - start, TimeUnit.NANOSECONDS);
+        }
+        return true;
+    }
+
+    private void saveAll(List<Pending> batch) {
+        List<TestExecutionHistory> executions = new ArrayList<>();
+        List<CodeBuildHistory> builds = new ArrayList<>();
+        List<CodeDeployHistory> deploys = new ArrayList<>();
+        for (Pending pending : batch) {
+            // a replayed record may have been written before the process stopped, but not acknowledged
+            switch (pending.history()) {
+                case TestExecutionHistory h when !(pending.replayed() && executionHistoryRepository.existsByExecutionId(h.getExecutionId())) ->
+                        executions.add(externalized(h));
+                case CodeBuildHistory h when !(pending.replayed() && buildHistoryRepository.existsByBuildId(h.getBuildId())) ->
+                        builds.add(externalized(h));
+                case CodeDeployHistory h when !(pending.replayed() && deployHistoryRepository.existsByDeployId(h.getDeployId())) ->
+                        deploys.add(externalized(h));
+                case TestExecutionHistory h -> log.debug("Journaled execution {} was already written", h.getExecutionId());
+                case CodeBuildHistory h -> log.debug("Journaled build {} was already written", h.getBuildId());
+                case CodeDeployHistory h -> log.debug("Journaled deploy {} was already written", h.getDeployId());
+                default -> throw new IllegalArgumentException("Unknown history type: " + pending.history().getClass());
+            }
+        }
+        if (!executions.isEmpty()) {
+            executionHistoryRepository.saveAll(executions);
+        }
+        if (!builds.isEmpty()) {
+            buildHistoryRepository.saveAll(builds);
+        }
+        if (!deploys.isEmpty()) {
+            deployHistoryRepository.saveAll(deploys);
+        }
+    }
+
+    /**
+     * @return a copy of the record with its whole logs replaced by their previews, hashes and sizes; the queued
+     * record is read through the pending maps until it's written, so it's left as it is. Logs that already have a
+     * hash, e.g. those of a record replayed from an older journal, are kept.
+     */
+    private TestExecutionHistory externalized(TestExecutionHistory history) {
+        TestExecutionHistory.TestExecutionHistoryBuilder copy = history.toBuilder();
+        if (history.getOutputHash() == null) {
+            LogBlobStore.StoredLog output = logBlobStore.store(history.getOutput());
+            copy.output(output.preview()).outputHash(output.hash()).outputSize(output.sizeBytes());
+        }
+        if (history.getErrorHash() == null) {
+            LogBlobStore.StoredLog error = logBlobStore.store(history.getError());
+            copy.error(error.preview()).errorHash(error.hash()).errorSize(error.sizeBytes());
+        }
+        return copy.build();
+    }
+
+    private CodeBuildHistory externalized(CodeBuildHistory history) {
+        CodeBuildHistory.CodeBuildHistoryBuilder copy = history.toBuilder();
+        if (history.getOutputHash() == null) {
+            LogBlobStore.StoredLog output = logBlobStore.store(history.getOutput());
+            copy.output(output.preview()).outputHash(output.hash()).outputSize(output.sizeBytes());
+        }
+        if (history.getErrorHash() == null) {
+            LogBlobStore.StoredLog error = logBlobStore.store(history.getError());
+            copy.error(error.preview()).errorHash(error.hash()).errorSize(error.sizeBytes());
+        }
+        if (history.getBuildLogHash() == null) {
+            LogBlobStore.StoredLog buildLog = logBlobStore.store(history.getBuildLog());
+            copy.buildLog(buildLog.preview()).buildLogHash(buildLog.hash()).buildLogSize(buildLog.sizeBytes());
+        }
+        return copy.build();
+    }
+
+    private CodeDeployHistory externalized(CodeDeployHistory history) {
+        CodeDeployHistory.CodeDeployHistoryBuilder copy = history.toBuilder();
+        if (history.getOutputHash() == null) {
+            LogBlobStore.StoredLog output = logBlobStore.store(history.getOutput());
+            copy.output(output.preview()).outputHash(output.hash()).outputSize(output.sizeBytes());
+        }
+        if (history.getErrorHash() == null) {
+            LogBlobStore.StoredLog error = logBlobStore.store(history.getError());
+            copy.error(error.preview()).errorHash(error.hash()).errorSize(error.sizeBytes());
+        }
+        if (history.getDeployLogHash() == null) {
+            LogBlobStore.StoredLog deployLog = logBlobStore.store(history.getDeployLog());
+            copy.deployLog(deployLog.preview()).deployLogHash(deployLog.hash()).deployLogSize(deployLog.sizeBytes());
+        }
+        return copy.build();
+    }
+
+    private void requeue(List<Pending> batch) {
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            Pending pending = batch.get(i);
+            if (queue.offerFirst(pending)) {
+                continue;
+            }
+            if (pending.position() != null) {
+                journal.evict(pending.position());
+                forget(pending.history());
+            } else {
+                log.error("Dropping history record, the write-behind buffer is full: {}", pending.history());
+                forget(pending.history());
+                if (failedRecords != null) {
+                    failedRecords.increment();
+                }
+            }
+        }
+    }
+
+    private void forget(Object history) {
+        switch (history) {
+            case TestExecutionHistory h -> pendingExecutions.remove(h.getExecutionId(), h);
+            case CodeBuildHistory h -> pendingBuilds.remove(h.getBuildId(), h);
+            case CodeDeployHistory h -> pendingDeploys.remove(h.getDeployId(), h);
+            default -> { }
+        }
+    }
+
+    private static boolean isTransient(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof TransientDataAccessException
+                    || t instanceof RecoverableDataAccessException
+                    || t instanceof DataAccessResourceFailureException
+                    || t instanceof CannotCreateTransactionException
+                    || t instanceof SQLTransientException
+                    || t instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Pending(Object history, long enqueuedAtNanos, HistoryJournal.Position position, boolean replayed) {
+    }
+}
@@ -0,0 +1,123 @@
+package com.hayden.functioncalling.service.process_builder;
+
+import com.hayden.functioncalling.utils.LogBloomSidecar;
+import com.hayden.functioncalling.utils.LogFiles;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the output of one process to its log file, opened once for the whole run and shared by the stdout and
+ * stderr readers. Files ending in {@code .gz} are gzipped as they are written. The file is appended to, so runs
+ * writing one after the other to the same file keep all output; for gzip each run adds a member, which readers
+ * decompress as one stream.
+ * <p>
+ * When asked to, the token filters of the log are built as it is written and kept in its {@link LogBloomSidecar}.
+ */
+@Slf4j
+public class LogFileWriter implements AutoCloseable {
+
+    /**
+     * How often buffered lines are pushed to the file, so the log can be followed while the process runs.
+     */
+    private static final long FLUSH_INTERVAL_MS = 200;
+
+    private final Path path;
+    private final Writer writer;
+    private LogBloomSidecar.Writer filters;
+    private long lastFlush = System.currentTimeMillis();
+
+    private LogFileWriter(Path path, Writer writer, LogBloomSidecar.Writer filters) {
+        this.path = path;
+        this.writer = writer;
+        this.filters = filters;
+    }
+
+    public static LogFileWriter open(Path path) throws IOException {
+        return open(path, false);
+    }
+
+    /**
+     * @param filter build the token filters of the log next to it
+     */
+    public static LogFileWriter open(Path path, boolean filter) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        LogBloomSidecar.Writer filters = null;
+        if (filter) {
+            try {
+                filters = LogBloomSidecar.Writer.open(path, System.lineSeparator()).orElse(null);
+            } catch (IOException e) {
+                log.warn("Cannot build the token filters of {}, searches will read all of it", path, e);
+            }
+        }
+        OutputStream out = Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (LogFiles.isCompressed(path)) {
+            out = new GZIPOutputStream(out, 64 * 1024, true);
+        }
+        return new LogFileWriter(path, new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024),
+                filters);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public synchronized void writeLine(String line) {
+        try {
+            writer.write(line);
+            writer.write(System.lineSeparator());
+            filter(line);
+            long now = System.currentTimeMillis();
+            if (now - lastFlush >= FLUSH_INTERVAL_MS) {
+                writer.flush();
+                lastFlush = now;
+            }
+        } catch (IOException e) {
+            log.error("Error writing to file: {}", path, e);
+        }
+    }
+
+    private void filter(String line) {
+        if (filters == null) {
+            return;
+        }
+        try {
+            filters.addLine(line);
+        } catch (IOException e) {
+            // the blocks written so far stay valid, searches read the rest of the log
+            log.warn("Stopped building the token filters of {}", path, e);
+            closeFilters();
+        }
+    }
+
+    private void closeFilters() {
+        try {
+            filters.close();
+        } catch (IOException e) {
+            log.warn("Failed to close the token filters of {}", path, e);
+        }
+        filters = null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            if (filters != null) {
+                closeFilters();
+            }
+        }
+    }
+}
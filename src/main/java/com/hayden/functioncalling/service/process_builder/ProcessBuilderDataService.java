@@ -6,6 +6,7 @@ import com.hayden.functioncalling.entity.TestExecutionHistory;
 import com.hayden.functioncalling.repository.CodeBuildHistoryRepository;
 import com.hayden.functioncalling.repository.CodeDeployHistoryRepository;
 import com.hayden.functioncalling.repository.TestExecutionHistoryRepository;
+import com.hayden.functioncalling.service.log_store.LogBlobStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -22,24 +23,37 @@ public class ProcessBuilderDataService {
 
     private final TestExecutionHistoryRepository executionHistoryRepository;
 
+    private final HistoryWriteBehind historyWriteBehind;
+
+    private final LogBlobStore logBlobStore;
 
     public void saveExecutionHistory(String registrationId, String executionId, String command, String arguments,
                                      String output, String error, boolean success, int exitCode, int executionTimeMs, String sessionId) {
         try {
+            LogBlobStore.StoredLog storedOutput = storeLog(output);
+            LogBlobStore.StoredLog storedError = storeLog(error);
             TestExecutionHistory history = TestExecutionHistory.builder()
                     .registrationId(registrationId)
                     .sessionId(sessionId)
                     .executionId(executionId)
                     .command(command)
                     .arguments(arguments)
-                    .output(output)
-                    .error(error)
+                    .output(storedOutput.preview())
+                    .outputHash(storedOutput.hash())
+                    .outputSize(storedOutput.sizeBytes())
+                    .error(storedError.preview())
+                    .errorHash(storedError.hash())
+                    .errorSize(storedError.sizeBytes())
                     .success(success)
                     .exitCode(exitCode)
                     .executionTimeMs(executionTimeMs)
                     .build();
 
-            executionHistoryRepository.save(history);
+            if (isWriteBehind()) {
+                historyWriteBehind.enqueue(history);
+            } else {
+                executionHistoryRepository.save(history);
+            }
         } catch (Exception e) {
             log.error("Failed to save execution history", e);
         }
@@ -50,23 +64,36 @@ public class ProcessBuilderDataService {
                                 String sessionId, List<String> artifactPaths, String artifactOutputDirectory,
                                 String buildLog) {
         try {
+            LogBlobStore.StoredLog storedOutput = storeLog(output);
+            LogBlobStore.StoredLog storedError = storeLog(error);
+            LogBlobStore.StoredLog storedBuildLog = storeLog(buildLog);
             CodeBuildHistory history = CodeBuildHistory.builder()
                     .registrationId(registrationId)
                     .sessionId(sessionId)
                     .buildId(buildId)
                     .buildCommand(buildCommand)
                     .arguments(arguments)
-                    .output(output)
-                    .error(error)
+                    .output(storedOutput.preview())
+                    .outputHash(storedOutput.hash())
+                    .outputSize(storedOutput.sizeBytes())
+                    .error(storedError.preview())
+                    .errorHash(storedError.hash())
+                    .errorSize(storedError.sizeBytes())
                     .success(success)
                     .exitCode(exitCode)
                     .executionTimeMs(executionTimeMs)
                     .artifactPaths(artifactPaths)
                     .artifactOutputDirectory(artifactOutputDirectory)
-                    .buildLog(buildLog)
+                    .buildLog(storedBuildLog.preview())
+                    .buildLogHash(storedBuildLog.hash())
+                    .buildLogSize(storedBuildLog.sizeBytes())
                     .build();
 
-            buildHistoryRepository.save(history);
+            if (isWriteBehind()) {
+                historyWriteBehind.enqueue(history);
+            } else {
+                buildHistoryRepository.save(history);
+            }
         } catch (Exception e) {
             log.error("Failed to save build history", e);
         }
@@ -77,27 +104,54 @@ public class ProcessBuilderDataService {
                                   String sessionId, String deployLog, String healthCheckStatus,
                                   Integer healthCheckResponseTime, boolean isRunning, String deploymentUrl) {
         try {
+            LogBlobStore.StoredLog storedOutput = storeLog(output);
+            LogBlobStore.StoredLog storedError = storeLog(error);
+            LogBlobStore.StoredLog storedDeployLog = storeLog(deployLog);
             CodeDeployHistory history = CodeDeployHistory.builder()
                     .registrationId(registrationId)
                     .sessionId(sessionId)
                     .deployId(deployId)
                     .deployCommand(deployCommand)
                     .arguments(arguments)
-                    .output(output)
-                    .error(error)
+                    .output(storedOutput.preview())
+                    .outputHash(storedOutput.hash())
+                    .outputSize(storedOutput.sizeBytes())
+                    .error(storedError.preview())
+                    .errorHash(storedError.hash())
+                    .errorSize(storedError.sizeBytes())
                     .success(success)
                     .exitCode(exitCode)
                     .executionTimeMs(executionTimeMs)
-                    .deployLog(deployLog)
+                    .deployLog(storedDeployLog.preview())
+                    .deployLogHash(storedDeployLog.hash())
+                    .deployLogSize(storedDeployLog.sizeBytes())
                     .healthCheckStatus(healthCheckStatus)
                     .healthCheckResponseTimeMs(healthCheckResponseTime)
                     .isRunning(isRunning)
                     .deploymentUrl(deploymentUrl)
                     .build();
 
-            deployHistoryRepository.save(history);
+            if (isWriteBehind()) {
+                historyWriteBehind.enqueue(history);
+            } else {
+                deployHistoryRepository.save(history);
+            }
         } catch (Exception e) {
             log.error("Failed to save deploy history", e);
         }
     }
+
+    /**
+     * @return the log as it is when it's written behind, the writer moves it to the blob store off this thread
+     */
+    private LogBlobStore.StoredLog storeLog(String content) {
+        if (isWriteBehind() || logBlobStore == null) {
+            return LogBlobStore.StoredLog.inline(content);
+        }
+        return logBlobStore.store(content);
+    }
+
+    private boolean isWriteBehind() {
+        return historyWriteBehind != null && historyWriteBehind.isEnabled();
+    }
 }
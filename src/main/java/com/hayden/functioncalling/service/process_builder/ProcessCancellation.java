@@ -0,0 +1,51 @@
+package com.hayden.functioncalling.service.process_builder;
+
+/**
+ * Stops the processes started on behalf of a unit of work, e.g. a pipeline stage, without interrupting the threads
+ * doing that work: {@link com.hayden.functioncalling.service.process_builder.exec.ProcessBuilderExecutionService}
+ * checks it while it waits on a process and destroys only that process. A cancellation is bound to the thread
+ * doing the work and inherited by the threads it starts, so the shards of a test run see the cancellation of their
+ * stage.
+ */
+public class ProcessCancellation {
+
+    private static final InheritableThreadLocal<ProcessCancellation> CURRENT = new InheritableThreadLocal<>();
+
+    private volatile boolean cancelled;
+
+    /**
+     * @return the cancellation bound to the current thread, or null if the work there can't be cancelled
+     */
+    public static ProcessCancellation current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Bind this cancellation to the current thread until the returned scope is closed.
+     */
+    public Scope bind() {
+        ProcessCancellation previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
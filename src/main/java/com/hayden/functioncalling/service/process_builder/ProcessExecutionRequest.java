@@ -8,7 +8,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class ProcessExecutionRequest {
     private String command;
     private String arguments;
@@ -20,6 +20,10 @@ public class ProcessExecutionRequest {
     private File outputFile;
     private File errorFile;
     private Integer maxWaitForPatternSeconds;
+    /**
+     * Stops the process once enough test failures were seen in its output, if set.
+     */
+    private FailFastMonitor failFast;
 
     public Integer numWaitSeconds() {
         return Optional.ofNullable(getMaxWaitForPatternSeconds())
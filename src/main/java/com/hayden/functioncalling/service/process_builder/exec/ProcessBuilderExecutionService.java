@@ -1,7 +1,12 @@
 package com.hayden.functioncalling.service.process_builder.exec;
 
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.service.process_builder.FailFastMonitor;
+import com.hayden.functioncalling.service.process_builder.LogFileWriter;
+import com.hayden.functioncalling.service.process_builder.ProcessCancellation;
 import com.hayden.functioncalling.service.process_builder.ProcessExecutionRequest;
 import com.hayden.functioncalling.service.process_builder.ProcessExecutionResult;
+import com.hayden.functioncalling.utils.LogFiles;
 import io.micrometer.common.util.StringUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -10,6 +15,8 @@ import org.jetbrains.annotations.NotNull;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
@@ -24,6 +31,14 @@ import java.util.stream.Collectors;
 public class ProcessBuilderExecutionService {
 
     private final ExecutorService runnerTaskExecutor;
+    private final CodeRunnerConfigProps props;
+
+    /**
+     * @return where output requested to go to the file is actually written, gzipped if log compression is on
+     */
+    public Path logFilePath(File outputFile) {
+        return LogFiles.withCompression(outputFile.toPath(), props.getLogs().isCompress());
+    }
 
     public ProcessExecutionResult executeProcess(ProcessExecutionRequest request) throws IOException, InterruptedException {
         return executeProcessWithPatternWait(request, false, true);
@@ -47,10 +62,13 @@ public class ProcessBuilderExecutionService {
             processBuilder.directory(new File(request.getWorkingDirectory()));
         }
 
+        Path logFile = Optional.ofNullable(request.getOutputFile()).map(this::logFilePath).orElse(null);
+
         Process process = processBuilder.start();
 
         try(BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
+            BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
+            LogFileWriter fileWriter = logFile != null ? LogFileWriter.open(logFile, props.getLogs().isTokenFilters()) : null) {
 
             PatternsChecked checkPatterns = new PatternsChecked();
 
@@ -60,8 +78,8 @@ public class ProcessBuilderExecutionService {
 
             LogConsumer outputConsumer = new LogConsumer(matchedLogs);
             LogConsumer errorConsumer = new LogConsumer(matchedLogs);
-            var outputThread = execThread(request, reader, new LogAppender.LineAppender(), outputConsumer);
-            var errorThread = execThread(request, errorReader, new LogAppender.ErrorAppender(), errorConsumer);
+            var outputThread = execThread(request, reader, new LogAppender.LineAppender(), outputConsumer, fileWriter);
+            var errorThread = execThread(request, errorReader, new LogAppender.ErrorAppender(), errorConsumer, fileWriter);
 
             CompletableFuture<Void> outputFuture = CompletableFuture.runAsync(outputThread, runnerTaskExecutor);
             CompletableFuture<Void> errorFuture = CompletableFuture.runAsync(errorThread, runnerTaskExecutor);
@@ -74,9 +92,30 @@ public class ProcessBuilderExecutionService {
 
             List<NextLog> fullLog = new ArrayList<>();
 
+            FailFastMonitor failFast = request.getFailFast();
+            boolean failFastTripped = false;
+            ProcessCancellation cancellation = ProcessCancellation.current();
+            boolean cancelled = false;
+
             while (System.currentTimeMillis() < endTime && process.isAlive() && checkPatterns.isNotComplete()) {
 
-                var next = matchedLogs.poll(500, TimeUnit.MILLISECONDS);
+                if (cancellation != null && cancellation.isCancelled()) {
+                    // e.g. a pipeline stage after another stage failed
+                    log.info("Stopping {}, it was cancelled", commandParts.getFirst());
+                    cancelled = true;
+                    destroyProcessTree(process);
+                    break;
+                }
+
+                NextLog next;
+                try {
+                    next = matchedLogs.poll(500, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    // don't leave the process running
+                    log.info("Stopping {} on interrupt", commandParts.getFirst());
+                    destroyProcessTree(process);
+                    throw e;
+                }
                 if (next != null)
                     nextValues.add(next);
 
@@ -94,6 +133,13 @@ public class ProcessBuilderExecutionService {
                     error = "Failure pattern detected in output: %s".formatted(checkPatterns.failure);
                     break;
                 }
+
+                if (failFast != null && failFast.isTripped()) {
+                    log.info("Stopping {} after {} test failures", commandParts.getFirst(), failFast.failureCount());
+                    failFastTripped = true;
+                    destroyProcessTree(process);
+                    break;
+                }
             }
 
             try {
@@ -134,7 +180,14 @@ public class ProcessBuilderExecutionService {
             int executionTimeMs = (int)(System.currentTimeMillis() - startTime);
             boolean success;
 
-            if (checkPatterns.failureFound()) {
+            if (cancelled) {
+                error = "Cancelled";
+                success = false;
+            } else if (failFastTripped) {
+                error = "Stopped after %d test failures (fail-fast threshold %d)"
+                        .formatted(failFast.failureCount(), failFast.threshold());
+                success = false;
+            } else if (checkPatterns.failureFound()) {
                 if (checkPatterns.patternFound()) {
                     error = "Process completed but found some failures.";
                 } else {
@@ -161,13 +214,13 @@ public class ProcessBuilderExecutionService {
                 success = checkPatterns.isSuccess();
             }
 
-            if (request.getOutputFile() != null && error != null) {
-                writeToFile(request.getOutputFile(), "ERROR: " + error);
+            if (fileWriter != null && error != null) {
+                fileWriter.writeLine("ERROR: " + error);
             } else if (error != null) {
                 checkPatterns.failure.add(error);
             }
 
-            boolean didWriteToFile = request.getOutputFile() != null && request.getOutputFile().exists();
+            boolean didWriteToFile = logFile != null && Files.exists(logFile);
 
             String matchedOutput = String.join("\n", checkPatterns.pattern);
 
@@ -189,7 +242,7 @@ public class ProcessBuilderExecutionService {
                     .didWriteToFile(didWriteToFile)
                     .exitCode(exitCode)
                     .executionTimeMs(executionTimeMs)
-                    .logPath(Optional.ofNullable(request.getOutputFile()).map(File::toPath).orElse(null))
+                    .logPath(logFile)
                     .process(process)
                     .build();
         }
@@ -288,38 +341,39 @@ public class ProcessBuilderExecutionService {
 
         void append(ProcessExecutionRequest request,
                     String line,
-                    LogConsumer fullLog);
+                    LogConsumer fullLog,
+                    LogFileWriter fileWriter);
 
         record LineAppender() implements LogAppender {
             @Override
-            public void append(ProcessExecutionRequest request, String line, LogConsumer fullLog) {
+            public void append(ProcessExecutionRequest request, String line, LogConsumer fullLog, LogFileWriter fileWriter) {
                 String nextLog = line;
                 if (request.getOutputRegex() != null && !request.getOutputRegex().isEmpty()) {
                     if (request.getOutputRegex().stream().anyMatch(nextLog::matches)) {
                         fullLog.append(nextLog);
                     }
                 } else {
-                    if (request.getOutputFile() == null)
+                    if (fileWriter == null)
                         fullLog.append(nextLog);
                     else
-                        writeToFile(request.getOutputFile(), nextLog);
+                        fileWriter.writeLine(nextLog);
                 }
             }
         }
 
         record ErrorAppender() implements LogAppender {
             @Override
-            public void append(ProcessExecutionRequest request, String line, LogConsumer fullLog) {
+            public void append(ProcessExecutionRequest request, String line, LogConsumer fullLog, LogFileWriter fileWriter) {
                 final String nextErr = line;
                 if (request.getOutputRegex() != null && !request.getOutputRegex().isEmpty()) {
                     if (request.getOutputRegex().stream().anyMatch(nextErr::matches)) {
                         fullLog.appendErr(nextErr);
                     }
                 } else {
-                    if (request.getErrorFile() == null)
+                    if (request.getErrorFile() == null || fileWriter == null)
                         fullLog.appendErr(nextErr);
                     else
-                        writeToFile(request.getOutputFile(), "ERROR: " + nextErr);
+                        fileWriter.writeLine("ERROR: " + nextErr);
                 }
             }
         }
@@ -329,12 +383,16 @@ public class ProcessBuilderExecutionService {
     private @NotNull Runnable execThread(ProcessExecutionRequest request,
                                          BufferedReader logReader,
                                          LogAppender fullLog,
-                                         LogConsumer logConsumer) {
+                                         LogConsumer logConsumer,
+                                         LogFileWriter fileWriter) {
         return () -> {
             try {
                 String line;
                 while ((line = logReader.readLine()) != null) {
-                    fullLog.append(request, line, logConsumer);
+                    if (request.getFailFast() != null) {
+                        request.getFailFast().accept(line);
+                    }
+                    fullLog.append(request, line, logConsumer, fileWriter);
                 }
             } catch (IOException e) {
                 log.error("Error reading process output", e);
@@ -361,17 +419,12 @@ public class ProcessBuilderExecutionService {
         }
     }
 
-    private static void writeToFile(File outputFile, String content) {
-        try {
-            if (!outputFile.getParentFile().exists()) {
-                outputFile.getParentFile().mkdirs();
-            }
-            try (FileWriter writer = new FileWriter(outputFile, true)) {
-                writer.write(content + System.lineSeparator());
-            }
-        } catch (IOException e) {
-            log.error("Error writing to file: {}", outputFile.getAbsolutePath(), e);
-        }
+    /**
+     * Kill the process and everything it started, e.g. the forked test JVMs or pytest workers.
+     */
+    private static void destroyProcessTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
     }
 
 }
@@ -0,0 +1,223 @@
+package com.hayden.functioncalling.service.registration;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.entity.CodeBuildEntity;
+import com.hayden.functioncalling.entity.CodeDeployEntity;
+import com.hayden.functioncalling.entity.TestExecutionEntity;
+import com.hayden.functioncalling.repository.CodeBuildRepository;
+import com.hayden.functioncalling.repository.CodeDeployRepository;
+import com.hayden.functioncalling.repository.TestExecutionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of the test, build and deploy registrations, loaded at startup. Changes to registration
+ * entities evict them through {@link RegistrationEntityListener} once committed, and are announced with a Postgres
+ * NOTIFY so that the {@link RegistrationChangeListener} of every other node evicts them as well.
+ * <p>
+ * Cached entities are detached and shared; callers only read them, and updates load their own copy from the
+ * repository.
+ */
+@Component
+@Slf4j
+public class RegistrationCache {
+
+    public enum Kind {
+        EXECUTION, BUILD, DEPLOY
+    }
+
+    private final CodeRunnerConfigProps.RegistrationCaching config;
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Region<TestExecutionEntity> executions;
+    private final Region<CodeBuildEntity> builds;
+    private final Region<CodeDeployEntity> deploys;
+
+    public RegistrationCache(CodeRunnerConfigProps props,
+                             JdbcTemplate jdbcTemplate,
+                             TestExecutionRepository executionRepository,
+                             CodeBuildRepository buildRepository,
+                             CodeDeployRepository deployRepository) {
+        this.config = props.getRegistrationCache();
+        this.jdbcTemplate = jdbcTemplate;
+        this.executions = new Region<>(executionRepository::findByRegistrationId, executionRepository::findAll,
+                TestExecutionEntity::getRegistrationId);
+        this.builds = new Region<>(buildRepository::findByRegistrationId, buildRepository::findAll,
+                CodeBuildEntity::getRegistrationId);
+        this.deploys = new Region<>(deployRepository::findByRegistrationId, deployRepository::findAll,
+                CodeDeployEntity::getRegistrationId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        log.info("Cached {} test, {} build and {} deploy registrations",
+                executions().size(), builds().size(), deploys().size());
+    }
+
+    public Optional<TestExecutionEntity> execution(String registrationId) {
+        return executions.get(registrationId);
+    }
+
+    public Optional<CodeBuildEntity> build(String registrationId) {
+        return builds.get(registrationId);
+    }
+
+    public Optional<CodeDeployEntity> deploy(String registrationId) {
+        return deploys.get(registrationId);
+    }
+
+    public List<TestExecutionEntity> executions() {
+        return executions.all();
+    }
+
+    public List<CodeBuildEntity> builds() {
+        return builds.all();
+    }
+
+    public List<CodeDeployEntity> deploys() {
+        return deploys.all();
+    }
+
+    /**
+     * A registration was created, updated or deleted on this node: evict it here and tell the other nodes.
+     */
+    public void changed(Kind kind, String registrationId) {
+        evict(kind, registrationId);
+        if (!config.isEnabled() || config.getNotifyChannel() == null) {
+            return;
+        }
+        try {
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null,
+                    config.getNotifyChannel(), String.join(":", nodeId, kind.name(), registrationId));
+        } catch (DataAccessException e) {
+            log.warn("Could not announce change of {} registration {}", kind, registrationId, e);
+        }
+    }
+
+    /**
+     * Apply a change announced on the notify channel, ignoring the ones this node sent itself.
+     */
+    void onNotification(String payload) {
+        String[] parts = payload.split(":", 3);
+        if (parts.length != 3) {
+            log.warn("Ignoring malformed registration change notification {}", payload);
+            return;
+        }
+        if (parts[0].equals(nodeId)) {
+            return;
+        }
+        try {
+            evict(Kind.valueOf(parts[1]), parts[2]);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring registration change notification of unknown kind {}", payload);
+        }
+    }
+
+    public void evict(Kind kind, String registrationId) {
+        region(kind).evict(registrationId);
+    }
+
+    /**
+     * Forget everything, for when changes may have been missed.
+     */
+    public void evictAll() {
+        executions.evictAll();
+        builds.evictAll();
+        deploys.evictAll();
+    }
+
+    private Region<?> region(Kind kind) {
+        return switch (kind) {
+            case EXECUTION -> executions;
+            case BUILD -> builds;
+            case DEPLOY -> deploys;
+        };
+    }
+
+    /**
+     * Registrations of one kind. Loads only fill the cache if nothing was evicted while they ran, so a load racing
+     * with a change can't cache the old registration.
+     */
+    private final class Region<T> {
+
+        private final Function<String, Optional<T>> loader;
+        private final Supplier<List<T>> allLoader;
+        private final Function<T, String> idOf;
+
+        private final Map<String, T> entries = new ConcurrentHashMap<>();
+        private final AtomicLong generation = new AtomicLong();
+        private volatile boolean complete;
+
+        private Region(Function<String, Optional<T>> loader, Supplier<List<T>> allLoader, Function<T, String> idOf) {
+            this.loader = loader;
+            this.allLoader = allLoader;
+            this.idOf = idOf;
+        }
+
+        Optional<T> get(String registrationId) {
+            if (!config.isEnabled()) {
+                return loader.apply(registrationId);
+            }
+            T cached = entries.get(registrationId);
+            if (cached != null || complete) {
+                return Optional.ofNullable(cached);
+            }
+            long loadedAt = generation.get();
+            Optional<T> loaded = loader.apply(registrationId);
+            synchronized (this) {
+                if (generation.get() == loadedAt) {
+                    loaded.ifPresent(entity -> entries.put(registrationId, entity));
+                }
+            }
+            return loaded;
+        }
+
+        List<T> all() {
+            if (!config.isEnabled()) {
+                return allLoader.get();
+            }
+            if (complete) {
+                return List.copyOf(entries.values());
+            }
+            long loadedAt = generation.get();
+            List<T> loaded = allLoader.get();
+            synchronized (this) {
+                if (generation.get() == loadedAt) {
+                    entries.clear();
+                    loaded.forEach(entity -> entries.put(idOf.apply(entity), entity));
+                    complete = true;
+                }
+            }
+            return loaded;
+        }
+
+        synchronized void evict(String registrationId) {
+            generation.incrementAndGet();
+            entries.remove(registrationId);
+            complete = false;
+        }
+
+        synchronized void evictAll() {
+            generation.incrementAndGet();
+            entries.clear();
+            complete = false;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.hayden.functioncalling.service.registration;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * LISTENs on the registration notify channel on a dedicated connection and evicts the registrations other nodes
+ * changed from the {@link RegistrationCache}. When the connection is lost, notifications may have been missed,
+ * so the whole cache is evicted once listening again.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RegistrationChangeListener {
+
+    private static final int POLL_TIMEOUT_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final CodeRunnerConfigProps props;
+    private final DataSource dataSource;
+    private final RegistrationCache registrationCache;
+
+    private volatile boolean running;
+    private Thread listener;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        CodeRunnerConfigProps.RegistrationCaching config = props.getRegistrationCache();
+        if (!config.isEnabled() || config.getNotifyChannel() == null) {
+            return;
+        }
+        running = true;
+        listener = Thread.ofPlatform()
+                .name("registration-change-listener")
+                .daemon(true)
+                .start(() -> listen(config.getNotifyChannel()));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (listener == null) {
+            return;
+        }
+        running = false;
+        listener.interrupt();
+        try {
+            listener.join(Duration.ofSeconds(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void listen(String channel) {
+        long backoffMs = 1000;
+        boolean reconnect = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                connection.setAutoCommit(true);
+                statement.execute("LISTEN " + channel);
+                if (reconnect) {
+                    registrationCache.evictAll();
+                }
+                backoffMs = 1000;
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            registrationCache.onNotification(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Lost registration change notifications on {}, reconnecting in {}ms", channel, backoffMs, e);
+                reconnect = true;
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.hayden.functioncalling.service.registration;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.bind.PropertySourcesPlaceholdersResolver;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.PropertiesPropertySourceLoader;
+import org.springframework.boot.env.PropertySourceLoader;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.boot.origin.Origin;
+import org.springframework.boot.origin.OriginLookup;
+import org.springframework.boot.origin.TextResourceOrigin;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.*;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Watches the config files the {@code code-runner} properties were loaded from and, when one of them changes,
+ * rebinds the registrations from the files as they are now and hands them to the {@link RegistrationSynchronizer}.
+ * Only file-based config sources can be watched; registrations packaged in the jar need a restart.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RegistrationConfigWatcher {
+
+    private static final String PREFIX = "code-runner";
+    private static final String PROFILE_PROPERTY = "spring.config.activate.on-profile";
+
+    private final ConfigurableEnvironment environment;
+    private final CodeRunnerConfigProps props;
+    private final RegistrationSynchronizer registrationSynchronizer;
+
+    private volatile boolean running;
+    private WatchService watchService;
+    private Thread watcher;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!props.getRegistrationSync().isWatch()) {
+            return;
+        }
+        Set<Path> files = configFiles();
+        if (files.isEmpty()) {
+            return;
+        }
+
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (Path directory : files.stream().map(Path::getParent).distinct().toList()) {
+                directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        } catch (IOException e) {
+            log.warn("Cannot watch {} for registration changes", files, e);
+            return;
+        }
+
+        running = true;
+        watcher = Thread.ofPlatform()
+                .name("registration-config-watcher")
+                .daemon(true)
+                .start(() -> watch(files));
+        log.info("Watching {} for registration changes", files);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (watcher == null) {
+            return;
+        }
+        running = false;
+        try {
+            watchService.close();
+            watcher.join(Duration.ofSeconds(5));
+        } catch (IOException e) {
+            log.warn("Failed to close the registration config watcher", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void watch(Set<Path> files) {
+        try {
+            while (running) {
+                if (!changed(watchService.take(), files)) {
+                    continue;
+                }
+                // editors often save a file in several writes, wait for them to settle
+                Thread.sleep(props.getRegistrationSync().getDebounceMs());
+                WatchKey pending;
+                while ((pending = watchService.poll()) != null) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+                reload(files);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    private static boolean changed(WatchKey key, Set<Path> files) {
+        Path directory = (Path) key.watchable();
+        boolean changed = key.pollEvents().stream()
+                .map(WatchEvent::context)
+                .filter(Path.class::isInstance)
+                .map(context -> directory.resolve((Path) context).toAbsolutePath().normalize())
+                .anyMatch(files::contains);
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * Rebind the registrations with the watched files loaded fresh in place of their stale property sources, and
+     * sync them. A file that fails to load or bind leaves the current registrations untouched.
+     */
+    void reload(Set<Path> files) {
+        try {
+            MutablePropertySources sources = new MutablePropertySources();
+            for (PropertySource<?> source : environment.getPropertySources()) {
+                Path file = originFile(source);
+                if (file == null || !files.contains(file)) {
+                    sources.addLast(source);
+                }
+            }
+            for (Path file : files) {
+                List<PropertySource<?>> documents = load(file);
+                // later documents of a file take precedence over earlier ones
+                for (PropertySource<?> document : documents) {
+                    if (isActive(document)) {
+                        sources.addFirst(document);
+                    }
+                }
+            }
+
+            CodeRunnerConfigProps reloaded = new Binder(ConfigurationPropertySources.from(sources),
+                    new PropertySourcesPlaceholdersResolver(sources))
+                    .bindOrCreate(PREFIX, CodeRunnerConfigProps.class);
+
+            props.setTestRegistrations(reloaded.getTestRegistrations());
+            props.setBuildRegistrations(reloaded.getBuildRegistrations());
+            props.setDeployRegistrations(reloaded.getDeployRegistrations());
+            props.setPipelineRegistrations(reloaded.getPipelineRegistrations());
+            log.info("Reloaded registrations from {}", files);
+            registrationSynchronizer.sync();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to reload registrations from {}, keeping the current ones", files, e);
+        }
+    }
+
+    private boolean isActive(PropertySource<?> document) {
+        Object profiles = document.getProperty(PROFILE_PROPERTY);
+        return profiles == null || environment.acceptsProfiles(Profiles.of(profiles.toString()));
+    }
+
+    private static List<PropertySource<?>> load(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        PropertySourceLoader loader = name.endsWith(".properties")
+                ? new PropertiesPropertySourceLoader()
+                : new YamlPropertySourceLoader();
+        return loader.load("Reloaded config file [" + file + "]", new FileSystemResource(file));
+    }
+
+    /**
+     * @return the files of the property sources that declare {@code code-runner} properties
+     */
+    private Set<Path> configFiles() {
+        Set<Path> files = new LinkedHashSet<>();
+        for (PropertySource<?> source : environment.getPropertySources()) {
+            if (source instanceof EnumerablePropertySource<?> enumerable
+                    && Arrays.stream(enumerable.getPropertyNames()).anyMatch(n -> n.startsWith(PREFIX + "."))) {
+                Optional.ofNullable(originFile(source)).ifPresent(files::add);
+            }
+        }
+        return files;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Path originFile(PropertySource<?> source) {
+        if (!(source instanceof OriginLookup<?>) || !(source instanceof EnumerablePropertySource<?> enumerable)
+                || enumerable.getPropertyNames().length == 0) {
+            return null;
+        }
+        Origin origin = ((OriginLookup<String>) source).getOrigin(enumerable.getPropertyNames()[0]);
+        while (origin != null && !(origin instanceof TextResourceOrigin)) {
+            origin = origin.getParent();
+        }
+        if (origin == null || ((TextResourceOrigin) origin).getResource() == null) {
+            return null;
+        }
+        try {
+            var resource = ((TextResourceOrigin) origin).getResource();
+            return resource.isFile() ? resource.getFile().toPath().toAbsolutePath().normalize() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.hayden.functioncalling.service.registration;
+
+import com.hayden.functioncalling.entity.CodeBuildEntity;
+import com.hayden.functioncalling.entity.CodeDeployEntity;
+import com.hayden.functioncalling.entity.TestExecutionEntity;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Reports every persisted change to a registration entity to the {@link RegistrationCache}, whether it comes from
+ * the registration mutations, the startup sync or anything else, once the change is committed.
+ */
+@Component
+@RequiredArgsConstructor
+public class RegistrationEntityListener {
+
+    // resolved lazily, the cache depends on the repositories which depend on this listener
+    private final ObjectProvider<RegistrationCache> registrationCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void changed(Object entity) {
+        switch (entity) {
+            case TestExecutionEntity e -> afterCommit(RegistrationCache.Kind.EXECUTION, e.getRegistrationId());
+            case CodeBuildEntity e -> afterCommit(RegistrationCache.Kind.BUILD, e.getRegistrationId());
+            case CodeDeployEntity e -> afterCommit(RegistrationCache.Kind.DEPLOY, e.getRegistrationId());
+            default -> {
+            }
+        }
+    }
+
+    private void afterCommit(RegistrationCache.Kind kind, String registrationId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            registrationCache.getObject().changed(kind, registrationId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                registrationCache.getObject().changed(kind, registrationId);
+            }
+        });
+    }
+}
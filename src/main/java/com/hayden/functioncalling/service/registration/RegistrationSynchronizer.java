@@ -0,0 +1,242 @@
+package com.hayden.functioncalling.service.registration;
+
+import com.hayden.commitdiffmodel.codegen.types.ExecutionType;
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.entity.*;
+import com.hayden.functioncalling.repository.CodeBuildRepository;
+import com.hayden.functioncalling.repository.CodeDeployRepository;
+import com.hayden.functioncalling.repository.CodePipelineRepository;
+import com.hayden.functioncalling.repository.TestExecutionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Makes the registrations in the database match the ones declared in {@link CodeRunnerConfigProps}. Each kind is
+ * read with a single query and diffed against the configuration; new registrations are inserted, changed ones
+ * updated in place and ones that were removed from the configuration deleted, all in one transaction.
+ * <p>
+ * Registrations created from the configuration carry the {@link #CONFIG_SESSION_ID} session ID. Only those are
+ * updated or deleted by a sync, so registrations added through the API survive it, even when the configuration
+ * declares one with the same ID.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RegistrationSynchronizer {
+
+    public static final String CONFIG_SESSION_ID = "STARTUP";
+
+    private final CodeRunnerConfigProps props;
+    private final TestExecutionRepository testExecutionRepository;
+    private final CodeBuildRepository codeBuildRepository;
+    private final CodeDeployRepository codeDeployRepository;
+    private final CodePipelineRepository codePipelineRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public synchronized void sync() {
+        transactionTemplate.executeWithoutResult(status -> {
+            apply("test", testExecutionRepository, props.getTestRegistrations(),
+                    CodeRunnerConfigProps.TestExecutionRegistration::getRegistrationId, TestExecutionEntity::new,
+                    RegistrationSynchronizer::copy, TestExecutionEntity::getRegistrationId,
+                    TestExecutionEntity::getSessionId, RegistrationSynchronizer::state);
+            apply("build", codeBuildRepository, props.getBuildRegistrations(),
+                    CodeRunnerConfigProps.BuildRegistration::getRegistrationId, CodeBuildEntity::new,
+                    RegistrationSynchronizer::copy, CodeBuildEntity::getRegistrationId,
+                    CodeBuildEntity::getSessionId, RegistrationSynchronizer::state);
+            apply("deploy", codeDeployRepository, props.getDeployRegistrations(),
+                    CodeRunnerConfigProps.DeployRegistration::getRegistrationId, CodeDeployEntity::new,
+                    RegistrationSynchronizer::copy, CodeDeployEntity::getRegistrationId,
+                    CodeDeployEntity::getSessionId, RegistrationSynchronizer::state);
+            apply("pipeline", codePipelineRepository, props.getPipelineRegistrations(),
+                    CodeRunnerConfigProps.PipelineRegistration::getRegistrationId, CodePipelineEntity::new,
+                    RegistrationSynchronizer::copy, CodePipelineEntity::getRegistrationId,
+                    CodePipelineEntity::getSessionId, RegistrationSynchronizer::state);
+        });
+    }
+
+    /**
+     * @param copy  writes every configured field of the registration onto an entity
+     * @param state the configured fields of an entity, to tell whether it differs from the configuration
+     */
+    private static <R, E> void apply(String kind,
+                                     JpaRepository<E, String> repository,
+                                     List<R> registrations,
+                                     Function<R, String> registrationId,
+                                     Supplier<E> newEntity,
+                                     BiConsumer<R, E> copy,
+                                     Function<E, String> entityId,
+                                     Function<E, String> sessionId,
+                                     Function<E, List<Object>> state) {
+        Map<String, E> existing = repository.findAll().stream()
+                .collect(Collectors.toMap(entityId, Function.identity()));
+
+        Set<String> configured = new HashSet<>();
+        List<E> added = new ArrayList<>();
+        int updated = 0;
+        int skipped = 0;
+        for (R registration : registrations) {
+            String id = registrationId.apply(registration);
+            if (!configured.add(id)) {
+                log.warn("The {} registration {} is configured more than once, using the first", kind, id);
+                continue;
+            }
+
+            E desired = newEntity.get();
+            copy.accept(registration, desired);
+            E current = existing.get(id);
+            if (current == null) {
+                added.add(desired);
+            } else if (!CONFIG_SESSION_ID.equals(sessionId.apply(current))) {
+                log.warn("The {} registration {} was added through the API in session {}, leaving it as it is",
+                        kind, id, sessionId.apply(current));
+                skipped++;
+            } else if (!state.apply(current).equals(state.apply(desired))) {
+                // the entity is managed, so updating it in place is flushed with the transaction
+                copy.accept(registration, current);
+                updated++;
+            }
+        }
+
+        List<E> removed = existing.values().stream()
+                .filter(e -> CONFIG_SESSION_ID.equals(sessionId.apply(e)) && !configured.contains(entityId.apply(e)))
+                .toList();
+
+        repository.saveAll(added);
+        repository.deleteAll(removed);
+
+        if (!added.isEmpty() || updated != 0 || !removed.isEmpty()) {
+            log.info("Synced {} registrations: {} added, {} updated, {} removed, {} skipped, {} unchanged", kind,
+                    added.size(), updated, removed.size(), skipped,
+                    configured.size() - added.size() - updated - skipped);
+        }
+    }
+
+    private static void copy(CodeRunnerConfigProps.TestExecutionRegistration reg, TestExecutionEntity entity) {
+        entity.setRegistrationId(reg.getRegistrationId());
+        entity.setSessionId(CONFIG_SESSION_ID);
+        entity.setCommand(reg.getCommand());
+        entity.setWorkingDirectory(reg.getWorkingDirectory());
+        entity.setDescription(reg.getDescription());
+        entity.setArguments(reg.getArguments());
+        entity.setTimeoutSeconds(reg.getTimeoutSeconds());
+        entity.setEnabled(reg.isEnabled());
+        entity.setRunnerCopyPath(absolutePath(reg.getRunnerCopyPath()));
+        entity.setReportingPaths(absolutePaths(reg.getReportingPaths()));
+        entity.setOutputRegex(reg.getOutputRegex());
+        entity.setTestResultPaths(absolutePaths(reg.getTestResultPaths()));
+        entity.setTestFilterTemplate(reg.getTestFilterTemplate());
+        entity.setShardCount(reg.getShardCount());
+        entity.setTestImpactAnalysis(reg.getTestImpactAnalysis());
+        entity.setFullRunInterval(reg.getFullRunInterval());
+        entity.setFailureFirst(reg.getFailureFirst());
+        entity.setFailFastThreshold(reg.getFailFastThreshold());
+        entity.setFailFastPatterns(reg.getFailFastPatterns());
+        entity.setExecutionType(Optional.ofNullable(entity.getExecutionType()).orElse(ExecutionType.PROCESS_BUILDER));
+    }
+
+    private static List<Object> state(TestExecutionEntity e) {
+        return Arrays.asList(e.getSessionId(), e.getCommand(), e.getWorkingDirectory(), e.getDescription(),
+                e.getArguments(), e.getTimeoutSeconds(), e.getEnabled(), e.getRunnerCopyPath(), e.getReportingPaths(),
+                e.getOutputRegex(), e.getTestResultPaths(), e.getTestFilterTemplate(), e.getShardCount(),
+                e.getTestImpactAnalysis(), e.getFullRunInterval(), e.getFailureFirst(), e.getFailFastThreshold(),
+                e.getFailFastPatterns());
+    }
+
+    private static void copy(CodeRunnerConfigProps.BuildRegistration reg, CodeBuildEntity entity) {
+        entity.setRegistrationId(reg.getRegistrationId());
+        entity.setSessionId(CONFIG_SESSION_ID);
+        entity.setBuildCommand(reg.getBuildCommand());
+        entity.setWorkingDirectory(reg.getWorkingDirectory());
+        entity.setDescription(reg.getDescription());
+        entity.setArguments(reg.getArguments());
+        entity.setTimeoutSeconds(reg.getTimeoutSeconds());
+        entity.setEnabled(reg.isEnabled());
+        entity.setArtifactPaths(absolutePaths(reg.getArtifactPaths()));
+        entity.setArtifactOutputDirectory(absolutePath(reg.getArtifactOutputDirectory()));
+        entity.setOutputRegex(reg.getOutputRegex());
+        entity.setBuildSuccessPatterns(reg.getBuildSuccessPatterns());
+        entity.setBuildFailurePatterns(reg.getBuildFailurePatterns());
+        entity.setExecutionType(Optional.ofNullable(entity.getExecutionType()).orElse(ExecutionType.PROCESS_BUILDER));
+    }
+
+    private static List<Object> state(CodeBuildEntity e) {
+        return Arrays.asList(e.getSessionId(), e.getBuildCommand(), e.getWorkingDirectory(), e.getDescription(),
+                e.getArguments(), e.getTimeoutSeconds(), e.getEnabled(), e.getArtifactPaths(),
+                e.getArtifactOutputDirectory(), e.getOutputRegex(), e.getBuildSuccessPatterns(),
+                e.getBuildFailurePatterns());
+    }
+
+    private static void copy(CodeRunnerConfigProps.DeployRegistration reg, CodeDeployEntity entity) {
+        entity.setRegistrationId(reg.getRegistrationId());
+        entity.setSessionId(CONFIG_SESSION_ID);
+        entity.setDeployCommand(reg.getDeployCommand());
+        entity.setWorkingDirectory(reg.getWorkingDirectory());
+        entity.setDescription(reg.getDescription());
+        entity.setArguments(reg.getArguments());
+        entity.setTimeoutSeconds(reg.getTimeoutSeconds());
+        entity.setEnabled(reg.isEnabled());
+        entity.setDeploySuccessPatterns(reg.getDeploySuccessPatterns());
+        entity.setDeployFailurePatterns(reg.getDeployFailurePatterns());
+        entity.setOutputRegex(reg.getOutputRegex());
+        entity.setHealthCheckUrl(reg.getHealthCheckUrl());
+        entity.setHealthCheckTimeoutSeconds(reg.getHealthCheckTimeoutSeconds());
+        entity.setMaxWaitForStartupSeconds(reg.getMaxWaitForStartupSeconds());
+        entity.setStopCommand(reg.getStopCommand());
+        entity.setExecutionType(Optional.ofNullable(entity.getExecutionType()).orElse(ExecutionType.PROCESS_BUILDER));
+    }
+
+    private static List<Object> state(CodeDeployEntity e) {
+        return Arrays.asList(e.getSessionId(), e.getDeployCommand(), e.getWorkingDirectory(), e.getDescription(),
+                e.getArguments(), e.getTimeoutSeconds(), e.getEnabled(), e.getDeploySuccessPatterns(),
+                e.getDeployFailurePatterns(), e.getOutputRegex(), e.getHealthCheckUrl(),
+                e.getHealthCheckTimeoutSeconds(), e.getMaxWaitForStartupSeconds(), e.getStopCommand());
+    }
+
+    private static void copy(CodeRunnerConfigProps.PipelineRegistration reg, CodePipelineEntity entity) {
+        entity.setRegistrationId(reg.getRegistrationId());
+        entity.setSessionId(CONFIG_SESSION_ID);
+        entity.setDescription(reg.getDescription());
+        entity.setEnabled(reg.isEnabled());
+        entity.setNodes(reg.getNodes().stream()
+                .map(n -> PipelineNode.builder()
+                        .nodeId(n.getNodeId())
+                        .stageType(n.getStageType())
+                        .stageRegistrationId(n.getStageRegistrationId())
+                        .dependsOn(n.getDependsOn())
+                        .artifactInputDirectory(absolutePath(n.getArtifactInputDirectory()))
+                        .build())
+                .collect(Collectors.toCollection(ArrayList::new)));
+    }
+
+    private static List<Object> state(CodePipelineEntity e) {
+        return Arrays.asList(e.getSessionId(), e.getDescription(), e.getEnabled(),
+                e.getNodes().stream()
+                        .map(n -> Arrays.asList(n.getNodeId(), n.getStageType(), n.getStageRegistrationId(),
+                                n.getDependsOn(), n.getArtifactInputDirectory()))
+                        .toList());
+    }
+
+    private static String absolutePath(Path path) {
+        return Optional.ofNullable(path)
+                .map(Path::toFile)
+                .map(File::getAbsolutePath)
+                .orElse(null);
+    }
+
+    private static List<String> absolutePaths(List<Path> paths) {
+        return paths.stream()
+                .map(p -> p.toFile().getAbsolutePath())
+                .toList();
+    }
+}
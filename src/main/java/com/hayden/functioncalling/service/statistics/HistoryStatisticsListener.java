@@ -0,0 +1,84 @@
+package com.hayden.functioncalling.service.statistics;
+
+import com.hayden.functioncalling.entity.CodeBuildHistory;
+import com.hayden.functioncalling.entity.CodeDeployHistory;
+import com.hayden.functioncalling.entity.TestExecutionHistory;
+import com.hayden.functioncalling.model.PipelineStageType;
+import jakarta.persistence.PostPersist;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Adds every persisted execution, build and deploy to the {@link RegistrationStatisticsService} once it is
+ * committed. The history written in one transaction, such as a write-behind batch, is recorded together.
+ */
+@Component
+@RequiredArgsConstructor
+public class HistoryStatisticsListener {
+
+    // resolved lazily, the service depends on a repository and the repositories on this listener
+    private final ObjectProvider<RegistrationStatisticsService> statisticsService;
+
+    @PostPersist
+    public void persisted(Object entity) {
+        RegistrationStatisticsService.Sample sample = switch (entity) {
+            case TestExecutionHistory h -> sample(PipelineStageType.TEST, h.getRegistrationId(), h.getCreatedTime(),
+                    h.getSuccess(), h.getExecutionTimeMs());
+            case CodeBuildHistory h -> sample(PipelineStageType.BUILD, h.getRegistrationId(), h.getCreatedTime(),
+                    h.getSuccess(), h.getExecutionTimeMs());
+            case CodeDeployHistory h -> sample(PipelineStageType.DEPLOY, h.getRegistrationId(), h.getCreatedTime(),
+                    h.getSuccess(), h.getExecutionTimeMs());
+            default -> null;
+        };
+        if (sample == null || !statisticsService.getObject().isEnabled()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            statisticsService.getObject().record(List.of(sample));
+            return;
+        }
+        pendingSamples().add(sample);
+    }
+
+    /**
+     * @return the samples of the current transaction, recorded after it commits
+     */
+    @SuppressWarnings("unchecked")
+    private List<RegistrationStatisticsService.Sample> pendingSamples() {
+        List<RegistrationStatisticsService.Sample> pending =
+                (List<RegistrationStatisticsService.Sample>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            return pending;
+        }
+        List<RegistrationStatisticsService.Sample> samples = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, samples);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                statisticsService.getObject().record(samples);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(HistoryStatisticsListener.this);
+            }
+        });
+        return samples;
+    }
+
+    private static RegistrationStatisticsService.Sample sample(PipelineStageType kind, String registrationId,
+                                                               LocalDateTime createdTime, Boolean success,
+                                                               Integer durationMs) {
+        LocalDate day = Optional.ofNullable(createdTime).map(LocalDateTime::toLocalDate).orElseGet(LocalDate::now);
+        return new RegistrationStatisticsService.Sample(kind, registrationId, day, Boolean.TRUE.equals(success), durationMs);
+    }
+}
@@ -0,0 +1,191 @@
+package com.hayden.functioncalling.service.statistics;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.entity.RegistrationStatisticsEntity;
+import com.hayden.functioncalling.model.PipelineStageType;
+import com.hayden.functioncalling.model.RegistrationStatistics;
+import com.hayden.functioncalling.model.RegistrationStatisticsBucket;
+import com.hayden.functioncalling.repository.RegistrationStatisticsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps per-registration execution statistics up to date as history is written, so they can be read without
+ * scanning the history tables. Each execution is added to the row of its day and to the all-time row of its
+ * registration: counters, extremes and a {@link QuantileSketch} of the execution times. Reading the statistics of a
+ * registration reads at most one row per day of the requested window, however long its history is.
+ */
+@Service
+@Slf4j
+public class RegistrationStatisticsService {
+
+    public static final int DEFAULT_DAYS = 7;
+
+    /**
+     * One persisted execution, build or deploy.
+     */
+    public record Sample(PipelineStageType kind, String registrationId, LocalDate day, boolean success,
+                         Integer durationMs) {
+    }
+
+    private final RegistrationStatisticsRepository repository;
+    private final CodeRunnerConfigProps.Statistics config;
+    private final TransactionTemplate transactionTemplate;
+
+    public RegistrationStatisticsService(RegistrationStatisticsRepository repository,
+                                         CodeRunnerConfigProps props,
+                                         PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.config = props.getStatistics();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // called once the history is committed, while its transaction may still be bound to the thread
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Add the samples to the statistics of their registrations. Rows are locked in key order so that concurrent
+     * writers, on this node or another, can't deadlock.
+     */
+    public void record(Collection<Sample> samples) {
+        if (!config.isEnabled() || samples.isEmpty()) {
+            return;
+        }
+        Map<RegistrationStatisticsEntity.Key, Totals> byKey = new TreeMap<>();
+        for (Sample sample : samples) {
+            byKey.computeIfAbsent(new RegistrationStatisticsEntity.Key(sample.kind(), sample.registrationId(), sample.day()),
+                    k -> new Totals()).add(sample);
+            byKey.computeIfAbsent(new RegistrationStatisticsEntity.Key(sample.kind(), sample.registrationId(), RegistrationStatisticsEntity.ALL_TIME),
+                    k -> new Totals()).add(sample);
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> byKey.forEach((key, totals) -> {
+                repository.insertIfAbsent(key.getKind().name(), key.getRegistrationId(), key.getBucketStart());
+                RegistrationStatisticsEntity row = repository.findForUpdate(key)
+                        .orElseThrow(() -> new IllegalStateException("Statistics row vanished: " + key));
+                Totals merged = Totals.of(row);
+                merged.merge(totals);
+                merged.writeTo(row);
+                row.setUpdatedTime(LocalDateTime.now());
+            }));
+        } catch (RuntimeException e) {
+            log.error("Failed to record statistics of {} executions", samples.size(), e);
+        }
+    }
+
+    /**
+     * @param days length of the window and trend, up to {@code code-runner.statistics.max-days}; defaults to
+     *             {@link #DEFAULT_DAYS}
+     */
+    public RegistrationStatistics statistics(PipelineStageType kind, String registrationId, Integer days) {
+        int window = Math.clamp(days == null ? DEFAULT_DAYS : days, 1, config.getMaxDays());
+        LocalDate since = LocalDate.now().minusDays(window - 1);
+
+        Totals allTime = repository.findById(new RegistrationStatisticsEntity.Key(kind, registrationId, RegistrationStatisticsEntity.ALL_TIME))
+                .map(Totals::of)
+                .orElseGet(Totals::new);
+        List<RegistrationStatisticsEntity> daily = repository
+                .findByKeyKindAndKeyRegistrationIdAndKeyBucketStartGreaterThanEqualOrderByKeyBucketStartDesc(kind, registrationId, since);
+
+        Totals windowTotals = new Totals();
+        daily.forEach(row -> windowTotals.merge(Totals.of(row)));
+
+        return new RegistrationStatistics(kind, registrationId, window,
+                allTime.toBucket(null),
+                windowTotals.toBucket(null),
+                daily.stream()
+                        .map(row -> Totals.of(row).toBucket(row.getKey().getBucketStart().toString()))
+                        .toList());
+    }
+
+    private static final class Totals {
+
+        private long executions;
+        private long successes;
+        private long totalDurationMs;
+        private Integer minDurationMs;
+        private Integer maxDurationMs;
+        private QuantileSketch sketch = new QuantileSketch();
+
+        static Totals of(RegistrationStatisticsEntity row) {
+            Totals totals = new Totals();
+            totals.executions = row.getExecutions();
+            totals.successes = row.getSuccesses();
+            totals.totalDurationMs = row.getTotalDurationMs();
+            totals.minDurationMs = row.getMinDurationMs();
+            totals.maxDurationMs = row.getMaxDurationMs();
+            totals.sketch = QuantileSketch.fromBytes(row.getDurationSketch());
+            return totals;
+        }
+
+        void add(Sample sample) {
+            executions++;
+            if (sample.success()) {
+                successes++;
+            }
+            if (sample.durationMs() != null && sample.durationMs() >= 0) {
+                int duration = sample.durationMs();
+                totalDurationMs += duration;
+                minDurationMs = minDurationMs == null ? duration : Math.min(minDurationMs, duration);
+                maxDurationMs = maxDurationMs == null ? duration : Math.max(maxDurationMs, duration);
+                sketch.add(duration);
+            }
+        }
+
+        void merge(Totals other) {
+            executions += other.executions;
+            successes += other.successes;
+            totalDurationMs += other.totalDurationMs;
+            if (other.minDurationMs != null) {
+                minDurationMs = minDurationMs == null ? other.minDurationMs : Math.min(minDurationMs, other.minDurationMs);
+            }
+            if (other.maxDurationMs != null) {
+                maxDurationMs = maxDurationMs == null ? other.maxDurationMs : Math.max(maxDurationMs, other.maxDurationMs);
+            }
+            sketch.merge(other.sketch);
+        }
+
+        void writeTo(RegistrationStatisticsEntity row) {
+            row.setExecutions(executions);
+            row.setSuccesses(successes);
+            row.setTotalDurationMs(totalDurationMs);
+            row.setMinDurationMs(minDurationMs);
+            row.setMaxDurationMs(maxDurationMs);
+            row.setDurationSketch(sketch.toBytes());
+        }
+
+        RegistrationStatisticsBucket toBucket(String day) {
+            long timed = sketch.count();
+            return new RegistrationStatisticsBucket(day, executions, successes,
+                    executions == 0 ? null : (double) successes / executions,
+                    timed == 0 ? null : (double) totalDurationMs / timed,
+                    quantile(0.5), quantile(0.95), quantile(0.99),
+                    minDurationMs, maxDurationMs);
+        }
+
+        /**
+         * The sketch's estimate, which can't be outside the exact extremes.
+         */
+        private Double quantile(double q) {
+            Double estimate = sketch.quantile(q);
+            if (estimate == null || minDurationMs == null) {
+                return estimate;
+            }
+            return Math.min(maxDurationMs, Math.max(minDurationMs, estimate));
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.hayden.functioncalling.service.test_plan;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.utils.JUnitXmlReportParser;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Compact per-registration index of test suites, how long they take and whether they failed recently, learned
+ * from the JUnit XML results of previous runs. Each registration's index is kept in memory and persisted as a small JSON file under
+ * the data directory.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TestCaseIndex {
+
+    /**
+     * Weight of the newest observation in the moving average of a suite's duration.
+     */
+    private static final double DURATION_WEIGHT = 0.3;
+
+    /**
+     * How many of a suite's most recent runs are remembered in its outcome history.
+     */
+    private static final int OUTCOME_WINDOW = 16;
+
+    private final CodeRunnerConfigProps props;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, RegistrationIndex> indices = new ConcurrentHashMap<>();
+
+    /**
+     * @return the expected duration of each known suite of the registration
+     */
+    public Map<String, Long> durations(String registrationId) {
+        RegistrationIndex index = load(registrationId);
+        synchronized (index) {
+            return index.getSuites().entrySet().stream()
+                    .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().getDurationMs()));
+        }
+    }
+
+    /**
+     * Suites of the registration that failed in any of their remembered runs, the most recently and most
+     * often failing first.
+     */
+    public List<String> recentlyFailing(String registrationId) {
+        RegistrationIndex index = load(registrationId);
+        synchronized (index) {
+            return index.getSuites().entrySet().stream()
+                    .filter(e -> e.getValue().getFailures() != 0)
+                    .sorted(Comparator
+                            .comparingInt((Map.Entry<String, SuiteStats> e) -> Integer.numberOfTrailingZeros(e.getValue().getFailures()))
+                            .thenComparing(e -> -Integer.bitCount(e.getValue().getFailures()))
+                            .thenComparing(Map.Entry::getKey))
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+    }
+
+    /**
+     * Fold the results of a run into the registration's index. Suites the run didn't include are aged by one
+     * run as if they passed, so a suite that stops running stops counting as recently failing once its failures
+     * leave the outcome window.
+     *
+     * @param completeRun whether the whole suite ran to completion, in which case suites missing from the
+     *                    results no longer exist and are dropped
+     */
+    public void record(String registrationId, Collection<JUnitXmlReportParser.TestCaseResult> results,
+                       boolean completeRun) {
+        if (results.isEmpty()) {
+            return;
+        }
+
+        Map<String, Long> suiteDurations = results.stream()
+                .filter(r -> r.suite() != null)
+                .collect(Collectors.groupingBy(JUnitXmlReportParser.TestCaseResult::suite,
+                        Collectors.summingLong(JUnitXmlReportParser.TestCaseResult::durationMs)));
+
+        Set<String> failedSuites = results.stream()
+                .filter(r -> r.suite() != null && r.status() == JUnitXmlReportParser.TestStatus.FAILED)
+                .map(JUnitXmlReportParser.TestCaseResult::suite)
+                .collect(Collectors.toSet());
+
+        RegistrationIndex index = load(registrationId);
+        synchronized (index) {
+            if (completeRun) {
+                index.getSuites().keySet().retainAll(suiteDurations.keySet());
+            }
+            index.getSuites().forEach((suite, stats) -> {
+                if (!suiteDurations.containsKey(suite)) {
+                    stats.setFailures(age(stats.getFailures(), false));
+                }
+            });
+            suiteDurations.forEach((suite, durationMs) -> {
+                SuiteStats stats = index.getSuites().computeIfAbsent(suite, k -> new SuiteStats());
+                stats.setDurationMs(stats.getRuns() == 0
+                        ? durationMs
+                        : Math.round(DURATION_WEIGHT * durationMs + (1 - DURATION_WEIGHT) * stats.getDurationMs()));
+                stats.setRuns(stats.getRuns() + 1);
+                stats.setFailures(age(stats.getFailures(), failedSuites.contains(suite)));
+            });
+            persist(registrationId, index);
+        }
+    }
+
+    /**
+     * @return the outcome history with the newest run added and the oldest one past the window dropped
+     */
+    private static int age(int failures, boolean failed) {
+        return ((failures << 1) | (failed ? 1 : 0)) & ((1 << OUTCOME_WINDOW) - 1);
+    }
+
+    /**
+     * @return the commit the registration last passed a run against, if any
+     */
+    public String lastHead(String registrationId) {
+        RegistrationIndex index = load(registrationId);
+        synchronized (index) {
+            return index.getLastHead();
+        }
+    }
+
+    /**
+     * @param fullRunInterval every how many runs the whole suite should run, or null to never force one
+     */
+    public boolean isFullRunDue(String registrationId, Integer fullRunInterval) {
+        if (fullRunInterval == null || fullRunInterval <= 0) {
+            return false;
+        }
+        RegistrationIndex index = load(registrationId);
+        synchronized (index) {
+            return index.getRunsSinceFullRun() + 1 >= fullRunInterval;
+        }
+    }
+
+    /**
+     * Remember that a run happened, so that later selections know what changed since and when a full run is due.
+     * Only a passing run moves the commit later selections compare against, so the changes a failing run was
+     * selected for are selected again until a run passes with them.
+     */
+    public void recordRun(String registrationId, TestSelection selection, boolean passed) {
+        RegistrationIndex index = load(registrationId);
+        synchronized (index) {
+            index.setRunsSinceFullRun(selection.fullRun() ? 0 : index.getRunsSinceFullRun() + 1);
+            if (passed && selection.head() != null) {
+                index.setLastHead(selection.head());
+            }
+            persist(registrationId, index);
+        }
+    }
+
+    private RegistrationIndex load(String registrationId) {
+        return indices.computeIfAbsent(registrationId, id -> {
+            Path file = indexFile(id);
+            if (Files.exists(file)) {
+                try {
+                    return objectMapper.readValue(file.toFile(), RegistrationIndex.class);
+                } catch (IOException e) {
+                    log.warn("Could not read test index {}, starting a new one", file, e);
+                }
+            }
+            return new RegistrationIndex();
+        });
+    }
+
+    private void persist(String registrationId, RegistrationIndex index) {
+        Path file = indexFile(registrationId);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            objectMapper.writeValue(tmp.toFile(), index);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Failed to persist test index for {}", registrationId, e);
+        }
+    }
+
+    private Path indexFile(String registrationId) {
+        return props.getDataDirectory()
+                .resolve("test-index")
+                .resolve(registrationId.replaceAll("[^A-Za-z0-9._-]", "_") + ".json");
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RegistrationIndex {
+        private Map<String, SuiteStats> suites = new HashMap<>();
+        private String lastHead;
+        private int runsSinceFullRun;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SuiteStats {
+        private long durationMs;
+        private int runs;
+        /**
+         * Outcomes of the suite's most recent runs, one bit per run with the newest run in the lowest bit,
+         * set when the run failed.
+         */
+        private int failures;
+    }
+}
@@ -0,0 +1,34 @@
+package com.hayden.functioncalling.service.test_plan;
+
+import io.micrometer.common.util.StringUtils;
+
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+/**
+ * Expands a registration's test filter template into the arguments selecting a set of test suites.
+ */
+public final class TestFilter {
+
+    public static final String TEST_PLACEHOLDER = "{test}";
+
+    private TestFilter() {
+    }
+
+    /**
+     * @param baseArguments the arguments the registration runs with, may be blank
+     * @param template      filter arguments for one suite, e.g. "--tests {test}"
+     * @param suites        the suites to select, in the order they should be passed
+     * @return the base arguments followed by the filter arguments for each suite
+     */
+    public static String apply(String baseArguments, String template, Collection<String> suites) {
+        String filters = suites.stream()
+                .map(suite -> template.replace(TEST_PLACEHOLDER, suite))
+                .collect(Collectors.joining(" "));
+
+        if (StringUtils.isBlank(baseArguments)) {
+            return filters;
+        }
+        return baseArguments + " " + filters;
+    }
+}
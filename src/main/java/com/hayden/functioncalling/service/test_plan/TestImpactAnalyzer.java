@@ -0,0 +1,459 @@
+package com.hayden.functioncalling.service.test_plan;
+
+import com.hayden.functioncalling.entity.TestExecutionEntity;
+import io.micrometer.common.util.StringUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the test suites affected by the changes in a registration's working directory.
+ * <p>
+ * Changed files are taken from git: uncommitted and untracked changes, plus anything committed since the
+ * registration last passed. A dependency graph between source files is built from their imports, and every test
+ * reachable from a changed file through that graph is selected, along with the suites that failed recently, which
+ * keep running until they pass whatever changed. A registration that never passed a run has nothing to compare
+ * against and runs in full. Anything the analysis can't reason about,
+ * such as build scripts, deleted sources or sources outside the graph, falls back to a full run, as does the
+ * analysis failing, so a run never passes by selecting nothing it should have run.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TestImpactAnalyzer {
+
+    private static final Set<String> SOURCE_EXTENSIONS = Set.of("java", "kt", "py");
+
+    private static final Set<String> IGNORED_EXTENSIONS = Set.of("md", "txt", "rst", "adoc");
+
+    private static final Set<String> SKIPPED_DIRECTORIES = Set.of(
+            ".git", ".gradle", ".idea", ".venv", "venv", "build", "target", "out", "dist",
+            "node_modules", "__pycache__", ".pytest_cache");
+
+    private static final Pattern JAVA_PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;?", Pattern.MULTILINE);
+    private static final Pattern JAVA_IMPORT = Pattern.compile("^\\s*import\\s+(?:static\\s+)?([\\w.]+)(\\.\\*)?\\s*;?", Pattern.MULTILINE);
+    private static final Pattern TYPE_TOKEN = Pattern.compile("\\b[A-Z][A-Za-z0-9_]*\\b");
+    private static final Pattern PY_FROM_IMPORT = Pattern.compile("^\\s*from\\s+(\\.*[\\w.]*)\\s+import\\s+(\\([^)]*\\)|[\\w.,* \\t]+)", Pattern.MULTILINE);
+    private static final Pattern PY_IMPORT = Pattern.compile("^\\s*import\\s+([\\w., ]+)", Pattern.MULTILINE);
+
+    private final TestCaseIndex testCaseIndex;
+
+    private final Map<Path, ParsedSource> parsed = new ConcurrentHashMap<>();
+
+    /**
+     * @param fullRunRequested the caller asked for the whole suite regardless of changes
+     */
+    public TestSelection select(TestExecutionEntity entity, boolean fullRunRequested) {
+        if (!Boolean.TRUE.equals(entity.getTestImpactAnalysis())
+                || StringUtils.isBlank(entity.getTestFilterTemplate())
+                || StringUtils.isBlank(entity.getWorkingDirectory())) {
+            return TestSelection.full(null, "Test impact analysis is not enabled");
+        }
+
+        Path workingDirectory = Paths.get(entity.getWorkingDirectory()).toAbsolutePath().normalize();
+
+        Optional<String> head = git(workingDirectory, "rev-parse", "HEAD")
+                .filter(l -> !l.isEmpty())
+                .map(List::getFirst);
+
+        if (fullRunRequested) {
+            return TestSelection.full(head.orElse(null), "Full run requested");
+        }
+
+        if (testCaseIndex.isFullRunDue(entity.getRegistrationId(), entity.getFullRunInterval())) {
+            return TestSelection.full(head.orElse(null), "Periodic full verification run");
+        }
+
+        Optional<Path> root = git(workingDirectory, "rev-parse", "--show-toplevel")
+                .filter(l -> !l.isEmpty())
+                .map(l -> Paths.get(l.getFirst()).toAbsolutePath().normalize());
+        if (root.isEmpty() || head.isEmpty()) {
+            return TestSelection.full(head.orElse(null), "Could not determine changed files with git");
+        }
+
+        String lastHead = testCaseIndex.lastHead(entity.getRegistrationId());
+        if (lastHead == null) {
+            return TestSelection.full(head.get(), "No passing run to compare against");
+        }
+
+        Optional<Set<Path>> changed = changedFiles(workingDirectory, root.get(), head.get(), lastHead);
+        if (changed.isEmpty()) {
+            return TestSelection.full(head.get(), "Could not determine changed files with git");
+        }
+
+        try {
+            return selectImpacted(root.get(), workingDirectory, changed.get(), head.get(),
+                    testCaseIndex.recentlyFailing(entity.getRegistrationId()));
+        } catch (IOException | RuntimeException e) {
+            log.error("Test impact analysis failed for {}", entity.getRegistrationId(), e);
+            return TestSelection.full(head.get(), "Test impact analysis failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return every test suite in the registration's source tree, or empty if the tree can't be read
+     */
+    public Optional<List<String>> testSuites(TestExecutionEntity entity) {
+        if (StringUtils.isBlank(entity.getWorkingDirectory())) {
+            return Optional.empty();
+        }
+        Path workingDirectory = Paths.get(entity.getWorkingDirectory()).toAbsolutePath().normalize();
+        // scan the same tree as the impact analysis, so the two share parsed sources
+        Path root = git(workingDirectory, "rev-parse", "--show-toplevel")
+                .filter(l -> !l.isEmpty())
+                .map(l -> Paths.get(l.getFirst()).toAbsolutePath().normalize())
+                .orElse(workingDirectory);
+        try {
+            List<String> suites = new ArrayList<>();
+            scan(root).forEach((file, source) -> {
+                if (source.test()) {
+                    suites.add(suiteId(workingDirectory, file, source));
+                }
+            });
+            Collections.sort(suites);
+            return Optional.of(suites);
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Could not list the test suites of {}", entity.getRegistrationId(), e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param failing the suites that failed recently, which are selected whatever changed
+     */
+    private TestSelection selectImpacted(Path root, Path workingDirectory, Set<Path> changed, String head,
+                                         List<String> failing) throws IOException {
+        List<Path> changedSources = new ArrayList<>();
+        for (Path file : changed) {
+            String extension = extension(file);
+            if (IGNORED_EXTENSIONS.contains(extension)) {
+                continue;
+            }
+            if (!SOURCE_EXTENSIONS.contains(extension)) {
+                return TestSelection.full(head, "Non-source file changed: " + root.relativize(file));
+            }
+            if (!Files.exists(file)) {
+                return TestSelection.full(head, "Source file deleted: " + root.relativize(file));
+            }
+            changedSources.add(file);
+        }
+
+        if (changedSources.isEmpty() && failing.isEmpty()) {
+            return TestSelection.of(List.of(), head, "No source changes");
+        }
+
+        Map<Path, ParsedSource> sources = scan(root);
+        Optional<Path> unknown = changedSources.stream().filter(f -> !sources.containsKey(f)).findFirst();
+        if (unknown.isPresent()) {
+            return TestSelection.full(head,
+                    "Changed source outside the analyzed tree: " + root.relativize(unknown.get()));
+        }
+        if (sources.values().stream().noneMatch(ParsedSource::test)) {
+            return TestSelection.full(head, "No test suites found in " + root);
+        }
+        Map<Path, Set<Path>> dependents = dependents(sources);
+
+        Set<Path> visited = new HashSet<>();
+        Deque<Path> queue = new ArrayDeque<>(changedSources);
+        Set<String> suites = new TreeSet<>();
+        while (!queue.isEmpty()) {
+            Path next = queue.poll();
+            if (!visited.add(next)) {
+                continue;
+            }
+            ParsedSource source = sources.get(next);
+            if (source != null && source.test()) {
+                suites.add(suiteId(workingDirectory, next, source));
+            }
+            queue.addAll(dependents.getOrDefault(next, Set.of()));
+        }
+        int affected = suites.size();
+
+        // only the failing suites that still exist, a filter matching no test fails the run
+        Set<String> existing = new HashSet<>();
+        sources.forEach((file, source) -> {
+            if (source.test()) {
+                existing.add(suiteId(workingDirectory, file, source));
+            }
+        });
+        failing.stream().filter(existing::contains).forEach(suites::add);
+
+        return TestSelection.of(new ArrayList<>(suites), head,
+                "%d changed source files affect %d test suites, plus %d recently failing"
+                        .formatted(changedSources.size(), affected, suites.size() - affected));
+    }
+
+    private Optional<Set<Path>> changedFiles(Path workingDirectory, Path root, String head, String lastHead) {
+        Set<Path> changed = new HashSet<>();
+
+        Optional<List<String>> uncommitted = git(workingDirectory, "diff", "--name-only", "HEAD");
+        Optional<List<String>> untracked = git(workingDirectory, "ls-files", "--others", "--exclude-standard", "--full-name");
+        if (uncommitted.isEmpty() || untracked.isEmpty()) {
+            return Optional.empty();
+        }
+        uncommitted.get().forEach(f -> changed.add(root.resolve(f).normalize()));
+        untracked.get().forEach(f -> changed.add(root.resolve(f).normalize()));
+
+        if (lastHead != null && !lastHead.equals(head)) {
+            Optional<List<String>> committed = git(workingDirectory, "diff", "--name-only", lastHead, head);
+            if (committed.isEmpty()) {
+                return Optional.empty();
+            }
+            committed.get().forEach(f -> changed.add(root.resolve(f).normalize()));
+        }
+
+        return Optional.of(changed);
+    }
+
+    private Map<Path, ParsedSource> scan(Path root) throws IOException {
+        Map<Path, ParsedSource> sources = new HashMap<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return !dir.equals(root) && SKIPPED_DIRECTORIES.contains(dir.getFileName().toString())
+                        ? FileVisitResult.SKIP_SUBTREE
+                        : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (SOURCE_EXTENSIONS.contains(extension(file))) {
+                    Path normalized = file.toAbsolutePath().normalize();
+                    sources.put(normalized, parse(normalized, attrs));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        parsed.keySet().retainAll(sources.keySet());
+        return sources;
+    }
+
+    private ParsedSource parse(Path file, BasicFileAttributes attrs) throws IOException {
+        long modified = attrs.lastModifiedTime().toMillis();
+        ParsedSource cached = parsed.get(file);
+        if (cached != null && cached.modified() == modified && cached.size() == attrs.size()) {
+            return cached;
+        }
+
+        String content = Files.readString(file, StandardCharsets.UTF_8);
+        String fileName = file.getFileName().toString();
+        ParsedSource source;
+
+        if ("py".equals(extension(file))) {
+            Set<String> imports = new HashSet<>();
+            Matcher from = PY_FROM_IMPORT.matcher(content);
+            while (from.find()) {
+                String module = from.group(1);
+                for (String name : from.group(2).replace("(", "").replace(")", "").split(",")) {
+                    String imported = name.trim().split("\\s+")[0];
+                    if (!imported.isEmpty() && !"*".equals(imported)) {
+                        imports.add(module.endsWith(".") ? module + imported : module + "." + imported);
+                    }
+                }
+                imports.add(module);
+            }
+            Matcher imp = PY_IMPORT.matcher(content);
+            while (imp.find()) {
+                for (String name : imp.group(1).split(",")) {
+                    String imported = name.trim().split("\\s+")[0];
+                    if (!imported.isEmpty()) {
+                        imports.add(imported);
+                    }
+                }
+            }
+            boolean test = fileName.startsWith("test_") || fileName.endsWith("_test.py");
+            source = new ParsedSource(modified, attrs.size(), null, imports, Set.of(), test);
+        } else {
+            Matcher pkg = JAVA_PACKAGE.matcher(content);
+            String packageName = pkg.find() ? pkg.group(1) : "";
+            Set<String> imports = new HashSet<>();
+            Matcher imp = JAVA_IMPORT.matcher(content);
+            while (imp.find()) {
+                imports.add(imp.group(2) != null ? imp.group(1) + ".*" : imp.group(1));
+            }
+            Set<String> tokens = new HashSet<>();
+            Matcher token = TYPE_TOKEN.matcher(content);
+            while (token.find()) {
+                tokens.add(token.group());
+            }
+            String simpleName = fileName.substring(0, fileName.lastIndexOf('.'));
+            String normalizedPath = file.toString().replace('\\', '/');
+            boolean test = normalizedPath.contains("/src/test/")
+                    || normalizedPath.contains("/src/integrationTest/")
+                    || simpleName.endsWith("Test") || simpleName.endsWith("Tests") || simpleName.endsWith("IT");
+            String fqn = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+            source = new ParsedSource(modified, attrs.size(), fqn, imports, tokens, test);
+        }
+
+        parsed.put(file, source);
+        return source;
+    }
+
+    /**
+     * @return for each file, the files that import it
+     */
+    private Map<Path, Set<Path>> dependents(Map<Path, ParsedSource> sources) {
+        Map<String, Path> jvmTypes = new HashMap<>();
+        Map<String, List<Path>> jvmPackages = new HashMap<>();
+        Map<String, List<Path>> pythonModules = new HashMap<>();
+
+        sources.forEach((file, source) -> {
+            if (source.qualifiedName() != null) {
+                jvmTypes.put(source.qualifiedName(), file);
+                jvmPackages.computeIfAbsent(packageOf(source.qualifiedName()), k -> new ArrayList<>()).add(file);
+            } else {
+                pythonModuleNames(file).forEach(m -> pythonModules.computeIfAbsent(m, k -> new ArrayList<>()).add(file));
+            }
+        });
+
+        Map<Path, Set<Path>> dependents = new HashMap<>();
+        sources.forEach((file, source) -> {
+            Set<Path> dependencies = new HashSet<>();
+            if (source.qualifiedName() != null) {
+                for (String imported : source.imports()) {
+                    if (imported.endsWith(".*")) {
+                        dependencies.addAll(jvmPackages.getOrDefault(imported.substring(0, imported.length() - 2), List.of()));
+                    } else {
+                        // walk up so that static imports and nested classes resolve to their top level type
+                        String candidate = imported;
+                        while (candidate.contains(".") && !jvmTypes.containsKey(candidate)) {
+                            candidate = packageOf(candidate);
+                        }
+                        Optional.ofNullable(jvmTypes.get(candidate)).ifPresent(dependencies::add);
+                    }
+                }
+                // types in the same package are used without an import
+                for (Path samePackage : jvmPackages.getOrDefault(packageOf(source.qualifiedName()), List.of())) {
+                    String simpleName = simpleNameOf(sources.get(samePackage).qualifiedName());
+                    if (source.typeTokens().contains(simpleName)) {
+                        dependencies.add(samePackage);
+                    }
+                }
+            } else {
+                for (String imported : source.imports()) {
+                    String module = resolveRelativeImport(file, imported);
+                    dependencies.addAll(pythonModules.getOrDefault(module, List.of()));
+                }
+            }
+            dependencies.remove(file);
+            dependencies.forEach(d -> dependents.computeIfAbsent(d, k -> new HashSet<>()).add(file));
+        });
+
+        return dependents;
+    }
+
+    /**
+     * A python file is indexed under every dotted suffix of its path, since the source root isn't known.
+     */
+    private static List<String> pythonModuleNames(Path file) {
+        List<String> parts = new ArrayList<>();
+        for (Path part : file) {
+            parts.add(part.toString());
+        }
+        String last = parts.removeLast();
+        String moduleName = last.substring(0, last.length() - ".py".length());
+        if (!"__init__".equals(moduleName)) {
+            parts.add(moduleName);
+        }
+
+        List<String> names = new ArrayList<>();
+        for (int i = parts.size() - 1; i >= 0; i--) {
+            names.add(String.join(".", parts.subList(i, parts.size())));
+        }
+        return names;
+    }
+
+    private static String resolveRelativeImport(Path file, String imported) {
+        if (!imported.startsWith(".")) {
+            return imported;
+        }
+        int level = 0;
+        while (level < imported.length() && imported.charAt(level) == '.') {
+            level++;
+        }
+        Path base = file.getParent();
+        for (int i = 1; i < level && base != null; i++) {
+            base = base.getParent();
+        }
+        String remainder = imported.substring(level);
+        String prefix = base == null || base.getFileName() == null ? "" : base.getFileName().toString();
+        return remainder.isEmpty() ? prefix : prefix + "." + remainder;
+    }
+
+    private static String suiteId(Path workingDirectory, Path file, ParsedSource source) {
+        if (source.qualifiedName() != null) {
+            return source.qualifiedName();
+        }
+        return file.startsWith(workingDirectory)
+                ? workingDirectory.relativize(file).toString().replace('\\', '/')
+                : file.toString();
+    }
+
+    private static String packageOf(String qualifiedName) {
+        int idx = qualifiedName.lastIndexOf('.');
+        return idx < 0 ? "" : qualifiedName.substring(0, idx);
+    }
+
+    private static String simpleNameOf(String qualifiedName) {
+        return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int idx = name.lastIndexOf('.');
+        return idx < 0 ? "" : name.substring(idx + 1);
+    }
+
+    private static Optional<List<String>> git(Path workingDirectory, String... args) {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.add("-C");
+        command.add(workingDirectory.toString());
+        command.addAll(Arrays.asList(args));
+        try {
+            // stderr isn't read, so it must not fill its pipe and block git
+            Process process = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            List<String> lines;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                lines = reader.lines().filter(l -> !l.isBlank()).toList();
+            }
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return Optional.empty();
+            }
+            if (process.exitValue() != 0) {
+                log.debug("git {} exited with {} in {}", String.join(" ", args), process.exitValue(), workingDirectory);
+                return Optional.empty();
+            }
+            return Optional.of(lines);
+        } catch (IOException e) {
+            log.warn("Could not run git in {}: {}", workingDirectory, e.getMessage());
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param qualifiedName the fully qualified type name for JVM sources, null for python
+     */
+    private record ParsedSource(long modified, long size, String qualifiedName, Set<String> imports,
+                                Set<String> typeTokens, boolean test) {
+    }
+}
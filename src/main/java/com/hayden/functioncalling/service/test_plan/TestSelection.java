@@ -0,0 +1,26 @@
+package com.hayden.functioncalling.service.test_plan;
+
+import java.util.List;
+
+/**
+ * Which test suites a run should execute.
+ *
+ * @param fullRun whether the whole suite runs, in which case {@code suites} is ignored
+ * @param suites  the suites to run when this is not a full run, possibly empty
+ * @param head    the commit the selection was computed against, if known
+ * @param reason  why this selection was made, for logging
+ */
+public record TestSelection(boolean fullRun, List<String> suites, String head, String reason) {
+
+    public static TestSelection full(String head, String reason) {
+        return new TestSelection(true, List.of(), head, reason);
+    }
+
+    public static TestSelection of(List<String> suites, String head, String reason) {
+        return new TestSelection(false, suites, head, reason);
+    }
+
+    public boolean isEmpty() {
+        return !fullRun && suites.isEmpty();
+    }
+}
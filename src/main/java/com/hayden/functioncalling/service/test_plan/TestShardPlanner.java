@@ -0,0 +1,119 @@
+package com.hayden.functioncalling.service.test_plan;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Splits a set of test suites into shards of roughly equal expected duration.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TestShardPlanner {
+
+    private final CodeRunnerConfigProps props;
+
+    /**
+     * Resolve the configured shard count of a registration.
+     * @param configured null or 1 to disable sharding, 0 to derive the count from cores and free memory
+     */
+    public int resolveShardCount(Integer configured) {
+        if (configured == null || configured == 1) {
+            return 1;
+        }
+        if (configured > 1) {
+            return configured;
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        long byMemory = freeMemoryMb() / Math.max(1, props.getSharding().getMemoryPerShardMb());
+        int shards = (int) Math.min(Math.min(cores, byMemory), props.getSharding().getMaxShards());
+        log.debug("Derived {} shards from {} cores and {} shards worth of free memory", shards, cores, byMemory);
+        return Math.max(1, shards);
+    }
+
+    /**
+     * Longest-processing-time-first assignment: suites are taken from slowest to fastest and each one is put on
+     * the shard with the least total expected duration so far. Suites without history count as the average and
+     * are placed after the others, on no more shards than there are suites with history, so that no shard is
+     * made only of classes that may turn out to hold no tests; test filters fail when they match nothing.
+     * @return the non-empty shards, each a list of suites
+     */
+    public List<List<String>> plan(Collection<String> suites, Map<String, Long> durations, int shardCount) {
+        if (suites.isEmpty()) {
+            return List.of();
+        }
+
+        long average = Math.max(1, Math.round(durations.values().stream()
+                .mapToLong(Long::longValue)
+                .average()
+                .orElse(1)));
+
+        List<String> bySlowest = suites.stream()
+                .distinct()
+                .sorted(Comparator.<String, Boolean>comparing(s -> !durations.containsKey(s))
+                        .thenComparing(Comparator.<String>comparingLong(s -> durations.getOrDefault(s, average))
+                                .reversed())
+                        .thenComparing(Comparator.naturalOrder()))
+                .toList();
+
+        long withHistory = bySlowest.stream().filter(durations::containsKey).count();
+        int k = (int) Math.max(1, Math.min(shardCount, withHistory == 0 ? bySlowest.size() : withHistory));
+        PriorityQueue<Shard> shards = new PriorityQueue<>(Comparator.comparingLong(Shard::getTotal)
+                .thenComparingInt(Shard::getIndex));
+        for (int i = 0; i < k; i++) {
+            shards.add(new Shard(i));
+        }
+
+        for (String suite : bySlowest) {
+            Shard lightest = shards.poll();
+            lightest.add(suite, durations.getOrDefault(suite, average));
+            shards.add(lightest);
+        }
+
+        return shards.stream()
+                .sorted(Comparator.comparingInt(Shard::getIndex))
+                .map(Shard::getSuites)
+                .filter(s -> !s.isEmpty())
+                .toList();
+    }
+
+    private static long freeMemoryMb() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getFreeMemorySize() / (1024 * 1024);
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static final class Shard {
+        private final int index;
+        private final List<String> suites = new ArrayList<>();
+        private long total;
+
+        private Shard(int index) {
+            this.index = index;
+        }
+
+        private void add(String suite, long durationMs) {
+            suites.add(suite);
+            total += durationMs;
+        }
+
+        int getIndex() {
+            return index;
+        }
+
+        long getTotal() {
+            return total;
+        }
+
+        List<String> getSuites() {
+            return suites;
+        }
+    }
+}
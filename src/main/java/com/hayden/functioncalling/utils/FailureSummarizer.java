@@ -0,0 +1,214 @@
+package com.hayden.functioncalling.utils;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Summarizes test failures by root cause, so that the hundreds of tests failing the same way take the space of one.
+ * Failures are added one at a time and grouped by a fingerprint of their stack trace: the type of the innermost
+ * cause, its message with numbers and hashes masked, and its first frames outside of the test frameworks. Only the
+ * first trace of each group is kept, with runs of framework frames folded into one line, along with the count and
+ * the first names of the failed tests. The summary puts the largest groups first and fits the budget by cutting
+ * traces, then by dropping the smallest groups.
+ */
+public class FailureSummarizer {
+
+    public static final String NO_FAILURES = "No test failures found.";
+
+    /**
+     * Characters per token of the traces and messages of a summary, roughly.
+     */
+    public static final int CHARS_PER_TOKEN = 4;
+
+    private static final int FINGERPRINT_FRAMES = 3;
+    private static final int MIN_TRACE_CHARS = 80;
+    private static final int MAX_OMITTED_CHARS = 64;
+
+    private static final Pattern FRAME = Pattern.compile("^\\s*at (?:[\\w.$@-]+/)?([\\w$.]+)\\.[\\w$<>]+\\(.*\\)\\s*$");
+    private static final Pattern CAUSE = Pattern.compile("^\\s*(Caused by: )?([\\w$]+\\.)*[\\w$]*(Exception|Error|Throwable)(:.*)?$");
+    private static final Pattern VARYING = Pattern.compile("@[0-9a-f]+|0x[0-9a-fA-F]+|\\d+");
+    private static final List<String> FRAMEWORK_PACKAGES = List.of(
+            "java.lang.reflect.", "java.util.", "jdk.internal.", "sun.reflect.", "org.junit.", "junit.",
+            "org.gradle.", "worker.org.gradle.", "org.springframework.", "org.mockito.", "net.bytebuddy.",
+            "org.apache.maven.surefire.", "org.testng.", "com.sun.proxy.", "jdk.proxy");
+
+    private final int maxTraceChars;
+    private final int testNamesPerGroup;
+
+    private final Map<String, Group> groups = new LinkedHashMap<>();
+    private int failures;
+
+    private static class Group {
+        final String cause;
+        final String trace;
+        final List<String> tests = new ArrayList<>();
+        int count;
+
+        Group(String cause, String trace) {
+            this.cause = cause;
+            this.trace = trace;
+        }
+    }
+
+    public FailureSummarizer(CodeRunnerConfigProps.FailureSummary config) {
+        this.maxTraceChars = config.getMaxTraceChars();
+        this.testNamesPerGroup = config.getTestNamesPerGroup();
+    }
+
+    public void add(String className, TestFailureExtractor.FailureDetail failure) {
+        String message = failure.getErrorMessage() == null ? "" : failure.getErrorMessage();
+        List<String> lines = message.lines().toList();
+        String cause = rootCause(lines);
+        String fingerprint = fingerprint(cause, lines);
+
+        Group group = groups.computeIfAbsent(fingerprint, f -> new Group(cause, clip(fold(lines), maxTraceChars)));
+        group.count++;
+        if (group.tests.size() < testNamesPerGroup) {
+            group.tests.add(testName(className, failure.getTestName()));
+        }
+        failures++;
+    }
+
+    public void addAll(Map<String, List<TestFailureExtractor.FailureDetail>> failures) {
+        failures.forEach((className, details) -> details.forEach(d -> add(className, d)));
+    }
+
+    /**
+     * @param maxChars the budget of the summary, {@link #CHARS_PER_TOKEN} per token
+     */
+    public String summary(int maxChars) {
+        if (failures == 0) {
+            return NO_FAILURES;
+        }
+        List<Group> ordered = groups.values().stream()
+                .sorted(Comparator.comparingInt((Group g) -> g.count).reversed())
+                .toList();
+        List<String> headings = ordered.stream().map(this::heading).toList();
+
+        StringBuilder summary = new StringBuilder("Test Failure Summary: %d failures, %d distinct causes\n\n"
+                .formatted(failures, groups.size()));
+        // the headings of the groups not yet written, which are kept before anyone's trace
+        int reserved = headings.stream().mapToInt(String::length).sum();
+        for (int i = 0; i < ordered.size(); i++) {
+            Group group = ordered.get(i);
+            String heading = headings.get(i);
+            reserved -= heading.length();
+            // room to say what was left out, unless this is the last group
+            int trailer = i < ordered.size() - 1 ? MAX_OMITTED_CHARS : 0;
+            if (summary.length() + heading.length() + trailer > maxChars) {
+                int omitted = ordered.subList(i, ordered.size()).stream().mapToInt(g -> g.count).sum();
+                summary.append("... %d more causes of %d failures\n".formatted(ordered.size() - i, omitted));
+                break;
+            }
+            summary.append(heading);
+
+            int traceChars = maxChars - summary.length() - reserved - trailer;
+            if (traceChars >= MIN_TRACE_CHARS && !group.trace.isEmpty()) {
+                summary.append(clip(indent(group.trace), traceChars - 4)).append('\n');
+            }
+            summary.append('\n');
+        }
+        return summary.toString().stripTrailing();
+    }
+
+    private String heading(Group group) {
+        StringBuilder heading = new StringBuilder()
+                .append("Cause: ").append(clip(group.cause, 500)).append('\n')
+                .append("  Failures: ").append(group.count).append('\n')
+                .append("  Tests: ").append(String.join(", ", group.tests));
+        if (group.count > group.tests.size()) {
+            heading.append(" and %d more".formatted(group.count - group.tests.size()));
+        }
+        return heading.append('\n').toString();
+    }
+
+    /**
+     * @return the innermost cause of a trace, or its first line if it doesn't look like one
+     */
+    private static String rootCause(List<String> lines) {
+        String cause = null;
+        for (String line : lines) {
+            Matcher matcher = CAUSE.matcher(line);
+            if (matcher.matches() && (cause == null || matcher.group(1) != null)) {
+                cause = line.strip().replaceFirst("^Caused by: ", "");
+            }
+        }
+        if (cause != null) {
+            return cause;
+        }
+        return lines.stream().map(String::strip).filter(l -> !l.isEmpty()).findFirst().orElse("Failed without a message");
+    }
+
+    private static String fingerprint(String cause, List<String> lines) {
+        StringBuilder fingerprint = new StringBuilder(VARYING.matcher(clip(cause, 500)).replaceAll("#"));
+        // the frames of the innermost cause, which follow it
+        int from = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).strip().startsWith("Caused by: ")) {
+                from = i;
+            }
+        }
+        int frames = 0;
+        for (String line : lines.subList(from, lines.size())) {
+            Matcher frame = FRAME.matcher(line);
+            if (frame.matches() && !isFramework(frame.group(1))) {
+                fingerprint.append('|').append(line.strip());
+                if (++frames == FINGERPRINT_FRAMES) {
+                    break;
+                }
+            }
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * @return the trace with each run of framework frames folded into one line
+     */
+    private static String fold(List<String> lines) {
+        List<String> folded = new ArrayList<>();
+        int framework = 0;
+        for (String line : lines) {
+            Matcher frame = FRAME.matcher(line);
+            if (frame.matches() && isFramework(frame.group(1))) {
+                framework++;
+                continue;
+            }
+            if (framework > 0) {
+                folded.add("\t... %d framework frames".formatted(framework));
+                framework = 0;
+            }
+            folded.add(line);
+        }
+        if (framework > 0) {
+            folded.add("\t... %d framework frames".formatted(framework));
+        }
+        return String.join("\n", folded);
+    }
+
+    private static boolean isFramework(String className) {
+        return FRAMEWORK_PACKAGES.stream().anyMatch(className::startsWith);
+    }
+
+    private static String testName(String className, String testName) {
+        if (testName == null || testName.equals(className)) {
+            return className;
+        }
+        return className == null ? testName : className + "." + testName;
+    }
+
+    private static String indent(String text) {
+        return text.lines().map(l -> "    " + l).collect(Collectors.joining("\n"));
+    }
+
+    private static String clip(String text, int maxChars) {
+        return text.length() > maxChars ? text.substring(0, Math.max(0, maxChars)) + "..." : text;
+    }
+}
@@ -0,0 +1,212 @@
+package com.hayden.functioncalling.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Reads JUnit XML result files (Gradle's TEST-*.xml, pytest's --junitxml) with a streaming parser, so large suites
+ * never have to be loaded as a document. Failure messages and traces are the only text kept, cut to
+ * {@link #MAX_TRACE_CHARS}.
+ */
+@Slf4j
+public class JUnitXmlReportParser {
+
+    public static final int MAX_TRACE_CHARS = 16_000;
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    /**
+     * Parse every result file under the given path. The path may be a single XML file or a directory that is
+     * searched recursively for TEST-*.xml files.
+     * @param resultsPath file or directory containing JUnit XML results
+     * @param modifiedAfterMillis only files modified at or after this time are read, or 0 for all files
+     * @return one entry per test case
+     */
+    public List<TestCaseResult> parse(Path resultsPath, long modifiedAfterMillis) {
+        List<TestCaseResult> results = new ArrayList<>();
+        for (Path file : resultFiles(resultsPath, modifiedAfterMillis)) {
+            results.addAll(parseFile(file));
+        }
+        return results;
+    }
+
+    public List<Path> resultFiles(Path resultsPath, long modifiedAfterMillis) {
+        if (resultsPath == null || !Files.exists(resultsPath)) {
+            return List.of();
+        }
+
+        if (Files.isRegularFile(resultsPath)) {
+            return isModifiedAfter(resultsPath, modifiedAfterMillis) ? List.of(resultsPath) : List.of();
+        }
+
+        try (Stream<Path> files = Files.walk(resultsPath)) {
+            return files
+                    .filter(Files::isRegularFile)
+                    .filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith("TEST-") && name.endsWith(".xml");
+                    })
+                    .filter(p -> isModifiedAfter(p, modifiedAfterMillis))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            log.error("Error listing test results in {}", resultsPath, e);
+            return List.of();
+        }
+    }
+
+    public List<TestCaseResult> parseFile(Path file) {
+        List<TestCaseResult> results = new ArrayList<>();
+
+        try (InputStream in = Files.newInputStream(file)) {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+            try {
+                String suiteName = null;
+                String className = null;
+                String testName = null;
+                long durationMs = 0;
+                TestStatus status = null;
+                Failure failure = null;
+                String failureType = null;
+                String failureMessage = null;
+                // only set while inside the first failure or error of a test case
+                StringBuilder trace = null;
+
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        switch (reader.getLocalName()) {
+                            case "testsuite" -> suiteName = reader.getAttributeValue(null, "name");
+                            case "testcase" -> {
+                                className = Optional.ofNullable(reader.getAttributeValue(null, "classname"))
+                                        .filter(c -> !c.isBlank())
+                                        .orElse(suiteName);
+                                testName = reader.getAttributeValue(null, "name");
+                                durationMs = parseSeconds(reader.getAttributeValue(null, "time"));
+                                status = TestStatus.PASSED;
+                                failure = null;
+                            }
+                            case "failure", "error" -> {
+                                if (status != null) {
+                                    status = TestStatus.FAILED;
+                                    if (failure == null && trace == null) {
+                                        failureType = reader.getAttributeValue(null, "type");
+                                        failureMessage = reader.getAttributeValue(null, "message");
+                                        trace = new StringBuilder();
+                                    }
+                                }
+                            }
+                            case "skipped" -> {
+                                if (status != null) {
+                                    status = TestStatus.SKIPPED;
+                                }
+                            }
+                            default -> {
+                            }
+                        }
+                    } else if (trace != null && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+                        int room = MAX_TRACE_CHARS - trace.length();
+                        if (room > 0) {
+                            trace.append(reader.getTextCharacters(), reader.getTextStart(), Math.min(room, reader.getTextLength()));
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        switch (reader.getLocalName()) {
+                            case "failure", "error" -> {
+                                if (trace != null) {
+                                    String text = trace.toString().strip();
+                                    failure = new Failure(failureType, failureMessage, text.isEmpty() ? null : text);
+                                    trace = null;
+                                }
+                            }
+                            case "testcase" -> {
+                                results.add(new TestCaseResult(className, testName, durationMs, status, failure));
+                                status = null;
+                                failure = null;
+                            }
+                            default -> {
+                            }
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            log.error("Error parsing JUnit XML results from {}", file, e);
+        }
+
+        return results;
+    }
+
+    private static long parseSeconds(String time) {
+        if (time == null || time.isBlank()) {
+            return 0;
+        }
+        try {
+            return Math.round(Double.parseDouble(time.replace(",", "")) * 1000);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static boolean isModifiedAfter(Path path, long modifiedAfterMillis) {
+        if (modifiedAfterMillis <= 0) {
+            return true;
+        }
+        try {
+            return Files.getLastModifiedTime(path).toMillis() >= modifiedAfterMillis;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    public enum TestStatus {
+        PASSED,
+        FAILED,
+        SKIPPED
+    }
+
+    /**
+     * The first failure or error of a test case.
+     *
+     * @param trace the element's text, usually the stack trace, null if it had none
+     */
+    public record Failure(String type, String message, String trace) {
+
+        /**
+         * @return the trace, which normally starts with the type and message, or else the message
+         */
+        public String describe() {
+            if (trace != null) {
+                return trace;
+            }
+            return type == null ? message : message == null ? type : type + ": " + message;
+        }
+    }
+
+    /**
+     * @param suite   the test class (or pytest module) the test case belongs to
+     * @param failure null unless the test case failed
+     */
+    public record TestCaseResult(String suite, String name, long durationMs, TestStatus status, Failure failure) {
+    }
+}
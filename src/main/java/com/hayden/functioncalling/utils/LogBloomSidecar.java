@@ -0,0 +1,476 @@
+package com.hayden.functioncalling.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Token Bloom filters of a log file, kept next to it in {@code <log>.bloom}. While the log is written, every block of
+ * about {@link #BLOCK_BYTES} of it gets a filter of the tokens in its lines, so that a search for a token only needs
+ * to read the blocks whose filter might contain it, and can skip files none of whose blocks do.
+ * <p>
+ * Tokens are runs of ASCII letters, digits and underscores and of non-ASCII characters, and are filtered
+ * case-insensitively. The sidecar is a header followed by one record per block, each appended once the block is
+ * complete, so a sidecar cut short by a crash still covers the blocks before the cut. A block's filter is sized for
+ * the distinct tokens it turned out to have, so logs full of unique IDs don't saturate it.
+ */
+@Slf4j
+public final class LogBloomSidecar {
+
+    public static final String EXTENSION = ".bloom";
+
+    static final int BLOCK_BYTES = 1024 * 1024;
+    /**
+     * With 7 hashes and 10 to 20 bits per distinct token, under 1% of the blocks without a token seem to have it.
+     */
+    static final int BITS_PER_TOKEN = 10;
+    static final int HASHES = 7;
+
+    private static final int MAGIC = 0x4C42464C;
+    private static final byte VERSION = 1;
+    private static final int HEADER_BYTES = Integer.BYTES + 1 + Integer.BYTES;
+    private static final int RECORD_HEADER_BYTES = 4 * Long.BYTES + Integer.BYTES;
+
+    private LogBloomSidecar() {
+    }
+
+    public static Path sidecarOf(Path logFile) {
+        return logFile.resolveSibling(logFile.getFileName() + EXTENSION);
+    }
+
+    /**
+     * @return true for characters that are part of tokens; any non-ASCII character is, so that a UTF-8 byte can be
+     * classified on its own
+     */
+    public static boolean isTokenChar(int c) {
+        return c >= 0x80 || c == '_' || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * @return the hashes of the tokens of the text, as they are added to the filters
+     */
+    public static long[] tokenHashes(String text) {
+        List<Long> hashes = new ArrayList<>();
+        tokenize(text, hashes::add);
+        return hashes.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private interface TokenSink {
+        void token(long hash);
+    }
+
+    private static void tokenize(String line, TokenSink sink) {
+        long hash = 0;
+        boolean inToken = false;
+        for (int i = 0, n = line.length(); i < n; i++) {
+            char c = line.charAt(i);
+            if (isTokenChar(c)) {
+                if (!inToken) {
+                    hash = 0xcbf29ce484222325L;
+                    inToken = true;
+                }
+                char lower = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+                hash = (hash ^ lower) * 0x100000001b3L;
+            } else if (inToken) {
+                sink.token(mix(hash));
+                inToken = false;
+            }
+        }
+        if (inToken) {
+            sink.token(mix(hash));
+        }
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int bitIndex(long hash, int i, int bits) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return (h1 + i * h2) & (bits - 1);
+    }
+
+    private static int utf8Length(String line) {
+        int length = 0;
+        for (int i = 0, n = line.length(); i < n; i++) {
+            char c = line.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(line.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // written as the encoder's replacement, '?'
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Builds the filters of a log as its lines are written.
+     */
+    public static final class Writer implements Closeable {
+
+        private final Path sidecar;
+        private final DataOutputStream out;
+        private final int separatorBytes;
+        private final LongSet blockTokens = new LongSet();
+
+        private long blockStart;
+        private long blockFirstLine;
+        private long offset;
+        private long lines;
+
+        private Writer(Path sidecar, DataOutputStream out, long offset, long lines, String lineSeparator) {
+            this.sidecar = sidecar;
+            this.out = out;
+            this.blockStart = offset;
+            this.offset = offset;
+            this.blockFirstLine = lines + 1;
+            this.lines = lines;
+            this.separatorBytes = lineSeparator.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        /**
+         * Start or continue the filters of a log about to be written to. A log that already has content its sidecar
+         * doesn't describe can't be filtered: its sidecar is removed, and searches then read the whole log.
+         *
+         * @return the writer, or empty if the log can't be filtered
+         */
+        public static Optional<Writer> open(Path logFile, String lineSeparator) throws IOException {
+            Path sidecar = sidecarOf(logFile);
+            long logSize = Files.exists(logFile) ? Files.size(logFile) : 0;
+            boolean hasContent = logSize > 0;
+            if (!hasContent) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(sidecar)));
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeInt(HASHES);
+                out.flush();
+                return Optional.of(new Writer(sidecar, out, 0, 0, lineSeparator));
+            }
+
+            Optional<Index> existing = Index.read(logFile);
+            boolean describesLog = existing
+                    .filter(index -> index.hashes == HASHES)
+                    .filter(index -> LogFiles.isCompressed(logFile) || index.end() == logSize)
+                    .isPresent();
+            if (!describesLog) {
+                Files.deleteIfExists(sidecar);
+                return Optional.empty();
+            }
+            Index index = existing.get();
+            // drop a record cut short by a crash before appending after it
+            try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.WRITE)) {
+                channel.truncate(index.completeBytes);
+            }
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(sidecar, StandardOpenOption.APPEND)));
+            return Optional.of(new Writer(sidecar, out, index.end(), index.lines(), lineSeparator));
+        }
+
+        public void addLine(String line) throws IOException {
+            tokenize(line, blockTokens::add);
+            offset += utf8Length(line) + separatorBytes;
+            lines++;
+            if (offset - blockStart >= BLOCK_BYTES) {
+                writeBlock();
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            out.writeLong(blockStart);
+            out.writeLong(offset);
+            out.writeLong(blockFirstLine);
+            out.writeLong(lines - blockFirstLine + 1);
+            int bitCount = Math.max(Long.SIZE, Integer.highestOneBit(Math.max(1, blockTokens.size() * BITS_PER_TOKEN) - 1) << 1);
+            long[] bits = new long[bitCount / Long.SIZE];
+            blockTokens.forEach(hash -> {
+                for (int i = 0; i < HASHES; i++) {
+                    int bit = bitIndex(hash, i, bitCount);
+                    bits[bit >>> 6] |= 1L << (bit & 63);
+                }
+            });
+            out.writeInt(bitCount);
+            for (long word : bits) {
+                out.writeLong(word);
+            }
+            out.flush();
+            blockTokens.clear();
+            blockStart = offset;
+            blockFirstLine = lines + 1;
+        }
+
+        /**
+         * Write the last block. Called after the log is closed, so that the sidecar ends up modified after the log:
+         * {@link Index#coversWholeLog} relies on it for compressed logs.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                if (offset > blockStart) {
+                    writeBlock();
+                }
+            } finally {
+                out.close();
+            }
+            Files.setLastModifiedTime(sidecar, FileTime.fromMillis(System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * A block of a log: its bytes as written, before any compression, and its lines, numbered from 1.
+     */
+    public record Block(long start, long end, long firstLine, long lineCount, int bitCount, int bitsPosition) {
+    }
+
+    /**
+     * The filters of a log, read from its memory-mapped sidecar.
+     */
+    public static final class Index {
+
+        private final MappedByteBuffer buffer;
+        private final int hashes;
+        private final List<Block> blocks;
+        private final long completeBytes;
+
+        private Index(MappedByteBuffer buffer, int hashes, List<Block> blocks, long completeBytes) {
+            this.buffer = buffer;
+            this.hashes = hashes;
+            this.blocks = blocks;
+            this.completeBytes = completeBytes;
+        }
+
+        /**
+         * @return the filters of the log, or empty if it has no sidecar or an unreadable one
+         */
+        public static Optional<Index> read(Path logFile) {
+            Path sidecar = sidecarOf(logFile);
+            if (!Files.isRegularFile(sidecar)) {
+                return Optional.empty();
+            }
+            try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < HEADER_BYTES) {
+                    return Optional.empty();
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                if (buffer.getInt(0) != MAGIC || buffer.get(Integer.BYTES) != VERSION) {
+                    return Optional.empty();
+                }
+                int hashes = buffer.getInt(Integer.BYTES + 1);
+                if (hashes <= 0) {
+                    return Optional.empty();
+                }
+                List<Block> blocks = new ArrayList<>();
+                long position = HEADER_BYTES;
+                while (position + RECORD_HEADER_BYTES <= size) {
+                    int p = (int) position;
+                    int bitCount = buffer.getInt(p + 4 * Long.BYTES);
+                    if (bitCount < Long.SIZE || Integer.bitCount(bitCount) != 1) {
+                        break;
+                    }
+                    long recordEnd = position + RECORD_HEADER_BYTES + bitCount / Byte.SIZE;
+                    if (recordEnd > size) {
+                        break;
+                    }
+                    blocks.add(new Block(buffer.getLong(p), buffer.getLong(p + Long.BYTES), buffer.getLong(p + 2 * Long.BYTES),
+                            buffer.getLong(p + 3 * Long.BYTES), bitCount, p + RECORD_HEADER_BYTES));
+                    position = recordEnd;
+                }
+                return Optional.of(new Index(buffer, hashes, blocks, position));
+            } catch (IOException e) {
+                log.warn("Failed to read log filters {}", sidecar, e);
+                return Optional.empty();
+            }
+        }
+
+        public List<Block> blocks() {
+            return blocks;
+        }
+
+        /**
+         * @return the offset right after the last filtered block
+         */
+        public long end() {
+            return blocks.isEmpty() ? 0 : blocks.getLast().end();
+        }
+
+        /**
+         * @return the number of lines in the filtered blocks
+         */
+        public long lines() {
+            return blocks.isEmpty() ? 0 : blocks.getLast().firstLine() + blocks.getLast().lineCount() - 1;
+        }
+
+        /**
+         * Whether the blocks cover the whole log. A log still being written, or whose writer stopped without
+         * closing, has lines after the last block. The size of a compressed log says nothing about its content, so
+         * it is taken as covered when its sidecar was closed after it.
+         */
+        public boolean coversWholeLog(Path logFile) throws IOException {
+            if (!LogFiles.isCompressed(logFile)) {
+                return end() >= Files.size(logFile);
+            }
+            return Files.getLastModifiedTime(sidecarOf(logFile)).compareTo(Files.getLastModifiedTime(logFile)) >= 0;
+        }
+
+        /**
+         * @param tokenHashes from {@link #tokenHashes}
+         * @return false if the block surely contains none of the lines with all the tokens
+         */
+        public boolean mightContainAll(Block block, long[] tokenHashes) {
+            for (long hash : tokenHashes) {
+                for (int i = 0; i < hashes; i++) {
+                    int bit = bitIndex(hash, i, block.bitCount());
+                    long word = buffer.getLong(block.bitsPosition() + (bit >>> 6) * Long.BYTES);
+                    if ((word & (1L << (bit & 63))) == 0) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Open-addressing set of the token hashes of a block, without boxing them.
+     */
+    private static final class LongSet {
+
+        private long[] slots = new long[1024];
+        private boolean hasZero;
+        private int size;
+
+        void add(long value) {
+            if (value == 0) {
+                if (!hasZero) {
+                    hasZero = true;
+                    size++;
+                }
+                return;
+            }
+            int mask = slots.length - 1;
+            for (int i = (int) value & mask; ; i = (i + 1) & mask) {
+                if (slots[i] == value) {
+                    return;
+                }
+                if (slots[i] == 0) {
+                    slots[i] = value;
+                    if (++size * 2 > slots.length) {
+                        grow();
+                    }
+                    return;
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        void forEach(TokenSink sink) {
+            if (hasZero) {
+                sink.token(0);
+            }
+            for (long slot : slots) {
+                if (slot != 0) {
+                    sink.token(slot);
+                }
+            }
+        }
+
+        void clear() {
+            Arrays.fill(slots, 0);
+            hasZero = false;
+            size = 0;
+        }
+
+        private void grow() {
+            long[] old = slots;
+            slots = new long[old.length * 2];
+            size = hasZero ? 1 : 0;
+            for (long value : old) {
+                if (value != 0) {
+                    add(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds a text in log lines as whole tokens: where the text starts or ends with a token character, the match
+     * can't continue a longer token. Every token of a text found this way is a token of the line, so the filters
+     * never hide a match.
+     */
+    public static final class WholeTokenMatcher {
+
+        private final byte[] needle;
+        private final boolean checkBefore;
+        private final boolean checkAfter;
+
+        public WholeTokenMatcher(String text) {
+            this.needle = text.getBytes(StandardCharsets.UTF_8);
+            this.checkBefore = needle.length > 0 && isTokenChar(needle[0] & 0xff);
+            this.checkAfter = needle.length > 0 && isTokenChar(needle[needle.length - 1] & 0xff);
+        }
+
+        /**
+         * @return whether the bytes of {@code buffer} from {@code from} to {@code to} contain the text
+         */
+        public boolean matches(ByteBuffer buffer, int from, int to) {
+            if (needle.length == 0) {
+                return false;
+            }
+            byte first = needle[0];
+            outer:
+            for (int i = from, last = to - needle.length; i <= last; i++) {
+                if (buffer.get(i) != first) {
+                    continue;
+                }
+                for (int j = 1; j < needle.length; j++) {
+                    if (buffer.get(i + j) != needle[j]) {
+                        continue outer;
+                    }
+                }
+                if (checkBefore && i > from && isTokenChar(buffer.get(i - 1) & 0xff)) {
+                    continue;
+                }
+                int end = i + needle.length;
+                if (checkAfter && end < to && isTokenChar(buffer.get(end) & 0xff)) {
+                    continue;
+                }
+                return true;
+            }
+            return false;
+        }
+
+        public boolean matches(String line) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            return matches(ByteBuffer.wrap(bytes), 0, bytes.length);
+        }
+    }
+}
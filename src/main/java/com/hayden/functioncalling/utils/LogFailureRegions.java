@@ -0,0 +1,186 @@
+package com.hayden.functioncalling.utils;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the parts of a test output log that describe failures: exception headers, FAILED markers and tracebacks,
+ * with the stack frames that follow them and a few lines of context on either side. Plain logs are scanned
+ * memory-mapped a window at a time and gzipped ones line by line, and only the lines before the current one that
+ * could become context are kept, so the heap used is bounded by the configured region limits however large the log.
+ * A log without failures gives its last lines instead.
+ */
+public class LogFailureRegions {
+
+    private static final int MAX_LINE_CHARS = 2000;
+
+    private static final Pattern FAILURE = Pattern.compile(
+            "\\bFAILED\\b|\\bFAILURE:|^\\s*Traceback \\(most recent call last\\)|^E {2,}"
+                    + "|(^|[\\s:])([\\w$]+\\.)*[\\w$]*(Exception|Error)(:|$)");
+    private static final Pattern TRACE = Pattern.compile(
+            "^\\s+(at |\\.\\.\\. \\d+ more|File \")|^(Caused by|\\s*Suppressed):|^\\s{2,}\\S|^E\\s");
+
+    /**
+     * A failure region of a log.
+     *
+     * @param firstLine the line the region starts on, from 1
+     */
+    public record Region(long firstLine, String text) {
+    }
+
+    @FunctionalInterface
+    private interface LineVisitor {
+        /**
+         * @return whether to keep reading
+         */
+        boolean visit(String line);
+    }
+
+    private final int contextLines;
+    private final int maxRegions;
+    private final int maxRegionChars;
+
+    public LogFailureRegions(CodeRunnerConfigProps.FailureRegions config) {
+        this.contextLines = config.getContextLines();
+        this.maxRegions = config.getMaxRegions();
+        this.maxRegionChars = config.getMaxRegionChars();
+    }
+
+    public List<Region> extract(Path log) throws IOException {
+        Scan scan = new Scan();
+        if (LogFiles.isCompressed(log)) {
+            readCompressed(log, scan::visit);
+        } else {
+            readMapped(log, scan::visit);
+        }
+        return scan.finish();
+    }
+
+    /**
+     * The state of a scan: the lines that may become the context before a region, and the region being read.
+     */
+    private class Scan {
+
+        private final List<Region> regions = new ArrayList<>();
+        private final ArrayDeque<String> before = new ArrayDeque<>();
+        private long line;
+
+        private StringBuilder region;
+        private long regionStart;
+        private boolean inTrace;
+        private int afterRemaining;
+
+        boolean visit(String text) {
+            line++;
+            boolean failure = FAILURE.matcher(text).find();
+            if (region == null) {
+                if (!failure) {
+                    remember(text, Math.max(contextLines, tailLines()));
+                    return true;
+                }
+                // the tail kept while nothing failed is longer than the context
+                while (before.size() > contextLines) {
+                    before.removeFirst();
+                }
+                region = new StringBuilder();
+                regionStart = line - before.size();
+                before.forEach(this::append);
+                before.clear();
+            }
+
+            append(text);
+            if (failure || inTrace && TRACE.matcher(text).find()) {
+                inTrace = true;
+                afterRemaining = contextLines;
+            } else {
+                inTrace = false;
+                if (--afterRemaining <= 0) {
+                    close();
+                }
+            }
+            return regions.size() < maxRegions;
+        }
+
+        List<Region> finish() {
+            if (region != null) {
+                close();
+            }
+            if (regions.isEmpty() && !before.isEmpty()) {
+                // nothing looked like a failure, the end of the log is the best guess
+                region = new StringBuilder();
+                regionStart = line - before.size() + 1;
+                before.forEach(this::append);
+                close();
+            }
+            return regions;
+        }
+
+        private void close() {
+            regions.add(new Region(regionStart, region.toString()));
+            region = null;
+            inTrace = false;
+            before.clear();
+        }
+
+        private void append(String text) {
+            if (region.length() >= maxRegionChars) {
+                return;
+            }
+            if (!region.isEmpty()) {
+                region.append('\n');
+            }
+            if (region.length() + text.length() > maxRegionChars) {
+                region.append(text, 0, Math.max(0, maxRegionChars - region.length())).append("...");
+            } else {
+                region.append(text);
+            }
+        }
+
+        private void remember(String text, int keep) {
+            if (keep == 0) {
+                return;
+            }
+            if (before.size() == keep) {
+                before.removeFirst();
+            }
+            before.addLast(text);
+        }
+
+        private int tailLines() {
+            return regions.isEmpty() ? 4 * contextLines : 0;
+        }
+    }
+
+    private static void readMapped(Path log, LineVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            LogFiles.scanMapped(channel, 0, Long.MAX_VALUE, (window, start, end) -> {
+                // lines are only decoded up to what a region would keep of them
+                byte[] bytes = new byte[Math.min(end - start, MAX_LINE_CHARS)];
+                window.get(start, bytes);
+                return visitor.visit(new String(bytes, StandardCharsets.UTF_8));
+            });
+        }
+    }
+
+    private static void readCompressed(Path log, LineVisitor visitor) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(LogFiles.open(log), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!visitor.visit(line.length() > MAX_LINE_CHARS ? line.substring(0, MAX_LINE_CHARS) : line)) {
+                    return;
+                }
+            }
+        }
+    }
+}
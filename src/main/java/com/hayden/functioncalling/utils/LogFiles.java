@@ -0,0 +1,120 @@
+package com.hayden.functioncalling.utils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads log files that may have been written gzipped, recognised by their {@code .gz} extension, and scans the lines
+ * of plain ones memory-mapped.
+ */
+public final class LogFiles {
+
+    public static final String GZIP_EXTENSION = ".gz";
+
+    private static final long WINDOW_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Visits the lines of a memory-mapped log.
+     */
+    @FunctionalInterface
+    public interface MappedLineVisitor {
+        /**
+         * @param window the mapped window the line is in
+         * @param start  the index of the line's first byte in the window
+         * @param end    the index just past its last byte, without the line terminator
+         * @return whether to keep reading
+         */
+        boolean visit(ByteBuffer window, int start, int end) throws IOException;
+    }
+
+    private LogFiles() {
+    }
+
+    public static boolean isCompressed(Path path) {
+        return path.getFileName().toString().endsWith(GZIP_EXTENSION);
+    }
+
+    /**
+     * @return the path of the log file, with the gzip extension added when it is written compressed
+     */
+    public static Path withCompression(Path path, boolean compress) {
+        return compress && !isCompressed(path) ? path.resolveSibling(path.getFileName() + GZIP_EXTENSION) : path;
+    }
+
+    public static InputStream open(Path path) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path));
+        return isCompressed(path) ? new GZIPInputStream(in) : in;
+    }
+
+    public static String readString(Path path) throws IOException {
+        try (InputStream in = open(path)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Reads the lines of a plain log between two offsets, mapping it a window at a time. Each window ends on a whole
+     * line, so no line is split between two of them.
+     *
+     * @param start the offset the first line starts at
+     * @param end   the offset to stop at, past the end of the file to read it to the end
+     * @return whether the visitor read every line
+     */
+    public static boolean scanMapped(FileChannel channel, long start, long end, MappedLineVisitor visitor)
+            throws IOException {
+        long size = channel.size();
+        long position = Math.min(start, size);
+        long limit = Math.min(end, size);
+        while (position < limit) {
+            long windowEnd = Math.min(limit, position + WINDOW_BYTES);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowEnd - position);
+            int length = window.limit();
+            if (windowEnd < limit) {
+                // end the window on a whole line, the next one starts after it
+                int lastNewline = lastIndexOf(window, length, (byte) '\n');
+                if (lastNewline >= 0) {
+                    length = lastNewline + 1;
+                }
+            }
+
+            int lineStart = 0;
+            while (lineStart < length) {
+                int newline = indexOf(window, lineStart, length, (byte) '\n');
+                int lineEnd = newline < 0 ? length : newline;
+                int contentEnd = lineEnd > lineStart && window.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+                if (!visitor.visit(window, lineStart, contentEnd)) {
+                    return false;
+                }
+                lineStart = lineEnd + 1;
+            }
+            position += length;
+        }
+        return true;
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(ByteBuffer buffer, int to, byte b) {
+        for (int i = to - 1; i >= 0; i--) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,187 @@
+package com.hayden.functioncalling.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Remembers what was extracted from report files, keyed by path and fingerprinted by size, modification time and
+ * content hash, so that the report pages and result files that didn't change since the previous run aren't parsed
+ * again. A file whose size and modification time are unchanged is reused without reading it; otherwise its content
+ * is hashed, which still matches for the identical files Gradle rewrites on every run. Entries are dropped least
+ * recently used first, and the cache is persisted as a JSON index under the data directory so it outlives restarts.
+ */
+@Component
+@Slf4j
+public class ReportParseCache {
+
+    @FunctionalInterface
+    public interface Parser<T> {
+        T parse(Path file) throws IOException;
+    }
+
+    private final CodeRunnerConfigProps.ReportCache config;
+    private final ObjectMapper objectMapper;
+    private final Path indexFile;
+    private final Object flushLock = new Object();
+
+    private LinkedHashMap<String, Entry> entries;
+    private boolean dirty;
+
+    public ReportParseCache(CodeRunnerConfigProps props, ObjectMapper objectMapper) {
+        this.config = props.getReportCache();
+        this.objectMapper = objectMapper;
+        this.indexFile = props.getDataDirectory().resolve("report-cache").resolve("index.json");
+    }
+
+    /**
+     * @return what the parser extracts from the file, from the cache if the file didn't change
+     */
+    public <T> T get(Path file, String kind, TypeReference<T> type, Parser<T> parser) throws IOException {
+        if (!config.isEnabled()) {
+            return parser.parse(file);
+        }
+
+        String key = kind + ":" + file.toAbsolutePath().normalize();
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        String hash = null;
+
+        Entry cached = entry(key);
+        if (cached != null) {
+            if (cached.getSize() == size && cached.getModifiedMillis() == modified) {
+                return objectMapper.convertValue(cached.getValue(), type);
+            }
+            if (cached.getSize() == size) {
+                hash = sha256(file);
+                if (hash.equals(cached.getHash())) {
+                    put(key, new Entry(size, modified, hash, cached.getValue()));
+                    return objectMapper.convertValue(cached.getValue(), type);
+                }
+            }
+        }
+
+        T parsed = parser.parse(file);
+        put(key, new Entry(size, modified, hash == null ? sha256(file) : hash, objectMapper.valueToTree(parsed)));
+        return parsed;
+    }
+
+    /**
+     * Write the index if it changed since it was last written. Flushes are serialized, so that an older snapshot
+     * never replaces a newer one, and lookups go on while the index is written.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            LinkedHashMap<String, Entry> snapshot;
+            synchronized (this) {
+                if (!dirty) {
+                    return;
+                }
+                snapshot = new LinkedHashMap<>(entries);
+                dirty = false;
+            }
+            Path tmp = null;
+            try {
+                Files.createDirectories(indexFile.getParent());
+                tmp = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+                objectMapper.writeValue(tmp.toFile(), new Index(snapshot));
+                Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.error("Failed to persist report cache {}", indexFile, e);
+                synchronized (this) {
+                    dirty = true;
+                }
+                deleteQuietly(tmp);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Could not delete {}", file, e);
+        }
+    }
+
+    private synchronized Entry entry(String key) {
+        return entries().get(key);
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        entries().put(key, entry);
+        dirty = true;
+    }
+
+    private LinkedHashMap<String, Entry> entries() {
+        if (entries == null) {
+            // access ordered, least recently used first
+            entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > config.getMaxEntries();
+                }
+            };
+            if (Files.exists(indexFile)) {
+                try {
+                    entries.putAll(objectMapper.readValue(indexFile.toFile(), Index.class).getEntries());
+                } catch (IOException e) {
+                    log.warn("Could not read report cache {}, starting a new one", indexFile, e);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static String sha256(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Index {
+        /**
+         * Least recently used first.
+         */
+        private LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        private long size;
+        private long modifiedMillis;
+        private String hash;
+        private JsonNode value;
+    }
+}
@@ -1,6 +1,8 @@
 package com.hayden.functioncalling.utils;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.collect.Lists;
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 import org.jsoup.Jsoup;
@@ -13,19 +15,70 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 /**
- * Utility class to extract failure information from Gradle test reports.
+ * Utility class to extract failure information from test reports. JUnit XML results are read first, with the
+ * streaming {@link JUnitXmlReportParser}: an XML file such as pytest's --junitxml, a directory of TEST-*.xml files,
+ * or the Gradle results next to a Gradle HTML report. The HTML report itself is only parsed when there are no XML
+ * results for it. Test output logs are reduced to their {@link LogFailureRegions failure regions}. Result files,
+ * and the package and class pages of an HTML report, are parsed concurrently on virtual threads and merged in path
+ * and page order. Given a {@link ReportParseCache}, files that didn't change since they were last parsed aren't
+ * parsed again.
  */
 @Slf4j
 public class TestFailureExtractor {
     
+    private static final TypeReference<List<PageLink>> PAGE_LINKS = new TypeReference<>() {
+    };
+    private static final TypeReference<List<ClassFailure>> CLASS_FAILURES = new TypeReference<>() {
+    };
+    private static final TypeReference<List<CaseFailure>> RESULT_FAILURES = new TypeReference<>() {
+    };
+
     private String testReportDir;
+
+    /**
+     * Remembers what was extracted from the report files of previous runs, null to parse every file.
+     */
+    private final ReportParseCache cache;
+
+    private final CodeRunnerConfigProps.FailureRegions failureRegions;
     
     public TestFailureExtractor(String testReportDir) {
+        this(testReportDir, null, new CodeRunnerConfigProps.FailureRegions());
+    }
+
+    public TestFailureExtractor(String testReportDir, ReportParseCache cache,
+                                CodeRunnerConfigProps.FailureRegions failureRegions) {
         this.testReportDir = testReportDir;
+        this.cache = cache;
+        this.failureRegions = failureRegions;
+    }
+
+    /**
+     * The first link of a row with failures of an index or package page.
+     */
+    record PageLink(String href, String text) {
+    }
+
+    /**
+     * A failed test case of a JUnit XML result file.
+     */
+    record CaseFailure(String suite, String name, String error) {
+    }
+
+    /**
+     * A failed test of a class page of an HTML report.
+     */
+    record ClassFailure(String name, String error) {
     }
     
     /**
@@ -33,11 +86,28 @@ public class TestFailureExtractor {
      * @return Map of test class to failure details
      */
     public Map<String, List<FailureDetail>> extractFailures() {
-        Map<String, List<FailureDetail>> failures = new HashMap<>();
+        Map<String, List<FailureDetail>> failures = new LinkedHashMap<>();
+
+        Optional<Path> xmlResults = junitXmlResults();
+        if (xmlResults.isPresent()) {
+            return extractXmlFailures(xmlResults.get());
+        }
 
-        if (testReportDir.endsWith("log") || testReportDir.endsWith("txt")) {
+        String plainName = testReportDir.endsWith(LogFiles.GZIP_EXTENSION)
+                ? testReportDir.substring(0, testReportDir.length() - LogFiles.GZIP_EXTENSION.length())
+                : testReportDir;
+        if (plainName.endsWith("log") || plainName.endsWith("txt")) {
             try {
-                return Map.of(testReportDir, Lists.newArrayList(new FailureDetail(testReportDir, Files.readString(Paths.get(testReportDir))))) ;
+                // only the failures of a test output log, it can be hundreds of MB
+                Path log = Paths.get(testReportDir);
+                List<FailureDetail> regions = new ArrayList<>();
+                for (LogFailureRegions.Region region : new LogFailureRegions(failureRegions).extract(log)) {
+                    regions.add(new FailureDetail("%s:%d".formatted(log.getFileName(), region.firstLine()), region.text()));
+                }
+                if (regions.isEmpty()) {
+                    regions.add(new FailureDetail(testReportDir, ""));
+                }
+                return Map.of(testReportDir, regions);
             } catch (IOException e) {
                 return cannotFindTestReport();
             }
@@ -46,19 +116,14 @@ public class TestFailureExtractor {
                 // Parse index.html to find packages with failures
                 File indexFile = new File(testReportDir);
                 testReportDir = Paths.get(testReportDir).getParent().toFile().getAbsolutePath();
-                Document indexDoc = Jsoup.parse(indexFile, "UTF-8");
-
-                // Get all package rows
-                Elements packageRows = indexDoc.select("td.failures");
-
-                for (Element failureCountElement : packageRows) {
-                    Elements tdA = failureCountElement.select("td a");
-                    if (!tdA.isEmpty()) {
-                        Element first = tdA.first();
-                        String packageLink = first.attr("href");
-                        String packageName = first.text();
-                        processPackageFailures(packageLink, packageName, failures);
+
+                try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                    List<Future<Map<String, List<FailureDetail>>>> packages = new ArrayList<>();
+                    for (PageLink packageLink : parse(indexFile.toPath(), "report-links", PAGE_LINKS, TestFailureExtractor::failureLinks)) {
+                        packages.add(executor.submit(() -> processPackageFailures(packageLink.href(), executor)));
                     }
+                    // merged in page order, however the pages finish
+                    packages.forEach(p -> failures.putAll(await(p)));
                 }
 
             } catch (IOException e) {
@@ -72,56 +137,154 @@ public class TestFailureExtractor {
         
     }
 
-    private @NotNull Map<String, List<FailureDetail>> cannotFindTestReport() {
-        return Map.of(testReportDir, Lists.newArrayList(new FailureDetail(testReportDir, "Error loading test report from %s".formatted(testReportDir))));
+    /**
+     * @return the JUnit XML results of the report path, if it has any
+     */
+    private Optional<Path> junitXmlResults() {
+        Path path = Paths.get(testReportDir);
+        JUnitXmlReportParser parser = new JUnitXmlReportParser();
+        if (Files.isRegularFile(path) && testReportDir.endsWith(".xml")) {
+            return Optional.of(path);
+        }
+        if (Files.isDirectory(path) && !parser.resultFiles(path, 0).isEmpty()) {
+            return Optional.of(path);
+        }
+        return gradleResultsDirectory(path)
+                .filter(results -> Files.isDirectory(results) && !parser.resultFiles(results, 0).isEmpty());
     }
 
-    private void processPackageFailures(String packageLink, String packageName, 
-                                      Map<String, List<FailureDetail>> failures) throws IOException {
-        File packageFile = new File(testReportDir, packageLink);
-        Document packageDoc = Jsoup.parse(packageFile, "UTF-8");
-        
-        // Get all class rows
-        var classRows = packageDoc.select("td.failures");
+    /**
+     * Gradle writes build/reports/tests/&lt;task&gt;/index.html from build/test-results/&lt;task&gt;/TEST-*.xml.
+     * @return the directory the results of a Gradle HTML report are in, whether or not it exists yet
+     */
+    public static Optional<Path> gradleResultsDirectory(Path report) {
+        Path taskReport = report.getParent();
+        if (!report.toString().endsWith("index.html") || taskReport == null || taskReport.getParent() == null
+                || taskReport.getParent().getParent() == null) {
+            return Optional.empty();
+        }
+        return Optional.of(taskReport.getParent().getParent().resolveSibling("test-results").resolve(taskReport.getFileName()));
+    }
 
-        for (Element classRow : classRows) {
+    private Map<String, List<FailureDetail>> extractXmlFailures(Path results) {
+        JUnitXmlReportParser parser = new JUnitXmlReportParser();
+        List<List<CaseFailure>> files = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<CaseFailure>>> parsed = parser.resultFiles(results, 0).stream()
+                    .map(file -> executor.submit(() -> parse(file, "junit-xml", RESULT_FAILURES, f -> caseFailures(parser, f))))
+                    .toList();
+            for (Future<List<CaseFailure>> file : parsed) {
+                files.add(file.get());
+            }
+        } catch (ExecutionException e) {
+            log.error("Error parsing JUnit XML results from {}", results, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
 
-            // This class has failures, get the link to class.html
-            Elements tdA = classRow.select("td a");
-            if (tdA.isEmpty()) {
+        // files are in path order, so the classes are too
+        Map<String, List<FailureDetail>> failures = new LinkedHashMap<>();
+        for (CaseFailure failure : files.stream().flatMap(List::stream).toList()) {
+            failures.computeIfAbsent(Objects.requireNonNullElse(failure.suite(), results.toString()), s -> new ArrayList<>())
+                    .add(new FailureDetail(failure.name(), failure.error()));
+        }
+        return failures;
+    }
+
+    private static List<CaseFailure> caseFailures(JUnitXmlReportParser parser, Path file) {
+        List<CaseFailure> failures = new ArrayList<>();
+        for (JUnitXmlReportParser.TestCaseResult result : parser.parseFile(file)) {
+            if (result.status() != JUnitXmlReportParser.TestStatus.FAILED) {
                 continue;
             }
-            String classLink = tdA.first().attr("href");
-            Elements tdASecond = classRow.select("td a");
-            if (tdASecond.isEmpty()) {
-                continue;
+            String error = Optional.ofNullable(result.failure())
+                    .map(JUnitXmlReportParser.Failure::describe)
+                    .orElse("Failed without a message");
+            if (!error.contains("ApplicationContext failure threshold")) {
+                failures.add(new CaseFailure(result.suite(), result.name(), error));
             }
+        }
+        return failures;
+    }
+
+    private <T> T parse(Path file, String kind, TypeReference<T> type, ReportParseCache.Parser<T> parser) throws IOException {
+        return cache == null ? parser.parse(file) : cache.get(file, kind, type, parser);
+    }
+
+    private static List<PageLink> failureLinks(Path page) throws IOException {
+        Document doc = Jsoup.parse(page.toFile(), "UTF-8");
+        List<PageLink> links = new ArrayList<>();
+        for (Element row : doc.select("td.failures")) {
+            Element first = row.select("td a").first();
+            if (first != null) {
+                links.add(new PageLink(first.attr("href"), first.text()));
+            }
+        }
+        return links;
+    }
 
-            String className =  tdASecond.first().text();
+    private @NotNull Map<String, List<FailureDetail>> cannotFindTestReport() {
+        return Map.of(testReportDir, Lists.newArrayList(new FailureDetail(testReportDir, "Error loading test report from %s".formatted(testReportDir))));
+    }
+
+    private Map<String, List<FailureDetail>> processPackageFailures(String packageLink, ExecutorService executor)
+            throws IOException {
+        File packageFile = new File(testReportDir, packageLink);
+
+        // Each class row with failures links to its class.html
+        List<Future<Map<String, List<FailureDetail>>>> classes = new ArrayList<>();
+        for (PageLink classLink : parse(packageFile.toPath(), "report-links", PAGE_LINKS, TestFailureExtractor::failureLinks)) {
             // Process the class HTML file
-            processClassFailures(packageLink, classLink, className, failures);
+            classes.add(executor.submit(() -> processClassFailures(packageLink, classLink.href(), classLink.text())));
         }
+
+        Map<String, List<FailureDetail>> failures = new LinkedHashMap<>();
+        classes.forEach(c -> failures.putAll(await(c)));
+        return failures;
     }
     
-    private void processClassFailures(String packageLink, String classLink, String className,
-                                    Map<String, List<FailureDetail>> failures) throws IOException {
+    private Map<String, List<FailureDetail>> processClassFailures(String packageLink, String classLink, String className)
+            throws IOException {
         File classFile = new File(testReportDir, packageLink).getParentFile().toPath().resolve(classLink).toFile();
-        Document classDoc = Jsoup.parse(classFile, "UTF-8");
+        List<FailureDetail> classFailures = parse(classFile.toPath(), "report-class-failures", CLASS_FAILURES, TestFailureExtractor::classFailures)
+                .stream()
+                .map(found -> new FailureDetail(found.name(), found.error()))
+                .toList();
+        return classFailures.isEmpty() ? Map.of() : Map.of(className, classFailures);
+    }
+
+    /**
+     * @return the name and failure output, with its lines, of each failed test of a class page
+     */
+    private static List<ClassFailure> classFailures(Path page) throws IOException {
+        Document classDoc = Jsoup.parse(page.toFile(), "UTF-8");
         
         // Get all test rows
         Elements testRows = classDoc.select("h3.failures");
-        List<FailureDetail> classFailures = new ArrayList<>();
+        List<ClassFailure> classFailures = new ArrayList<>();
         
         for (Element testRow : testRows) {
             Optional.ofNullable(testRow.parent())
-                    .map(e -> e.select(".code").select("pre").text())
+                    .map(e -> e.select(".code").select("pre").stream().map(Element::wholeText).collect(Collectors.joining("\n")))
                     .filter(s -> !s.contains("ApplicationContext failure threshold"))
-                    .map(found -> new FailureDetail(found, className))
+                    .map(found -> new ClassFailure(testRow.text(), found))
                     .ifPresent(classFailures::add);
         }
-        
-        if (!classFailures.isEmpty()) {
-            failures.put(className, classFailures);
+        return classFailures;
+    }
+
+    /**
+     * @return the failures of a report page, or none if it couldn't be read
+     */
+    private static Map<String, List<FailureDetail>> await(Future<Map<String, List<FailureDetail>>> page) {
+        try {
+            return page.get();
+        } catch (ExecutionException e) {
+            log.error("Error parsing test report page", e.getCause());
+            return Map.of();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Map.of();
         }
     }
     
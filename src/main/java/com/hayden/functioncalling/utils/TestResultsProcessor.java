@@ -1,7 +1,9 @@
 package com.hayden.functioncalling.utils;
 
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
 import com.hayden.persistence.lock.WithPgAdvisory;
 import com.hayden.utilitymodule.io.FileUtils;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,9 +22,14 @@ import java.util.Map;
  */
 @Component
 @Slf4j
+@RequiredArgsConstructor
 public class TestResultsProcessor {
     
     private static final Logger logger = LoggerFactory.getLogger(TestResultsProcessor.class);
+
+    private final ReportParseCache reportParseCache;
+
+    private final CodeRunnerConfigProps props;
     
     /**
      * Process the test results and extract failure information
@@ -30,28 +37,26 @@ public class TestResultsProcessor {
      * @return A formatted string with failure information
      */
     public String processTestFailures(String testReportDirectory) {
+        return processTestFailures(testReportDirectory, props.getFailureSummary().getMaxChars());
+    }
+
+    /**
+     * Process the test results and summarize the failures by cause.
+     * @param testReportDirectory The directory containing Gradle test reports
+     * @param maxChars            the budget of the summary, see {@link FailureSummarizer#CHARS_PER_TOKEN}
+     * @return A formatted string with failure information
+     */
+    public String processTestFailures(String testReportDirectory, int maxChars) {
         logger.info("Processing test failures from: {}", testReportDirectory);
         
-        TestFailureExtractor extractor = new TestFailureExtractor(testReportDirectory);
+        TestFailureExtractor extractor = new TestFailureExtractor(testReportDirectory, reportParseCache,
+                props.getFailureRegions());
         Map<String, List<TestFailureExtractor.FailureDetail>> failures = extractor.extractFailures();
-        
-        if (failures.isEmpty()) {
-            return "No test failures found.";
-        }
-        
-        // Build a formatted string with all failure information
-        StringBuilder result = new StringBuilder("Test Failure Summary:\n\n");
-        
-        failures.forEach((className, failureDetails) -> {
-            result.append("Class: ").append(className).append("\n");
-            
-            failureDetails.forEach(detail -> {
-                result.append("  - Test: ").append(detail.getTestName()).append("\n");
-                result.append("    Error: ").append(detail.getErrorMessage()).append("\n\n");
-            });
-        });
-        
-        return result.toString();
+        reportParseCache.flush();
+
+        FailureSummarizer summarizer = new FailureSummarizer(props.getFailureSummary());
+        summarizer.addAll(failures);
+        return summarizer.summary(maxChars);
     }
 
     @WithPgAdvisory
@@ -0,0 +1,106 @@
+--liquibase formatted sql
+
+-- History tables are range partitioned by month on created_time. The monthly partitions are created ahead of
+-- time by HistoryPartitionMaintenance, the default partitions only catch rows nothing else covers.
+-- Postgres requires the partition key in the primary key, so it is (id, created_time).
+
+--changeset function-calling:001-test-execution-history
+CREATE SEQUENCE IF NOT EXISTS test_execution_history_id_seq;
+CREATE TABLE test_execution_history (
+    id                BIGINT       NOT NULL DEFAULT nextval('test_execution_history_id_seq'),
+    created_time      TIMESTAMP(6) NOT NULL,
+    execution_id      VARCHAR(255) NOT NULL,
+    registration_id   VARCHAR(255) NOT NULL,
+    session_id        VARCHAR(255),
+    command           VARCHAR(255),
+    arguments         VARCHAR(255),
+    success           BOOLEAN,
+    exit_code         INTEGER,
+    execution_time_ms INTEGER,
+    output            TEXT,
+    output_hash       VARCHAR(255),
+    output_size       BIGINT,
+    error             TEXT,
+    error_hash        VARCHAR(255),
+    error_size        BIGINT,
+    execution_type    VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id, created_time)
+) PARTITION BY RANGE (created_time);
+CREATE TABLE test_execution_history_default PARTITION OF test_execution_history DEFAULT;
+CREATE INDEX idx_test_execution_history_registration_created ON test_execution_history (registration_id, created_time);
+CREATE INDEX idx_test_execution_history_session_created ON test_execution_history (session_id, created_time);
+CREATE INDEX idx_test_execution_history_execution_id ON test_execution_history (execution_id);
+--rollback DROP TABLE test_execution_history; DROP SEQUENCE test_execution_history_id_seq;
+
+--changeset function-calling:001-code-build-history
+CREATE SEQUENCE IF NOT EXISTS code_build_history_id_seq;
+CREATE TABLE code_build_history (
+    id                        BIGINT       NOT NULL DEFAULT nextval('code_build_history_id_seq'),
+    created_time              TIMESTAMP(6) NOT NULL,
+    build_id                  VARCHAR(255) NOT NULL,
+    registration_id           VARCHAR(255) NOT NULL,
+    session_id                VARCHAR(255),
+    build_command             VARCHAR(255),
+    arguments                 VARCHAR(255),
+    success                   BOOLEAN,
+    exit_code                 INTEGER,
+    execution_time_ms         INTEGER,
+    output                    TEXT,
+    output_hash               VARCHAR(255),
+    output_size               BIGINT,
+    error                     TEXT,
+    error_hash                VARCHAR(255),
+    error_size                BIGINT,
+    artifact_paths            VARCHAR(255)[],
+    artifact_output_directory VARCHAR(255),
+    build_log                 TEXT,
+    build_log_hash            VARCHAR(255),
+    build_log_size            BIGINT,
+    execution_type            VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id, created_time)
+) PARTITION BY RANGE (created_time);
+CREATE TABLE code_build_history_default PARTITION OF code_build_history DEFAULT;
+CREATE INDEX idx_code_build_history_registration_created ON code_build_history (registration_id, created_time);
+CREATE INDEX idx_code_build_history_session_created ON code_build_history (session_id, created_time);
+CREATE INDEX idx_code_build_history_build_id ON code_build_history (build_id);
+--rollback DROP TABLE code_build_history; DROP SEQUENCE code_build_history_id_seq;
+
+--changeset function-calling:001-code-deploy-history
+CREATE SEQUENCE IF NOT EXISTS code_deploy_history_id_seq;
+CREATE TABLE code_deploy_history (
+    id                            BIGINT       NOT NULL DEFAULT nextval('code_deploy_history_id_seq'),
+    created_time                  TIMESTAMP(6) NOT NULL,
+    deploy_id                     VARCHAR(255) NOT NULL,
+    registration_id               VARCHAR(255) NOT NULL,
+    session_id                    VARCHAR(255),
+    deploy_command                VARCHAR(255),
+    arguments                     VARCHAR(255),
+    success                       BOOLEAN,
+    exit_code                     INTEGER,
+    execution_time_ms             INTEGER,
+    output                        TEXT,
+    error                         TEXT,
+    deploy_log                    TEXT,
+    deploy_log_hash               VARCHAR(255),
+    deploy_log_size               BIGINT,
+    health_check_status           VARCHAR(255),
+    health_check_response_time_ms INTEGER,
+    is_running                    BOOLEAN,
+    deployment_url                VARCHAR(255),
+    execution_type                VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id, created_time)
+) PARTITION BY RANGE (created_time);
+CREATE TABLE code_deploy_history_default PARTITION OF code_deploy_history DEFAULT;
+CREATE INDEX idx_code_deploy_history_registration_created ON code_deploy_history (registration_id, created_time);
+CREATE INDEX idx_code_deploy_history_session_created ON code_deploy_history (session_id, created_time);
+CREATE INDEX idx_code_deploy_history_deploy_id ON code_deploy_history (deploy_id);
+CREATE INDEX idx_code_deploy_history_running ON code_deploy_history (registration_id, created_time) WHERE is_running;
+--rollback DROP TABLE code_deploy_history; DROP SEQUENCE code_deploy_history_id_seq;
+
+--changeset function-calling:001-history-partition
+-- partitions whose logs have been stripped by the retention job
+CREATE TABLE history_partition (
+    partition_name VARCHAR(255) PRIMARY KEY,
+    compacted_time TIMESTAMP(6) NOT NULL
+);
+--rollback DROP TABLE history_partition;
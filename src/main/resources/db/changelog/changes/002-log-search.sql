@@ -0,0 +1,19 @@
+--liquibase formatted sql
+
+-- Full-text search over the history logs. The vectors are filled in the background by LogSearchIndexer, which
+-- finds the rows it has yet to index through the partial indexes on the rows without one.
+
+--changeset function-calling:002-test-execution-history-search
+ALTER TABLE test_execution_history ADD COLUMN search_vector tsvector;
+CREATE INDEX idx_test_execution_history_search ON test_execution_history USING GIN (search_vector);
+CREATE INDEX idx_test_execution_history_unindexed ON test_execution_history (id) WHERE search_vector IS NULL;
+
+--changeset function-calling:002-code-build-history-search
+ALTER TABLE code_build_history ADD COLUMN search_vector tsvector;
+CREATE INDEX idx_code_build_history_search ON code_build_history USING GIN (search_vector);
+CREATE INDEX idx_code_build_history_unindexed ON code_build_history (id) WHERE search_vector IS NULL;
+
+--changeset function-calling:002-code-deploy-history-search
+ALTER TABLE code_deploy_history ADD COLUMN search_vector tsvector;
+CREATE INDEX idx_code_deploy_history_search ON code_deploy_history USING GIN (search_vector);
+CREATE INDEX idx_code_deploy_history_unindexed ON code_deploy_history (id) WHERE search_vector IS NULL;
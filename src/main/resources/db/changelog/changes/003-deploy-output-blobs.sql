@@ -0,0 +1,11 @@
+--liquibase formatted sql
+
+-- A deployment's output and error are externalized to the log blob store like its deploy log, so they get the same
+-- hash and size columns pointing at the full log.
+
+--changeset function-calling:003-code-deploy-history-output-blobs
+ALTER TABLE code_deploy_history
+    ADD COLUMN output_hash VARCHAR(255),
+    ADD COLUMN output_size BIGINT,
+    ADD COLUMN error_hash VARCHAR(255),
+    ADD COLUMN error_size BIGINT;
@@ -0,0 +1,117 @@
+--liquibase formatted sql
+
+-- The remaining tables of the entities, so that Hibernate only validates the schema in production. The
+-- registration tables carry the audit columns of the shared base entity, created_time and updated_time, which the
+-- history tables get here as well.
+
+--changeset function-calling:004-history-updated-time
+ALTER TABLE test_execution_history ADD COLUMN updated_time TIMESTAMP(6);
+ALTER TABLE code_build_history ADD COLUMN updated_time TIMESTAMP(6);
+ALTER TABLE code_deploy_history ADD COLUMN updated_time TIMESTAMP(6);
+
+--changeset function-calling:004-test-execution-entity
+CREATE TABLE test_execution_entity (
+    registration_id      VARCHAR(255) PRIMARY KEY,
+    created_time         TIMESTAMP(6),
+    updated_time         TIMESTAMP(6),
+    command              VARCHAR(255) NOT NULL,
+    working_directory    VARCHAR(255),
+    description          VARCHAR(255),
+    arguments            VARCHAR(255),
+    timeout_seconds      INTEGER,
+    enabled              BOOLEAN      NOT NULL,
+    reporting_paths      VARCHAR(255)[],
+    output_regex         VARCHAR(255)[],
+    runner_copy_path     VARCHAR(255),
+    session_id           VARCHAR(255),
+    test_result_paths    VARCHAR(255)[],
+    test_filter_template VARCHAR(255),
+    shard_count          INTEGER,
+    test_impact_analysis BOOLEAN,
+    full_run_interval    INTEGER,
+    failure_first        BOOLEAN,
+    fail_fast_threshold  INTEGER,
+    fail_fast_patterns   VARCHAR(255)[],
+    execution_type       VARCHAR(255) NOT NULL
+);
+--rollback DROP TABLE test_execution_entity;
+
+--changeset function-calling:004-code-build-entity
+CREATE TABLE code_build_entity (
+    registration_id           VARCHAR(255) PRIMARY KEY,
+    created_time              TIMESTAMP(6),
+    updated_time              TIMESTAMP(6),
+    build_command             VARCHAR(255) NOT NULL,
+    working_directory         VARCHAR(255),
+    description               VARCHAR(255),
+    arguments                 VARCHAR(255),
+    timeout_seconds           INTEGER,
+    enabled                   BOOLEAN      NOT NULL,
+    artifact_paths            VARCHAR(255)[],
+    output_regex              VARCHAR(255)[],
+    session_id                VARCHAR(255),
+    artifact_output_directory VARCHAR(255),
+    build_success_patterns    VARCHAR(255)[],
+    build_failure_patterns    VARCHAR(255)[],
+    execution_type            VARCHAR(255) NOT NULL
+);
+--rollback DROP TABLE code_build_entity;
+
+--changeset function-calling:004-code-deploy-entity
+CREATE TABLE code_deploy_entity (
+    registration_id              VARCHAR(255) PRIMARY KEY,
+    created_time                 TIMESTAMP(6),
+    updated_time                 TIMESTAMP(6),
+    deploy_command               VARCHAR(255) NOT NULL,
+    working_directory            VARCHAR(255),
+    description                  VARCHAR(255),
+    arguments                    VARCHAR(255),
+    timeout_seconds              INTEGER,
+    enabled                      BOOLEAN      NOT NULL,
+    deploy_success_patterns      VARCHAR(255)[],
+    deploy_failure_patterns      VARCHAR(255)[],
+    output_regex                 VARCHAR(255)[],
+    session_id                   VARCHAR(255),
+    health_check_url             VARCHAR(255),
+    health_check_timeout_seconds INTEGER,
+    max_wait_for_startup_seconds INTEGER,
+    stop_command                 VARCHAR(255),
+    execution_type               VARCHAR(255) NOT NULL
+);
+--rollback DROP TABLE code_deploy_entity;
+
+--changeset function-calling:004-code-pipeline-entity
+CREATE TABLE code_pipeline_entity (
+    registration_id VARCHAR(255) PRIMARY KEY,
+    created_time    TIMESTAMP(6),
+    updated_time    TIMESTAMP(6),
+    description     VARCHAR(255),
+    enabled         BOOLEAN      NOT NULL,
+    session_id      VARCHAR(255)
+);
+CREATE TABLE code_pipeline_node (
+    pipeline_registration_id VARCHAR(255) NOT NULL REFERENCES code_pipeline_entity (registration_id),
+    node_id                  VARCHAR(255) NOT NULL,
+    stage_type               VARCHAR(255) NOT NULL,
+    stage_registration_id    VARCHAR(255) NOT NULL,
+    depends_on               VARCHAR(255)[],
+    artifact_input_directory VARCHAR(255)
+);
+CREATE INDEX idx_code_pipeline_node_pipeline ON code_pipeline_node (pipeline_registration_id);
+--rollback DROP TABLE code_pipeline_node; DROP TABLE code_pipeline_entity;
+
+--changeset function-calling:004-registration-statistics
+CREATE TABLE registration_statistics (
+    kind              VARCHAR(255) NOT NULL,
+    registration_id   VARCHAR(255) NOT NULL,
+    bucket_start      DATE         NOT NULL,
+    executions        BIGINT       NOT NULL,
+    successes         BIGINT       NOT NULL,
+    total_duration_ms BIGINT       NOT NULL,
+    min_duration_ms   INTEGER,
+    max_duration_ms   INTEGER,
+    duration_sketch   BYTEA,
+    updated_time      TIMESTAMP(6),
+    PRIMARY KEY (kind, registration_id, bucket_start)
+);
+--rollback DROP TABLE registration_statistics;
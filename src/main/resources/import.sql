@@ -0,0 +1,12 @@
+-- Run by Hibernate after it creates the schema, for indexes the JPA annotations can't express.
+CREATE INDEX IF NOT EXISTS idx_code_deploy_history_running ON code_deploy_history (registration_id, created_time) WHERE is_running;
+-- Full-text search over the history logs, filled in the background by LogSearchIndexer.
+ALTER TABLE test_execution_history ADD COLUMN IF NOT EXISTS search_vector tsvector;
+ALTER TABLE code_build_history ADD COLUMN IF NOT EXISTS search_vector tsvector;
+ALTER TABLE code_deploy_history ADD COLUMN IF NOT EXISTS search_vector tsvector;
+CREATE INDEX IF NOT EXISTS idx_test_execution_history_search ON test_execution_history USING GIN (search_vector);
+CREATE INDEX IF NOT EXISTS idx_code_build_history_search ON code_build_history USING GIN (search_vector);
+CREATE INDEX IF NOT EXISTS idx_code_deploy_history_search ON code_deploy_history USING GIN (search_vector);
+CREATE INDEX IF NOT EXISTS idx_test_execution_history_unindexed ON test_execution_history (id) WHERE search_vector IS NULL;
+CREATE INDEX IF NOT EXISTS idx_code_build_history_unindexed ON code_build_history (id) WHERE search_vector IS NULL;
+CREATE INDEX IF NOT EXISTS idx_code_deploy_history_unindexed ON code_deploy_history (id) WHERE search_vector IS NULL;
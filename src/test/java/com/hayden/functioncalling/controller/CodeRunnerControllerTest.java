@@ -7,9 +7,21 @@ import com.hayden.commitdiffmodel.codegen.types.CodeExecutionRegistrationIn;
 import com.hayden.commitdiffmodel.codegen.types.CodeExecutionResult;
 import com.hayden.functioncalling.entity.TestExecutionEntity;
 import com.hayden.functioncalling.entity.TestExecutionHistory;
+import com.hayden.functioncalling.model.HistoryConnection;
+import com.hayden.functioncalling.model.HistoryFilter;
 import com.hayden.functioncalling.repository.TestExecutionHistoryRepository;
 import com.hayden.functioncalling.repository.TestExecutionRepository;
 import com.hayden.functioncalling.runner.ExecRunner;
+import graphql.ErrorType;
+import graphql.Scalars;
+import graphql.execution.DataFetcherResult;
+import graphql.execution.ExecutionStepInfo;
+import graphql.execution.MergedField;
+import graphql.execution.ResultPath;
+import graphql.language.Field;
+import graphql.language.SourceLocation;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.DataFetchingEnvironmentImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -108,6 +120,38 @@ public class CodeRunnerControllerTest {
         assertThat(executions).anyMatch(exec -> exec.getCommand().contains("Hello World"));
     }
 
+    @Test
+    void testExecutionHistory() {
+        DataFetcherResult<HistoryConnection<CodeExecution>> result = controller.executionHistory(10, null,
+                new HistoryFilter(registrationId, null, null, null, null, null), environment("executionHistory"));
+
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(result.getData().edges()).hasSize(1);
+        assertThat(result.getData().edges().getFirst().node().getOutput()).isEqualTo("Hello World\n");
+    }
+
+    @Test
+    void testExecutionHistoryReportsMalformedArgumentsAsValidationErrors() {
+        DataFetchingEnvironment environment = environment("executionHistory");
+
+        DataFetcherResult<HistoryConnection<CodeExecution>> badTime = controller.executionHistory(10, null,
+                new HistoryFilter(registrationId, null, null, "yesterday", null, null), environment);
+        assertThat(badTime.getData()).isNull();
+        assertThat(badTime.getErrors()).singleElement().satisfies(error -> {
+            assertThat(error.getErrorType()).isEqualTo(ErrorType.ValidationError);
+            assertThat(error.getPath()).containsExactly("executionHistory");
+            assertThat(error.getMessage()).contains("yesterday");
+        });
+
+        DataFetcherResult<HistoryConnection<CodeExecution>> badCursor = controller.executionHistory(10, "not-a-cursor",
+                null, environment);
+        assertThat(badCursor.getData()).isNull();
+        assertThat(badCursor.getErrors()).singleElement().satisfies(error -> {
+            assertThat(error.getErrorType()).isEqualTo(ErrorType.ValidationError);
+            assertThat(error.getMessage()).contains("Invalid history cursor");
+        });
+    }
+
     @Test
     void testGetCodeExecutionRegistration() {
         CodeExecutionRegistration registration = controller.getCodeExecutionRegistration(registrationId);
@@ -218,4 +262,15 @@ public class CodeRunnerControllerTest {
         assertThat(result.getSuccess()).isTrue();
         assertThat(result.getOutput()).contains("Hello World");
     }
+
+    private static DataFetchingEnvironment environment(String field) {
+        return DataFetchingEnvironmentImpl.newDataFetchingEnvironment()
+                .mergedField(MergedField.newMergedField(
+                        Field.newField(field).sourceLocation(new SourceLocation(1, 3)).build()).build())
+                .executionStepInfo(ExecutionStepInfo.newExecutionStepInfo()
+                        .type(Scalars.GraphQLString)
+                        .path(ResultPath.rootPath().segment(field))
+                        .build())
+                .build();
+    }
 }
\ No newline at end of file
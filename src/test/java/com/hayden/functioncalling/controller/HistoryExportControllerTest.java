@@ -0,0 +1,74 @@
+package com.hayden.functioncalling.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.model.HistoryFilter;
+import com.hayden.functioncalling.model.PipelineStageType;
+import com.hayden.functioncalling.service.history.HistoryExportService;
+import com.hayden.functioncalling.service.log_store.LogBlobStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class HistoryExportControllerTest {
+
+    /**
+     * Longer than the 30 seconds Spring MVC gives an async request by default.
+     */
+    private static final long EXPORT_MILLIS = 35_000;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @TestConfiguration
+    static class SlowExportConfig {
+
+        @Bean
+        @Primary
+        HistoryExportService slowHistoryExportService(PlatformTransactionManager transactionManager,
+                                                      LogBlobStore logBlobStore,
+                                                      ObjectMapper objectMapper,
+                                                      CodeRunnerConfigProps props) {
+            return new HistoryExportService(transactionManager, logBlobStore, objectMapper, props) {
+                @Override
+                public Export export(PipelineStageType kind, HistoryFilter filter, boolean fullLogs) {
+                    return out -> {
+                        out.write("{\"row\":1}\n".getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                        try {
+                            Thread.sleep(EXPORT_MILLIS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        out.write("{\"row\":2}\n".getBytes(StandardCharsets.UTF_8));
+                    };
+                }
+            };
+        }
+    }
+
+    @Test
+    void testExportSlowerThanTheDefaultAsyncTimeoutCompletes() {
+        ResponseEntity<String> response = restTemplate.getForEntity("/history/export/TEST", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo("{\"row\":1}\n{\"row\":2}\n");
+    }
+}
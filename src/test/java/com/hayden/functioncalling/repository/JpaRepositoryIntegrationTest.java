@@ -1,5 +1,6 @@
 package com.hayden.functioncalling.repository;
 
+import com.hayden.functioncalling.entity.QTestExecutionHistory;
 import com.hayden.functioncalling.entity.TestExecutionEntity;
 import com.hayden.functioncalling.entity.TestExecutionHistory;
 import org.junit.jupiter.api.Assertions;
@@ -9,6 +10,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -117,7 +119,7 @@ public class JpaRepositoryIntegrationTest {
         assertThat(saved.getRegistrationId()).isNotNull();
 
         // Retrieve and verify
-        TestExecutionHistory retrieved = historyRepository.findByRegistrationId(saved.getRegistrationId()).getFirst();
+        TestExecutionHistory retrieved = findByRegistrationId(saved.getRegistrationId()).getFirst();
         assertThat(retrieved.getExecutionId()).isEqualTo(executionId);
         assertThat(retrieved.getRegistrationId()).isEqualTo(registrationId);
         assertThat(retrieved.getCommand()).isEqualTo("test-command");
@@ -188,13 +190,19 @@ public class JpaRepositoryIntegrationTest {
         });
 
         // Find by first registration ID
-        List<TestExecutionHistory> reg1Histories = historyRepository.findByRegistrationId(regId1);
+        List<TestExecutionHistory> reg1Histories = findByRegistrationId(regId1);
         assertThat(reg1Histories.size()).isEqualTo(5);
         assertThat(reg1Histories).allMatch(h -> h.getRegistrationId().equals(regId1));
         
         // Find by second registration ID
-        List<TestExecutionHistory> reg2Histories = historyRepository.findByRegistrationId(regId2);
+        List<TestExecutionHistory> reg2Histories = findByRegistrationId(regId2);
         assertThat(reg2Histories.size()).isEqualTo(3);
         assertThat(reg2Histories).allMatch(h -> h.getRegistrationId().equals(regId2));
     }
+
+    private List<TestExecutionHistory> findByRegistrationId(String registrationId) {
+        return historyRepository.findAll(
+                QTestExecutionHistory.testExecutionHistory.registrationId.eq(registrationId), PageRequest.of(0, 100))
+                .getContent();
+    }
 }
\ No newline at end of file
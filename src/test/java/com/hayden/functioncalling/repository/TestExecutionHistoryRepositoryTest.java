@@ -1,11 +1,13 @@
 package com.hayden.functioncalling.repository;
 
+import com.hayden.functioncalling.entity.QTestExecutionHistory;
 import com.hayden.functioncalling.entity.TestExecutionHistory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -86,7 +88,9 @@ public class TestExecutionHistoryRepositoryTest {
 
     @Test
     void testFindByRegistrationId() {
-        List<TestExecutionHistory> histories = repository.findByRegistrationId(registrationId);
+        List<TestExecutionHistory> histories = repository.findAll(
+                QTestExecutionHistory.testExecutionHistory.registrationId.eq(registrationId), PageRequest.of(0, 100))
+                .getContent();
         
         assertThat(histories).isNotEmpty();
         assertThat(histories.size()).isEqualTo(16); // Our original plus the 15 added in setup
@@ -0,0 +1,156 @@
+package com.hayden.functioncalling.runner.process_builder;
+
+import com.hayden.functioncalling.entity.CodePipelineEntity;
+import com.hayden.functioncalling.entity.PipelineNode;
+import com.hayden.functioncalling.model.CodePipelineResult;
+import com.hayden.functioncalling.model.CodePipelineStageResult;
+import com.hayden.functioncalling.model.PipelineStageType;
+import com.hayden.functioncalling.repository.CodePipelineRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class ProcessBuilderPipelineExecRunnerTest {
+
+    @Autowired
+    private ProcessBuilderPipelineExecRunner pipelineExecRunner;
+
+    @Autowired
+    private CodePipelineRepository pipelineRepository;
+
+    @Test
+    void testSuccessfulPipelineRunsAllStages() {
+        CodePipelineResult result = pipelineExecRunner.run("test-pipeline-success", "test_session");
+
+        assertThat(result.success()).isTrue();
+        assertThat(result.stages()).hasSize(3);
+        assertThat(result.stages()).allMatch(s -> "SUCCEEDED".equals(s.status()));
+        assertThat(result.stages()).allMatch(s -> s.durationMs() != null && s.executionId() != null);
+
+        Map<String, CodePipelineStageResult> byNode = byNode(result);
+        // echo depends on the build, so it cannot start before the build has finished
+        assertThat(byNode.get("echo").startOffsetMs())
+                .isGreaterThanOrEqualTo(byNode.get("build").startOffsetMs() + byNode.get("build").durationMs());
+        // pwd is independent of the build, so it runs alongside it
+        assertThat(byNode.get("pwd").startOffsetMs()).isLessThan(byNode.get("build").durationMs());
+    }
+
+    @Test
+    void testFailedStageSkipsDownstream() {
+        CodePipelineResult result = pipelineExecRunner.run("test-pipeline-fail", "test_session");
+
+        assertThat(result.success()).isFalse();
+        assertThat(result.error()).contains("build");
+
+        Map<String, CodePipelineStageResult> byNode = byNode(result);
+        assertThat(byNode.get("build").status()).isEqualTo("FAILED");
+        assertThat(byNode.get("echo").status()).isEqualTo("SKIPPED");
+    }
+
+    @Test
+    void testFailedStageCancelsRunningStages() {
+        long start = System.currentTimeMillis();
+        CodePipelineResult result = pipelineExecRunner.run("test-pipeline-cancel", "test_session");
+
+        assertThat(result.success()).isFalse();
+        Map<String, CodePipelineStageResult> byNode = byNode(result);
+        assertThat(byNode.get("build").status()).isEqualTo("FAILED");
+        assertThat(byNode.get("sleep").status()).isEqualTo("CANCELLED");
+        // only the process was stopped, the stage itself ran to the end and recorded its execution
+        assertThat(byNode.get("sleep").executionId()).isNotNull();
+        assertThat(result.error()).contains("build").doesNotContain("sleep");
+        // the sleep would have taken 30 seconds
+        assertThat(System.currentTimeMillis() - start).isLessThan(20_000);
+    }
+
+    @Test
+    void testFailedArtifactHandOffFailsTheStage() throws Exception {
+        // the build only creates its artifact when there is a target directory
+        Files.createDirectories(Paths.get("target"));
+        Path notADirectory = Files.createTempFile("artifact-input", ".txt");
+        String registrationId = "test-pipeline-hand-off-" + UUID.randomUUID();
+        pipelineRepository.save(CodePipelineEntity.builder()
+                .registrationId(registrationId)
+                .enabled(true)
+                .nodes(List.of(
+                        PipelineNode.builder().nodeId("build").stageType(PipelineStageType.BUILD)
+                                .stageRegistrationId("test-build-success").build(),
+                        PipelineNode.builder().nodeId("echo").stageType(PipelineStageType.TEST)
+                                .stageRegistrationId("echo").dependsOn(List.of("build"))
+                                .artifactInputDirectory(notADirectory.resolve("input").toString()).build()))
+                .build());
+
+        CodePipelineResult result = pipelineExecRunner.run(registrationId, "test_session");
+
+        assertThat(result.success()).isFalse();
+        Map<String, CodePipelineStageResult> byNode = byNode(result);
+        assertThat(byNode.get("build").status()).isEqualTo("SUCCEEDED");
+        assertThat(byNode.get("echo").status()).isEqualTo("FAILED");
+        assertThat(byNode.get("echo").error()).contains("Failed to hand off artifacts");
+        assertThat(byNode.get("echo").executionId()).isNull();
+    }
+
+    @Test
+    void testConcurrentPipelinesDoNotExhaustTheRunners() {
+        List<CompletableFuture<CodePipelineResult>> runs = IntStream.range(0, 12)
+                .mapToObj(i -> pipelineExecRunner.runAsync("test-pipeline-success", "test_session_" + i))
+                .toList();
+
+        assertThat(CompletableFuture.allOf(runs.toArray(CompletableFuture[]::new)))
+                .succeedsWithin(Duration.ofSeconds(120));
+        assertThat(runs).allMatch(r -> r.join().success());
+    }
+
+    @Test
+    void testCyclicPipelineIsRejected() {
+        String registrationId = "test-pipeline-cycle-" + UUID.randomUUID();
+        pipelineRepository.save(CodePipelineEntity.builder()
+                .registrationId(registrationId)
+                .enabled(true)
+                .nodes(List.of(
+                        PipelineNode.builder().nodeId("a").stageType(PipelineStageType.TEST)
+                                .stageRegistrationId("echo").dependsOn(List.of("b")).build(),
+                        PipelineNode.builder().nodeId("b").stageType(PipelineStageType.TEST)
+                                .stageRegistrationId("pwd").dependsOn(List.of("a")).build()))
+                .build());
+
+        CodePipelineResult result = pipelineExecRunner.run(registrationId, "test_session");
+
+        assertThat(result.success()).isFalse();
+        assertThat(result.error()).contains("cycle");
+        assertThat(result.stages()).isEmpty();
+    }
+
+    @Test
+    void testUnknownPipeline() {
+        CodePipelineResult result = pipelineExecRunner.run("non-existent-pipeline", "test_session");
+
+        assertThat(result.success()).isFalse();
+        assertThat(result.error()).contains("No code pipeline registration found");
+    }
+
+    private static Map<String, CodePipelineStageResult> byNode(CodePipelineResult result) {
+        return result.stages().stream()
+                .collect(Collectors.toMap(CodePipelineStageResult::nodeId, Function.identity()));
+    }
+}
@@ -6,6 +6,8 @@ import com.hayden.functioncalling.entity.TestExecutionEntity;
 import com.hayden.functioncalling.repository.TestExecutionHistoryRepository;
 import com.hayden.functioncalling.repository.TestExecutionRepository;
 import com.hayden.functioncalling.service.process_builder.ProcessBuilderDataService;
+import com.hayden.functioncalling.service.test_plan.TestCaseIndex;
+import com.hayden.functioncalling.utils.JUnitXmlReportParser;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,6 +20,7 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -41,6 +44,9 @@ public class ProcessBuilderTestExecRunnerTest {
     @Autowired
     private ProcessBuilderDataService executionDataService;
 
+    @Autowired
+    private TestCaseIndex testCaseIndex;
+
     private String registrationId;
 
     @BeforeEach
@@ -79,6 +85,91 @@ public class ProcessBuilderTestExecRunnerTest {
         assertThat(historyRepository.findByExecutionId(result.getExecutionId())).isPresent();
     }
 
+    @Test
+    void testFailFastStopsProcessAfterThreshold() {
+        String failFastId = UUID.randomUUID().toString();
+        executionRepository.save(TestExecutionEntity.builder()
+                .registrationId(failFastId)
+                .command("bash")
+                .arguments("src/test/resources/scripts/test-fail.sh")
+                .workingDirectory(System.getProperty("user.dir"))
+                .enabled(true)
+                .timeoutSeconds(60)
+                .failFastThreshold(3)
+                .build());
+
+        long start = System.currentTimeMillis();
+        CodeExecutionResult result = execRunner.run(CodeExecutionOptions.newBuilder()
+                .registrationId(failFastId)
+                .build());
+
+        assertThat(result.getSuccess()).isFalse();
+        assertThat(result.getOutput()).contains("testFourth() FAILED").doesNotContain("testFifth");
+        assertThat(result.getError()).anyMatch(e -> e.getMessage() != null && e.getMessage().contains("fail-fast"));
+        assertThat(System.currentTimeMillis() - start).isLessThan(20_000);
+    }
+
+    @Test
+    void testFailureFirstRunsRecentlyFailingSuitesFirst() {
+        String failureFirstId = UUID.randomUUID().toString();
+        testCaseIndex.record(failureFirstId, List.of(
+                new JUnitXmlReportParser.TestCaseResult("com.example.OlderTest", "fails()", 10,
+                        JUnitXmlReportParser.TestStatus.FAILED, null),
+                new JUnitXmlReportParser.TestCaseResult("com.example.PassingTest", "passes()", 10,
+                        JUnitXmlReportParser.TestStatus.PASSED, null)), false);
+        testCaseIndex.record(failureFirstId, List.of(
+                new JUnitXmlReportParser.TestCaseResult("com.example.NewerTest", "fails()", 10,
+                        JUnitXmlReportParser.TestStatus.FAILED, null)), false);
+        executionRepository.save(TestExecutionEntity.builder()
+                .registrationId(failureFirstId)
+                .command("echo")
+                .arguments("test")
+                .workingDirectory(System.getProperty("user.dir"))
+                .enabled(true)
+                .timeoutSeconds(10)
+                .testFilterTemplate("--tests {test}")
+                .failureFirst(true)
+                .build());
+
+        CodeExecutionResult result = execRunner.run(CodeExecutionOptions.newBuilder()
+                .registrationId(failureFirstId)
+                .build());
+
+        assertThat(result.getSuccess()).isTrue();
+        String output = result.getOutput();
+        assertThat(output).contains("test --tests com.example.NewerTest --tests com.example.OlderTest");
+        assertThat(output.indexOf("=== Recently failing (2 suites) ==="))
+                .isGreaterThanOrEqualTo(0)
+                .isLessThan(output.indexOf("=== Full suite ==="));
+    }
+
+    @Test
+    void testFailureFirstStopsWhenRecentlyFailingSuitesStillFail() {
+        String failureFirstId = UUID.randomUUID().toString();
+        testCaseIndex.record(failureFirstId, List.of(
+                new JUnitXmlReportParser.TestCaseResult("com.example.FailingTest", "fails()", 10,
+                        JUnitXmlReportParser.TestStatus.FAILED, null)), false);
+        executionRepository.save(TestExecutionEntity.builder()
+                .registrationId(failureFirstId)
+                .command("ls")
+                .arguments("/nonexistentdirectory")
+                .workingDirectory(System.getProperty("user.dir"))
+                .enabled(true)
+                .timeoutSeconds(10)
+                .testFilterTemplate("{test}")
+                .failureFirst(true)
+                .build());
+
+        CodeExecutionResult result = execRunner.run(CodeExecutionOptions.newBuilder()
+                .registrationId(failureFirstId)
+                .build());
+
+        assertThat(result.getSuccess()).isFalse();
+        assertThat(result.getOutput())
+                .contains("Recently failing suites still fail, the remaining suites were not run.")
+                .doesNotContain("=== Full suite ===");
+    }
+
     @Test
     void testRunWithInvalidRegistrationId() {
         CodeExecutionOptions options = CodeExecutionOptions.newBuilder()
@@ -1,10 +1,12 @@
 package com.hayden.functioncalling.service;
 
 import com.hayden.functioncalling.context_processor.TestReportService;
+import com.hayden.functioncalling.utils.TestResultsProcessor;
 import com.hayden.utilitymodule.io.FileUtils;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
@@ -12,9 +14,21 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @SpringBootTest
 @ExtendWith(SpringExtension.class)
@@ -24,6 +38,9 @@ class TestReportServiceTest {
     @Autowired
     private TestReportService testReportService;
 
+    @TempDir
+    private Path reports;
+
     @SneakyThrows
     @Test
     public void testRetrieveErrs() {
@@ -46,4 +63,47 @@ class TestReportServiceTest {
         assertThat(testWorkDir.resolve("test_session").resolve("classes").toFile()).exists();
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testCopiesOfAReportAreSerializedAndAwaited() throws Exception {
+        TestResultsProcessor processor = mock(TestResultsProcessor.class);
+        when(processor.processTestFailures(anyString())).thenReturn("No test failures found.");
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger copying = new AtomicInteger();
+        AtomicInteger overlapped = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (copying.incrementAndGet() > 1) {
+                overlapped.incrementAndGet();
+            }
+            release.await(10, TimeUnit.SECONDS);
+            copying.decrementAndGet();
+            return null;
+        }).when(processor).copyTestResults(anyString(), anyString(), any(), anyString());
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            TestReportService service = new TestReportService(processor, executor);
+            String report = reports.toString();
+            TestReportService.Report first = service.process(report, "session", "copies");
+            TestReportService.Report second = service.process(report, "session", "copies");
+
+            // the next run waits for both, the second only starting once the first is done
+            Thread awaiting = Thread.ofVirtual().start(() -> {
+                try {
+                    service.awaitCopies(List.of(report));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertThat(awaiting.join(Duration.ofMillis(200))).isFalse();
+            assertThat(first.copied()).isNotDone();
+
+            release.countDown();
+            assertThat(awaiting.join(Duration.ofSeconds(10))).isTrue();
+            assertThat(first.copied()).isDone();
+            assertThat(second.copied()).isDone();
+            assertThat(overlapped).hasValue(0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
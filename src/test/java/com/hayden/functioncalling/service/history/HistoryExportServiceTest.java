@@ -0,0 +1,113 @@
+package com.hayden.functioncalling.service.history;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hayden.functioncalling.entity.TestExecutionHistory;
+import com.hayden.functioncalling.model.HistoryFilter;
+import com.hayden.functioncalling.model.PipelineStageType;
+import com.hayden.functioncalling.repository.TestExecutionHistoryRepository;
+import com.hayden.functioncalling.service.process_builder.ProcessBuilderDataService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class HistoryExportServiceTest {
+
+    @Autowired
+    private HistoryExportService historyExportService;
+
+    @Autowired
+    private TestExecutionHistoryRepository repository;
+
+    @Autowired
+    private ProcessBuilderDataService dataService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private String registrationId;
+
+    @BeforeEach
+    void setUp() {
+        registrationId = UUID.randomUUID().toString();
+        for (int i = 0; i < 30; i++) {
+            repository.save(TestExecutionHistory.builder()
+                    .executionId(UUID.randomUUID().toString())
+                    .registrationId(registrationId)
+                    .command("test-command-" + i)
+                    .success(i % 2 == 0)
+                    .exitCode(i % 2)
+                    .executionTimeMs(i)
+                    .build());
+        }
+        repository.save(TestExecutionHistory.builder()
+                .executionId(UUID.randomUUID().toString())
+                .registrationId(UUID.randomUUID().toString())
+                .command("other-registration")
+                .success(true)
+                .build());
+    }
+
+    @Test
+    void testExportsFilteredRowsOldestFirstOnePerLine() throws Exception {
+        List<JsonNode> rows = export(new HistoryFilter(registrationId, null, null, null, null, null), false);
+
+        assertThat(rows).hasSize(30);
+        assertThat(rows).extracting(r -> r.get("command").asText())
+                .containsExactlyElementsOf(IntStream.range(0, 30).mapToObj(i -> "test-command-" + i).toList());
+        assertThat(rows).allMatch(r -> r.get("registrationId").asText().equals(registrationId));
+
+        assertThat(export(new HistoryFilter(registrationId, null, false, null, null, null), false)).hasSize(15);
+    }
+
+    @Test
+    void testExportsWholeLogsOnlyWhenAsked() throws Exception {
+        String output = "progress ".repeat(1000) + "done";
+        dataService.saveExecutionHistory(registrationId, "long-" + registrationId, "gradle test", null,
+                output, null, true, 0, 20, null);
+
+        JsonNode preview = export(new HistoryFilter(registrationId, null, null, null, null, null), false).getLast();
+        assertThat(preview.get("outputHash").isNull()).isFalse();
+        assertThat(preview.get("output").asText()).isNotEqualTo(output);
+
+        JsonNode full = export(new HistoryFilter(registrationId, null, null, null, null, null), true).getLast();
+        assertThat(full.get("output").asText()).isEqualTo(output);
+    }
+
+    @Test
+    void testRejectsBadFilterBeforeWriting() {
+        assertThatThrownBy(() -> historyExportService.export(PipelineStageType.TEST,
+                new HistoryFilter(null, null, null, "yesterday", null, null), false))
+                .isInstanceOf(DateTimeParseException.class);
+    }
+
+    private List<JsonNode> export(HistoryFilter filter, boolean fullLogs) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        historyExportService.export(PipelineStageType.TEST, filter, fullLogs).writeTo(out);
+        String ndjson = out.toString(StandardCharsets.UTF_8);
+        assertThat(ndjson).endsWith("\n");
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : ndjson.split("\n")) {
+            rows.add(objectMapper.readTree(line));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,206 @@
+package com.hayden.functioncalling.service.history;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.model.PipelineStageType;
+import com.hayden.functioncalling.service.history_archive.HistoryArchiveService;
+import com.hayden.functioncalling.service.history_archive.HistoryArchiver;
+import com.hayden.functioncalling.service.log_store.LogBlobStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the partition maintenance against the tables of the production changelog, created in a schema of their own
+ * since the test profile lets Hibernate create unpartitioned ones.
+ */
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class HistoryPartitionMaintenanceTest {
+
+    private static final String SCHEMA = "partition_maintenance_test";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @TempDir
+    private Path dataDirectory;
+
+    private SingleConnectionDataSource connection;
+    private JdbcTemplate jdbcTemplate;
+    private CodeRunnerConfigProps props;
+    private LogBlobStore logBlobStore;
+    private HistoryPartitionMaintenance maintenance;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // one connection, so the search path applies to everything the maintenance runs
+        connection = new SingleConnectionDataSource(dataSource.getConnection(), true);
+        jdbcTemplate = new JdbcTemplate(connection);
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS %s CASCADE".formatted(SCHEMA));
+        jdbcTemplate.execute("CREATE SCHEMA %s".formatted(SCHEMA));
+        jdbcTemplate.execute("SET search_path TO %s".formatted(SCHEMA));
+
+        // every changeset of the master changelog, in order
+        String master = new ClassPathResource("db/changelog/db.changelog-master.yaml")
+                .getContentAsString(StandardCharsets.UTF_8);
+        for (String file : master.lines()
+                .map(String::strip)
+                .filter(line -> line.startsWith("file:"))
+                .map(line -> line.substring("file:".length()).strip())
+                .toList()) {
+            String changelog = new ClassPathResource(file).getContentAsString(StandardCharsets.UTF_8);
+            String statements = changelog.lines()
+                    .filter(line -> !line.strip().startsWith("--"))
+                    .collect(Collectors.joining("\n"));
+            Arrays.stream(statements.split(";"))
+                    .filter(statement -> !statement.isBlank())
+                    .forEach(jdbcTemplate::execute);
+        }
+
+        props = new CodeRunnerConfigProps();
+        props.setDataDirectory(dataDirectory);
+        props.getHistoryRetention().setMonthsAhead(1);
+        props.getHistoryRetention().setCompactAfterMonths(2);
+        props.getHistoryRetention().setRetainMonths(6);
+        logBlobStore = new LogBlobStore(props);
+        HistoryArchiver historyArchiver = new HistoryArchiver(connection, new DataSourceTransactionManager(connection),
+                logBlobStore, props);
+        maintenance = new HistoryPartitionMaintenance(props, jdbcTemplate, logBlobStore, historyArchiver);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS %s CASCADE".formatted(SCHEMA));
+        jdbcTemplate.execute("SET search_path TO DEFAULT");
+        // hands the connection back to the pool
+        connection.destroy();
+    }
+
+    @Test
+    void testCreatesCompactsAndExpiresPartitions() {
+        YearMonth now = YearMonth.now();
+        YearMonth old = now.minusMonths(3);
+        YearMonth expired = now.minusMonths(8);
+        createPartition(old);
+        createPartition(expired);
+
+        LogBlobStore.StoredLog externalized = logBlobStore.store("x".repeat(100_000));
+        insert(old, "inline", "a short log kept whole in its row", null);
+        insert(old, "externalized", externalized.preview(), externalized.hash());
+        insert(now, "current", "the log of a run this month", null);
+        insert(expired, "expired", "the log of a run past retention", null);
+
+        maintenance.maintain();
+
+        assertThat(partitions()).contains(
+                        HistoryPartitionMaintenance.partitionName("test_execution_history", now),
+                        HistoryPartitionMaintenance.partitionName("test_execution_history", now.plusMonths(1)),
+                        HistoryPartitionMaintenance.partitionName("test_execution_history", old),
+                        HistoryPartitionMaintenance.partitionName("code_build_history", now.plusMonths(1)),
+                        HistoryPartitionMaintenance.partitionName("code_deploy_history", now.plusMonths(1)))
+                .doesNotContain(HistoryPartitionMaintenance.partitionName("test_execution_history", expired));
+        assertThat(jdbcTemplate.queryForList("SELECT partition_name FROM history_partition", String.class))
+                .contains(HistoryPartitionMaintenance.partitionName("test_execution_history", old));
+
+        // the inline log was moved to the blob store before the row was stripped, and nothing was lost
+        Map<String, Object> inline = row("inline");
+        assertThat(inline.get("output")).isNull();
+        assertThat(logBlobStore.get((String) inline.get("output_hash"))).contains("a short log kept whole in its row");
+        assertThat(inline.get("output_size")).isEqualTo((long) "a short log kept whole in its row".length());
+
+        Map<String, Object> stripped = row("externalized");
+        assertThat(stripped.get("output")).isNull();
+        assertThat(stripped.get("output_hash")).isEqualTo(externalized.hash());
+        assertThat(logBlobStore.get(externalized.hash())).contains("x".repeat(100_000));
+
+        assertThat(row("current").get("output")).isEqualTo("the log of a run this month");
+        assertThat(row("current").get("output_hash")).isNull();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM test_execution_history WHERE execution_id = 'expired'", Long.class))
+                .isZero();
+    }
+
+    @Test
+    void testArchivesExpiredPartitionsBeforeDroppingThem() {
+        props.getHistoryArchive().setEnabled(true);
+        props.getHistoryArchive().setArchiveAfterMonths(6);
+        YearMonth expired = YearMonth.now().minusMonths(8);
+        createPartition(expired);
+        insert(expired, "archived", "the log of a run past retention", null);
+
+        maintenance.maintain();
+
+        assertThat(partitions())
+                .doesNotContain(HistoryPartitionMaintenance.partitionName("test_execution_history", expired));
+        List<String> archived = new ArrayList<>();
+        new HistoryArchiveService(props).scan(PipelineStageType.TEST, "partitioned", null, null,
+                List.of("execution_id", "output_hash"), row -> {
+                    archived.add(row.getString("execution_id"));
+                    assertThat(logBlobStore.get(row.getString("output_hash"))).contains("the log of a run past retention");
+                });
+        assertThat(archived).containsExactly("archived");
+    }
+
+    @Test
+    void testRefusesToArchiveMonthsRetentionKeeps() {
+        props.getHistoryArchive().setEnabled(true);
+        props.getHistoryArchive().setArchiveAfterMonths(3);
+
+        assertThatThrownBy(maintenance::validate).isInstanceOf(IllegalStateException.class);
+    }
+
+    private void createPartition(YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE %s PARTITION OF test_execution_history FOR VALUES FROM ('%s') TO ('%s')"
+                .formatted(HistoryPartitionMaintenance.partitionName("test_execution_history", month),
+                        month.atDay(1), month.plusMonths(1).atDay(1)));
+    }
+
+    private void insert(YearMonth month, String executionId, String output, String outputHash) {
+        jdbcTemplate.update("""
+                        INSERT INTO test_execution_history
+                            (created_time, execution_id, registration_id, success, output, output_hash, execution_type)
+                        VALUES (?, ?, 'partitioned', true, ?, ?, 'PROCESS_BUILDER')
+                        """,
+                Timestamp.valueOf(month.atDay(2).atStartOfDay()), executionId, output, outputHash);
+    }
+
+    private Map<String, Object> row(String executionId) {
+        return jdbcTemplate.queryForMap(
+                "SELECT output, output_hash, output_size FROM test_execution_history WHERE execution_id = ?", executionId);
+    }
+
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList("""
+                SELECT child.relname
+                FROM pg_inherits
+                JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+                JOIN pg_namespace ns ON ns.oid = child.relnamespace
+                WHERE ns.nspname = ?
+                """, String.class, SCHEMA);
+    }
+}
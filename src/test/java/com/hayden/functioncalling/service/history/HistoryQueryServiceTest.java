@@ -0,0 +1,121 @@
+package com.hayden.functioncalling.service.history;
+
+import com.hayden.functioncalling.entity.TestExecutionHistory;
+import com.hayden.functioncalling.model.HistoryConnection;
+import com.hayden.functioncalling.model.HistoryFilter;
+import com.hayden.functioncalling.model.TestExecutionSummary;
+import com.hayden.functioncalling.repository.TestExecutionHistoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class HistoryQueryServiceTest {
+
+    @Autowired
+    private HistoryQueryService historyQueryService;
+
+    @Autowired
+    private TestExecutionHistoryRepository repository;
+
+    private String registrationId;
+
+    @BeforeEach
+    void setUp() {
+        registrationId = UUID.randomUUID().toString();
+        for (int i = 0; i < 12; i++) {
+            repository.save(TestExecutionHistory.builder()
+                    .executionId(UUID.randomUUID().toString())
+                    .registrationId(registrationId)
+                    .sessionId(i < 4 ? "session-a" : "session-b")
+                    .command("test-command-" + i)
+                    .success(i % 3 != 0)
+                    .exitCode(i % 3 != 0 ? 0 : 1)
+                    .executionTimeMs(100 + i)
+                    .build());
+        }
+    }
+
+    @Test
+    void testPagesThroughRegistrationNewestFirst() {
+        HistoryFilter filter = new HistoryFilter(registrationId, null, null, null, null, null);
+
+        List<TestExecutionHistory> seen = new ArrayList<>();
+        String after = null;
+        HistoryConnection<TestExecutionHistory> page;
+        do {
+            page = historyQueryService.executions(filter, 5, after);
+            assertThat(page.edges()).hasSizeLessThanOrEqualTo(5);
+            page.edges().forEach(e -> seen.add(e.node()));
+            after = page.pageInfo().endCursor();
+        } while (page.pageInfo().hasNextPage());
+
+        assertThat(seen).hasSize(12);
+        assertThat(seen).extracting(TestExecutionHistory::getId).doesNotHaveDuplicates();
+        assertThat(seen).extracting(TestExecutionHistory::getCommand)
+                .containsExactlyElementsOf(
+                        IntStream.iterate(11, i -> i >= 0, i -> i - 1)
+                                .mapToObj(i -> "test-command-" + i)
+                                .toList());
+    }
+
+    @Test
+    void testFiltersBySessionAndSuccess() {
+        HistoryConnection<TestExecutionHistory> failed = historyQueryService.executions(
+                new HistoryFilter(registrationId, null, false, null, null, null), 20, null);
+        assertThat(failed.edges()).hasSize(4);
+        assertThat(failed.edges()).allMatch(e -> !e.node().getSuccess());
+        assertThat(failed.pageInfo().hasNextPage()).isFalse();
+
+        HistoryConnection<TestExecutionHistory> session = historyQueryService.executions(
+                new HistoryFilter(registrationId, "session-a", null, null, null, null), 20, null);
+        assertThat(session.edges()).hasSize(4);
+        assertThat(session.edges()).allMatch(e -> e.node().getSessionId().equals("session-a"));
+    }
+
+    @Test
+    void testSummaryPagesDoNotSelectLogs() {
+        HistoryFilter filter = new HistoryFilter(registrationId, null, null, null, null, null);
+
+        RecordingStatementInspector.Recording<HistoryConnection<TestExecutionSummary>> summaries =
+                RecordingStatementInspector.record(() -> historyQueryService.executionSummaries(filter, 5, null));
+
+        assertThat(summaries.result().edges()).hasSize(5);
+        assertThat(summaries.result().edges()).extracting(e -> e.node().command()).startsWith("test-command-11");
+        assertThat(summaries.statements()).singleElement().satisfies(sql -> assertThat(sql.toLowerCase())
+                .doesNotContain("output", "error"));
+
+        // the cursors of both kinds of page are the same, so they can be mixed
+        HistoryConnection<TestExecutionHistory> next =
+                historyQueryService.executions(filter, 5, summaries.result().pageInfo().endCursor());
+        assertThat(next.edges()).first().extracting(e -> e.node().getCommand()).isEqualTo("test-command-6");
+
+        RecordingStatementInspector.Recording<HistoryConnection<TestExecutionHistory>> full =
+                RecordingStatementInspector.record(() -> historyQueryService.executions(filter, 5, null));
+        assertThat(full.statements()).singleElement().satisfies(sql -> assertThat(sql.toLowerCase())
+                .contains("output", "error"));
+    }
+
+    @Test
+    void testRejectsInvalidCursorAndPageSize() {
+        HistoryFilter filter = new HistoryFilter(registrationId, null, null, null, null, null);
+        assertThatThrownBy(() -> historyQueryService.executions(filter, 5, "not-a-cursor"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> historyQueryService.executions(filter, HistoryQueryService.MAX_PAGE_SIZE + 1, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,38 @@
+package com.hayden.functioncalling.service.history;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Records the SQL Hibernate runs on the current thread while {@link #record recording}, so tests can check which
+ * columns a query selects. Registered for the test profile in application-test.yml.
+ */
+public class RecordingStatementInspector implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> RECORDED = new ThreadLocal<>();
+
+    public record Recording<T>(T result, List<String> statements) {
+    }
+
+    public static <T> Recording<T> record(Supplier<T> action) {
+        List<String> statements = new ArrayList<>();
+        RECORDED.set(statements);
+        try {
+            return new Recording<>(action.get(), statements);
+        } finally {
+            RECORDED.remove();
+        }
+    }
+
+    @Override
+    public String inspect(String sql) {
+        List<String> statements = RECORDED.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+}
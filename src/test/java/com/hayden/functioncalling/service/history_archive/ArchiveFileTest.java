@@ -0,0 +1,84 @@
+package com.hayden.functioncalling.service.history_archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ArchiveFileTest {
+
+    private static final List<ArchiveFile.Column> COLUMNS = List.of(
+            new ArchiveFile.Column("created_time", ArchiveFile.ColumnType.LONG),
+            new ArchiveFile.Column("registration_id", ArchiveFile.ColumnType.DICTIONARY),
+            new ArchiveFile.Column("duration", ArchiveFile.ColumnType.LONG),
+            new ArchiveFile.Column("log_hash", ArchiveFile.ColumnType.STRING));
+
+    private static final int ROWS = ArchiveFile.ROW_GROUP_ROWS * 2 + 100;
+    private static final long START = 1_700_000_000_000L;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testRoundTripsColumnsOfEveryRowGroup() throws Exception {
+        Path file = write();
+
+        List<Object[]> rows = new ArrayList<>();
+        long matched = ArchiveFile.scan(file, new ArchiveFile.Predicate(null, null, null), List.of("duration", "log_hash"),
+                row -> rows.add(new Object[]{row.getLong("created_time"), row.getString("registration_id"),
+                        row.getLong("duration"), row.getString("log_hash")}));
+
+        assertThat(matched).isEqualTo(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            assertThat(rows.get(i)).containsExactly(expected(i));
+        }
+    }
+
+    @Test
+    void testPushesDownTimeAndRegistration() throws Exception {
+        Path file = write();
+
+        List<Long> times = new ArrayList<>();
+        long matched = ArchiveFile.scan(file, new ArchiveFile.Predicate(START + 1000L * 10, START + 1000L * 20, "build-1"),
+                List.of(), row -> times.add(row.getLong("created_time")));
+        assertThat(matched).isEqualTo(4);
+        assertThat(times).containsExactly(START + 1000L * 10, START + 1000L * 13, START + 1000L * 16, START + 1000L * 19);
+
+        // only in the last row group
+        assertThat(ArchiveFile.scan(file, new ArchiveFile.Predicate(null, null, "late"), List.of(), row -> {
+        })).isEqualTo(100);
+        assertThat(ArchiveFile.scan(file, new ArchiveFile.Predicate(null, null, "unknown"), List.of(), row -> {
+        })).isZero();
+    }
+
+    @Test
+    void testRejectsColumnsItDoesNotHave() throws Exception {
+        Path file = write();
+
+        assertThatThrownBy(() -> ArchiveFile.scan(file, new ArchiveFile.Predicate(null, null, null), List.of("missing"), row -> {
+        })).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Path write() throws Exception {
+        Path file = directory.resolve("2024-01-1" + ArchiveFile.EXTENSION);
+        try (ArchiveFile.Writer writer = new ArchiveFile.Writer(file, COLUMNS, "created_time", "registration_id")) {
+            for (int i = 0; i < ROWS; i++) {
+                writer.add(expected(i));
+            }
+        }
+        return file;
+    }
+
+    private static Object[] expected(int i) {
+        String registration = i >= ROWS - 100 ? "late" : "build-" + i % 3;
+        // wide enough values that packed values straddle words
+        Long duration = i % 7 == 0 ? null : (long) i * 123_456_789L;
+        String hash = i % 5 == 0 ? null : "hash-" + i;
+        return new Object[]{START + 1000L * i, registration, duration, hash};
+    }
+}
@@ -0,0 +1,112 @@
+package com.hayden.functioncalling.service.history_archive;
+
+import com.hayden.functioncalling.entity.QTestExecutionHistory;
+import com.hayden.functioncalling.entity.TestExecutionHistory;
+import com.hayden.functioncalling.model.ArchivedHistoryWeek;
+import com.hayden.functioncalling.model.PipelineStageType;
+import com.hayden.functioncalling.repository.TestExecutionHistoryRepository;
+import com.hayden.functioncalling.service.log_store.LogBlobStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class HistoryArchiverTest {
+
+    @Autowired
+    private HistoryArchiver historyArchiver;
+
+    @Autowired
+    private HistoryArchiveService historyArchiveService;
+
+    @Autowired
+    private TestExecutionHistoryRepository repository;
+
+    @Autowired
+    private LogBlobStore logBlobStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String registrationId;
+    private LocalDateTime monday;
+
+    @BeforeEach
+    void setUp() {
+        registrationId = UUID.randomUUID().toString();
+        // a Monday two years back, far older than anything else the tests write
+        monday = LocalDateTime.of(LocalDateTime.now().getYear() - 2, 3, 4, 10, 0)
+                .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        for (int i = 0; i < 10; i++) {
+            TestExecutionHistory saved = repository.save(TestExecutionHistory.builder()
+                    .executionId(UUID.randomUUID().toString())
+                    .registrationId(registrationId)
+                    .command("gradle test")
+                    .output("output " + i)
+                    .success(i % 2 == 0)
+                    .exitCode(i % 2)
+                    .executionTimeMs(100 * (i + 1))
+                    .build());
+            // five runs in each of two consecutive weeks
+            jdbcTemplate.update("UPDATE test_execution_history SET created_time = ? WHERE id = ?",
+                    Timestamp.valueOf(monday.plusDays(i < 5 ? i : 2 + i)), saved.getId());
+        }
+        repository.save(TestExecutionHistory.builder()
+                .executionId(UUID.randomUUID().toString())
+                .registrationId(registrationId)
+                .command("gradle test")
+                .success(true)
+                .build());
+    }
+
+    @Test
+    void testMovesOldHistoryIntoArchive() {
+        assertThat(historyArchiver.archive(YearMonth.now().minusMonths(6))).isGreaterThanOrEqualTo(10);
+
+        // only the recent run is left in the table
+        assertThat(repository.count(QTestExecutionHistory.testExecutionHistory.registrationId.eq(registrationId)))
+                .isEqualTo(1);
+
+        List<ArchivedHistoryWeek> weeks = historyArchiveService.weeks(PipelineStageType.TEST, registrationId, null, null);
+        assertThat(weeks).extracting(ArchivedHistoryWeek::weekStart)
+                .containsExactly(monday.toLocalDate().toString(), monday.toLocalDate().plusWeeks(1).toString());
+        assertThat(weeks).extracting(ArchivedHistoryWeek::executions).containsExactly(5L, 5L);
+        assertThat(weeks.getFirst().successes()).isEqualTo(3);
+        assertThat(weeks.getFirst().meanDurationMs()).isEqualTo(300.0);
+        assertThat(weeks.getLast().meanDurationMs()).isEqualTo(800.0);
+
+        assertThat(historyArchiveService.weeks(PipelineStageType.TEST, registrationId,
+                monday.plusDays(7).toString(), null)).hasSize(1);
+        assertThat(historyArchiveService.weeks(PipelineStageType.TEST, UUID.randomUUID().toString(), null, null)).isEmpty();
+    }
+
+    @Test
+    void testKeepsInlineLogsReachableThroughTheBlobStore() {
+        historyArchiver.archive(YearMonth.now().minusMonths(6));
+
+        List<String> outputs = new ArrayList<>();
+        historyArchiveService.scan(PipelineStageType.TEST, registrationId, null, null, List.of("output_hash"),
+                row -> outputs.add(logBlobStore.get(row.getString("output_hash")).orElseThrow()));
+
+        assertThat(outputs).containsExactly("output 0", "output 1", "output 2", "output 3", "output 4",
+                "output 5", "output 6", "output 7", "output 8", "output 9");
+    }
+}
@@ -0,0 +1,101 @@
+package com.hayden.functioncalling.service.live_report;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.entity.TestExecutionEntity;
+import com.hayden.functioncalling.model.TestFailureEvent;
+import com.hayden.functioncalling.service.process_builder.FailFastMonitor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.Disposable;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LiveTestReportWatcherTest {
+
+    @TempDir
+    private Path directory;
+
+    private static String results(String... failing) {
+        StringBuilder cases = new StringBuilder();
+        for (String name : failing) {
+            cases.append("""
+                    <testcase name="%s" classname="com.example.FooTest" time="0.1">
+                      <failure message="boom" type="java.lang.IllegalStateException">java.lang.IllegalStateException: boom</failure>
+                    </testcase>
+                    """.formatted(name));
+        }
+        return """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <testsuite name="com.example.FooTest">
+                <testcase name="passes()" classname="com.example.FooTest" time="0.1"/>
+                %s</testsuite>
+                """.formatted(cases);
+    }
+
+    @Test
+    void testPublishesFailuresWhileTheRunIsGoing() throws Exception {
+        CodeRunnerConfigProps props = new CodeRunnerConfigProps();
+        props.getLiveReports().setPollMs(50);
+        LiveTestReportWatcher watcher = new LiveTestReportWatcher(props);
+
+        // the report of a Gradle test task, whose results don't exist until the tests start
+        Path report = directory.resolve("build/reports/tests/test/index.html");
+        Path results = directory.resolve("build/test-results/test");
+        TestExecutionEntity entity = TestExecutionEntity.builder()
+                .registrationId("live")
+                .reportingPaths(List.of(report.toString()))
+                .build();
+        FailFastMonitor failFast = new FailFastMonitor(2, null);
+
+        List<TestFailureEvent> failures = new CopyOnWriteArrayList<>();
+        Disposable subscription = watcher.failures("live", "session").subscribe(failures::add);
+        try (LiveTestReportWatcher.Watch ignored = watcher.watch(entity, "execution", "session", failFast)) {
+            Files.createDirectories(results);
+            Files.writeString(results.resolve("TEST-com.example.FooTest.xml"), results("fails()"));
+            await(() -> failures.size() == 1);
+            assertThat(failures.getFirst()).satisfies(failure -> {
+                assertThat(failure.executionId()).isEqualTo("execution");
+                assertThat(failure.suite()).isEqualTo("com.example.FooTest");
+                assertThat(failure.name()).isEqualTo("fails()");
+                assertThat(failure.message()).contains("IllegalStateException: boom");
+            });
+            assertThat(failFast.isTripped()).isFalse();
+
+            // rewritten with another failure, the first one isn't published again
+            Files.writeString(results.resolve("TEST-com.example.FooTest.xml"), results("fails()", "failsToo()"));
+            await(() -> failures.size() == 2);
+            assertThat(failures).extracting(TestFailureEvent::name).containsExactly("fails()", "failsToo()");
+            assertThat(failFast.failureCount()).isEqualTo(2);
+            assertThat(failFast.isTripped()).isTrue();
+        } finally {
+            subscription.dispose();
+        }
+    }
+
+    @Test
+    void testDoesNothingWithoutResultDirectories() {
+        LiveTestReportWatcher watcher = new LiveTestReportWatcher(new CodeRunnerConfigProps());
+        TestExecutionEntity entity = TestExecutionEntity.builder()
+                .registrationId("none")
+                .reportingPaths(List.of(directory.resolve("test-report-log.log").toString()))
+                .build();
+
+        try (LiveTestReportWatcher.Watch watch = watcher.watch(entity, "execution", null, null)) {
+            assertThat(watch).isNotNull();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
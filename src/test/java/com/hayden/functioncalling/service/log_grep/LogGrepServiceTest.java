@@ -0,0 +1,85 @@
+package com.hayden.functioncalling.service.log_grep;
+
+import com.hayden.functioncalling.model.LogGrepMatch;
+import com.hayden.functioncalling.model.LogGrepResult;
+import com.hayden.functioncalling.service.process_builder.LogFileWriter;
+import com.hayden.functioncalling.utils.LogBloomSidecar;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LogGrepServiceTest {
+
+    @TempDir
+    private Path directory;
+
+    private final LogGrepService logGrepService = new LogGrepService(null);
+
+    @Test
+    void testReadsOnlyLogsWhoseFiltersMightMatch() throws Exception {
+        writeLog("execution_1.log", true, 40_000, 35_000);
+        writeLog("execution_2.log.gz", true, 40_000, 12);
+        writeLog("execution_3.log", true, 40_000, -1);
+        writeLog("execution_4.log", false, 100, 7);
+
+        assertThat(LogBloomSidecar.sidecarOf(directory.resolve("execution_1.log"))).exists();
+        assertThat(LogBloomSidecar.sidecarOf(directory.resolve("execution_4.log"))).doesNotExist();
+
+        LogGrepResult result = logGrepService.grep("IllegalStateException", List.of(directory.toString()), null);
+
+        assertThat(result.filesSearched()).isEqualTo(4);
+        // the log without the token is ruled out by its filters
+        assertThat(result.filesRead()).isEqualTo(3);
+        assertThat(result.truncated()).isFalse();
+        assertThat(result.matches())
+                .extracting(m -> Path.of(m.path()).getFileName().toString() + ":" + m.lineNumber())
+                .containsExactlyInAnyOrder("execution_1.log:35000", "execution_2.log.gz:12", "execution_4.log:7");
+        assertThat(result.matches()).extracting(LogGrepMatch::line)
+                .allMatch(l -> l.equals("java.lang.IllegalStateException: boom"));
+    }
+
+    @Test
+    void testMatchesWholeTokensOnly() throws Exception {
+        writeLog("execution_5.log", true, 10, 3);
+
+        assertThat(logGrepService.grep("IllegalState", List.of(directory.toString()), null).matches()).isEmpty();
+        assertThat(logGrepService.grep("lang.IllegalStateException", List.of(directory.toString()), null).matches())
+                .hasSize(1);
+    }
+
+    @Test
+    void testContinuesFiltersOfAppendedLog() throws Exception {
+        Path log = directory.resolve("registration-log.log");
+        try (LogFileWriter writer = LogFileWriter.open(log, true)) {
+            writer.writeLine("first run");
+        }
+        try (LogFileWriter writer = LogFileWriter.open(log, true)) {
+            writer.writeLine("second run NullPointerException");
+        }
+
+        LogGrepResult result = logGrepService.grep("NullPointerException", List.of(directory.toString()), null);
+
+        assertThat(result.matches()).singleElement()
+                .satisfies(m -> assertThat(m.lineNumber()).isEqualTo(2));
+        assertThat(LogBloomSidecar.Index.read(log)).hasValueSatisfying(i -> assertThat(i.blocks()).hasSize(2));
+    }
+
+    /**
+     * @param matchLine the line, numbered from 1, printing the exception, or -1 for none
+     */
+    private void writeLog(String name, boolean filter, int lines, int matchLine) throws Exception {
+        try (LogFileWriter writer = LogFileWriter.open(directory.resolve(name), filter)) {
+            for (int i = 1; i <= lines; i++) {
+                writer.writeLine(i == matchLine
+                        ? "java.lang.IllegalStateException: boom"
+                        : "request %d handled in %d ms by worker-%d".formatted(i, i % 97, i % 13));
+            }
+        }
+        assertThat(Files.exists(directory.resolve(name))).isTrue();
+    }
+}
@@ -0,0 +1,107 @@
+package com.hayden.functioncalling.service.log_search;
+
+import com.hayden.functioncalling.entity.TestExecutionHistory;
+import com.hayden.functioncalling.model.HistoryConnection;
+import com.hayden.functioncalling.model.HistoryFilter;
+import com.hayden.functioncalling.model.LogSearchHit;
+import com.hayden.functioncalling.model.PipelineStageType;
+import com.hayden.functioncalling.repository.TestExecutionHistoryRepository;
+import com.hayden.functioncalling.service.process_builder.ProcessBuilderDataService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class LogSearchServiceTest {
+
+    @Autowired
+    private LogSearchService logSearchService;
+
+    @Autowired
+    private LogSearchIndexer logSearchIndexer;
+
+    @Autowired
+    private TestExecutionHistoryRepository repository;
+
+    @Autowired
+    private ProcessBuilderDataService dataService;
+
+    private String registrationId;
+
+    @BeforeEach
+    void setUp() {
+        registrationId = UUID.randomUUID().toString();
+        for (int i = 0; i < 3; i++) {
+            repository.save(TestExecutionHistory.builder()
+                    .executionId("failed-" + i + "-" + registrationId)
+                    .registrationId(registrationId)
+                    .sessionId(i == 0 ? "session-a" : "session-b")
+                    .command("gradle test")
+                    .output("Running tests")
+                    .error("java.lang.IllegalStateException: boom at com.example.Foo.bar(Foo.java:12)")
+                    .success(false)
+                    .exitCode(1)
+                    .executionTimeMs(10)
+                    .build());
+        }
+        // longer than the preview, the match is only in the part kept in the blob store
+        dataService.saveExecutionHistory(registrationId, "long-" + registrationId, "gradle test", null,
+                "progress ".repeat(1000) + "ConnectionRefused while reaching the registry", null,
+                true, 0, 20, "session-c");
+        logSearchIndexer.indexPending();
+    }
+
+    @Test
+    void testFindsExceptionBySimpleNameWithHighlightedSnippet() {
+        HistoryConnection<LogSearchHit> page = logSearchService.search(PipelineStageType.TEST, "IllegalStateException",
+                new HistoryFilter(registrationId, null, null, null, null, null), 10, null, false);
+
+        assertThat(page.edges()).hasSize(3);
+        assertThat(page.edges()).allSatisfy(e -> {
+            assertThat(e.node().runId()).startsWith("failed-");
+            assertThat(e.node().snippet()).contains("<b>IllegalStateException</b>");
+        });
+    }
+
+    @Test
+    void testFindsMatchBeyondThePreview() {
+        HistoryConnection<LogSearchHit> page = logSearchService.search(PipelineStageType.TEST, "\"ConnectionRefused while\"",
+                new HistoryFilter(registrationId, null, null, null, null, null), 10, null, false);
+
+        assertThat(page.edges()).singleElement()
+                .satisfies(e -> assertThat(e.node().runId()).isEqualTo("long-" + registrationId));
+    }
+
+    @Test
+    void testFiltersAndPagesOldestFirst() {
+        HistoryFilter filter = new HistoryFilter(registrationId, "session-b", null, null, null, null);
+
+        HistoryConnection<LogSearchHit> first = logSearchService.search(PipelineStageType.TEST, "boom", filter, 1, null, true);
+        assertThat(first.edges()).singleElement()
+                .satisfies(e -> assertThat(e.node().runId()).isEqualTo("failed-1-" + registrationId));
+        assertThat(first.pageInfo().hasNextPage()).isTrue();
+
+        HistoryConnection<LogSearchHit> second = logSearchService.search(PipelineStageType.TEST, "boom", filter, 1,
+                first.pageInfo().endCursor(), true);
+        assertThat(second.edges()).singleElement()
+                .satisfies(e -> assertThat(e.node().runId()).isEqualTo("failed-2-" + registrationId));
+        assertThat(second.pageInfo().hasNextPage()).isFalse();
+    }
+
+    @Test
+    void testRejectsBlankQuery() {
+        assertThatThrownBy(() -> logSearchService.search(PipelineStageType.TEST, " ", null, null, null, false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,62 @@
+package com.hayden.functioncalling.service.log_store;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LogBlobStoreTest {
+
+    @TempDir
+    private Path dataDirectory;
+
+    private LogBlobStore logBlobStore;
+
+    @BeforeEach
+    void setUp() {
+        CodeRunnerConfigProps props = new CodeRunnerConfigProps();
+        props.setDataDirectory(dataDirectory);
+        props.getLogStore().setPreviewChars(10);
+        logBlobStore = new LogBlobStore(props);
+    }
+
+    @Test
+    void testShortLogStaysInline() {
+        LogBlobStore.StoredLog stored = logBlobStore.store("short");
+
+        assertThat(stored.preview()).isEqualTo("short");
+        assertThat(stored.hash()).isNull();
+        assertThat(logBlobStore.resolve(stored.preview(), stored.hash())).isEqualTo("short");
+    }
+
+    @Test
+    void testLongLogIsExternalizedAndResolved() throws Exception {
+        String log = "BUILD FAILED\n".repeat(100);
+
+        LogBlobStore.StoredLog stored = logBlobStore.store(log);
+
+        assertThat(stored.hash()).isNotNull();
+        assertThat(stored.sizeBytes()).isEqualTo(log.length());
+        assertThat(stored.preview()).startsWith("BUILD FAIL").contains("truncated");
+        assertThat(logBlobStore.resolve(stored.preview(), stored.hash())).isEqualTo(log);
+        assertThat(Files.size(logBlobStore.blobPath(stored.hash()))).isLessThan(log.length());
+    }
+
+    @Test
+    void testIdenticalLogsShareOneBlob() throws Exception {
+        String log = "Tests run: 42, Failures: 0\n".repeat(10);
+
+        String first = logBlobStore.store(log).hash();
+        String second = logBlobStore.store(log).hash();
+
+        assertThat(second).isEqualTo(first);
+        try (var blobs = Files.walk(dataDirectory.resolve("blobs"))) {
+            assertThat(blobs.filter(Files::isRegularFile).count()).isEqualTo(1);
+        }
+    }
+}
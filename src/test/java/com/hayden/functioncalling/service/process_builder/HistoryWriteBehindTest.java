@@ -0,0 +1,236 @@
+package com.hayden.functioncalling.service.process_builder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.entity.CodeDeployHistory;
+import com.hayden.functioncalling.entity.TestExecutionHistory;
+import com.hayden.functioncalling.repository.CodeBuildHistoryRepository;
+import com.hayden.functioncalling.repository.CodeDeployHistoryRepository;
+import com.hayden.functioncalling.repository.TestExecutionHistoryRepository;
+import com.hayden.functioncalling.service.log_store.LogBlobStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class HistoryWriteBehindTest {
+
+    @Mock
+    private TestExecutionHistoryRepository executionHistoryRepository;
+
+    @Mock
+    private CodeBuildHistoryRepository buildHistoryRepository;
+
+    @Mock
+    private CodeDeployHistoryRepository deployHistoryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    private Path dataDirectory;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    private CodeRunnerConfigProps props;
+
+    private LogBlobStore logBlobStore;
+
+    private HistoryWriteBehind writeBehind;
+
+    @BeforeEach
+    void setUp() {
+        props = new CodeRunnerConfigProps();
+        props.setDataDirectory(dataDirectory);
+        props.getWriteBehind().setBatchSize(3);
+        props.getWriteBehind().setFlushIntervalMs(60_000);
+        props.getWriteBehind().setJournalSegmentBytes(64 * 1024);
+
+        @SuppressWarnings("unchecked")
+        ObjectProvider<MeterRegistry> meterRegistry = mock(ObjectProvider.class);
+
+        logBlobStore = new LogBlobStore(props);
+        writeBehind = new HistoryWriteBehind(executionHistoryRepository, buildHistoryRepository,
+                deployHistoryRepository, transactionManager, new HistoryJournal(props, objectMapper), logBlobStore,
+                props, meterRegistry);
+        writeBehind.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        writeBehind.stop();
+    }
+
+    @Test
+    void testFullBatchIsWrittenTogether() {
+        for (int i = 0; i < 3; i++) {
+            writeBehind.enqueue(history("exec-" + i));
+        }
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TestExecutionHistory>> batch = ArgumentCaptor.forClass(List.class);
+        verify(executionHistoryRepository, timeout(5_000)).saveAll(batch.capture());
+        assertThat(batch.getValue()).extracting(TestExecutionHistory::getExecutionId)
+                .containsExactly("exec-0", "exec-1", "exec-2");
+        verify(executionHistoryRepository, never()).save(any());
+    }
+
+    @Test
+    void testPendingRecordsAreReadableAndDrainedOnShutdown() {
+        TestExecutionHistory history = history("exec-pending");
+        writeBehind.enqueue(history);
+
+        assertThat(writeBehind.pendingExecution("exec-pending")).containsSame(history);
+        verify(executionHistoryRepository, after(200).never()).saveAll(anyList());
+
+        writeBehind.stop();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TestExecutionHistory>> batch = ArgumentCaptor.forClass(List.class);
+        verify(executionHistoryRepository).saveAll(batch.capture());
+        assertThat(batch.getValue()).extracting(TestExecutionHistory::getExecutionId).containsExactly("exec-pending");
+        assertThat(writeBehind.pendingExecution("exec-pending")).isEmpty();
+    }
+
+    @Test
+    void testLongLogsAreExternalizedByTheWriter() {
+        String output = "x".repeat(props.getLogStore().getPreviewChars() + 1_000);
+        TestExecutionHistory history = history("exec-long");
+        history.setOutput(output);
+        history.setError("short");
+        writeBehind.enqueue(history);
+
+        // queued whole, nothing is hashed or compressed on the enqueuing thread
+        assertThat(writeBehind.pendingExecution("exec-long")).hasValueSatisfying(pending -> {
+            assertThat(pending.getOutput()).isEqualTo(output);
+            assertThat(pending.getOutputHash()).isNull();
+        });
+
+        writeBehind.stop();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<TestExecutionHistory>> batch = ArgumentCaptor.forClass(List.class);
+        verify(executionHistoryRepository).saveAll(batch.capture());
+        TestExecutionHistory written = batch.getValue().getFirst();
+        assertThat(written.getOutput()).hasSizeLessThan(output.length());
+        assertThat(written.getOutputSize()).isEqualTo((long) output.length());
+        assertThat(logBlobStore.get(written.getOutputHash())).contains(output);
+        assertThat(written.getError()).isEqualTo("short");
+        assertThat(written.getErrorHash()).isNull();
+
+        // a copy was externalized, readers of the pending record only ever saw the whole log
+        assertThat(written).isNotSameAs(history);
+        assertThat(history.getOutput()).isEqualTo(output);
+        assertThat(history.getOutputHash()).isNull();
+    }
+
+    @Test
+    void testLongDeployOutputIsExternalizedByTheWriter() {
+        String output = "y".repeat(props.getLogStore().getPreviewChars() + 1_000);
+        writeBehind.enqueue(CodeDeployHistory.builder()
+                .registrationId("registration")
+                .deployId("deploy-long")
+                .output(output)
+                .error("short")
+                .build());
+
+        writeBehind.stop();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CodeDeployHistory>> batch = ArgumentCaptor.forClass(List.class);
+        verify(deployHistoryRepository).saveAll(batch.capture());
+        CodeDeployHistory written = batch.getValue().getFirst();
+        assertThat(written.getOutput()).hasSizeLessThan(output.length());
+        assertThat(written.getOutputSize()).isEqualTo((long) output.length());
+        assertThat(logBlobStore.resolve(written.getOutput(), written.getOutputHash())).isEqualTo(output);
+        assertThat(written.getError()).isEqualTo("short");
+        assertThat(written.getErrorHash()).isNull();
+    }
+
+    @Test
+    void testUnwrittenRecordsAreReplayedFromJournal() {
+        when(executionHistoryRepository.saveAll(anyList()))
+                .thenThrow(new CannotCreateTransactionException("database unavailable"));
+
+        writeBehind.enqueue(history("exec-journaled"));
+        writeBehind.stop();
+
+        HistoryJournal reopened = new HistoryJournal(props, objectMapper);
+        reopened.open();
+
+        assertThat(reopened.hasEvicted()).isTrue();
+        assertThat(reopened.loadEvicted(10))
+                .extracting(e -> ((TestExecutionHistory) e.history()).getExecutionId())
+                .containsExactly("exec-journaled");
+    }
+
+    @Test
+    void testRejectedRecordsAreReplayedFromJournal() {
+        when(executionHistoryRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<TestExecutionHistory> batch = invocation.getArgument(0);
+            if (batch.stream().anyMatch(h -> h.getExecutionId().equals("exec-rejected"))) {
+                throw new DataIntegrityViolationException("no partition of relation found for row");
+            }
+            return batch;
+        });
+
+        writeBehind.enqueue(history("exec-0"));
+        writeBehind.enqueue(history("exec-rejected"));
+        writeBehind.enqueue(history("exec-2"));
+
+        // the batch, then each record on its own
+        verify(executionHistoryRepository, timeout(5_000).times(4)).saveAll(anyList());
+        writeBehind.stop();
+
+        HistoryJournal reopened = new HistoryJournal(props, objectMapper);
+        reopened.open();
+
+        // records after it are replayed too, the writer skips those that already exist
+        assertThat(reopened.loadEvicted(10))
+                .extracting(e -> ((TestExecutionHistory) e.history()).getExecutionId())
+                .contains("exec-rejected")
+                .doesNotContain("exec-0");
+    }
+
+    @Test
+    void testAcknowledgedRecordsAreNotReplayed() {
+        HistoryJournal journal = new HistoryJournal(props, objectMapper);
+        journal.open();
+        HistoryJournal.Position first = journal.append(history("exec-1"));
+        journal.append(history("exec-2"));
+        journal.ack(first);
+
+        HistoryJournal reopened = new HistoryJournal(props, objectMapper);
+        reopened.open();
+
+        assertThat(reopened.loadEvicted(10))
+                .extracting(e -> ((TestExecutionHistory) e.history()).getExecutionId())
+                .containsExactly("exec-2");
+    }
+
+    private static TestExecutionHistory history(String executionId) {
+        return TestExecutionHistory.builder()
+                .executionId(executionId)
+                .registrationId("echo")
+                .success(true)
+                .build();
+    }
+}
@@ -0,0 +1,46 @@
+package com.hayden.functioncalling.service.process_builder;
+
+import com.hayden.functioncalling.utils.LogFiles;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LogFileWriterTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testCompressedLogIsReadBackAcrossRuns() throws Exception {
+        Path log = LogFiles.withCompression(directory.resolve("execution_1.log"), true);
+
+        try (LogFileWriter first = LogFileWriter.open(log)) {
+            for (int i = 0; i < 1_000; i++) {
+                first.writeLine("CodeRunnerTest > testRun() PASSED");
+            }
+        }
+        try (LogFileWriter second = LogFileWriter.open(log)) {
+            second.writeLine("BUILD SUCCESSFUL");
+        }
+
+        assertThat(log.getFileName().toString()).isEqualTo("execution_1.log.gz");
+        String content = LogFiles.readString(log);
+        assertThat(content.lines()).hasSize(1_001).last().isEqualTo("BUILD SUCCESSFUL");
+        assertThat(Files.size(log)).isLessThan(content.length() / 10);
+    }
+
+    @Test
+    void testPlainLogIsWrittenAsIs() throws Exception {
+        Path log = LogFiles.withCompression(directory.resolve("execution_2.log"), false);
+
+        try (LogFileWriter writer = LogFileWriter.open(log)) {
+            writer.writeLine("Hello, World!");
+        }
+
+        assertThat(Files.readString(log)).isEqualTo("Hello, World!" + System.lineSeparator());
+    }
+}
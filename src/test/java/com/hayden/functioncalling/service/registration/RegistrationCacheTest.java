@@ -0,0 +1,73 @@
+package com.hayden.functioncalling.service.registration;
+
+import com.hayden.commitdiffmodel.codegen.types.ExecutionType;
+import com.hayden.functioncalling.entity.TestExecutionEntity;
+import com.hayden.functioncalling.repository.TestExecutionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class RegistrationCacheTest {
+
+    @Autowired
+    private RegistrationCache registrationCache;
+
+    @Autowired
+    private TestExecutionRepository executionRepository;
+
+    private String registrationId;
+
+    @BeforeEach
+    void setUp() {
+        registrationId = UUID.randomUUID().toString();
+        executionRepository.save(TestExecutionEntity.builder()
+                .registrationId(registrationId)
+                .command("echo")
+                .arguments("first")
+                .enabled(true)
+                .executionType(ExecutionType.PROCESS_BUILDER)
+                .build());
+    }
+
+    @Test
+    void testUpdatesAndDeletesEvictCachedRegistration() {
+        assertThat(registrationCache.execution(registrationId))
+                .hasValueSatisfying(e -> assertThat(e.getArguments()).isEqualTo("first"));
+        assertThat(registrationCache.executions()).anyMatch(e -> e.getRegistrationId().equals(registrationId));
+
+        TestExecutionEntity entity = executionRepository.findByRegistrationId(registrationId).orElseThrow();
+        entity.setArguments("second");
+        executionRepository.save(entity);
+
+        assertThat(registrationCache.execution(registrationId))
+                .hasValueSatisfying(e -> assertThat(e.getArguments()).isEqualTo("second"));
+
+        executionRepository.delete(entity);
+
+        assertThat(registrationCache.execution(registrationId)).isEmpty();
+        assertThat(registrationCache.executions()).noneMatch(e -> e.getRegistrationId().equals(registrationId));
+    }
+
+    @Test
+    void testNotificationFromOtherNodeEvicts() {
+        TestExecutionEntity cached = registrationCache.execution(registrationId).orElseThrow();
+        assertThat(registrationCache.execution(registrationId)).containsSame(cached);
+
+        registrationCache.onNotification("other-node:EXECUTION:" + registrationId);
+
+        TestExecutionEntity reloaded = registrationCache.execution(registrationId).orElseThrow();
+        assertThat(reloaded).isNotSameAs(cached);
+        assertThat(reloaded.getRegistrationId()).isEqualTo(registrationId);
+    }
+}
@@ -0,0 +1,117 @@
+package com.hayden.functioncalling.service.registration;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.entity.TestExecutionEntity;
+import com.hayden.functioncalling.repository.TestExecutionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class RegistrationSynchronizerTest {
+
+    @Autowired
+    private RegistrationSynchronizer registrationSynchronizer;
+
+    @Autowired
+    private CodeRunnerConfigProps props;
+
+    @Autowired
+    private TestExecutionRepository executionRepository;
+
+    private List<CodeRunnerConfigProps.TestExecutionRegistration> originalRegistrations;
+    private String registrationId;
+
+    @BeforeEach
+    void setUp() {
+        originalRegistrations = props.getTestRegistrations();
+        props.setTestRegistrations(new ArrayList<>(originalRegistrations));
+        registrationId = "sync-" + UUID.randomUUID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        props.setTestRegistrations(originalRegistrations);
+        registrationSynchronizer.sync();
+    }
+
+    @Test
+    void testAddsUpdatesAndRemovesConfiguredRegistrations() {
+        CodeRunnerConfigProps.TestExecutionRegistration registration = new CodeRunnerConfigProps.TestExecutionRegistration();
+        registration.setRegistrationId(registrationId);
+        registration.setCommand("echo");
+        registration.setArguments("first");
+        props.getTestRegistrations().add(registration);
+
+        registrationSynchronizer.sync();
+        TestExecutionEntity added = executionRepository.findByRegistrationId(registrationId).orElseThrow();
+        assertThat(added.getArguments()).isEqualTo("first");
+        assertThat(added.getSessionId()).isEqualTo(RegistrationSynchronizer.CONFIG_SESSION_ID);
+
+        registration.setArguments("second");
+        registrationSynchronizer.sync();
+        assertThat(executionRepository.findByRegistrationId(registrationId))
+                .hasValueSatisfying(e -> assertThat(e.getArguments()).isEqualTo("second"));
+
+        props.getTestRegistrations().remove(registration);
+        registrationSynchronizer.sync();
+        assertThat(executionRepository.findByRegistrationId(registrationId)).isEmpty();
+    }
+
+    @Test
+    void testKeepsRegistrationsAddedThroughApi() {
+        executionRepository.save(TestExecutionEntity.builder()
+                .registrationId(registrationId)
+                .sessionId("api-session")
+                .command("echo")
+                .enabled(true)
+                .build());
+
+        registrationSynchronizer.sync();
+
+        assertThat(executionRepository.findByRegistrationId(registrationId)).isPresent();
+        executionRepository.deleteById(registrationId);
+    }
+
+    @Test
+    void testLeavesApiRegistrationsWithAConfiguredIdAlone() {
+        executionRepository.save(TestExecutionEntity.builder()
+                .registrationId(registrationId)
+                .sessionId("api-session")
+                .command("echo")
+                .arguments("from the api")
+                .enabled(true)
+                .build());
+
+        CodeRunnerConfigProps.TestExecutionRegistration registration = new CodeRunnerConfigProps.TestExecutionRegistration();
+        registration.setRegistrationId(registrationId);
+        registration.setCommand("echo");
+        registration.setArguments("from the configuration");
+        props.getTestRegistrations().add(registration);
+
+        registrationSynchronizer.sync();
+        assertThat(executionRepository.findByRegistrationId(registrationId)).hasValueSatisfying(e -> {
+            assertThat(e.getArguments()).isEqualTo("from the api");
+            assertThat(e.getSessionId()).isEqualTo("api-session");
+        });
+
+        // still not the configuration's to delete once it's gone from it
+        props.getTestRegistrations().remove(registration);
+        registrationSynchronizer.sync();
+        assertThat(executionRepository.findByRegistrationId(registrationId)).isPresent();
+        executionRepository.deleteById(registrationId);
+    }
+}
@@ -0,0 +1,110 @@
+package com.hayden.functioncalling.service.statistics;
+
+import com.hayden.functioncalling.entity.TestExecutionHistory;
+import com.hayden.functioncalling.model.PipelineStageType;
+import com.hayden.functioncalling.model.RegistrationStatistics;
+import com.hayden.functioncalling.repository.TestExecutionHistoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.withinPercentage;
+
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class RegistrationStatisticsServiceTest {
+
+    @Autowired
+    private RegistrationStatisticsService statisticsService;
+
+    @Autowired
+    private TestExecutionHistoryRepository repository;
+
+    private String registrationId;
+
+    @BeforeEach
+    void setUp() {
+        registrationId = UUID.randomUUID().toString();
+    }
+
+    @Test
+    void testMaintainsStatisticsAsHistoryIsSaved() {
+        List<TestExecutionHistory> batch = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            TestExecutionHistory history = history(i, i % 4 != 0);
+            if (i <= 50) {
+                repository.save(history);
+            } else {
+                batch.add(history);
+            }
+        }
+        repository.saveAll(batch);
+
+        RegistrationStatistics statistics = statisticsService.statistics(PipelineStageType.TEST, registrationId, 7);
+
+        assertThat(statistics.allTime().executions()).isEqualTo(100);
+        assertThat(statistics.allTime().successes()).isEqualTo(75);
+        assertThat(statistics.allTime().successRate()).isEqualTo(0.75);
+        assertThat(statistics.allTime().meanDurationMs()).isEqualTo(50.5);
+        assertThat(statistics.allTime().minDurationMs()).isEqualTo(1);
+        assertThat(statistics.allTime().maxDurationMs()).isEqualTo(100);
+        assertThat(statistics.allTime().p50DurationMs()).isCloseTo(51.0, withinPercentage(2));
+        assertThat(statistics.allTime().p95DurationMs()).isCloseTo(96.0, withinPercentage(2));
+        assertThat(statistics.allTime().p99DurationMs()).isCloseTo(100.0, withinPercentage(2));
+
+        assertThat(statistics.window().executions()).isEqualTo(100);
+        assertThat(statistics.trend()).singleElement()
+                .satisfies(day -> {
+                    assertThat(day.day()).isEqualTo(LocalDate.now().toString());
+                    assertThat(day.executions()).isEqualTo(100);
+                });
+    }
+
+    @Test
+    void testUnknownRegistrationHasEmptyStatistics() {
+        RegistrationStatistics statistics = statisticsService.statistics(PipelineStageType.BUILD, registrationId, null);
+
+        assertThat(statistics.days()).isEqualTo(RegistrationStatisticsService.DEFAULT_DAYS);
+        assertThat(statistics.allTime().executions()).isZero();
+        assertThat(statistics.allTime().successRate()).isNull();
+        assertThat(statistics.allTime().p95DurationMs()).isNull();
+        assertThat(statistics.trend()).isEmpty();
+    }
+
+    @Test
+    void testSketchSurvivesSerialization() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(i);
+        }
+
+        QuantileSketch copy = QuantileSketch.fromBytes(sketch.toBytes());
+
+        assertThat(copy.count()).isEqualTo(1000);
+        assertThat(copy.quantile(0.5)).isEqualTo(sketch.quantile(0.5));
+        assertThat(copy.quantile(0.0)).isZero();
+        assertThat(copy.quantile(0.9)).isCloseTo(900.0, withinPercentage(1));
+    }
+
+    private TestExecutionHistory history(int durationMs, boolean success) {
+        return TestExecutionHistory.builder()
+                .executionId(UUID.randomUUID().toString())
+                .registrationId(registrationId)
+                .command("echo")
+                .success(success)
+                .exitCode(success ? 0 : 1)
+                .executionTimeMs(durationMs)
+                .build();
+    }
+}
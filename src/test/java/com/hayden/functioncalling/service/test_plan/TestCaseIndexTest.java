@@ -0,0 +1,72 @@
+package com.hayden.functioncalling.service.test_plan;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.utils.JUnitXmlReportParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestCaseIndexTest {
+
+    @TempDir
+    private Path directory;
+
+    private TestCaseIndex index;
+
+    @BeforeEach
+    void setUp() {
+        CodeRunnerConfigProps props = new CodeRunnerConfigProps();
+        props.setDataDirectory(directory);
+        index = new TestCaseIndex(props, new ObjectMapper());
+    }
+
+    private static List<JUnitXmlReportParser.TestCaseResult> results(List<String> passed, List<String> failed) {
+        List<JUnitXmlReportParser.TestCaseResult> results = new ArrayList<>();
+        passed.forEach(s -> results.add(new JUnitXmlReportParser.TestCaseResult(s, "test()", 100,
+                JUnitXmlReportParser.TestStatus.PASSED, null)));
+        failed.forEach(s -> results.add(new JUnitXmlReportParser.TestCaseResult(s, "test()", 100,
+                JUnitXmlReportParser.TestStatus.FAILED, null)));
+        return results;
+    }
+
+    @Test
+    void testMostRecentlyFailingSuitesComeFirst() {
+        index.record("reg", results(List.of("a.BTest", "a.CTest"), List.of("a.ATest")), false);
+        index.record("reg", results(List.of("a.ATest", "a.CTest"), List.of("a.BTest")), false);
+        index.record("reg", results(List.of("a.ATest", "a.BTest", "a.CTest"), List.of()), false);
+
+        assertThat(index.recentlyFailing("reg")).containsExactly("a.BTest", "a.ATest");
+    }
+
+    @Test
+    void testSuitesThatStopRunningAgeOut() {
+        index.record("reg", results(List.of(), List.of("a.GoneTest")), false);
+        assertThat(index.recentlyFailing("reg")).containsExactly("a.GoneTest");
+
+        // runs of other suites count as runs the suite didn't fail in
+        for (int i = 0; i < 15; i++) {
+            index.record("reg", results(List.of("a.OtherTest"), List.of()), false);
+        }
+        assertThat(index.recentlyFailing("reg")).containsExactly("a.GoneTest");
+
+        index.record("reg", results(List.of("a.OtherTest"), List.of()), false);
+        assertThat(index.recentlyFailing("reg")).isEmpty();
+    }
+
+    @Test
+    void testCompleteRunDropsSuitesThatNoLongerExist() {
+        index.record("reg", results(List.of("a.KeptTest"), List.of("a.DeletedTest")), false);
+
+        index.record("reg", results(List.of("a.KeptTest", "a.NewTest"), List.of()), true);
+
+        assertThat(index.durations("reg")).containsOnlyKeys("a.KeptTest", "a.NewTest");
+        assertThat(index.recentlyFailing("reg")).isEmpty();
+    }
+}
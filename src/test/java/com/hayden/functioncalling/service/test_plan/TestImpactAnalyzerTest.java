@@ -0,0 +1,182 @@
+package com.hayden.functioncalling.service.test_plan;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import com.hayden.functioncalling.entity.TestExecutionEntity;
+import com.hayden.functioncalling.utils.JUnitXmlReportParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestImpactAnalyzerTest {
+
+    @TempDir
+    private Path dataDirectory;
+
+    @TempDir
+    private Path repository;
+
+    private TestCaseIndex index;
+
+    private TestImpactAnalyzer analyzer;
+
+    @BeforeEach
+    void setUp() {
+        CodeRunnerConfigProps props = new CodeRunnerConfigProps();
+        props.setDataDirectory(dataDirectory);
+        index = new TestCaseIndex(props, new ObjectMapper());
+        analyzer = new TestImpactAnalyzer(index);
+    }
+
+    @Test
+    void testSelectsTheSuitesReachableFromChangedSources() throws Exception {
+        write("src/main/java/a/Foo.java", "package a;\npublic class Foo {}\n");
+        write("src/main/java/a/Bar.java", "package a;\npublic class Bar {}\n");
+        write("src/test/java/a/FooTest.java", "package a;\nclass FooTest { Foo foo; }\n");
+        write("src/test/java/a/BarTest.java", "package a;\nclass BarTest { Bar bar; }\n");
+        commit();
+        passingRun();
+
+        write("src/main/java/a/Foo.java", "package a;\npublic class Foo { int changed; }\n");
+
+        TestSelection selection = analyzer.select(entity(), false);
+        assertThat(selection.fullRun()).isFalse();
+        assertThat(selection.suites()).containsExactly("a.FooTest");
+    }
+
+    @Test
+    void testRunsInFullWithoutAPassingRun() throws Exception {
+        write("src/main/java/a/Foo.java", "package a;\npublic class Foo {}\n");
+        write("src/test/java/a/FooTest.java", "package a;\nclass FooTest { Foo foo; }\n");
+        commit();
+
+        TestSelection first = analyzer.select(entity(), false);
+        assertThat(first.fullRun()).isTrue();
+        index.recordRun("impact", first, false);
+
+        // a clean tree, but the last run failed
+        assertThat(analyzer.select(entity(), false).fullRun()).isTrue();
+    }
+
+    @Test
+    void testReselectsTheTestsOfAFailedRunWithoutNewChanges() throws Exception {
+        write("src/main/java/a/Foo.java", "package a;\npublic class Foo {}\n");
+        write("src/main/java/a/Bar.java", "package a;\npublic class Bar {}\n");
+        write("src/test/java/a/FooTest.java", "package a;\nclass FooTest { Foo foo; }\n");
+        write("src/test/java/a/BarTest.java", "package a;\nclass BarTest { Bar bar; }\n");
+        commit();
+        passingRun();
+
+        write("src/main/java/a/Foo.java", "package a;\npublic class Foo { int changed; }\n");
+        commit();
+        TestSelection failed = analyzer.select(entity(), false);
+        assertThat(failed.suites()).containsExactly("a.FooTest");
+        index.record("impact", List.of(new JUnitXmlReportParser.TestCaseResult("a.FooTest", "test()", 100,
+                JUnitXmlReportParser.TestStatus.FAILED, null)), false);
+        index.recordRun("impact", failed, false);
+
+        // nothing changed since the failed run, its tests run again
+        TestSelection again = analyzer.select(entity(), false);
+        assertThat(again.isEmpty()).isFalse();
+        assertThat(again.suites()).containsExactly("a.FooTest");
+    }
+
+    @Test
+    void testKeepsSelectingRecentlyFailingSuites() throws Exception {
+        write("src/main/java/a/Foo.java", "package a;\npublic class Foo {}\n");
+        write("src/test/java/a/FooTest.java", "package a;\nclass FooTest { Foo foo; }\n");
+        write("src/test/java/a/FlakyTest.java", "package a;\nclass FlakyTest {}\n");
+        commit();
+        passingRun();
+        index.record("impact", List.of(new JUnitXmlReportParser.TestCaseResult("a.FlakyTest", "test()", 100,
+                JUnitXmlReportParser.TestStatus.FAILED, null)), false);
+
+        TestSelection selection = analyzer.select(entity(), false);
+        assertThat(selection.fullRun()).isFalse();
+        assertThat(selection.suites()).containsExactly("a.FlakyTest");
+    }
+
+    @Test
+    void testFallsBackToAFullRunOutsideOfGit() throws Exception {
+        write("src/main/java/a/Foo.java", "package a;\npublic class Foo {}\n");
+        write("src/test/java/a/FooTest.java", "package a;\nclass FooTest { Foo foo; }\n");
+
+        TestSelection selection = analyzer.select(entity(), false);
+        assertThat(selection.fullRun()).isTrue();
+        assertThat(selection.isEmpty()).isFalse();
+    }
+
+    @Test
+    void testFallsBackToAFullRunForSourcesOutsideTheGraph() throws Exception {
+        write("src/test/java/a/FooTest.java", "package a;\nclass FooTest {}\n");
+        // generated sources under a skipped directory, which the analysis doesn't read
+        write("out/generated/a/Generated.java", "package a;\npublic class Generated {}\n");
+        commit();
+        passingRun();
+
+        write("out/generated/a/Generated.java", "package a;\npublic class Generated { int changed; }\n");
+
+        TestSelection selection = analyzer.select(entity(), false);
+        assertThat(selection.fullRun()).isTrue();
+        assertThat(selection.reason()).contains("out/generated/a/Generated.java");
+    }
+
+    @Test
+    void testFallsBackToAFullRunWhenNoSuitesAreRecognized() throws Exception {
+        write("src/main/java/a/Foo.java", "package a;\npublic class Foo {}\n");
+        write("checks/a/FooCheck.java", "package a;\nclass FooCheck { Foo foo; }\n");
+        commit();
+        passingRun();
+
+        write("src/main/java/a/Foo.java", "package a;\npublic class Foo { int changed; }\n");
+
+        TestSelection selection = analyzer.select(entity(), false);
+        assertThat(selection.fullRun()).isTrue();
+    }
+
+    private void passingRun() {
+        TestSelection selection = analyzer.select(entity(), false);
+        assertThat(selection.head()).isNotNull();
+        index.recordRun("impact", selection, true);
+    }
+
+    private TestExecutionEntity entity() {
+        return TestExecutionEntity.builder()
+                .registrationId("impact")
+                .workingDirectory(repository.toString())
+                .testImpactAnalysis(true)
+                .testFilterTemplate("--tests {test}")
+                .build();
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = repository.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    private void commit() throws Exception {
+        if (!Files.isDirectory(repository.resolve(".git"))) {
+            git("init", "-q");
+        }
+        git("add", "-A");
+        git("-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", "initial");
+    }
+
+    private void git(String... args) throws Exception {
+        List<String> command = new ArrayList<>(List.of("git", "-C", repository.toString()));
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        assertThat(process.waitFor(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(process.exitValue()).isZero();
+    }
+}
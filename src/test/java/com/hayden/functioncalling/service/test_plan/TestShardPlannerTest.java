@@ -0,0 +1,69 @@
+package com.hayden.functioncalling.service.test_plan;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestShardPlannerTest {
+
+    private final TestShardPlanner planner = new TestShardPlanner(new CodeRunnerConfigProps());
+
+    @Test
+    void testShardsAreBalancedByDuration() {
+        Map<String, Long> durations = Map.of(
+                "a.SlowTest", 60_000L,
+                "a.MediumTest", 30_000L,
+                "a.OtherMediumTest", 25_000L,
+                "a.FastTest", 5_000L,
+                "a.FasterTest", 1_000L);
+
+        List<List<String>> shards = planner.plan(durations.keySet(), durations, 2);
+
+        assertThat(shards).hasSize(2);
+        assertThat(shards.get(0)).containsExactly("a.SlowTest", "a.FasterTest");
+        assertThat(shards.get(1)).containsExactly("a.MediumTest", "a.OtherMediumTest", "a.FastTest");
+    }
+
+    @Test
+    void testNeverCreatesMoreShardsThanSuites() {
+        Map<String, Long> durations = Map.of("a.OneTest", 10L, "a.TwoTest", 20L);
+
+        List<List<String>> shards = planner.plan(durations.keySet(), durations, 8);
+
+        assertThat(shards).hasSize(2);
+        assertThat(shards).allMatch(s -> s.size() == 1);
+    }
+
+    @Test
+    void testSuitesWithoutHistoryJoinShardsWithHistory() {
+        Map<String, Long> durations = Map.of("a.SlowTest", 60_000L, "a.FastTest", 1_000L);
+
+        List<List<String>> shards = planner.plan(
+                List.of("a.SlowTest", "a.FastTest", "a.NewTest", "a.TestSupport", "a.OtherNewTest"), durations, 4);
+
+        assertThat(shards).hasSize(2);
+        assertThat(shards.get(0)).containsExactly("a.SlowTest", "a.TestSupport");
+        assertThat(shards.get(1)).containsExactly("a.FastTest", "a.NewTest", "a.OtherNewTest");
+    }
+
+    @Test
+    void testResolveShardCount() {
+        assertThat(planner.resolveShardCount(null)).isEqualTo(1);
+        assertThat(planner.resolveShardCount(1)).isEqualTo(1);
+        assertThat(planner.resolveShardCount(4)).isEqualTo(4);
+        assertThat(planner.resolveShardCount(0))
+                .isBetween(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+    }
+
+    @Test
+    void testFilterArguments() {
+        assertThat(TestFilter.apply("test", "--tests {test}", List.of("a.OneTest", "a.TwoTest")))
+                .isEqualTo("test --tests a.OneTest --tests a.TwoTest");
+        assertThat(TestFilter.apply(null, "{test}", List.of("tests/test_one.py")))
+                .isEqualTo("tests/test_one.py");
+    }
+}
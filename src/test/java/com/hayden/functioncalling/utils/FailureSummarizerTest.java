@@ -0,0 +1,64 @@
+package com.hayden.functioncalling.utils;
+
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FailureSummarizerTest {
+
+    private static String contextFailure(int port) {
+        return """
+                java.lang.IllegalStateException: Failed to load ApplicationContext for [WebMergedContextConfiguration@%x]
+                \tat org.springframework.test.context.cache.DefaultCacheAwareContextLoaderDelegate.loadContext(DefaultCacheAwareContextLoaderDelegate.java:180)
+                \tat org.springframework.test.context.support.DefaultTestContext.getApplicationContext(DefaultTestContext.java:130)
+                \tat java.base/jdk.internal.reflect.DirectMethodHandleAccessor.invoke(DirectMethodHandleAccessor.java:103)
+                Caused by: org.postgresql.util.PSQLException: Connection to localhost:%d refused
+                \tat org.postgresql.Driver.connect(Driver.java:303)
+                \tat com.example.Database.open(Database.java:10)
+                \t... 40 more""".formatted(port * 7919, port);
+    }
+
+    @Test
+    void testGroupsFailuresByRootCause() {
+        FailureSummarizer summarizer = new FailureSummarizer(new CodeRunnerConfigProps.FailureSummary());
+        for (int i = 0; i < 200; i++) {
+            summarizer.add("com.example.Test" + i % 7, new TestFailureExtractor.FailureDetail("test" + i + "()", contextFailure(5432 + i)));
+        }
+        summarizer.add("com.example.FooTest", new TestFailureExtractor.FailureDetail("fails()", """
+                org.opentest4j.AssertionFailedError: expected: <1> but was: <2>
+                \tat org.junit.jupiter.api.AssertionFailureBuilder.build(AssertionFailureBuilder.java:151)
+                \tat com.example.FooTest.fails(FooTest.java:12)"""));
+
+        String summary = summarizer.summary(20_000);
+
+        assertThat(summary).startsWith("Test Failure Summary: 201 failures, 2 distinct causes");
+        assertThat(summary.indexOf("Cause: org.postgresql.util.PSQLException"))
+                .isLessThan(summary.indexOf("Cause: org.opentest4j.AssertionFailedError"));
+        assertThat(summary).contains("Failures: 200", "and 190 more", "at com.example.Database.open(Database.java:10)",
+                "... 3 framework frames", "at com.example.FooTest.fails(FooTest.java:12)");
+        assertThat(summary).doesNotContain("DefaultTestContext", "AssertionFailureBuilder");
+        assertThat(summary.length()).isLessThan(3_000);
+    }
+
+    @Test
+    void testFitsTheBudget() {
+        FailureSummarizer summarizer = new FailureSummarizer(new CodeRunnerConfigProps.FailureSummary());
+        for (int i = 0; i < 50; i++) {
+            summarizer.add("com.example.Test" + i, new TestFailureExtractor.FailureDetail("fails()",
+                    "java.lang.AssertionError: case %s\n\tat com.example.Test%d.fails(Test%d.java:1)".formatted("x".repeat(i), i, i)));
+        }
+
+        String summary = summarizer.summary(1_000);
+
+        assertThat(summary).hasSizeLessThanOrEqualTo(1_000);
+        assertThat(summary).startsWith("Test Failure Summary: 50 failures, 50 distinct causes")
+                .containsPattern("\\.\\.\\. \\d+ more causes of \\d+ failures$");
+    }
+
+    @Test
+    void testReportsNoFailures() {
+        assertThat(new FailureSummarizer(new CodeRunnerConfigProps.FailureSummary()).summary(1_000))
+                .isEqualTo(FailureSummarizer.NO_FAILURES);
+    }
+}
@@ -0,0 +1,57 @@
+package com.hayden.functioncalling.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LogFilesTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testScansLinesWithoutTheirTerminators() throws Exception {
+        Path log = directory.resolve("run.log");
+        Files.writeString(log, "first\r\nsecond\n\nlast without a newline");
+
+        List<String> lines = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            boolean all = LogFiles.scanMapped(channel, 0, Long.MAX_VALUE, (window, start, end) -> {
+                byte[] bytes = new byte[end - start];
+                window.get(start, bytes);
+                lines.add(new String(bytes, StandardCharsets.UTF_8));
+                return true;
+            });
+            assertThat(all).isTrue();
+        }
+
+        assertThat(lines).containsExactly("first", "second", "", "last without a newline");
+    }
+
+    @Test
+    void testScansARangeAndStopsWhenTheVisitorDoes() throws Exception {
+        Path log = directory.resolve("run.log");
+        Files.writeString(log, "one\ntwo\nthree\nfour\n");
+
+        List<Integer> lengths = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            // from the start of "two" to the end of the file
+            boolean all = LogFiles.scanMapped(channel, 4, Long.MAX_VALUE, (window, start, end) -> {
+                lengths.add(end - start);
+                return lengths.size() < 2;
+            });
+            assertThat(all).isFalse();
+        }
+
+        assertThat(lengths).containsExactly(3, 5);
+    }
+}
@@ -0,0 +1,131 @@
+package com.hayden.functioncalling.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hayden.functioncalling.config.CodeRunnerConfigProps;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReportParseCacheTest {
+
+    private static final TypeReference<List<String>> LINES = new TypeReference<>() {
+    };
+
+    @TempDir
+    private Path directory;
+
+    private CodeRunnerConfigProps props;
+    private final AtomicInteger parses = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        props = new CodeRunnerConfigProps();
+        props.setDataDirectory(directory.resolve("data"));
+    }
+
+    @Test
+    void testReusesUnchangedAndRewrittenFiles() throws Exception {
+        ReportParseCache cache = new ReportParseCache(props, new ObjectMapper());
+        Path page = Files.writeString(directory.resolve("index.html"), "one\ntwo");
+
+        assertThat(get(cache, page)).containsExactly("one", "two");
+        assertThat(get(cache, page)).containsExactly("one", "two");
+        assertThat(parses).hasValue(1);
+
+        // rewritten with the same content, as Gradle does on every run
+        Files.writeString(page, "one\ntwo");
+        Files.setLastModifiedTime(page, FileTime.fromMillis(Files.getLastModifiedTime(page).toMillis() + 60_000));
+        assertThat(get(cache, page)).containsExactly("one", "two");
+        assertThat(parses).hasValue(1);
+
+        Files.writeString(page, "one\nsix");
+        Files.setLastModifiedTime(page, FileTime.fromMillis(Files.getLastModifiedTime(page).toMillis() + 120_000));
+        assertThat(get(cache, page)).containsExactly("one", "six");
+        assertThat(parses).hasValue(2);
+    }
+
+    @Test
+    void testDropsLeastRecentlyUsedEntries() throws Exception {
+        props.getReportCache().setMaxEntries(2);
+        ReportParseCache cache = new ReportParseCache(props, new ObjectMapper());
+        Path a = Files.writeString(directory.resolve("a.xml"), "a");
+        Path b = Files.writeString(directory.resolve("b.xml"), "b");
+        Path c = Files.writeString(directory.resolve("c.xml"), "c");
+
+        get(cache, a);
+        get(cache, b);
+        get(cache, a);
+        get(cache, c);
+        assertThat(parses).hasValue(3);
+
+        get(cache, a);
+        assertThat(parses).hasValue(3);
+        get(cache, b);
+        assertThat(parses).hasValue(4);
+    }
+
+    @Test
+    void testOutlivesRestarts() throws Exception {
+        Path page = Files.writeString(directory.resolve("index.html"), "one");
+        ReportParseCache cache = new ReportParseCache(props, new ObjectMapper());
+        get(cache, page);
+        cache.flush();
+
+        assertThat(get(new ReportParseCache(props, new ObjectMapper()), page)).containsExactly("one");
+        assertThat(parses).hasValue(1);
+    }
+
+    @Test
+    void testConcurrentFlushesKeepEveryEntry() throws Exception {
+        ReportParseCache cache = new ReportParseCache(props, new ObjectMapper());
+        List<Path> pages = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            pages.add(Files.writeString(directory.resolve("page-%d.html".formatted(i)), "page " + i));
+        }
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<Future<?>> flushes = new ArrayList<>();
+            for (Path page : pages) {
+                flushes.add(executor.submit(() -> {
+                    get(cache, page);
+                    cache.flush();
+                    return null;
+                }));
+            }
+            for (Future<?> flush : flushes) {
+                flush.get();
+            }
+        }
+
+        // the last flush wrote every entry, and no temp file was left behind
+        ReportParseCache restarted = new ReportParseCache(props, new ObjectMapper());
+        for (Path page : pages) {
+            get(restarted, page);
+        }
+        assertThat(parses).hasValue(pages.size());
+        try (Stream<Path> files = Files.list(directory.resolve("data/report-cache"))) {
+            assertThat(files).extracting(p -> p.getFileName().toString()).containsExactly("index.json");
+        }
+    }
+
+    private List<String> get(ReportParseCache cache, Path file) throws Exception {
+        return cache.get(file, "lines", LINES, f -> {
+            parses.incrementAndGet();
+            return Files.readAllLines(f);
+        });
+    }
+}
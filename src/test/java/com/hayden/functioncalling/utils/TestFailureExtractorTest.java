@@ -0,0 +1,137 @@
+package com.hayden.functioncalling.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestFailureExtractorTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testReadsGradleXmlResultsNextToHtmlReport() throws Exception {
+        Path results = Files.createDirectories(directory.resolve("build/test-results/test"));
+        Files.writeString(results.resolve("TEST-com.example.FooTest.xml"), """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <testsuite name="com.example.FooTest" tests="3" skipped="1" failures="1" errors="0" time="0.5">
+                  <testcase name="passes()" classname="com.example.FooTest" time="0.1"/>
+                  <testcase name="fails()" classname="com.example.FooTest" time="0.3">
+                    <failure message="expected: &lt;1&gt; but was: &lt;2&gt;" type="org.opentest4j.AssertionFailedError"><![CDATA[org.opentest4j.AssertionFailedError: expected: <1> but was: <2>
+                	at com.example.FooTest.fails(FooTest.java:12)]]></failure>
+                  </testcase>
+                  <testcase name="skipped()" classname="com.example.FooTest" time="0"><skipped/></testcase>
+                  <system-out><![CDATA[lots of output]]></system-out>
+                </testsuite>
+                """);
+        Path report = Files.createDirectories(directory.resolve("build/reports/tests/test")).resolve("index.html");
+        // never parsed while there are XML results
+        Files.writeString(report, "<html><body>not a report</body></html>");
+
+        Map<String, List<TestFailureExtractor.FailureDetail>> failures = new TestFailureExtractor(report.toString()).extractFailures();
+
+        assertThat(failures).containsOnlyKeys("com.example.FooTest");
+        TestFailureExtractor.FailureDetail failure = failures.get("com.example.FooTest").getFirst();
+        assertThat(failure.getTestName()).isEqualTo("fails()");
+        assertThat(failure.getErrorMessage())
+                .startsWith("org.opentest4j.AssertionFailedError: expected: <1> but was: <2>")
+                .contains("FooTest.java:12");
+
+        List<JUnitXmlReportParser.TestCaseResult> cases = new JUnitXmlReportParser().parse(results, 0);
+        assertThat(cases).extracting(JUnitXmlReportParser.TestCaseResult::status).containsExactly(
+                JUnitXmlReportParser.TestStatus.PASSED, JUnitXmlReportParser.TestStatus.FAILED, JUnitXmlReportParser.TestStatus.SKIPPED);
+        assertThat(cases.get(1).durationMs()).isEqualTo(300);
+        assertThat(cases.get(1).failure().type()).isEqualTo("org.opentest4j.AssertionFailedError");
+        assertThat(cases.get(1).failure().message()).isEqualTo("expected: <1> but was: <2>");
+    }
+
+    @Test
+    void testReadsPytestJunitXml() throws Exception {
+        Path report = directory.resolve("pytest-results.xml");
+        Files.writeString(report, """
+                <?xml version="1.0" encoding="utf-8"?>
+                <testsuites><testsuite name="pytest" errors="1" failures="0" skipped="0" tests="2" time="0.2">
+                  <testcase classname="tests.test_agents" name="test_ok" time="0.01"/>
+                  <testcase classname="tests.test_agents" name="test_setup" time="0.02">
+                    <error message="failed on setup with &quot;fixture 'db' not found&quot;">fixture 'db' not found</error>
+                  </testcase>
+                </testsuite></testsuites>
+                """);
+
+        Map<String, List<TestFailureExtractor.FailureDetail>> failures = new TestFailureExtractor(report.toString()).extractFailures();
+
+        assertThat(failures).containsOnlyKeys("tests.test_agents");
+        assertThat(failures.get("tests.test_agents")).singleElement().satisfies(f -> {
+            assertThat(f.getTestName()).isEqualTo("test_setup");
+            assertThat(f.getErrorMessage()).isEqualTo("fixture 'db' not found");
+        });
+    }
+
+    @Test
+    void testNoFailuresWhenAllPass() throws Exception {
+        Path results = Files.createDirectories(directory.resolve("results"));
+        Files.writeString(results.resolve("TEST-com.example.BarTest.xml"), """
+                <testsuite name="com.example.BarTest"><testcase name="passes()" classname="com.example.BarTest" time="0.1"/></testsuite>
+                """);
+
+        assertThat(new TestFailureExtractor(results.toString()).extractFailures()).isEmpty();
+    }
+
+    @Test
+    void testFallsBackToHtmlReportMergingPagesInOrder() {
+        String report = Path.of("src/test/resources/test-reports/failure/index.html").toAbsolutePath().toString();
+
+        Map<String, List<TestFailureExtractor.FailureDetail>> failures = new TestFailureExtractor(report).extractFailures();
+
+        assertThat(failures).containsKey("CodeRunnerControllerTest");
+        assertThat(failures.get("CodeRunnerControllerTest")).isNotEmpty();
+        for (int i = 0; i < 5; i++) {
+            assertThat(new TestFailureExtractor(report).extractFailures().keySet())
+                    .containsExactlyElementsOf(failures.keySet());
+        }
+    }
+
+    @Test
+    void testReadsOnlyFailureRegionsOfLogs() throws Exception {
+        StringBuilder output = new StringBuilder();
+        for (int i = 1; i <= 10_000; i++) {
+            output.append("progress ").append(i).append('\n');
+        }
+        output.append("""
+                com.example.FooTest > fails() FAILED
+                    java.lang.AssertionError: expected 1
+                        at com.example.FooTest.fails(FooTest.java:12)
+                """);
+        for (int i = 1; i <= 10_000; i++) {
+            output.append("more progress ").append(i).append('\n');
+        }
+        Path log = Files.writeString(directory.resolve("test-report-log.log"), output);
+
+        Map<String, List<TestFailureExtractor.FailureDetail>> failures = new TestFailureExtractor(log.toString()).extractFailures();
+
+        assertThat(failures).containsOnlyKeys(log.toString());
+        assertThat(failures.get(log.toString())).singleElement().satisfies(region -> {
+            assertThat(region.getTestName()).isEqualTo("test-report-log.log:9996");
+            assertThat(region.getErrorMessage())
+                    .startsWith("progress 9996")
+                    .contains("fails() FAILED", "at com.example.FooTest.fails(FooTest.java:12)")
+                    .endsWith("more progress 5")
+                    .doesNotContain("progress 9995", "more progress 6");
+        });
+    }
+
+    @Test
+    void testReadsTheEndOfLogsWithoutFailures() throws Exception {
+        Path log = Files.writeString(directory.resolve("output.txt"), "started\nran\nfinished\n");
+
+        assertThat(new TestFailureExtractor(log.toString()).extractFailures().get(log.toString()))
+                .extracting(TestFailureExtractor.FailureDetail::getErrorMessage)
+                .containsExactly("started\nran\nfinished");
+    }
+}
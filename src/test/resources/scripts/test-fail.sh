@@ -0,0 +1,12 @@
+#!/bin/bash
+
+# Failing test suite simulation script
+echo "> Task :test"
+echo "CodeRunnerTest > testFirst() FAILED"
+echo "CodeRunnerTest > testSecond() FAILED"
+echo "CodeRunnerTest > testThird() PASSED"
+echo "CodeRunnerTest > testFourth() FAILED"
+sleep 30
+echo "CodeRunnerTest > testFifth() FAILED"
+
+exit 1